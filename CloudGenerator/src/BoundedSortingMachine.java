@@ -0,0 +1,330 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachineSecondary;
+
+/**
+ * {@code SortingMachine} that only keeps the first {@code capacity} entries it
+ * is given, in the order of its comparator. While in insertion mode the
+ * entries are held in a heap whose root is the last entry kept; an entry added
+ * to a full machine either replaces that root or is dropped. This lets the
+ * first entries of a large stream be found while holding only
+ * {@code capacity} of them.
+ * <p>
+ * Unlike {@code SortingMachine1L}, {@code add} does not always grow the
+ * contents: after any sequence of calls, {@code this.contents} is the first
+ * {@code capacity} entries added, in the order of {@code this.order()}.
+ *
+ * @param <T>
+ *            type of {@code SortingMachine} entries
+ * @convention <pre>
+ * 0 <= $this.size <= $this.capacity  and
+ * [if $this.insertionMode, $this.entries[0, $this.size) is a heap whose
+ *  root is the largest entry under $this.machineOrder]  and
+ * [if not $this.insertionMode, $this.entries[$this.next, $this.size) is
+ *  sorted by $this.machineOrder]
+ * </pre>
+ * @correspondence <pre>
+ * this = ($this.insertionMode, $this.machineOrder,
+ *         multiset of the entries of $this.entries[$this.next, $this.size))
+ * </pre>
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public class BoundedSortingMachine<T> extends SortingMachineSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Initial length of the entry array when the capacity is large.
+     */
+    private static final int INITIAL_LENGTH = 64;
+
+    /**
+     * Insertion mode.
+     */
+    private boolean insertionMode;
+
+    /**
+     * Order.
+     */
+    private Comparator<T> machineOrder;
+
+    /**
+     * Largest number of entries kept.
+     */
+    private int capacity;
+
+    /**
+     * Entries kept.
+     */
+    private Object[] entries;
+
+    /**
+     * Number of entries in {@code entries}.
+     */
+    private int size;
+
+    /**
+     * Index of the next entry removed in extraction mode.
+     */
+    private int next;
+
+    /**
+     * Return an entry.
+     *
+     * @param i
+     *            index in {@code entries}.
+     * @return entry at index {@code i}.
+     */
+    @SuppressWarnings("unchecked")
+    private T entry(int i) {
+        return (T) this.entries[i];
+    }
+
+    /**
+     * Move the entry at an index up the heap until its parent is not smaller.
+     *
+     * @param index
+     *            index of the entry.
+     */
+    private void siftUp(int index) {
+        int i = index;
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (this.machineOrder.compare(this.entry(parent),
+                    this.entry(i)) >= 0) {
+                break;
+            }
+            Object x = this.entries[i];
+            this.entries[i] = this.entries[parent];
+            this.entries[parent] = x;
+            i = parent;
+        }
+    }
+
+    /**
+     * Move the entry at an index down the heap until no child is larger.
+     *
+     * @param index
+     *            index of the entry.
+     */
+    private void siftDown(int index) {
+        int i = index;
+        int child = 2 * i + 1;
+        while (child < this.size) {
+            if (child + 1 < this.size && this.machineOrder
+                    .compare(this.entry(child + 1), this.entry(child)) > 0) {
+                child++;
+            }
+            if (this.machineOrder.compare(this.entry(i),
+                    this.entry(child)) >= 0) {
+                break;
+            }
+            Object x = this.entries[i];
+            this.entries[i] = this.entries[child];
+            this.entries[child] = x;
+            i = child;
+            child = 2 * i + 1;
+        }
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param capacity
+     *            largest number of entries kept
+     */
+    private void createNewRep(Comparator<T> order, int capacity) {
+        this.insertionMode = true;
+        this.machineOrder = order;
+        this.capacity = capacity;
+        this.entries = new Object[Math.min(capacity, INITIAL_LENGTH)];
+        this.size = 0;
+        this.next = 0;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from order and capacity.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param capacity
+     *            largest number of entries kept
+     * @requires capacity > 0
+     */
+    public BoundedSortingMachine(Comparator<T> order, int capacity) {
+        assert order != null : "Violation of: order is not null";
+        assert capacity > 0 : "Violation of: capacity > 0";
+        this.createNewRep(order, capacity);
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final SortingMachine<T> newInstance() {
+        try {
+            return this.getClass()
+                    .getConstructor(Comparator.class, int.class)
+                    .newInstance(this.machineOrder, this.capacity);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep(this.machineOrder, this.capacity);
+    }
+
+    @Override
+    public final void transferFrom(SortingMachine<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof BoundedSortingMachine<?> : ""
+                + "Violation of: source is of dynamic type BoundedSortingMachine<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * BoundedSortingMachine<?>, and the ? must be T or the call would not
+         * have compiled.
+         */
+        BoundedSortingMachine<T> localSource = (BoundedSortingMachine<T>) source;
+        this.insertionMode = localSource.insertionMode;
+        this.machineOrder = localSource.machineOrder;
+        this.capacity = localSource.capacity;
+        this.entries = localSource.entries;
+        this.size = localSource.size;
+        this.next = localSource.next;
+        localSource.createNewRep(localSource.machineOrder,
+                localSource.capacity);
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        if (this.size < this.capacity) {
+            if (this.size == this.entries.length) {
+                this.entries = Arrays.copyOf(this.entries,
+                        (int) Math.min(this.capacity,
+                                2L * this.entries.length));
+            }
+            this.entries[this.size] = x;
+            this.siftUp(this.size);
+            this.size++;
+        } else if (this.machineOrder.compare(x, this.entry(0)) < 0) {
+            // x comes before the last entry kept, so it replaces it
+            this.entries[0] = x;
+            this.siftDown(0);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final void changeToExtractionMode() {
+        assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
+
+        Arrays.sort((T[]) this.entries, 0, this.size, this.machineOrder);
+        this.next = 0;
+        this.insertionMode = false;
+    }
+
+    @Override
+    public final T removeFirst() {
+        assert !this
+                .isInInsertionMode() : "Violation of: not this.insertion_mode";
+        assert this.size() > 0 : "Violation of: this.contents /= {}";
+
+        T first = this.entry(this.next);
+        this.entries[this.next] = null;
+        this.next++;
+        return first;
+    }
+
+    @Override
+    public final boolean isInInsertionMode() {
+        return this.insertionMode;
+    }
+
+    @Override
+    public final Comparator<T> order() {
+        return this.machineOrder;
+    }
+
+    @Override
+    public final int size() {
+        return this.size - this.next;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new BoundedSortingMachineIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for
+     * {@code BoundedSortingMachine}.
+     */
+    private final class BoundedSortingMachineIterator implements Iterator<T> {
+
+        /**
+         * Index of the next entry returned.
+         */
+        private int index;
+
+        /**
+         * No-argument constructor.
+         */
+        private BoundedSortingMachineIterator() {
+            this.index = BoundedSortingMachine.this.next;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.index < BoundedSortingMachine.this.size;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            T x = BoundedSortingMachine.this.entry(this.index);
+            this.index++;
+            return x;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+    }
+}
@@ -1,10 +1,19 @@
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import components.map.Map;
 import components.map.Map.Pair;
 import components.map.Map1L;
-import components.set.Set;
-import components.set.Set1L;
 import components.simplereader.SimpleReader;
 import components.simplereader.SimpleReader1L;
 import components.simplewriter.SimpleWriter;
@@ -26,6 +35,55 @@ public final class CloudGenerator {
     private CloudGenerator() {
     }
 
+    /**
+     * Number of words in each cloud of a batch run when none is given.
+     */
+    private static final int DEFAULT_WORDS = 100;
+
+    /**
+     * Characters that separate words when no others are given.
+     */
+    private static final String SEPARATORS = " .,-\t";
+
+    /**
+     * Default separators compiled into a table indexed by character, true for
+     * a separator. It is never modified after being built, so it is shared.
+     */
+    private static final boolean[] SEPARATOR_TABLE = compileSeparators(
+            SEPARATORS);
+
+    /**
+     * Compile separator characters into a table indexed by character.
+     *
+     * @param separators
+     *            every character of this string is a separator.
+     * @return table holding true at the index of every separator.
+     */
+    private static boolean[] compileSeparators(String separators) {
+        int length = 0;
+        for (int i = 0; i < separators.length(); i++) {
+            length = Math.max(length, separators.charAt(i) + 1);
+        }
+        boolean[] table = new boolean[length];
+        for (int i = 0; i < separators.length(); i++) {
+            table[separators.charAt(i)] = true;
+        }
+        return table;
+    }
+
+    /**
+     * Report whether a character is a separator.
+     *
+     * @param separatorTable
+     *            compiled separators.
+     * @param c
+     *            character to classify.
+     * @return true if {@code c} is a separator.
+     */
+    private static boolean isSeparator(boolean[] separatorTable, char c) {
+        return c < separatorTable.length && separatorTable[c];
+    }
+
     /**
      * Return the first word or separator in the String starting at a defined
      * index. Separators include spaces, tabs, and punctuation.
@@ -34,32 +92,62 @@ public final class CloudGenerator {
      *            First index on the string that is checked.
      * @param s
      *            String that represents one line of the input file.
-     * @param seperators
-     *            Set of strings that are defined as "separators", not to be
-     *            counted as part of words.
+     * @param separatorTable
+     *            Characters that are defined as "separators", not to be
+     *            counted as part of words, compiled by
+     *            {@code compileSeparators}.
      * @return first word or separator occurrence starting at the startingIndex.
      */
     private static String nextWordOrSeperator(int startingIndex, String s,
-            Set<String> seperators) {
-        StringBuilder sb = new StringBuilder();
-
-        // get the character at the starting index
-        sb.append(s.charAt(startingIndex));
+            boolean[] separatorTable) {
         int index = startingIndex + 1;
 
         /*
-         * if the first string is not a seperator, add following characters
+         * if the first character is not a seperator, add following characters
          * until a seperator is found
          */
-        if (!seperators.contains(String.valueOf(s.charAt(startingIndex)))) {
+        if (!isSeparator(separatorTable, s.charAt(startingIndex))) {
             while (index < s.length()
-                    && !seperators.contains(String.valueOf(s.charAt(index)))) {
-                sb.append(s.charAt(index));
+                    && !isSeparator(separatorTable, s.charAt(index))) {
                 index++;
             }
         }
 
-        return sb.toString();
+        return s.substring(startingIndex, index);
+    }
+
+    /**
+     * Return a word in lower case, folding each code point, so that the map
+     * of counts is keyed by the lower case of the words. A word that is
+     * already in lower case, as most are, is returned itself, without
+     * allocating another {@code String}.
+     *
+     * @param word
+     *            the word as it occurs in the text.
+     * @return the word in lower case.
+     */
+    private static String toLowerCase(String word) {
+        int i = 0;
+        while (i < word.length()) {
+            int codePoint = word.codePointAt(i);
+            if (Character.toLowerCase(codePoint) != codePoint) {
+                break;
+            }
+            i += Character.charCount(codePoint);
+        }
+        if (i == word.length()) {
+            return word;
+        }
+
+        // fold the rest of the word from its first capital
+        StringBuilder folded = new StringBuilder(word.length());
+        folded.append(word, 0, i);
+        while (i < word.length()) {
+            int codePoint = word.codePointAt(i);
+            folded.appendCodePoint(Character.toLowerCase(codePoint));
+            i += Character.charCount(codePoint);
+        }
+        return folded.toString();
     }
 
     /**
@@ -75,14 +163,14 @@ public final class CloudGenerator {
     }
 
     /**
-     * Compare {@code String}s in alphabetical order, ignoring case.
+     * Compare words in lower case in alphabetical order.
      */
     public static class KeyComparator
             implements Comparator<Pair<String, Integer>> {
         @Override
         public int compare(Map.Pair<String, Integer> obj1,
                 Map.Pair<String, Integer> obj2) {
-            return obj1.key().compareToIgnoreCase(obj2.key());
+            return obj1.key().compareTo(obj2.key());
         }
     }
 
@@ -128,8 +216,8 @@ public final class CloudGenerator {
             int fSize = (int) Math.ceil(11
                     + 37 * (pair.value() - minCount) / (maxCount - minCount));
             out.println("<span style=\"cursor:default\" class=\"f" + fSize
-                    + "\" title=\"count: " + pair.value() + "\">" + pair.key()
-                    + "</span>");
+                    + "\" title=\"count: " + pair.value() + "\">"
+                    + pair.key() + "</span>");
         }
 
         out.println("</p>");
@@ -140,62 +228,43 @@ public final class CloudGenerator {
     }
 
     /**
-     * Main method.
+     * Make the word cloud of one input file.
      *
-     * @param args
-     *            the command line arguments
+     * @param inFileName
+     *            name of the input text file.
+     * @param outFileName
+     *            name of the output HTML file.
+     * @param nWords
+     *            number of words in the cloud.
+     * @param separatorTable
+     *            characters that separate words, compiled by
+     *            {@code compileSeparators}.
      */
-    public static void main(String[] args) {
-        SimpleReader in = new SimpleReader1L();
-        SimpleWriter out = new SimpleWriter1L();
-
-        // get file names and initialize readers / writers
-        out.println("enter an input file name: ");
-        String inFileName = in.nextLine();
+    private static void makeCloud(String inFileName, String outFileName,
+            int nWords, boolean[] separatorTable) {
         SimpleReader fileReader = new SimpleReader1L(inFileName);
-        out.println("enter an output file name: ");
-        String outFileName = in.nextLine();
         SimpleWriter fileWriter = new SimpleWriter1L(outFileName);
 
-        // get positive number of words to show in the cloud
-        int nWords = 0;
-        try {
-            out.println("enter the amount of words you want shown: ");
-            nWords = Integer.parseInt(in.nextLine());
-            if (nWords < 0) {
-                throw new IllegalArgumentException();
-            }
-        } catch (IllegalArgumentException e) {
-            out.println("Number of words cannot be negative");
-        }
-
         // initialize some variables
         Map<String, Integer> wordsToCounts = new Map1L<>();
-        Set<String> seperators = new Set1L<>();
-        seperators.add(" ");
-        seperators.add(".");
-        seperators.add(",");
-        seperators.add("-");
-        seperators.add("\t");
-
-        // iterate on each line until the stream ends
+
+        // iterate on each line until the stream ends, folding case by word
         while (!fileReader.atEOS()) {
             String line = fileReader.nextLine();
             int index = 0;
             while (index < line.length()) {
                 String wordOrSeperator = nextWordOrSeperator(index, line,
-                        seperators);
+                        separatorTable);
 
-                if (!seperators.contains(wordOrSeperator)) {
-                    wordOrSeperator = wordOrSeperator.toLowerCase();
-                    if (!wordsToCounts.hasKey(wordOrSeperator)) {
+                if (!isSeparator(separatorTable, wordOrSeperator.charAt(0))) {
+                    String word = toLowerCase(wordOrSeperator);
+                    if (!wordsToCounts.hasKey(word)) {
                         // create new map pair if word doesn't exist
-                        wordsToCounts.add(wordOrSeperator, 1);
+                        wordsToCounts.add(word, 1);
                     } else {
                         // increment word counter if word exists
-                        int wordCount = wordsToCounts.value(wordOrSeperator);
-                        wordsToCounts.replaceValue(wordOrSeperator,
-                                wordCount + 1);
+                        int wordCount = wordsToCounts.value(word);
+                        wordsToCounts.replaceValue(word, wordCount + 1);
                     }
                 }
                 // update the index
@@ -203,13 +272,18 @@ public final class CloudGenerator {
             }
         }
 
-        // set up sorting machines
-        Comparator<Map.Pair<String, Integer>> valueOrder = new ValueComparator();
+        /*
+         * set up sorting machines, the count sorter only keeps the top n pairs
+         * as the counts are streamed in
+         */
+        Comparator<Map.Pair<String, Integer>> valueOrder;
+        valueOrder = new ValueComparator();
         Comparator<Map.Pair<String, Integer>> keyOrder = new KeyComparator();
-        SortingMachine<Map.Pair<String, Integer>> countSorter = new SortingMachine1L<Map.Pair<String, Integer>>(
-                valueOrder);
-        SortingMachine<Map.Pair<String, Integer>> wordSorter = new SortingMachine1L<Map.Pair<String, Integer>>(
-                keyOrder);
+        SortingMachine<Map.Pair<String, Integer>> countSorter;
+        countSorter = new BoundedSortingMachine<>(valueOrder,
+                Math.max(nWords, 1));
+        SortingMachine<Map.Pair<String, Integer>> wordSorter;
+        wordSorter = new SortingMachine1L<>(keyOrder);
         for (Map.Pair<String, Integer> pair : wordsToCounts) {
             countSorter.add(pair);
         }
@@ -234,8 +308,204 @@ public final class CloudGenerator {
 
         fileReader.close();
         fileWriter.close();
+    }
+
+    /**
+     * Add the files named by a command line input to a map of input files to
+     * the names of their clouds: a file, every regular file of a directory,
+     * or every regular file matching a glob pattern under the current
+     * directory. A file is named by its file name without its extension, or
+     * when it matches a glob pattern by its path below the directory part of
+     * the pattern, so that files of the same name in different directories
+     * get clouds of their own.
+     *
+     * @param input
+     *            input given on the command line.
+     * @param inFiles
+     *            map the file names and the names of their clouds are added
+     *            to.
+     * @throws IOException
+     *             if a directory cannot be listed.
+     */
+    private static void addInputFiles(String input,
+            LinkedHashMap<String, String> inFiles) throws IOException {
+        int firstGlob = -1;
+        for (char c : "*?[{".toCharArray()) {
+            int index = input.indexOf(c);
+            if (index >= 0 && (firstGlob < 0 || index < firstGlob)) {
+                firstGlob = index;
+            }
+        }
+        if (firstGlob < 0 && Files.isDirectory(Paths.get(input))) {
+            try (Stream<Path> entries = Files.list(Paths.get(input))) {
+                entries.filter(Files::isRegularFile).sorted()
+                        .forEach(entry -> inFiles.putIfAbsent(
+                                entry.toString(),
+                                withoutExtension(entry.getFileName())));
+            }
+        } else if (firstGlob < 0) {
+            inFiles.putIfAbsent(input,
+                    withoutExtension(Paths.get(input).getFileName()));
+        } else {
+            Path base = Paths.get(".");
+            Path globBase = null;
+            int slash = input.lastIndexOf('/', firstGlob);
+            if (slash > 0) {
+                globBase = Paths.get(input.substring(0, slash)).normalize();
+            }
+            PathMatcher matcher = FileSystems.getDefault()
+                    .getPathMatcher("glob:" + input);
+            List<Path> matches;
+            try (Stream<Path> tree = Files.walk(base)) {
+                matches = tree.map(base::relativize).filter(matcher::matches)
+                        .filter(Files::isRegularFile).sorted()
+                        .collect(Collectors.toList());
+            }
+            for (Path match : matches) {
+                Path below = match;
+                if (globBase != null && match.startsWith(globBase)) {
+                    below = globBase.relativize(match);
+                }
+                inFiles.putIfAbsent(match.toString(),
+                        withoutExtension(below));
+            }
+        }
+    }
+
+    /**
+     * Return a relative path without the extension of its file name.
+     *
+     * @param path
+     *            relative path of a file.
+     * @return the path without the extension, as a {@code String}.
+     */
+    private static String withoutExtension(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            name = name.substring(0, dot);
+        }
+        return path.resolveSibling(name).toString();
+    }
+
+    /**
+     * Make the clouds of every input given on the command line in this run,
+     * writing each one to the output directory under the name given by
+     * {@code addInputFiles} with an {@code .html} extension. Nothing is made
+     * if two clouds would be written to the same file.
+     *
+     * @param args
+     *            the command line arguments:
+     *            {@code [-n words] [-o outputDirectory] [-s separators]
+     *            input...}
+     * @param out
+     *            writer for progress and error messages.
+     */
+    private static void makeClouds(String[] args, SimpleWriter out) {
+        int nWords = DEFAULT_WORDS;
+        String outDirectory = ".";
+        boolean[] separatorTable = SEPARATOR_TABLE;
+        LinkedHashMap<String, String> inFiles = new LinkedHashMap<>();
+        try {
+            int i = 0;
+            while (i < args.length) {
+                if (args[i].equals("-n") && i + 1 < args.length) {
+                    nWords = Integer.parseInt(args[i + 1]);
+                    if (nWords < 0) {
+                        throw new IllegalArgumentException();
+                    }
+                    i += 2;
+                } else if (args[i].equals("-o") && i + 1 < args.length) {
+                    outDirectory = args[i + 1];
+                    i += 2;
+                } else if (args[i].equals("-s") && i + 1 < args.length) {
+                    separatorTable = compileSeparators(args[i + 1]);
+                    i += 2;
+                } else {
+                    addInputFiles(args[i], inFiles);
+                    i++;
+                }
+            }
+            Files.createDirectories(Paths.get(outDirectory));
+        } catch (IllegalArgumentException e) {
+            out.println("usage: CloudGenerator [-n words] "
+                    + "[-o outputDirectory] [-s separators] input...");
+            return;
+        } catch (IOException e) {
+            out.println("Error finding the input files " + e);
+            return;
+        }
+
+        // two clouds in one file would overwrite each other as they are made
+        HashMap<Path, String> writers = new HashMap<>();
+        for (String inFileName : inFiles.keySet()) {
+            Path outFile = Paths.get(outDirectory,
+                    inFiles.get(inFileName) + ".html").normalize();
+            String other = writers.putIfAbsent(outFile, inFileName);
+            if (other != null) {
+                out.println("the clouds of " + other + " and " + inFileName
+                        + " would both be " + outFile + "; give them"
+                        + " different names or match them with a glob"
+                        + " pattern");
+                return;
+            }
+        }
+
+        int made = 0;
+        for (String inFileName : inFiles.keySet()) {
+            Path outFile = Paths.get(outDirectory,
+                    inFiles.get(inFileName) + ".html");
+            try {
+                Files.createDirectories(outFile.toAbsolutePath().getParent());
+                makeCloud(inFileName, outFile.toString(), nWords,
+                        separatorTable);
+                made++;
+            } catch (IOException | RuntimeException e) {
+                out.println("Error making the cloud of " + inFileName + " "
+                        + e);
+            }
+        }
+        out.println("made " + made + " of " + inFiles.size() + " clouds");
+    }
+
+    /**
+     * Main method. Without arguments, the input file, output file and number
+     * of words are asked for; otherwise every input on the command line is
+     * made into a cloud, see {@code makeClouds}.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+        if (args.length > 0) {
+            makeClouds(args, out);
+            out.close();
+            return;
+        }
+        SimpleReader in = new SimpleReader1L();
+
+        // get file names
+        out.println("enter an input file name: ");
+        String inFileName = in.nextLine();
+        out.println("enter an output file name: ");
+        String outFileName = in.nextLine();
+
+        // get positive number of words to show in the cloud
+        int nWords = 0;
+        try {
+            out.println("enter the amount of words you want shown: ");
+            nWords = Integer.parseInt(in.nextLine());
+            if (nWords < 0) {
+                throw new IllegalArgumentException();
+            }
+        } catch (IllegalArgumentException e) {
+            out.println("Number of words cannot be negative");
+        }
+
+        makeCloud(inFileName, outFileName, nWords, SEPARATOR_TABLE);
+
         in.close();
         out.close();
-
     }
 }
@@ -0,0 +1,126 @@
+package tagcloud.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import tagcloud.TagCloudGeneratorUsingJava;
+
+/**
+ * Synthetic corpus shared by the benchmarks, generated once per trial in a
+ * temporary file. The results of each stage are computed up front so that
+ * every stage can also be measured on its own.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+@State(Scope.Benchmark)
+public class Corpus {
+
+    /**
+     * Number of words in the corpus.
+     */
+    @Param({ "1000000" })
+    public long words;
+
+    /**
+     * Number of distinct words the corpus is drawn from.
+     */
+    @Param({ "10000", "1000000" })
+    public int vocabulary;
+
+    /**
+     * Exponent of the Zipf distribution of the words.
+     */
+    @Param({ "1.0" })
+    public double skew;
+
+    /**
+     * Number of words in the cloud.
+     */
+    @Param({ "100" })
+    public int nWords;
+
+    /**
+     * Seed of the random numbers.
+     */
+    @Param({ "2231" })
+    public long seed;
+
+    /**
+     * File holding the corpus.
+     */
+    Path file;
+
+    /**
+     * Lines of the corpus.
+     */
+    List<String> lines;
+
+    /**
+     * Words of the corpus mapped to their count.
+     */
+    Map<String, Integer> wordsToCounts;
+
+    /**
+     * Top words mapped to their count, in alphabetical order.
+     */
+    Map<String, Integer> wordsToCountsSorted;
+
+    /**
+     * Count of the most frequent word.
+     */
+    int maxCount;
+
+    /**
+     * Count of the least frequent top word.
+     */
+    int minCount;
+
+    /**
+     * Generate the corpus and the results of each stage.
+     *
+     * @throws IOException
+     *             if the corpus cannot be written or read.
+     */
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        this.file = Files.createTempFile("corpus", ".txt");
+        new CorpusGenerator(this.vocabulary, this.skew, this.seed)
+                .write(this.file, this.words);
+        this.lines = Files.readAllLines(this.file, StandardCharsets.UTF_8);
+
+        this.wordsToCounts = TagCloudGeneratorUsingJava
+                .getWordCounts(this.file);
+        this.wordsToCountsSorted = new TreeMap<>();
+        List<String> topWords = TagCloudGeneratorUsingJava.sortWordCount(
+                this.wordsToCountsSorted, this.wordsToCounts, this.nWords);
+        if (topWords.size() > 0) {
+            this.maxCount = this.wordsToCountsSorted.get(topWords.get(0));
+            this.minCount = this.wordsToCountsSorted
+                    .get(topWords.get(topWords.size() - 1));
+        }
+    }
+
+    /**
+     * Delete the corpus file.
+     *
+     * @throws IOException
+     *             if the file cannot be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        Files.deleteIfExists(this.file);
+    }
+}
@@ -0,0 +1,166 @@
+package tagcloud.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates synthetic text for the benchmarks. Words are drawn from a
+ * vocabulary of random lower- and upper-case words with a Zipf distribution,
+ * so a few words are very frequent and most are rare, like in real text. Words
+ * are separated by the same separators the tokenizer knows about and lines are
+ * about as long as in {@code data/gettysburg.txt}.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class CorpusGenerator {
+
+    /**
+     * Separators put between words, spaces being the most likely.
+     */
+    private static final String[] SEPARATORS = { " ", " ", " ", " ", " ",
+            ", ", ". ", " - ", "; ", "\t", " (", ") ", "\"", "! " };
+
+    /**
+     * Letters words are made of.
+     */
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+
+    /**
+     * Approximate number of characters per line.
+     */
+    private static final int LINE_LENGTH = 80;
+
+    /**
+     * Longest generated word.
+     */
+    private static final int MAX_WORD_LENGTH = 12;
+
+    /**
+     * One in this many words starts with an upper-case letter.
+     */
+    private static final int CAPITALIZED = 10;
+
+    /**
+     * Vocabulary, most frequent word first.
+     */
+    private final String[] vocabulary;
+
+    /**
+     * Cumulative probability of each word of the vocabulary.
+     */
+    private final double[] cumulative;
+
+    /**
+     * Random numbers, seeded so that runs are comparable.
+     */
+    private final Random random;
+
+    /**
+     * Constructor.
+     *
+     * @param vocabularySize
+     *            number of distinct words.
+     * @param skew
+     *            exponent of the Zipf distribution, 0 for uniform.
+     * @param seed
+     *            seed of the random numbers.
+     */
+    public CorpusGenerator(int vocabularySize, double skew, long seed) {
+        this.random = new Random(seed);
+        this.vocabulary = new String[vocabularySize];
+        for (int i = 0; i < vocabularySize; i++) {
+            this.vocabulary[i] = this.randomWord(i);
+        }
+
+        this.cumulative = new double[vocabularySize];
+        double total = 0;
+        for (int i = 0; i < vocabularySize; i++) {
+            total += 1 / Math.pow(i + 1, skew);
+            this.cumulative[i] = total;
+        }
+        for (int i = 0; i < vocabularySize; i++) {
+            this.cumulative[i] /= total;
+        }
+    }
+
+    /**
+     * Write a corpus to a file.
+     *
+     * @param file
+     *            file to write, replaced if it exists.
+     * @param nWords
+     *            number of words to write.
+     * @throws IOException
+     *             if the file cannot be written.
+     */
+    public void write(Path file, long nWords) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file,
+                StandardCharsets.UTF_8)) {
+            int lineLength = 0;
+            for (long i = 0; i < nWords; i++) {
+                String word = this.nextWord();
+                out.write(word);
+                lineLength += word.length();
+                if (lineLength >= LINE_LENGTH) {
+                    out.newLine();
+                    lineLength = 0;
+                } else {
+                    String separator = SEPARATORS[this.random
+                            .nextInt(SEPARATORS.length)];
+                    out.write(separator);
+                    lineLength += separator.length();
+                }
+            }
+            out.newLine();
+        }
+    }
+
+    /**
+     * Draw the next word.
+     *
+     * @return a word of the vocabulary.
+     */
+    private String nextWord() {
+        int rank = Arrays.binarySearch(this.cumulative,
+                this.random.nextDouble());
+        if (rank < 0) {
+            rank = -rank - 1;
+        }
+        String word = this.vocabulary[Math.min(rank,
+                this.vocabulary.length - 1)];
+        if (this.random.nextInt(CAPITALIZED) == 0) {
+            word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+        }
+        return word;
+    }
+
+    /**
+     * Make a random word. Frequent words are short, and a suffix spelling the
+     * rank in letters makes it unlikely that two ranks get the same word.
+     *
+     * @param rank
+     *            rank of the word in the vocabulary.
+     * @return the word.
+     */
+    private String randomWord(int rank) {
+        int length = 1 + Math.min(MAX_WORD_LENGTH - 1,
+                (int) Math.round(Math.log(rank + 2) * 1.5));
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(LETTERS.charAt(this.random.nextInt(LETTERS.length())));
+        }
+        // letters only, so that the word stays a single token
+        int n = rank;
+        do {
+            sb.append(LETTERS.charAt(n % LETTERS.length()));
+            n /= LETTERS.length();
+        } while (n > 0);
+        return sb.toString();
+    }
+}
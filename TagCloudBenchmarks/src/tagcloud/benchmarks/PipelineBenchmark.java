@@ -0,0 +1,85 @@
+package tagcloud.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tagcloud.TagCloudGeneratorUsingJava;
+
+/**
+ * Measures the whole tag cloud pipeline, from the input file to the HTML
+ * file, the way {@code TagCloudGeneratorUsingJava} runs it for one input.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+
+    /**
+     * Number of threads counting words.
+     */
+    @Param({ "1", "4" })
+    public int threads;
+
+    /**
+     * File the cloud is written to.
+     */
+    private Path outFile;
+
+    /**
+     * Create the output file.
+     *
+     * @throws IOException
+     *             if the file cannot be created.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.outFile = Files.createTempFile("cloud", ".html");
+    }
+
+    /**
+     * Delete the output file.
+     *
+     * @throws IOException
+     *             if the file cannot be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(this.outFile);
+    }
+
+    /**
+     * Make the cloud of the corpus.
+     *
+     * @param corpus
+     *            the corpus.
+     * @throws IOException
+     *             if a file cannot be read or written.
+     */
+    @Benchmark
+    public void makeCloud(Corpus corpus) throws IOException {
+        TagCloudGeneratorUsingJava.makeCloud(corpus.file, this.outFile,
+                corpus.nWords, this.threads);
+    }
+}
@@ -0,0 +1,33 @@
+package tagcloud.benchmarks;
+
+import java.io.IOException;
+
+/**
+ * Runs the tag cloud benchmarks. The arguments are those of the JMH command
+ * line, for example {@code -p vocabulary=100000 -p skew=1.2 Stage} runs the
+ * stage benchmarks on a corpus of 100000 distinct words with a steeper Zipf
+ * distribution, and {@code -prof gc} adds allocation rates.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class RunBenchmarks {
+
+    /**
+     * No argument constructor--private to prevent instantiation.
+     */
+    private RunBenchmarks() {
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments, passed to JMH
+     * @throws IOException
+     *             if the benchmarks cannot be run.
+     */
+    public static void main(String[] args) throws IOException {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
@@ -0,0 +1,326 @@
+package tagcloud.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import tagcloud.StopWords;
+import tagcloud.TagCloudGeneratorUsingJava;
+import tagcloud.Utf8WordScanner;
+import tagcloud.WordCountTable;
+import tagcloud.WordCounts;
+import tagcloud.WordSink;
+import tagcloud.WordTokenizer;
+
+/**
+ * Measures each stage of the tag cloud pipeline on its own: tokenizing,
+ * counting, selecting the top words and rendering the HTML.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class StageBenchmarks {
+
+    /**
+     * Number of threads of the parallel counting benchmark.
+     */
+    @Param({ "4" })
+    public int threads;
+
+    /**
+     * Number of counters per row of the sketches of {@code countSketch}.
+     */
+    @Param({ "65536" })
+    public int sketchWidth;
+
+    /**
+     * Number of rows of the sketches of {@code countSketch}.
+     */
+    @Param({ "4" })
+    public int sketchDepth;
+
+    /**
+     * Text of the corpus, read from memory by the line-based benchmarks.
+     */
+    private String text;
+
+    /**
+     * Tokenizer with the separators of {@code TOKENIZER} that never
+     * vectorizes.
+     */
+    private final WordTokenizer scalarTokenizer = new WordTokenizer(
+            TagCloudGeneratorUsingJava.SEPARATORS + "\r\n", false);
+
+    /**
+     * Common English words, left out by {@code countWithoutStopWords}.
+     */
+    private final StopWords stopWords = StopWords.english();
+
+    /**
+     * Channel that discards everything written to it.
+     */
+    private final WritableByteChannel discard = new WritableByteChannel() {
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            int length = src.remaining();
+            src.position(src.limit());
+            return length;
+        }
+    };
+
+    /**
+     * Join the lines of the corpus.
+     *
+     * @param corpus
+     *            the corpus.
+     */
+    @Setup
+    public void setUp(Corpus corpus) {
+        this.text = String.join("\n", corpus.lines);
+    }
+
+    /**
+     * Split every line into words and separators with
+     * {@code nextWordOrSeperator}.
+     *
+     * @param corpus
+     *            the corpus.
+     * @param blackhole
+     *            sink of the words.
+     */
+    @Benchmark
+    public void nextWordOrSeperator(Corpus corpus, Blackhole blackhole) {
+        for (String line : corpus.lines) {
+            int index = 0;
+            while (index < line.length()) {
+                String wordOrSeperator = TagCloudGeneratorUsingJava
+                        .nextWordOrSeperator(index, line);
+                blackhole.consume(wordOrSeperator);
+                index += wordOrSeperator.length();
+            }
+        }
+    }
+
+    /**
+     * Split every line into words with the tokenizer, without counting them.
+     *
+     * @param corpus
+     *            the corpus.
+     * @param blackhole
+     *            sink of the words.
+     */
+    @Benchmark
+    public void tokenize(Corpus corpus, Blackhole blackhole) {
+        char[] chars = new char[0];
+        WordSink sink = (buffer, start, end) -> blackhole.consume(end - start);
+        for (String line : corpus.lines) {
+            if (line.length() > chars.length) {
+                chars = new char[Math.max(line.length(), 2 * chars.length)];
+            }
+            line.getChars(0, line.length(), chars, 0);
+            TagCloudGeneratorUsingJava.TOKENIZER.tokenize(chars, 0,
+                    line.length(), true, sink);
+        }
+    }
+
+    /**
+     * Split every line into words with a tokenizer that scans one character
+     * at a time, to compare with the vectorized {@code tokenize}.
+     *
+     * @param corpus
+     *            the corpus.
+     * @param blackhole
+     *            sink of the words.
+     */
+    @Benchmark
+    public void tokenizeScalar(Corpus corpus, Blackhole blackhole) {
+        char[] chars = new char[0];
+        WordSink sink = (buffer, start, end) -> blackhole.consume(end - start);
+        for (String line : corpus.lines) {
+            if (line.length() > chars.length) {
+                chars = new char[Math.max(line.length(), 2 * chars.length)];
+            }
+            line.getChars(0, line.length(), chars, 0);
+            this.scalarTokenizer.tokenize(chars, 0, line.length(), true, sink);
+        }
+    }
+
+    /**
+     * Count the words read line by line from memory.
+     *
+     * @return map of words to their count
+     */
+    @Benchmark
+    public Map<String, Integer> countFromReader() {
+        return TagCloudGeneratorUsingJava.getWordCounts(
+                new BufferedReader(new StringReader(this.text)));
+    }
+
+    /**
+     * Count the words of the memory-mapped file.
+     *
+     * @param corpus
+     *            the corpus.
+     * @return map of words to their count
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    @Benchmark
+    public Map<String, Integer> countMapped(Corpus corpus)
+            throws IOException {
+        return TagCloudGeneratorUsingJava.getWordCounts(corpus.file);
+    }
+
+    /**
+     * Count the words of the file read as UTF-8 bytes that are never decoded.
+     *
+     * @param corpus
+     *            the corpus.
+     * @return map of words to their count
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    @Benchmark
+    public Map<String, Integer> countUtf8(Corpus corpus) throws IOException {
+        WordCountTable counts = new WordCountTable();
+        try (FileChannel channel = FileChannel.open(corpus.file,
+                StandardOpenOption.READ)) {
+            Utf8WordScanner.scan(channel, TagCloudGeneratorUsingJava.TOKENIZER,
+                    counts);
+        }
+        return counts;
+    }
+
+    /**
+     * Count the words of the memory-mapped file on several threads.
+     *
+     * @param corpus
+     *            the corpus.
+     * @return map of words to their count
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    @Benchmark
+    public Map<String, Integer> countParallel(Corpus corpus)
+            throws IOException {
+        return TagCloudGeneratorUsingJava.getWordCounts(corpus.file,
+                this.threads);
+    }
+
+    /**
+     * Estimate the counts of the top words of the file on several threads
+     * with Count-Min sketches, to compare with {@code countParallel}.
+     *
+     * @param corpus
+     *            the corpus.
+     * @return map of the candidate words to their estimated count
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    @Benchmark
+    public Map<String, Integer> countSketch(Corpus corpus)
+            throws IOException {
+        return TagCloudGeneratorUsingJava.getWordCounts(corpus.file,
+                this.threads, this.sketchWidth, this.sketchDepth,
+                TagCloudGeneratorUsingJava.SKETCH_CANDIDATES_PER_WORD
+                        * corpus.nWords);
+    }
+
+    /**
+     * Count the words of the file on several threads that share one
+     * lock-free table, to compare with {@code countParallel}.
+     *
+     * @param corpus
+     *            the corpus.
+     * @return counts of the words of the file
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    @Benchmark
+    public WordCounts countShared(Corpus corpus) throws IOException {
+        return TagCloudGeneratorUsingJava.getSharedWordCounts(corpus.file,
+                this.threads);
+    }
+
+    /**
+     * Count the words of the mapped file on several threads, leaving out
+     * English stop words before they reach the counting tables.
+     *
+     * @param corpus
+     *            the corpus.
+     * @return map of words to their count
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    @Benchmark
+    public Map<String, Integer> countWithoutStopWords(Corpus corpus)
+            throws IOException {
+        return TagCloudGeneratorUsingJava.getWordCounts(corpus.file,
+                this.threads, this.stopWords);
+    }
+
+    /**
+     * Select the top words of the counts.
+     *
+     * @param corpus
+     *            the corpus.
+     * @return the top words in order of their counts
+     */
+    @Benchmark
+    public List<String> select(Corpus corpus) {
+        return TagCloudGeneratorUsingJava.sortWordCount(new TreeMap<>(),
+                corpus.wordsToCounts, corpus.nWords);
+    }
+
+    /**
+     * Render the HTML of the top words.
+     *
+     * @param corpus
+     *            the corpus.
+     * @throws IOException
+     *             if the page cannot be written.
+     */
+    @Benchmark
+    public void render(Corpus corpus) throws IOException {
+        TagCloudGeneratorUsingJava.makeOutputFile(corpus.wordsToCountsSorted,
+                this.discard, corpus.file.toString(), corpus.maxCount,
+                corpus.minCount);
+    }
+}
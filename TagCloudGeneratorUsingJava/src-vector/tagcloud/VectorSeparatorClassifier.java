@@ -0,0 +1,139 @@
+package tagcloud;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Classifies characters as separators with the incubating Vector API, a whole
+ * vector of characters per step. The ASCII separator bitset is split into
+ * eight 16-bit words held in one vector: each character picks its word with
+ * its high bits and its bit with its low four bits, so the cost does not
+ * depend on the number of separators. Characters outside of ASCII are rare
+ * and are handed back to the tokenizer one at a time.
+ *
+ * <p>
+ * This class needs {@code --add-modules jdk.incubator.vector} to compile and
+ * run, so it is kept in its own source folder, {@code src-vector}, which the
+ * build only compiles when the module exists; {@code src} builds without it.
+ * {@code WordTokenizer} loads it by name and scans with its own scalar loop
+ * when the class or the module is missing.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+final class VectorSeparatorClassifier implements SeparatorClassifier {
+
+    /**
+     * Vector shape used, the widest the hardware supports.
+     */
+    private static final VectorSpecies<Short> SPECIES = ShortVector
+            .SPECIES_PREFERRED;
+
+    /**
+     * Number of characters covered by the bitset.
+     */
+    private static final int ASCII_LIMIT = 128;
+
+    /**
+     * Number of bits in one word of the bitset.
+     */
+    private static final int BITS_PER_WORD = 16;
+
+    /**
+     * Number of words of the bitset.
+     */
+    private static final int WORDS = ASCII_LIMIT / BITS_PER_WORD;
+
+    /**
+     * Shift from a character to the index of its word.
+     */
+    private static final int WORD_SHIFT = 4;
+
+    /**
+     * Tokenizer classifying the characters outside of ASCII.
+     */
+    private final WordTokenizer tokenizer;
+
+    /**
+     * The bitset, word {@code i} in every lane {@code i % WORDS}.
+     */
+    private final ShortVector table;
+
+    /**
+     * Whether some separator is outside of ASCII.
+     */
+    private final boolean otherSeparators;
+
+    /**
+     * Constructor.
+     *
+     * @param asciiSeparators
+     *            bitset of the ASCII separators, 64 bits per word.
+     * @param otherSeparators
+     *            whether some separator is outside of ASCII.
+     * @param tokenizer
+     *            tokenizer classifying the characters outside of ASCII.
+     */
+    VectorSeparatorClassifier(long[] asciiSeparators, boolean otherSeparators,
+            WordTokenizer tokenizer) {
+        if (SPECIES.length() < WORDS
+                || SeparatorClassifier.BLOCK_SIZE % SPECIES.length() != 0) {
+            throw new UnsupportedOperationException(
+                    "vectors are too narrow: " + SPECIES);
+        }
+        short[] words = new short[SPECIES.length()];
+        for (int i = 0; i < words.length; i++) {
+            int bit = (i % WORDS) * BITS_PER_WORD;
+            words[i] = (short) (asciiSeparators[bit / Long.SIZE] >>> (bit
+                    % Long.SIZE));
+        }
+        this.table = ShortVector.fromArray(SPECIES, words, 0);
+        this.otherSeparators = otherSeparators;
+        this.tokenizer = tokenizer;
+    }
+
+    @Override
+    public long separatorMask(char[] chars, int from) {
+        long mask = 0;
+        int step = SPECIES.length();
+        for (int lane = 0; lane < BLOCK_SIZE; lane += step) {
+            ShortVector c = ShortVector.fromCharArray(SPECIES, chars,
+                    from + lane);
+            VectorMask<Short> ascii = c.compare(VectorOperators.UNSIGNED_LT,
+                    (short) ASCII_LIMIT);
+            ShortVector word = c.lanewise(VectorOperators.LSHR, WORD_SHIFT)
+                    .and((short) (WORDS - 1)).selectFrom(this.table);
+            VectorMask<Short> separator = word
+                    .lanewise(VectorOperators.LSHR,
+                            c.and((short) (BITS_PER_WORD - 1)))
+                    .and((short) 1).compare(VectorOperators.NE, 0).and(ascii);
+            mask |= separator.toLong() << lane;
+
+            if (this.otherSeparators && !ascii.allTrue()) {
+                long others = ascii.not().toLong();
+                while (others != 0) {
+                    int i = Long.numberOfTrailingZeros(others);
+                    if (this.tokenizer.isSeparator(chars[from + lane + i])) {
+                        mask |= 1L << (lane + i);
+                    }
+                    others &= others - 1;
+                }
+            }
+        }
+        return mask;
+    }
+
+    @Override
+    public boolean isAscii(char[] chars, int from) {
+        // a character is ASCII when none of its bits from 7 up is set
+        ShortVector bits = ShortVector.zero(SPECIES);
+        for (int lane = 0; lane < BLOCK_SIZE; lane += SPECIES.length()) {
+            bits = bits.or(ShortVector.fromCharArray(SPECIES, chars,
+                    from + lane));
+        }
+        return bits.compare(VectorOperators.UNSIGNED_LT, (short) ASCII_LIMIT)
+                .allTrue();
+    }
+}
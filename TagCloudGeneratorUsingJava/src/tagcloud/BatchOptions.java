@@ -0,0 +1,820 @@
+package tagcloud;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Command line settings of a batch run of {@code TagCloudGeneratorUsingJava}.
+ * Inputs may be files, directories, whose regular files are all used, or glob
+ * patterns such as {@code logs/**.txt}. The cloud of a file found by a glob
+ * pattern keeps the file's path below the pattern's directory, so
+ * {@code logs/a/x.txt} and {@code logs/b/x.txt} make {@code a/x.html} and
+ * {@code b/x.html}; other clouds are named after their file alone.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class BatchOptions {
+
+    /**
+     * Usage message.
+     */
+    static final String USAGE = "usage: TagCloudGeneratorUsingJava"
+            + " [-n words] [-o outputDirectory] [-t threads] [-m]"
+            + " [-s separators] [-k wordCharacters] [-x stopWords] [-r]"
+            + " [-g phraseLength] [-p minPmi] [-u] [-c tokenClasses]"
+            + " [-a errorRate] [-w width[xdepth]] [-e] [-b megabytes] [-j]"
+            + " [-d spillDirectory] input..."
+            + System.lineSeparator()
+            + "  an input is a file, a directory or a glob pattern"
+            + System.lineSeparator()
+            + "  -m writes the metrics of each cloud next to it as JSON"
+            + System.lineSeparator()
+            + "  -s replaces the separators; \\d, \\s and \\p add every"
+            + " digit, white space or punctuation character"
+            + System.lineSeparator()
+            + "  -k removes characters from the separators, such as \"'\""
+            + System.lineSeparator()
+            + "  -u splits text outside of ASCII by Unicode category, with"
+            + " each ideograph a word" + System.lineSeparator()
+            + "  -c keeps tokens whole, such as \"url,email,hashtag=bucket,"
+            + "number=drop\"; classes are number, url, email, hashtag,"
+            + " mention and all, actions keep, bucket, drop and split"
+            + System.lineSeparator()
+            + "  -x leaves out the words of a file, one per line, or of the"
+            + " built-in list \"english\""
+            + System.lineSeparator()
+            + "  -r counts the words by their stem, \"dedicated\" as"
+            + " \"dedicate\"" + System.lineSeparator()
+            + "  -g makes clouds of phrases of that many words, -p leaves out"
+            + " phrases whose pointwise mutual information is lower"
+            + System.lineSeparator()
+            + "  -a counts approximately in fixed memory, each count too high"
+            + " by at most that fraction of the words, such as 0.0001"
+            + System.lineSeparator()
+            + "  -w counts in Count-Min sketches of that many counters per row"
+            + " and rows, 4 by default, such as 262144x4"
+            + System.lineSeparator()
+            + "  otherwise a file whose words may not fit in -b megabytes,"
+            + " half the heap by default, has its vocabulary estimated and"
+            + " is counted in sketches if it is too large; -e always counts"
+            + " exactly" + System.lineSeparator()
+            + "  -j counts exactly, with every thread counting into one"
+            + " lock-free table instead of a table of its own"
+            + System.lineSeparator()
+            + "  -d counts exactly in -b megabytes, spilling the counts to"
+            + " sorted files in that directory when they would take more";
+
+    /**
+     * Default number of words in each cloud.
+     */
+    private static final int DEFAULT_WORDS = 100;
+
+    /**
+     * Default number of rows of a Count-Min sketch.
+     */
+    private static final int DEFAULT_SKETCH_DEPTH = 4;
+
+    /**
+     * Number of bytes in a megabyte.
+     */
+    private static final long BYTES_PER_MEGABYTE = 1 << 20;
+
+    /**
+     * Name of the built-in stop word list.
+     */
+    private static final String ENGLISH_STOP_WORDS = "english";
+
+    /**
+     * Characters that make an input a glob pattern.
+     */
+    private static final String GLOB_CHARACTERS = "*?[{";
+
+    /**
+     * Number of words in each cloud.
+     */
+    private int nWords = DEFAULT_WORDS;
+
+    /**
+     * Directory the clouds are written to.
+     */
+    private Path outputDirectory = Paths.get("");
+
+    /**
+     * Number of threads.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Whether the metrics of each cloud are written as JSON.
+     */
+    private boolean writeMetrics;
+
+    /**
+     * Specification of the separators, or null for the default ones.
+     */
+    private String separatorSpecification;
+
+    /**
+     * Characters removed from the separators.
+     */
+    private String wordCharacters = "";
+
+    /**
+     * Compiled separators.
+     */
+    private SeparatorSet separators;
+
+    /**
+     * Whether text outside of ASCII is split by Unicode category.
+     */
+    private boolean unicode;
+
+    /**
+     * Policy of the recognized token classes, or null to only split words.
+     */
+    private TokenClasses tokenClasses;
+
+    /**
+     * Stop word list, or null to count every word.
+     */
+    private String stopWordList;
+
+    /**
+     * Whether words are counted by their stem.
+     */
+    private boolean stem;
+
+    /**
+     * Number of words per phrase of the clouds, 1 for clouds of words.
+     */
+    private int phraseLength = 1;
+
+    /**
+     * Lowest pointwise mutual information of a phrase in a cloud.
+     */
+    private double minPmi = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Largest error of an approximate count as a fraction of the words
+     * counted, 0 for exact counts.
+     */
+    private double errorRate;
+
+    /**
+     * Number of counters per row of the Count-Min sketches, 0 to count
+     * without them.
+     */
+    private int sketchWidth;
+
+    /**
+     * Number of rows of the Count-Min sketches.
+     */
+    private int sketchDepth = DEFAULT_SKETCH_DEPTH;
+
+    /**
+     * Whether every file is counted exactly, whatever its vocabulary.
+     */
+    private boolean exact;
+
+    /**
+     * Whether the threads counting a file share one concurrent table.
+     */
+    private boolean shared;
+
+    /**
+     * Directory counts are spilled to, or null to count in memory.
+     */
+    private Path spillDirectory;
+
+    /**
+     * Memory the counts of the files may take at once, in bytes.
+     */
+    private long memory = Runtime.getRuntime().maxMemory() / 2;
+
+    /**
+     * Inputs as given on the command line.
+     */
+    private final List<String> inputs = new ArrayList<>();
+
+    /**
+     * Path of the cloud of each input file, relative to the output directory
+     * and without its extension, as found by {@code inputFiles}.
+     */
+    private final Map<Path, Path> outputNames = new HashMap<>();
+
+    /**
+     * No argument constructor--private, use {@code parse}.
+     */
+    private BatchOptions() {
+    }
+
+    /**
+     * Parse the command line arguments.
+     *
+     * @param args
+     *            the command line arguments
+     * @return the settings
+     * @throws IllegalArgumentException
+     *             if the arguments are not valid.
+     */
+    public static BatchOptions parse(String[] args) {
+        BatchOptions options = new BatchOptions();
+        int i = 0;
+        while (i < args.length) {
+            String arg = args[i];
+            if (arg.equals("-n") || arg.equals("--words")) {
+                options.nWords = parseCount(arg, value(args, i));
+                i += 2;
+            } else if (arg.equals("-o") || arg.equals("--output")) {
+                options.outputDirectory = Paths.get(value(args, i));
+                i += 2;
+            } else if (arg.equals("-t") || arg.equals("--threads")) {
+                options.threads = parseCount(arg, value(args, i));
+                if (options.threads == 0) {
+                    throw new IllegalArgumentException(
+                            "number of threads must be positive");
+                }
+                i += 2;
+            } else if (arg.equals("-m") || arg.equals("--metrics")) {
+                options.writeMetrics = true;
+                i++;
+            } else if (arg.equals("-s") || arg.equals("--separators")) {
+                options.separatorSpecification = value(args, i);
+                i += 2;
+            } else if (arg.equals("-k") || arg.equals("--keep")) {
+                options.wordCharacters += value(args, i);
+                i += 2;
+            } else if (arg.equals("-u") || arg.equals("--unicode")) {
+                options.unicode = true;
+                i++;
+            } else if (arg.equals("-c") || arg.equals("--classes")) {
+                options.tokenClasses = TokenClasses.parse(value(args, i));
+                i += 2;
+            } else if (arg.equals("-x") || arg.equals("--stop-words")) {
+                options.stopWordList = value(args, i);
+                i += 2;
+            } else if (arg.equals("-r") || arg.equals("--stem")) {
+                options.stem = true;
+                i++;
+            } else if (arg.equals("-g") || arg.equals("--phrases")) {
+                options.phraseLength = parseCount(arg, value(args, i));
+                if (options.phraseLength == 0) {
+                    throw new IllegalArgumentException(
+                            "phrases need at least one word");
+                }
+                i += 2;
+            } else if (arg.equals("-p") || arg.equals("--min-pmi")) {
+                try {
+                    options.minPmi = Double.parseDouble(value(args, i));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(
+                            arg + " needs a number, not " + args[i + 1], e);
+                }
+                i += 2;
+            } else if (arg.equals("-a") || arg.equals("--approximate")) {
+                try {
+                    options.errorRate = Double.parseDouble(value(args, i));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(
+                            arg + " needs a number, not " + args[i + 1], e);
+                }
+                if (!(options.errorRate > 0 && options.errorRate <= 1)) {
+                    throw new IllegalArgumentException(
+                            "error rate must be between 0 and 1");
+                }
+                i += 2;
+            } else if (arg.equals("-w") || arg.equals("--sketch")) {
+                String size = value(args, i);
+                int x = size.indexOf('x');
+                if (x >= 0) {
+                    options.sketchDepth = parseCount(arg,
+                            size.substring(x + 1));
+                    size = size.substring(0, x);
+                }
+                options.sketchWidth = parseCount(arg, size);
+                if (options.sketchWidth == 0 || options.sketchDepth == 0) {
+                    throw new IllegalArgumentException(
+                            "sketches need at least one counter");
+                }
+                i += 2;
+            } else if (arg.equals("-e") || arg.equals("--exact")) {
+                options.exact = true;
+                i++;
+            } else if (arg.equals("-j") || arg.equals("--shared")) {
+                options.shared = true;
+                i++;
+            } else if (arg.equals("-d") || arg.equals("--spill")) {
+                options.spillDirectory = Paths.get(value(args, i));
+                i += 2;
+            } else if (arg.equals("-b") || arg.equals("--memory")) {
+                options.memory = (long) parseCount(arg, value(args, i))
+                        * BYTES_PER_MEGABYTE;
+                i += 2;
+            } else if (arg.startsWith("-") && arg.length() > 1) {
+                throw new IllegalArgumentException("unknown option " + arg);
+            } else {
+                options.inputs.add(arg);
+                i++;
+            }
+        }
+        if (options.sketchWidth > 0 && options.errorRate > 0) {
+            throw new IllegalArgumentException(
+                    "-a and -w are different ways of counting");
+        }
+        if (options.shared
+                && (options.sketchWidth > 0 || options.errorRate > 0)) {
+            throw new IllegalArgumentException(
+                    "-j counts exactly, unlike -a and -w");
+        }
+        if (options.spillDirectory != null && (options.shared
+                || options.sketchWidth > 0 || options.errorRate > 0)) {
+            throw new IllegalArgumentException(
+                    "-d is a different way of counting than -a, -w and -j");
+        }
+        if (options.phraseLength > 1 && (options.spillDirectory != null
+                || options.shared || options.sketchWidth > 0
+                || options.errorRate > 0)) {
+            throw new IllegalArgumentException(
+                    "-g counts phrases its own way, unlike -a, -w, -j and -d");
+        }
+        if (options.inputs.isEmpty()) {
+            throw new IllegalArgumentException("no input given");
+        }
+        options.separators = compileSeparators(options.separatorSpecification,
+                options.wordCharacters);
+        return options;
+    }
+
+    /**
+     * Return the number of words in each cloud.
+     *
+     * @return number of words in each cloud.
+     */
+    public int nWords() {
+        return this.nWords;
+    }
+
+    /**
+     * Return the number of threads.
+     *
+     * @return number of threads.
+     */
+    public int threads() {
+        return this.threads;
+    }
+
+    /**
+     * Report whether the metrics of each cloud are written as JSON.
+     *
+     * @return true if the metrics are written.
+     */
+    public boolean writeMetrics() {
+        return this.writeMetrics;
+    }
+
+    /**
+     * Return the separators of every input. Line breaks always separate words.
+     *
+     * @return the separators.
+     */
+    public SeparatorSet separators() {
+        return this.separators;
+    }
+
+    /**
+     * Report whether text outside of ASCII is split by Unicode category
+     * rather than by the separators alone.
+     *
+     * @return true if the tokenizer reads code points.
+     */
+    public boolean unicode() {
+        return this.unicode;
+    }
+
+    /**
+     * Return the policy of the recognized token classes.
+     *
+     * @return the policy, or null to only split words.
+     */
+    public TokenClasses tokenClasses() {
+        return this.tokenClasses;
+    }
+
+    /**
+     * Return the number of words per phrase of the clouds.
+     *
+     * @return number of words per phrase, 1 for clouds of words.
+     */
+    public int phraseLength() {
+        return this.phraseLength;
+    }
+
+    /**
+     * Return the lowest pointwise mutual information of a phrase in a cloud.
+     *
+     * @return the lowest PMI, negative infinity to keep every phrase.
+     */
+    public double minPmi() {
+        return this.minPmi;
+    }
+
+    /**
+     * Return the largest error of an approximate count as a fraction of the
+     * words counted.
+     *
+     * @return the error rate, 0 for exact counts.
+     */
+    public double errorRate() {
+        return this.errorRate;
+    }
+
+    /**
+     * Return the number of counters per row of the Count-Min sketches.
+     *
+     * @return width of the sketches, 0 to count without them.
+     */
+    public int sketchWidth() {
+        return this.sketchWidth;
+    }
+
+    /**
+     * Return the number of rows of the Count-Min sketches.
+     *
+     * @return depth of the sketches.
+     */
+    public int sketchDepth() {
+        return this.sketchDepth;
+    }
+
+    /**
+     * Report whether every file is counted exactly, rather than in sketches
+     * when its vocabulary would not fit in memory.
+     *
+     * @return true if counting is always exact.
+     */
+    public boolean exact() {
+        return this.exact;
+    }
+
+    /**
+     * Report whether the threads counting a file count exactly into one
+     * concurrent table they share, rather than into a table each that are
+     * merged at the end.
+     *
+     * @return true if the threads share one table.
+     */
+    public boolean shared() {
+        return this.shared;
+    }
+
+    /**
+     * Return the directory counts are spilled to when they would take more
+     * than {@code memory()}.
+     *
+     * @return the spill directory, or null to count in memory.
+     */
+    public Path spillDirectory() {
+        return this.spillDirectory;
+    }
+
+    /**
+     * Return the memory the counts of the files may take at once.
+     *
+     * @return number of bytes.
+     */
+    public long memory() {
+        return this.memory;
+    }
+
+    /**
+     * Report whether the words go through any stage between the tokenizer
+     * and the counting table.
+     *
+     * @return true if stop words are dropped or words are stemmed.
+     */
+    public boolean hasStages() {
+        return this.stem || this.stopWordList != null;
+    }
+
+    /**
+     * Return the stages the words of every input go through between the
+     * tokenizer and the counting table.
+     *
+     * @return function wrapping a counting table into the stages.
+     * @throws IOException
+     *             if the stop word list cannot be read.
+     */
+    public UnaryOperator<WordSink> stages() throws IOException {
+        StopWords stopWords = null;
+        if (this.stopWordList != null
+                && this.stopWordList.equals(ENGLISH_STOP_WORDS)) {
+            stopWords = StopWords.english();
+        } else if (this.stopWordList != null) {
+            stopWords = StopWords.read(Paths.get(this.stopWordList));
+        }
+
+        // stop words are dropped before they are stemmed
+        StopWords dropped = stopWords;
+        return counts -> {
+            WordSink sink = counts;
+            if (this.stem) {
+                sink = new StemmingStage(sink);
+            }
+            if (dropped != null) {
+                sink = new StopWordFilter(dropped, sink);
+            }
+            return sink;
+        };
+    }
+
+    /**
+     * Return the directory the clouds are written to.
+     *
+     * @return the output directory.
+     */
+    public Path outputDirectory() {
+        return this.outputDirectory;
+    }
+
+    /**
+     * Return the output file of an input file: the input file name with its
+     * extension replaced by {@code .html}, in the output directory, or in the
+     * directories below it that the file was found in by a glob pattern.
+     *
+     * @param inFile
+     *            input file.
+     * @return output file.
+     */
+    public Path outputFile(Path inFile) {
+        Path name = this.outputNames.get(inFile);
+        if (name == null) {
+            name = withoutExtension(inFile.getFileName());
+        }
+        return this.outputDirectory.resolve(name + ".html");
+    }
+
+    /**
+     * Return the metrics file of an output file: the output file with its
+     * {@code .html} extension replaced by {@code .json}.
+     *
+     * @param outFile
+     *            output file.
+     * @return metrics file.
+     */
+    public Path metricsFile(Path outFile) {
+        String name = outFile.getFileName().toString();
+        return outFile.resolveSibling(
+                name.substring(0, name.length() - ".html".length()) + ".json");
+    }
+
+    /**
+     * Expand the inputs into the list of files to read, in order and without
+     * duplicates.
+     *
+     * @return the input files.
+     * @throws IOException
+     *             if a directory cannot be listed.
+     * @throws IllegalArgumentException
+     *             if the clouds of two input files would be written to the
+     *             same output file.
+     */
+    public List<Path> inputFiles() throws IOException {
+        Map<Path, Path> names = new LinkedHashMap<>();
+        for (String input : this.inputs) {
+            if (isGlob(input)) {
+                Path base = globBase(input);
+                for (Path file : expandGlob(input)) {
+                    Path below = file;
+                    if (base != null && file.startsWith(base)) {
+                        below = base.relativize(file);
+                    }
+                    names.putIfAbsent(file, withoutExtension(below));
+                }
+            } else {
+                Path path = Paths.get(input);
+                if (Files.isDirectory(path)) {
+                    for (Path file : listDirectory(path)) {
+                        names.putIfAbsent(file,
+                                withoutExtension(file.getFileName()));
+                    }
+                } else {
+                    names.putIfAbsent(path,
+                            withoutExtension(path.getFileName()));
+                }
+            }
+        }
+
+        // two clouds in one file would overwrite each other as they are made
+        Map<Path, Path> writers = new HashMap<>();
+        for (Map.Entry<Path, Path> entry : names.entrySet()) {
+            Path outFile = this.outputDirectory
+                    .resolve(entry.getValue() + ".html").normalize();
+            Path other = writers.putIfAbsent(outFile, entry.getKey());
+            if (other != null) {
+                throw new IllegalArgumentException("the clouds of " + other
+                        + " and " + entry.getKey() + " would both be "
+                        + outFile + "; give them different names or"
+                        + " match them with a glob pattern");
+            }
+        }
+        this.outputNames.clear();
+        this.outputNames.putAll(names);
+        return new ArrayList<>(names.keySet());
+    }
+
+    /**
+     * Return the value following an option.
+     *
+     * @param args
+     *            the command line arguments
+     * @param i
+     *            index of the option.
+     * @return the value of the option.
+     * @throws IllegalArgumentException
+     *             if there is no value.
+     */
+    private static String value(String[] args, int i) {
+        if (i + 1 >= args.length) {
+            throw new IllegalArgumentException(
+                    "missing value after " + args[i]);
+        }
+        return args[i + 1];
+    }
+
+    /**
+     * Compile the separators given on the command line.
+     *
+     * @param specification
+     *            specification of the separators, or null for the default ones.
+     * @param wordCharacters
+     *            characters removed from the separators.
+     * @return the separators.
+     * @throws IllegalArgumentException
+     *             if the specification is not valid.
+     */
+    private static SeparatorSet compileSeparators(String specification,
+            String wordCharacters) {
+        SeparatorSet separators;
+        if (specification == null) {
+            separators = SeparatorSet.of(TagCloudGeneratorUsingJava.SEPARATORS);
+        } else {
+            separators = SeparatorSet.parse(specification);
+        }
+        return separators.without(wordCharacters).with("\r\n");
+    }
+
+    /**
+     * Parse a non-negative number.
+     *
+     * @param option
+     *            option the number is given to.
+     * @param value
+     *            the number.
+     * @return the number.
+     * @throws IllegalArgumentException
+     *             if the value is not a non-negative number.
+     */
+    private static int parseCount(String option, String value) {
+        int count;
+        try {
+            count = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                    option + " needs a number, not " + value, e);
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException(
+                    option + " cannot be negative");
+        }
+        return count;
+    }
+
+    /**
+     * Remove the extension of the last name of a path.
+     *
+     * @param path
+     *            relative path of a file.
+     * @return the path without the extension of its file name.
+     */
+    private static Path withoutExtension(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            name = name.substring(0, dot);
+        }
+        return path.resolveSibling(name);
+    }
+
+    /**
+     * Report whether an input is a glob pattern.
+     *
+     * @param input
+     *            input as given on the command line.
+     * @return true if the input contains a glob character.
+     */
+    private static boolean isGlob(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            if (GLOB_CHARACTERS.indexOf(input.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the regular files of a directory, sorted by name.
+     *
+     * @param directory
+     *            the directory.
+     * @return files in the directory.
+     * @throws IOException
+     *             if the directory cannot be listed.
+     */
+    private static List<Path> listDirectory(Path directory)
+            throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files
+                .newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                if (Files.isRegularFile(entry)) {
+                    files.add(entry);
+                }
+            }
+        }
+        files.sort(null);
+        return files;
+    }
+
+    /**
+     * Return the directory part of a glob pattern before its first glob
+     * character.
+     *
+     * @param pattern
+     *            glob pattern.
+     * @return directory the pattern is matched below, or null if it has none.
+     */
+    private static Path globBase(String pattern) {
+        int firstGlob = 0;
+        while (GLOB_CHARACTERS.indexOf(pattern.charAt(firstGlob)) < 0) {
+            firstGlob++;
+        }
+        int slash = pattern.lastIndexOf('/', firstGlob);
+        Path base = null;
+        if (slash == 0) {
+            base = Paths.get("/");
+        } else if (slash > 0) {
+            base = Paths.get(pattern.substring(0, slash));
+        }
+        return base;
+    }
+
+    /**
+     * Return the regular files matching a glob pattern, sorted by path. The
+     * tree is walked from the directory part of the pattern before its first
+     * glob character.
+     *
+     * @param pattern
+     *            glob pattern.
+     * @return files matching the pattern.
+     * @throws IOException
+     *             if a directory cannot be listed.
+     */
+    private static List<Path> expandGlob(String pattern) throws IOException {
+        Path directory = globBase(pattern);
+        boolean relative = directory == null;
+        Path base = relative ? Paths.get(".") : directory;
+
+        PathMatcher matcher = FileSystems.getDefault()
+                .getPathMatcher("glob:" + pattern);
+        List<Path> files = new ArrayList<>();
+        if (Files.isDirectory(base)) {
+            try (Stream<Path> tree = Files.walk(base)) {
+                tree.forEach(path -> {
+                    // "./name" would not match a pattern without a directory
+                    Path name = path;
+                    if (relative) {
+                        name = base.relativize(path);
+                    }
+                    if (matcher.matches(name) && Files.isRegularFile(path)) {
+                        files.add(name);
+                    }
+                });
+            }
+        }
+        files.sort(null);
+        return files;
+    }
+}
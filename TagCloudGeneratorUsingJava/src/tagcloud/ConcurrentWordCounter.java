@@ -0,0 +1,525 @@
+package tagcloud;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts words given by any number of threads at once, ignoring case,
+ * without locks. Words are entries in tables with open addressing whose
+ * slots are claimed with compare-and-set, so a new word is inserted without
+ * blocking the threads counting other words. Each entry counts with
+ * compare-and-set on an {@code int} until two threads collide on it; from
+ * then on, a hot word such as "the" counts in a {@code LongAdder}, whose
+ * cells spread the threads over separate cache lines, so threads counting
+ * the same word do not wait on each other either.
+ * <p>
+ * A table is never resized. When it is half full, the next word that would
+ * be inserted into it seals the empty slot that ends its probe sequence
+ * instead and moves on to a table twice as large, chained after it. Words
+ * are looked up through the chain in order, and a word is only inserted
+ * where every thread looking for it will find it: a thread that reaches a
+ * sealed slot goes on to the next table, so the same word is never inserted
+ * into two tables. With doubling tables the chain stays short.
+ * <p>
+ * Once every thread is done counting, the words are read as
+ * {@code WordCounts}, numbered in the order of the tables and slots; they are
+ * numbered the first time they are read, so counting must not go on after.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class ConcurrentWordCounter
+        implements WordCounts, WordSink, Utf8WordSink {
+
+    /**
+     * Default number of slots of the first table, a power of two.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * Initial length of the buffer words in UTF-8 are decoded into.
+     */
+    private static final int INITIAL_DECODED_LENGTH = 64;
+
+    /**
+     * Marks an empty slot that ends a probe sequence of a table that was
+     * full, words past it are in the next table.
+     */
+    private static final Entry SEALED = new Entry(new char[0], 0, 0);
+
+    /**
+     * Count field of an entry.
+     */
+    private static final VarHandle COUNT;
+
+    /**
+     * Hot counter field of an entry.
+     */
+    private static final VarHandle HOT;
+
+    /**
+     * Next table field of a table.
+     */
+    private static final VarHandle NEXT;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            COUNT = lookup.findVarHandle(Entry.class, "count", int.class);
+            HOT = lookup.findVarHandle(Entry.class, "hot", LongAdder.class);
+            NEXT = lookup.findVarHandle(Table.class, "next", Table.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * First table of the chain.
+     */
+    private final Table first;
+
+    /**
+     * Number of words counted.
+     */
+    private final LongAdder total = new LongAdder();
+
+    /**
+     * Buffer each thread decodes words given in UTF-8 into.
+     */
+    private final ThreadLocal<char[]> decoded = ThreadLocal
+            .withInitial(() -> new char[INITIAL_DECODED_LENGTH]);
+
+    /**
+     * Entries numbered in the order of the tables and slots, made when first
+     * read.
+     */
+    private volatile Entry[] entries;
+
+    /**
+     * No argument constructor.
+     */
+    public ConcurrentWordCounter() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param expectedWords
+     *            number of distinct words expected; the first table holds
+     *            them, more words go to the tables chained after it.
+     */
+    public ConcurrentWordCounter(int expectedWords) {
+        this.first = new Table(Integer.highestOneBit(
+                Math.max(expectedWords, 1) * 2 - 1) << 1);
+    }
+
+    @Override
+    public void accept(char[] chars, int start, int end) {
+        // same as the hash code of the lower-case word as a String
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash
+                    + WordCountTable.toLowerCase(chars, i, start, end);
+        }
+        this.total.increment();
+        increment(this.find(chars, start, end, hash, true));
+    }
+
+    @Override
+    public void acceptToken(char[] chars, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        this.total.increment();
+        increment(this.find(chars, start, end, hash, false));
+    }
+
+    @Override
+    public void accept(byte[] bytes, int start, int end) {
+        char[] buffer = this.decoded.get();
+        if (end - start > buffer.length) {
+            buffer = new char[Math.max(end - start, 2 * buffer.length)];
+            this.decoded.set(buffer);
+        }
+        this.accept(buffer, 0, Utf8.decodeWord(bytes, start, end, buffer));
+    }
+
+    /**
+     * Return the number of distinct words. Counting must be done.
+     *
+     * @return number of distinct words.
+     */
+    @Override
+    public int size() {
+        return this.entries().length;
+    }
+
+    @Override
+    public long total() {
+        return this.total.sum();
+    }
+
+    @Override
+    public String key(int id) {
+        Entry entry = this.entries()[id];
+        return new String(entry.word);
+    }
+
+    @Override
+    public int count(int id) {
+        return countOf(this.entries()[id]);
+    }
+
+    /**
+     * Return 0, since the counts are exact.
+     *
+     * @param id
+     *            number of the word, from 0 to {@code size() - 1}.
+     * @return 0.
+     */
+    @Override
+    public int error(int id) {
+        return 0;
+    }
+
+    @Override
+    public TopIdSelector.Order byCountThenWord() {
+        Entry[] numbered = this.entries();
+        int[] counts = new int[numbered.length];
+        for (int id = 0; id < numbered.length; id++) {
+            counts[id] = countOf(numbered[id]);
+        }
+        return (id1, id2) -> {
+            int order = Integer.compare(counts[id2], counts[id1]);
+            if (order == 0) {
+                order = compareWords(numbered[id1].word, numbered[id2].word);
+            }
+            return order;
+        };
+    }
+
+    /**
+     * Return the number of tables in the chain.
+     *
+     * @return number of tables.
+     */
+    int tables() {
+        int n = 0;
+        for (Table t = this.first; t != null; t = t.next) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Find the entry of a word, inserting it if it is new.
+     *
+     * @param chars
+     *            buffer holding the word.
+     * @param start
+     *            index of the first character of the word.
+     * @param end
+     *            index one past the last character of the word.
+     * @param hash
+     *            hash of the word in lower case.
+     * @param fold
+     *            whether the word is counted in lower case.
+     * @return entry of the word.
+     */
+    private Entry find(char[] chars, int start, int end, int hash,
+            boolean fold) {
+        Entry created = null;
+        Table table = this.first;
+        while (true) {
+            AtomicReferenceArray<Entry> slots = table.slots;
+            int mask = slots.length() - 1;
+            int slot = mix(hash) & mask;
+            boolean ticket = false;
+            while (true) {
+                Entry entry = slots.get(slot);
+                if (entry == null) {
+                    // claim the slot for the word, or seal a full table
+                    if (!ticket) {
+                        ticket = table.tickets.incrementAndGet() <= table.limit;
+                    }
+                    if (ticket && created == null) {
+                        created = new Entry(chars, start, end, hash, fold);
+                    }
+                    entry = ticket ? created : SEALED;
+                    if (slots.compareAndSet(slot, null, entry)) {
+                        if (ticket) {
+                            return created;
+                        }
+                        break;
+                    }
+                    entry = slots.get(slot);
+                }
+                if (entry == SEALED) {
+                    break;
+                }
+                if (entry.hash == hash
+                        && entry.matches(chars, start, end, fold)) {
+                    return entry;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table = table.next();
+        }
+    }
+
+    /**
+     * Return the entries numbered in the order of the tables and slots,
+     * numbering them the first time.
+     *
+     * @return the numbered entries.
+     */
+    private Entry[] entries() {
+        Entry[] numbered = this.entries;
+        if (numbered == null) {
+            List<Entry> list = new ArrayList<>();
+            for (Table t = this.first; t != null; t = t.next) {
+                for (int i = 0; i < t.slots.length(); i++) {
+                    Entry entry = t.slots.get(i);
+                    if (entry != null && entry != SEALED) {
+                        list.add(entry);
+                    }
+                }
+            }
+            numbered = list.toArray(new Entry[0]);
+            this.entries = numbered;
+        }
+        return numbered;
+    }
+
+    /**
+     * Add one to the count of an entry, moving it to a {@code LongAdder}
+     * when threads collide on it.
+     *
+     * @param entry
+     *            the entry.
+     */
+    private static void increment(Entry entry) {
+        LongAdder hot = entry.hot;
+        if (hot != null) {
+            hot.increment();
+            return;
+        }
+        int count = entry.count;
+        if (COUNT.compareAndSet(entry, count, count + 1)) {
+            return;
+        }
+
+        // another thread counted the word at the same time, so it is hot
+        LongAdder adder = new LongAdder();
+        if (!HOT.compareAndSet(entry, null, adder)) {
+            adder = entry.hot;
+        }
+        adder.increment();
+    }
+
+    /**
+     * Return the count of an entry.
+     *
+     * @param entry
+     *            the entry.
+     * @return count of the entry.
+     */
+    private static int countOf(Entry entry) {
+        LongAdder hot = entry.hot;
+        long count = entry.count;
+        if (hot != null) {
+            count += hot.sum();
+        }
+        return (int) Math.min(count, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Compare two words the way their {@code String}s would compare.
+     *
+     * @param word1
+     *            the first word.
+     * @param word2
+     *            the second word.
+     * @return negative, zero or positive as the first word is before, the
+     *         same as or after the second.
+     */
+    private static int compareWords(char[] word1, char[] word2) {
+        int length = Math.min(word1.length, word2.length);
+        for (int i = 0; i < length; i++) {
+            if (word1[i] != word2[i]) {
+                return word1[i] - word2[i];
+            }
+        }
+        return word1.length - word2.length;
+    }
+
+    /**
+     * Spread the bits of a hash so that similar words land in distant slots.
+     *
+     * @param hash
+     *            hash of a word.
+     * @return mixed hash.
+     */
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * A word and its count.
+     */
+    private static final class Entry {
+
+        /**
+         * The word, in lower case.
+         */
+        private final char[] word;
+
+        /**
+         * Hash of the word.
+         */
+        private final int hash;
+
+        /**
+         * Count, updated with compare-and-set.
+         */
+        private volatile int count;
+
+        /**
+         * Counter of a hot word, added to {@code count}, or null.
+         */
+        private volatile LongAdder hot;
+
+        /**
+         * Constructor of an entry with no count yet.
+         *
+         * @param chars
+         *            buffer holding the word.
+         * @param start
+         *            index of the first character of the word.
+         * @param end
+         *            index one past the last character of the word.
+         * @param hash
+         *            hash of the word in lower case.
+         * @param fold
+         *            whether to keep the word in lower case.
+         */
+        Entry(char[] chars, int start, int end, int hash, boolean fold) {
+            this.word = new char[end - start];
+            for (int i = start; i < end; i++) {
+                this.word[i - start] = fold
+                        ? WordCountTable.toLowerCase(chars, i, start, end)
+                        : chars[i];
+            }
+            this.hash = hash;
+        }
+
+        /**
+         * Constructor of the sealing marker.
+         *
+         * @param word
+         *            an empty word.
+         * @param hash
+         *            0.
+         * @param count
+         *            0.
+         */
+        Entry(char[] word, int hash, int count) {
+            this.word = word;
+            this.hash = hash;
+            this.count = count;
+        }
+
+        /**
+         * Compare the word with a span of a buffer.
+         *
+         * @param chars
+         *            buffer holding the other word.
+         * @param start
+         *            index of the first character of the other word.
+         * @param end
+         *            index one past the last character of the other word.
+         * @param fold
+         *            whether to compare the span in lower case.
+         * @return true if the words are equal.
+         */
+        boolean matches(char[] chars, int start, int end, boolean fold) {
+            if (this.word.length != end - start) {
+                return false;
+            }
+            for (int i = start; i < end; i++) {
+                char c = chars[i];
+                if (fold) {
+                    c = WordCountTable.toLowerCase(chars, i, start, end);
+                }
+                if (this.word[i - start] != c) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * One table of the chain.
+     */
+    private static final class Table {
+
+        /**
+         * Entries, null for an empty slot.
+         */
+        private final AtomicReferenceArray<Entry> slots;
+
+        /**
+         * Number of insertions started, a table takes at most {@code limit}.
+         */
+        private final AtomicInteger tickets = new AtomicInteger();
+
+        /**
+         * Number of words the table takes, half its slots.
+         */
+        private final int limit;
+
+        /**
+         * Table chained after this one, or null.
+         */
+        private volatile Table next;
+
+        /**
+         * Constructor.
+         *
+         * @param capacity
+         *            number of slots, a power of two of at least 2.
+         */
+        Table(int capacity) {
+            this.slots = new AtomicReferenceArray<>(capacity);
+            this.limit = capacity / 2;
+        }
+
+        /**
+         * Return the table chained after this one, chaining a new one twice
+         * as large if there is none yet.
+         *
+         * @return the next table.
+         */
+        Table next() {
+            Table t = this.next;
+            if (t == null) {
+                Table larger = new Table(2 * this.slots.length());
+                if (NEXT.compareAndSet(this, null, larger)) {
+                    t = larger;
+                } else {
+                    t = this.next;
+                }
+            }
+            return t;
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package tagcloud;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Counts words approximately in a Count-Min sketch, a fixed table of
+ * {@code depth} rows of {@code width} counters, and keeps the words most
+ * likely to be the top ones in a small heap of candidates. A word adds to
+ * one counter of each row, picked by a hash of the word, and its count is
+ * estimated as the lowest of its counters, which is never below its true
+ * count. Counting uses the conservative update: only the counters below the
+ * new estimate are raised, to it, which keeps the estimates of the words
+ * sharing them lower. With probability at least {@code 1 - e^-depth} an
+ * estimate is above the true count by at most {@code e * total() / width}.
+ * <p>
+ * After a word is counted its estimate is offered to the candidates, a
+ * {@code WordHeap}; it replaces the candidate with the lowest count when its
+ * estimate is higher. The memory used is fixed by the width, depth and number
+ * of candidates, however many words and distinct words are counted. Sketches
+ * of the same width and depth merge by adding their counters, so parts of a
+ * file can be counted on separate threads and merged.
+ * <p>
+ * The sketch is also a read-only {@code Map} of the candidates to their
+ * estimated count, and its candidates are numbered from 0 to
+ * {@code size() - 1} so that the top words can be selected by number.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class CountMinSketch extends AbstractMap<String, Integer>
+        implements WordCounts, WordSink, Utf8WordSink {
+
+    /**
+     * Initial length of the buffer words in UTF-8 are decoded into.
+     */
+    private static final int INITIAL_DECODED_LENGTH = 64;
+
+    /**
+     * Number of counters per row.
+     */
+    private final int width;
+
+    /**
+     * Number of rows.
+     */
+    private final int depth;
+
+    /**
+     * Counters, row after row.
+     */
+    private final int[] table;
+
+    /**
+     * Index in the table of the counter of each row for the word being
+     * counted.
+     */
+    private final int[] cells;
+
+    /**
+     * Words most likely to be the top ones, with their estimated count.
+     */
+    private WordHeap candidates;
+
+    /**
+     * Number of words counted.
+     */
+    private long total;
+
+    /**
+     * Buffer the characters of a word given in UTF-8 are decoded into.
+     */
+    private char[] decoded = new char[INITIAL_DECODED_LENGTH];
+
+    /**
+     * Entry set view, created when first asked for.
+     */
+    private Set<Map.Entry<String, Integer>> entrySet;
+
+    /**
+     * Constructor.
+     *
+     * @param width
+     *            number of counters per row, at least 1.
+     * @param depth
+     *            number of rows, at least 1.
+     * @param candidates
+     *            number of candidate words kept, at least 1.
+     */
+    public CountMinSketch(int width, int depth, int candidates) {
+        if (width < 1 || depth < 1
+                || (long) width * depth > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    "bad sketch size " + width + "x" + depth);
+        }
+        this.width = width;
+        this.depth = depth;
+        this.table = new int[width * depth];
+        this.cells = new int[depth];
+        this.candidates = new WordHeap(candidates);
+    }
+
+    /**
+     * Return the number of counters per row.
+     *
+     * @return width of the sketch.
+     */
+    public int width() {
+        return this.width;
+    }
+
+    /**
+     * Return the number of rows.
+     *
+     * @return depth of the sketch.
+     */
+    public int depth() {
+        return this.depth;
+    }
+
+    /**
+     * Return the number of candidate words.
+     *
+     * @return number of candidates, their numbers are 0 to this minus 1.
+     */
+    @Override
+    public int size() {
+        return this.candidates.size();
+    }
+
+    @Override
+    public long total() {
+        return this.total;
+    }
+
+    @Override
+    public void accept(char[] chars, int start, int end) {
+        this.count(chars, start, end, true);
+    }
+
+    @Override
+    public void acceptToken(char[] chars, int start, int end) {
+        this.count(chars, start, end, false);
+    }
+
+    @Override
+    public void accept(byte[] bytes, int start, int end) {
+        if (end - start > this.decoded.length) {
+            this.decoded = new char[Math.max(end - start,
+                    2 * this.decoded.length)];
+        }
+        this.accept(this.decoded, 0,
+                Utf8.decodeWord(bytes, start, end, this.decoded));
+    }
+
+    /**
+     * Return the estimated count of any word, ignoring case.
+     *
+     * @param word
+     *            the word.
+     * @return the estimate, never below the true count.
+     */
+    public int estimate(String word) {
+        char[] chars = word.toCharArray();
+        return this.locate(WordCountTable.hash64(chars, 0, chars.length));
+    }
+
+    /**
+     * Add the counts of another sketch of the same width and depth to this
+     * one. The candidates of both sketches are estimated again with the
+     * merged counters and the ones with the highest estimates are kept.
+     *
+     * @param other
+     *            sketch whose counts are added.
+     * @throws IllegalArgumentException
+     *             if the sketches do not have the same width and depth.
+     */
+    public void addAll(CountMinSketch other) {
+        if (other.width != this.width || other.depth != this.depth) {
+            throw new IllegalArgumentException("cannot merge a "
+                    + other.width + "x" + other.depth + " sketch into a "
+                    + this.width + "x" + this.depth + " one");
+        }
+        for (int i = 0; i < this.table.length; i++) {
+            this.table[i] += other.table[i];
+        }
+        this.total += other.total;
+
+        WordHeap merged = new WordHeap(this.candidates.capacity());
+        this.offerAll(merged, this.candidates);
+        this.offerAll(merged, other.candidates);
+        this.candidates = merged;
+    }
+
+    @Override
+    public String key(int id) {
+        return this.candidates.key(id);
+    }
+
+    @Override
+    public int count(int id) {
+        return this.candidates.count(id);
+    }
+
+    /**
+     * Return the largest amount by which the count of a candidate is above
+     * its true count with probability at least {@code 1 - e^-depth}.
+     *
+     * @param id
+     *            number of the candidate, from 0 to {@code size() - 1}.
+     * @return the error, {@code e * total() / width} rounded up, and no more
+     *         than the count minus the one occurrence that is sure.
+     */
+    @Override
+    public int error(int id) {
+        double bound = Math.ceil(Math.E * this.total / this.width);
+        return (int) Math.min(this.count(id) - 1, bound);
+    }
+
+    @Override
+    public TopIdSelector.Order byCountThenWord() {
+        return this.candidates.byCountThenWord();
+    }
+
+    @Override
+    public Integer get(Object key) {
+        int id = this.find(key);
+        if (id < 0) {
+            return null;
+        }
+        return this.candidates.count(id);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.find(key) >= 0;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Integer>> entrySet() {
+        if (this.entrySet == null) {
+            this.entrySet = new EntrySet();
+        }
+        return this.entrySet;
+    }
+
+    /**
+     * Count a word and offer it to the candidates.
+     *
+     * @param chars
+     *            buffer holding the word.
+     * @param start
+     *            index of the first character of the word.
+     * @param end
+     *            index one past the last character of the word.
+     * @param fold
+     *            whether the word is counted in lower case.
+     */
+    private void count(char[] chars, int start, int end, boolean fold) {
+        long hash = WordCountTable.hash64(chars, start, end, fold);
+        this.total++;
+
+        // conservative update: raise the lowest counters to the new estimate
+        int estimate = this.locate(hash) + 1;
+        for (int cell : this.cells) {
+            if (this.table[cell] < estimate) {
+                this.table[cell] = estimate;
+            }
+        }
+        offer(this.candidates, chars, start, end, (int) hash, estimate,
+                fold);
+    }
+
+    /**
+     * Find the counters of a word and return its estimated count.
+     *
+     * @param hash
+     *            hash of the word.
+     * @return the lowest of the counters of the word; their indexes are left
+     *         in {@code cells}.
+     */
+    private int locate(long hash) {
+        // each row picks its counter from a combination of two hashes
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> Integer.SIZE) | 1;
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < this.depth; row++) {
+            int h = hash1 + row * hash2;
+            int cell = row * this.width
+                    + (int) (((h & 0xFFFFFFFFL) * this.width) >>> Integer.SIZE);
+            this.cells[row] = cell;
+            estimate = Math.min(estimate, this.table[cell]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Offer every candidate of a heap to another heap, with its estimate in
+     * this sketch.
+     *
+     * @param heap
+     *            heap the candidates are offered to.
+     * @param from
+     *            heap of the candidates offered.
+     */
+    private void offerAll(WordHeap heap, WordHeap from) {
+        for (int id = 0; id < from.size(); id++) {
+            char[] chars = from.chars(id);
+            int length = from.length(id);
+            // candidates are kept as they were counted, so as they hash
+            long hash = WordCountTable.hash64(chars, 0, length, false);
+            offer(heap, chars, 0, length, (int) hash, this.locate(hash),
+                    false);
+        }
+    }
+
+    /**
+     * Find the number of a candidate.
+     *
+     * @param key
+     *            word to look for.
+     * @return number of the candidate, or -1 if the word is not one.
+     */
+    private int find(Object key) {
+        if (!(key instanceof String)) {
+            return -1;
+        }
+        char[] chars = ((String) key).toCharArray();
+        return this.candidates.find(chars, 0, chars.length,
+                (int) WordCountTable.hash64(chars, 0, chars.length, false),
+                false);
+    }
+
+    /**
+     * Offer a word and its estimated count to a heap of candidates, where it
+     * takes the place of the candidate with the lowest count if it is
+     * higher.
+     *
+     * @param heap
+     *            heap of candidates.
+     * @param chars
+     *            buffer holding the word.
+     * @param start
+     *            index of the first character of the word.
+     * @param end
+     *            index one past the last character of the word.
+     * @param hash
+     *            hash of the word as it is counted.
+     * @param estimate
+     *            estimated count of the word.
+     * @param fold
+     *            whether the word is counted in lower case.
+     */
+    private static void offer(WordHeap heap, char[] chars, int start,
+            int end, int hash, int estimate, boolean fold) {
+        int id = heap.find(chars, start, end, hash, fold);
+        if (id >= 0) {
+            if (estimate > heap.count(id)) {
+                heap.raise(id, estimate);
+            }
+        } else if (!heap.isFull()) {
+            heap.add(chars, start, end, hash, estimate, fold);
+        } else if (estimate > heap.count(heap.min())) {
+            heap.replaceMin(chars, start, end, hash, estimate, fold);
+        }
+    }
+
+    /**
+     * Read-only view of the candidates and their estimated counts.
+     */
+    private final class EntrySet
+            extends AbstractSet<Map.Entry<String, Integer>> {
+
+        @Override
+        public int size() {
+            return CountMinSketch.this.size();
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, Integer>> iterator() {
+            return new Iterator<Map.Entry<String, Integer>>() {
+
+                /**
+                 * Number of the next candidate.
+                 */
+                private int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return this.next < CountMinSketch.this.size();
+                }
+
+                @Override
+                public Map.Entry<String, Integer> next() {
+                    if (!this.hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int id = this.next++;
+                    return new AbstractMap.SimpleImmutableEntry<>(
+                            CountMinSketch.this.key(id),
+                            CountMinSketch.this.count(id));
+                }
+            };
+        }
+    }
+}
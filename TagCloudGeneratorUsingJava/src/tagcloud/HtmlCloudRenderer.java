@@ -0,0 +1,355 @@
+package tagcloud;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the HTML of a word cloud to a channel. The fixed parts of the page
+ * are encoded to UTF-8 once, and counts, font sizes and words are encoded
+ * straight into one reused {@code ByteBuffer} that is drained to the channel
+ * when it fills up, so rendering a word allocates nothing. Words and the file
+ * name are escaped, so that a URL with a '&amp;' or a word with a '&lt;'
+ * cannot break the page.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class HtmlCloudRenderer {
+
+    /**
+     * Default size of the buffer in bytes.
+     */
+    static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Line separator, the same one {@code PrintWriter.println} writes.
+     */
+    private static final String NL = System.lineSeparator();
+
+    /**
+     * Page up to the number of words in the title.
+     */
+    private static final byte[] TITLE_START = encode(
+            "<html>" + NL + "<head>" + NL + "<title>Top ");
+
+    /**
+     * Text between the number of words and the file name.
+     */
+    private static final byte[] WORDS_IN = encode(" words in ");
+
+    /**
+     * Page from the end of the title up to the number of words in the
+     * heading.
+     */
+    private static final byte[] HEADING_START = encode("</title>" + NL
+            + "<link href=\"https://web.cse.ohio-state.edu/software/2231/web-sw2/assignments/projects/tag-cloud-generator/data/tagcloud.css\" rel=\"stylesheet\" type=\"text/css\">"
+            + NL
+            + "<link href=\"styles.css\" rel=\"stylesheet\" type=\"text/css\">"
+            + NL + "</head>" + NL + "<body>" + NL + "<h2>Top ");
+
+    /**
+     * Page from the end of the heading up to the first word.
+     */
+    private static final byte[] CLOUD_START = encode("</h2>" + NL + "<hr>"
+            + NL + "<div class=\"cdiv\">" + NL + "<p class=\"cbox\">" + NL);
+
+    /**
+     * Start of a word up to its font size.
+     */
+    private static final byte[] SPAN_START = encode(
+            "<span style=\"cursor:default\" class=\"f");
+
+    /**
+     * Text between the font size and the count of a word.
+     */
+    private static final byte[] SPAN_TITLE = encode("\" title=\"count: ");
+
+    /**
+     * Text between the lowest and the highest count of a word whose count is
+     * approximate.
+     */
+    private static final byte[] SPAN_RANGE = encode(" to ");
+
+    /**
+     * Text between the count of a word and the word.
+     */
+    private static final byte[] SPAN_TEXT = encode("\">");
+
+    /**
+     * End of a word.
+     */
+    private static final byte[] SPAN_END = encode("</span>" + NL);
+
+    /**
+     * Page after the last word.
+     */
+    private static final byte[] CLOUD_END = encode("</p>" + NL + "</div>"
+            + NL + "</body>" + NL + "</html>" + NL);
+
+    /**
+     * Largest number of characters of an {@code int} in decimal.
+     */
+    private static final int MAX_INT_LENGTH = 11;
+
+    /**
+     * Largest number of bytes a word adds besides its characters.
+     */
+    private static final int SPAN_SIZE = SPAN_START.length + SPAN_TITLE.length
+            + SPAN_RANGE.length + SPAN_TEXT.length + SPAN_END.length
+            + 3 * MAX_INT_LENGTH;
+
+    /**
+     * Entity of each ASCII character that must be escaped in text and in
+     * attribute values, null for the others.
+     */
+    private static final byte[][] ENTITIES = new byte[0x80][];
+
+    static {
+        ENTITIES['&'] = encode("&amp;");
+        ENTITIES['<'] = encode("&lt;");
+        ENTITIES['>'] = encode("&gt;");
+        ENTITIES['"'] = encode("&quot;");
+        ENTITIES['\''] = encode("&#39;");
+    }
+
+    /**
+     * Largest number of UTF-8 bytes of one {@code char}.
+     */
+    private static final int MAX_BYTES_PER_CHAR = 3;
+
+    /**
+     * Channel the page is written to.
+     */
+    private final WritableByteChannel out;
+
+    /**
+     * Buffer holding the bytes not written yet.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructor.
+     *
+     * @param out
+     *            channel the page is written to.
+     * @param bufferSize
+     *            size of the buffer in bytes.
+     */
+    public HtmlCloudRenderer(WritableByteChannel out, int bufferSize) {
+        this.out = out;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize,
+                SPAN_SIZE + HEADING_START.length));
+    }
+
+    /**
+     * Write the page up to the first word.
+     *
+     * @param nWords
+     *            number of words in the cloud.
+     * @param fileName
+     *            name of the input file.
+     * @throws IOException
+     *             if the channel cannot be written.
+     */
+    public void begin(int nWords, String fileName) throws IOException {
+        this.put(TITLE_START);
+        this.ensure(MAX_INT_LENGTH);
+        this.putInt(nWords);
+        this.put(WORDS_IN);
+        this.putText(fileName);
+        this.put(HEADING_START);
+        this.ensure(MAX_INT_LENGTH);
+        this.putInt(nWords);
+        this.put(WORDS_IN);
+        this.putText(fileName);
+        this.put(CLOUD_START);
+    }
+
+    /**
+     * Write one word.
+     *
+     * @param word
+     *            the word.
+     * @param count
+     *            count of the word.
+     * @param fontSize
+     *            font size of the word.
+     * @throws IOException
+     *             if the channel cannot be written.
+     */
+    public void word(CharSequence word, int count, int fontSize)
+            throws IOException {
+        this.word(word, count, 0, fontSize);
+    }
+
+    /**
+     * Write one word whose count may be above its true count, showing the
+     * range of the true count.
+     *
+     * @param word
+     *            the word.
+     * @param count
+     *            count of the word, never below its true count.
+     * @param error
+     *            largest amount by which the count may be above the true
+     *            count, 0 if the count is exact.
+     * @param fontSize
+     *            font size of the word.
+     * @throws IOException
+     *             if the channel cannot be written.
+     */
+    public void word(CharSequence word, int count, int error, int fontSize)
+            throws IOException {
+        this.ensure(SPAN_SIZE);
+        this.buffer.put(SPAN_START);
+        this.putInt(fontSize);
+        this.buffer.put(SPAN_TITLE);
+        if (error > 0) {
+            this.putInt(count - error);
+            this.buffer.put(SPAN_RANGE);
+        }
+        this.putInt(count);
+        this.buffer.put(SPAN_TEXT);
+        this.putText(word);
+        this.put(SPAN_END);
+    }
+
+    /**
+     * Write the end of the page and drain the buffer. The channel is not
+     * closed.
+     *
+     * @throws IOException
+     *             if the channel cannot be written.
+     */
+    public void end() throws IOException {
+        this.put(CLOUD_END);
+        this.flush();
+    }
+
+    /**
+     * Drain the buffer to the channel.
+     *
+     * @throws IOException
+     *             if the channel cannot be written.
+     */
+    private void flush() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.out.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    /**
+     * Make sure the buffer has room for some bytes.
+     *
+     * @param length
+     *            number of bytes, at most the size of the buffer.
+     * @throws IOException
+     *             if the channel cannot be written.
+     */
+    private void ensure(int length) throws IOException {
+        if (this.buffer.remaining() < length) {
+            this.flush();
+        }
+    }
+
+    /**
+     * Append bytes.
+     *
+     * @param bytes
+     *            bytes to append, at most the size of the buffer.
+     * @throws IOException
+     *             if the channel cannot be written.
+     */
+    private void put(byte[] bytes) throws IOException {
+        this.ensure(bytes.length);
+        this.buffer.put(bytes);
+    }
+
+    /**
+     * Append the decimal digits of an integer. The buffer must have room for
+     * {@code MAX_INT_LENGTH} bytes.
+     *
+     * @param value
+     *            integer to append.
+     */
+    private void putInt(int value) {
+        if (value == Integer.MIN_VALUE) {
+            this.buffer.put(encode(Integer.toString(value)));
+            return;
+        }
+        int n = value;
+        if (n < 0) {
+            this.buffer.put((byte) '-');
+            n = -n;
+        }
+        int digits = 1;
+        for (int p = n; p >= 10; p /= 10) {
+            digits++;
+        }
+        int end = this.buffer.position() + digits;
+        for (int i = end - 1; i >= end - digits; i--) {
+            this.buffer.put(i, (byte) ('0' + n % 10));
+            n /= 10;
+        }
+        this.buffer.position(end);
+    }
+
+    /**
+     * Append the UTF-8 encoding of some text, with the characters that are
+     * special in HTML replaced by their entities.
+     *
+     * @param text
+     *            text to append.
+     * @throws IOException
+     *             if the channel cannot be written.
+     */
+    private void putText(CharSequence text) throws IOException {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80 && ENTITIES[c] != null) {
+                this.put(ENTITIES[c]);
+            } else if (c < 0x80) {
+                this.ensure(1);
+                this.buffer.put((byte) c);
+            } else if (c < 0x800) {
+                this.ensure(2);
+                this.buffer.put((byte) (0xC0 | (c >> 6)));
+                this.buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, text.charAt(i + 1));
+                i++;
+                this.ensure(MAX_BYTES_PER_CHAR + 1);
+                this.buffer.put((byte) (0xF0 | (cp >> 18)));
+                this.buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                this.buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                this.buffer.put((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                // lone surrogate, written as '?' like the JDK encoder does
+                this.ensure(1);
+                this.buffer.put((byte) '?');
+            } else {
+                this.ensure(MAX_BYTES_PER_CHAR);
+                this.buffer.put((byte) (0xE0 | (c >> 12)));
+                this.buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                this.buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * Encode text to UTF-8.
+     *
+     * @param s
+     *            text to encode.
+     * @return UTF-8 bytes of the text.
+     */
+    private static byte[] encode(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,165 @@
+package tagcloud;
+
+/**
+ * Estimates the number of distinct words of a stream in a few kilobytes,
+ * with the HyperLogLog algorithm. A 64-bit hash of each word picks one of
+ * {@code 2^precision} registers with its top bits, and the register keeps
+ * the longest run of leading zeros seen in the other bits. The harmonic mean
+ * of the registers gives the estimate, with a relative standard error of
+ * about {@code 1.04 / sqrt(2^precision)}; while many registers are still
+ * empty, the estimate is taken from the number of empty ones instead, which
+ * is more accurate for small counts. Words are counted ignoring case like a
+ * {@code WordCountTable}, and estimators of the same precision merge by
+ * keeping the larger of each register.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class HyperLogLog implements WordSink, Utf8WordSink {
+
+    /**
+     * Default number of bits picking a register, 16384 registers with an
+     * error of about 0.8%.
+     */
+    public static final int DEFAULT_PRECISION = 14;
+
+    /**
+     * Fewest bits picking a register.
+     */
+    private static final int MIN_PRECISION = 4;
+
+    /**
+     * Most bits picking a register.
+     */
+    private static final int MAX_PRECISION = 18;
+
+    /**
+     * Initial length of the buffer words in UTF-8 are decoded into.
+     */
+    private static final int INITIAL_DECODED_LENGTH = 64;
+
+    /**
+     * Largest raw estimate, in registers, still corrected from the number of
+     * empty registers.
+     */
+    private static final double SMALL_RANGE = 2.5;
+
+    /**
+     * Number of bits picking a register.
+     */
+    private final int precision;
+
+    /**
+     * Longest run of leading zeros plus one seen by each register.
+     */
+    private final byte[] registers;
+
+    /**
+     * Number of words counted.
+     */
+    private long total;
+
+    /**
+     * Buffer the characters of a word given in UTF-8 are decoded into.
+     */
+    private char[] decoded = new char[INITIAL_DECODED_LENGTH];
+
+    /**
+     * Constructor with the default precision.
+     */
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param precision
+     *            number of bits picking a register, from 4 to 18.
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException(
+                    "precision must be from 4 to 18, not " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Return the number of words counted, including repeated words.
+     *
+     * @return number of words counted.
+     */
+    public long total() {
+        return this.total;
+    }
+
+    @Override
+    public void accept(char[] chars, int start, int end) {
+        long hash = WordCountTable.hash64(chars, start, end);
+        this.total++;
+        int register = (int) (hash >>> (Long.SIZE - this.precision));
+
+        // the marker bit bounds the run when the other bits are all zero
+        long rest = (hash << this.precision) | (1L << (this.precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > this.registers[register]) {
+            this.registers[register] = rank;
+        }
+    }
+
+    @Override
+    public void accept(byte[] bytes, int start, int end) {
+        if (end - start > this.decoded.length) {
+            this.decoded = new char[Math.max(end - start,
+                    2 * this.decoded.length)];
+        }
+        this.accept(this.decoded, 0,
+                Utf8.decodeWord(bytes, start, end, this.decoded));
+    }
+
+    /**
+     * Add the words of another estimator of the same precision to this one.
+     *
+     * @param other
+     *            estimator whose words are added.
+     * @throws IllegalArgumentException
+     *             if the estimators do not have the same precision.
+     */
+    public void addAll(HyperLogLog other) {
+        if (other.precision != this.precision) {
+            throw new IllegalArgumentException("cannot merge precision "
+                    + other.precision + " into " + this.precision);
+        }
+        for (int i = 0; i < this.registers.length; i++) {
+            if (other.registers[i] > this.registers[i]) {
+                this.registers[i] = other.registers[i];
+            }
+        }
+        this.total += other.total;
+    }
+
+    /**
+     * Return the estimated number of distinct words.
+     *
+     * @return the estimate.
+     */
+    public long estimate() {
+        int m = this.registers.length;
+        double sum = 0;
+        int empty = 0;
+        for (byte register : this.registers) {
+            sum += Math.scalb(1.0, -register);
+            if (register == 0) {
+                empty++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= SMALL_RANGE * m && empty > 0) {
+            estimate = m * Math.log((double) m / empty);
+        }
+        return Math.round(estimate);
+    }
+}
@@ -0,0 +1,218 @@
+package tagcloud;
+
+/**
+ * Removes English inflections, plurals and the {@code -ed} and {@code -ing}
+ * endings, with steps 1a and 1b of the Porter stemming algorithm. The later
+ * steps are left out so that the stems stay readable words in a cloud:
+ * "dedicated" becomes "dedicate" and "nations" becomes "nation". Only words
+ * made of lower-case ASCII letters are stemmed.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class InflectionStemmer {
+
+    /**
+     * Length under which words are left alone.
+     */
+    private static final int MIN_LENGTH = 3;
+
+    /**
+     * No argument constructor--private to prevent instantiation.
+     */
+    private InflectionStemmer() {
+    }
+
+    /**
+     * Stem a lower-case word in place.
+     *
+     * @param word
+     *            buffer holding the word from index 0.
+     * @param length
+     *            length of the word.
+     * @return length of the stem, never more than {@code length}.
+     */
+    public static int stem(char[] word, int length) {
+        if (length < MIN_LENGTH) {
+            return length;
+        }
+        for (int i = 0; i < length; i++) {
+            if (word[i] < 'a' || word[i] > 'z') {
+                return length;
+            }
+        }
+
+        // step 1a: plurals
+        int k = length;
+        if (endsWith(word, k, "sses") || endsWith(word, k, "ies")) {
+            k -= 2;
+        } else if (endsWith(word, k, "s") && !endsWith(word, k, "ss")) {
+            k -= 1;
+        }
+
+        // step 1b: past tenses and gerunds
+        if (endsWith(word, k, "eed")) {
+            if (measure(word, k - "eed".length()) > 0) {
+                k -= 1;
+            }
+            return k;
+        }
+        int stemEnd;
+        if (endsWith(word, k, "ed")) {
+            stemEnd = k - "ed".length();
+        } else if (endsWith(word, k, "ing")) {
+            stemEnd = k - "ing".length();
+        } else {
+            return k;
+        }
+        if (!hasVowel(word, stemEnd)) {
+            return k;
+        }
+        k = stemEnd;
+        if (endsWith(word, k, "at") || endsWith(word, k, "bl")
+                || endsWith(word, k, "iz")) {
+            word[k] = 'e';
+            k++;
+        } else if (endsWithDoubleConsonant(word, k)) {
+            char last = word[k - 1];
+            if (last != 'l' && last != 's' && last != 'z') {
+                k--;
+            }
+        } else if (measure(word, k) == 1 && endsWithCvc(word, k)) {
+            word[k] = 'e';
+            k++;
+        }
+        return k;
+    }
+
+    /**
+     * Report whether a letter of a word is a consonant. A {@code y} is a
+     * consonant at the start of a word or after a vowel.
+     *
+     * @param word
+     *            the word.
+     * @param i
+     *            index of the letter.
+     * @return true if the letter is a consonant.
+     */
+    private static boolean isConsonant(char[] word, int i) {
+        switch (word[i]) {
+            case 'a':
+            case 'e':
+            case 'i':
+            case 'o':
+            case 'u':
+                return false;
+            case 'y':
+                return i == 0 || !isConsonant(word, i - 1);
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Return the number of vowel-consonant sequences in the start of a word.
+     *
+     * @param word
+     *            the word.
+     * @param end
+     *            length of the start of the word.
+     * @return the measure of the start of the word.
+     */
+    private static int measure(char[] word, int end) {
+        int m = 0;
+        int i = 0;
+        while (i < end && isConsonant(word, i)) {
+            i++;
+        }
+        while (i < end) {
+            while (i < end && !isConsonant(word, i)) {
+                i++;
+            }
+            if (i == end) {
+                break;
+            }
+            m++;
+            while (i < end && isConsonant(word, i)) {
+                i++;
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Report whether the start of a word contains a vowel.
+     *
+     * @param word
+     *            the word.
+     * @param end
+     *            length of the start of the word.
+     * @return true if there is a vowel.
+     */
+    private static boolean hasVowel(char[] word, int end) {
+        for (int i = 0; i < end; i++) {
+            if (!isConsonant(word, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Report whether the start of a word ends with the same consonant twice.
+     *
+     * @param word
+     *            the word.
+     * @param end
+     *            length of the start of the word.
+     * @return true if it ends with a double consonant.
+     */
+    private static boolean endsWithDoubleConsonant(char[] word, int end) {
+        return end >= 2 && word[end - 1] == word[end - 2]
+                && isConsonant(word, end - 1);
+    }
+
+    /**
+     * Report whether the start of a word ends with consonant, vowel,
+     * consonant, where the last consonant is not {@code w}, {@code x} or
+     * {@code y}, as in "hop".
+     *
+     * @param word
+     *            the word.
+     * @param end
+     *            length of the start of the word.
+     * @return true if it ends that way.
+     */
+    private static boolean endsWithCvc(char[] word, int end) {
+        if (end < MIN_LENGTH || !isConsonant(word, end - 1)
+                || isConsonant(word, end - 2) || !isConsonant(word, end - 3)) {
+            return false;
+        }
+        char last = word[end - 1];
+        return last != 'w' && last != 'x' && last != 'y';
+    }
+
+    /**
+     * Report whether the start of a word ends with a suffix.
+     *
+     * @param word
+     *            the word.
+     * @param end
+     *            length of the start of the word.
+     * @param suffix
+     *            the suffix.
+     * @return true if it ends with {@code suffix}.
+     */
+    private static boolean endsWith(char[] word, int end, String suffix) {
+        int start = end - suffix.length();
+        if (start < 0) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            if (word[start + i] != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
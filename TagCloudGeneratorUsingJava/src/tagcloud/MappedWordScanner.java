@@ -0,0 +1,150 @@
+package tagcloud;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the words of a UTF-8 file by memory-mapping it in fixed-size windows.
+ * Each window is decoded into one reused character buffer and tokenized in
+ * place, so the heap use does not depend on the size of the file or the
+ * length of its lines. A word cut by the end of a window is carried to the
+ * front of the buffer and finished with the next window.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class MappedWordScanner {
+
+    /**
+     * Default number of bytes mapped at once.
+     */
+    static final int DEFAULT_WINDOW_SIZE = 1 << 24;
+
+    /**
+     * No argument constructor--private to prevent instantiation.
+     */
+    private MappedWordScanner() {
+    }
+
+    /**
+     * Pass every word of a file to a sink, using the default window size.
+     *
+     * @param file
+     *            UTF-8 text file to read.
+     * @param tokenizer
+     *            tokenizer splitting the text into words.
+     * @param sink
+     *            receiver of the words.
+     * @throws IOException
+     *             if the file cannot be mapped.
+     */
+    public static void scan(Path file, WordTokenizer tokenizer, WordSink sink)
+            throws IOException {
+        scan(file, tokenizer, sink, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Pass every word of a file to a sink.
+     *
+     * @param file
+     *            UTF-8 text file to read.
+     * @param tokenizer
+     *            tokenizer splitting the text into words.
+     * @param sink
+     *            receiver of the words.
+     * @param windowSize
+     *            number of bytes mapped at once.
+     * @throws IOException
+     *             if the file cannot be mapped.
+     */
+    public static void scan(Path file, WordTokenizer tokenizer, WordSink sink,
+            int windowSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            scan(channel, 0, channel.size(), tokenizer, sink, windowSize,
+                    new PipelineMetrics());
+        }
+    }
+
+    /**
+     * Pass every word of a byte range of a file to a sink. The range must
+     * start at the beginning of a word or separator and end just before one.
+     *
+     * @param channel
+     *            open channel of a UTF-8 text file.
+     * @param from
+     *            position of the first byte to read.
+     * @param to
+     *            position one past the last byte to read.
+     * @param tokenizer
+     *            tokenizer splitting the text into words.
+     * @param sink
+     *            receiver of the words.
+     * @param windowSize
+     *            number of bytes mapped at once.
+     * @param metrics
+     *            metrics the reading and tokenizing time are added to.
+     * @throws IOException
+     *             if the file cannot be mapped.
+     */
+    static void scan(FileChannel channel, long from, long to,
+            WordTokenizer tokenizer, WordSink sink, int windowSize,
+            PipelineMetrics metrics) throws IOException {
+        long allocatedBefore = PipelineMetrics.allocatedBytes();
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        char[] chars = new char[(int) Math.min(windowSize,
+                Math.max(to - from, 1))];
+        int carry = 0;
+
+        long position = from;
+        while (position < to) {
+            long readStart = System.nanoTime();
+            long length = Math.min(windowSize, to - position);
+            boolean last = position + length == to;
+            MappedByteBuffer window = channel
+                    .map(FileChannel.MapMode.READ_ONLY, position, length);
+
+            // make room for the carried word and the decoded window
+            if (carry + length > chars.length) {
+                char[] larger = new char[carry + windowSize];
+                System.arraycopy(chars, 0, larger, 0, carry);
+                chars = larger;
+            }
+            CharBuffer decoded = CharBuffer.wrap(chars, carry,
+                    chars.length - carry);
+            decoder.decode(window, decoded, last);
+            if (last) {
+                decoder.flush(decoded);
+            }
+
+            // count the complete words and carry the unfinished one
+            long tokenizeStart = System.nanoTime();
+            int filled = decoded.position();
+            int rest = tokenizer.tokenize(chars, 0, filled, last, sink);
+            carry = filled - rest;
+            System.arraycopy(chars, rest, chars, 0, carry);
+            long tokenizeEnd = System.nanoTime();
+            metrics.addNanos(PipelineMetrics.Stage.READ,
+                    tokenizeStart - readStart);
+            metrics.addNanos(PipelineMetrics.Stage.TOKENIZE,
+                    tokenizeEnd - tokenizeStart);
+
+            /*
+             * bytes of a character cut by the end of the window are left in
+             * the buffer and mapped again with the next window
+             */
+            position += window.position();
+        }
+        metrics.addAllocated(PipelineMetrics.Stage.TOKENIZE,
+                PipelineMetrics.allocatedBytes() - allocatedBefore);
+    }
+}
@@ -0,0 +1,654 @@
+package tagcloud;
+
+import java.util.Arrays;
+
+/**
+ * Counts the phrases of {@code n} consecutive words. Each word is numbered by
+ * a {@code WordCountTable}, which also counts the single words, and the last
+ * {@code n} numbers are kept in a ring. A phrase is keyed by a 64-bit
+ * polynomial hash of its word numbers that is rolled forward one word at a
+ * time, and looked up in an open-addressing table; two phrases with the same
+ * hash are told apart by comparing their word numbers, which are stored
+ * {@code n} per phrase in an {@code int[]} arena. No {@code String} is built
+ * while counting; {@code phrase} spells out only the phrases asked for.
+ * <p>
+ * Memory is bounded by a maximum number of distinct phrases. When it is
+ * reached, the phrases with the lowest counts are dropped, as in lossy
+ * counting, so a count may then be lower than the true one by at most
+ * {@code maxUndercount()}. The single words are bounded to twice as many: when
+ * the table of words is full, it is rebuilt with the words of the phrases
+ * kept and the most frequent of the others, and the phrases are renumbered.
+ * The count of a word dropped that way, which only weighs in {@code pmi}, may
+ * then be lower than the true one by at most {@code maxWordUndercount()}.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class NGramCounter implements WordSink {
+
+    /**
+     * Default maximum number of distinct phrases.
+     */
+    public static final int DEFAULT_MAX_PHRASES = 1 << 20;
+
+    /**
+     * Initial number of slots, must be a power of two.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Base of the polynomial hash, an odd 64-bit constant.
+     */
+    private static final long BASE = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Number of words per phrase.
+     */
+    private final int n;
+
+    /**
+     * Maximum number of distinct phrases.
+     */
+    private final int maxPhrases;
+
+    /**
+     * Maximum number of distinct single words.
+     */
+    private final int maxWords;
+
+    /**
+     * Numbers and counts of the single words.
+     */
+    private WordCountTable words = new WordCountTable();
+
+    /**
+     * Sum of the counts of the words dropped from the table of words.
+     */
+    private long droppedWords;
+
+    /**
+     * Sum of the count thresholds of every rebuilding of the table of words.
+     */
+    private int maxWordUndercount;
+
+    /**
+     * Numbers of the last {@code n} words, the oldest at {@code next} once
+     * the ring is full.
+     */
+    private final int[] window;
+
+    /**
+     * Index in the ring of the next word.
+     */
+    private int next;
+
+    /**
+     * Number of words seen, up to {@code n}.
+     */
+    private int seen;
+
+    /**
+     * Rolling hash of the words in the ring.
+     */
+    private long rollingHash;
+
+    /**
+     * {@code BASE} to the power {@code n - 1}, the weight of the oldest word.
+     */
+    private final long oldestWeight;
+
+    /**
+     * Number of each phrase plus one in the slots it hashes to, 0 for an
+     * empty slot.
+     */
+    private int[] slots;
+
+    /**
+     * Hash of each phrase.
+     */
+    private long[] hashes;
+
+    /**
+     * Count of each phrase.
+     */
+    private int[] counts;
+
+    /**
+     * Word numbers of each phrase, {@code n} per phrase.
+     */
+    private int[] arena;
+
+    /**
+     * Number of distinct phrases.
+     */
+    private int size;
+
+    /**
+     * Number of phrases counted, sum of the counts including dropped ones.
+     */
+    private long total;
+
+    /**
+     * Sum of the count thresholds of every pruning.
+     */
+    private int maxUndercount;
+
+    /**
+     * Constructor with the default maximum number of phrases.
+     *
+     * @param n
+     *            number of words per phrase.
+     */
+    public NGramCounter(int n) {
+        this(n, DEFAULT_MAX_PHRASES);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param n
+     *            number of words per phrase, at least 1.
+     * @param maxPhrases
+     *            maximum number of distinct phrases kept, at least 2.
+     */
+    public NGramCounter(int n, int maxPhrases) {
+        if (n < 1) {
+            throw new IllegalArgumentException(
+                    "phrases need at least one word: " + n);
+        }
+        if (maxPhrases < 2) {
+            throw new IllegalArgumentException(
+                    "at least two phrases must be kept: " + maxPhrases);
+        }
+        this.n = n;
+        this.maxPhrases = maxPhrases;
+        // room for the words of the ring whatever the phrases kept
+        this.maxWords = 2 * Math.max(maxPhrases, n + 1);
+        this.window = new int[n];
+        long weight = 1;
+        for (int i = 1; i < n; i++) {
+            weight *= BASE;
+        }
+        this.oldestWeight = weight;
+        int capacity = INITIAL_CAPACITY;
+        while (capacity / 2 > maxPhrases) {
+            capacity /= 2;
+        }
+        this.slots = new int[capacity];
+        this.hashes = new long[capacity / 2];
+        this.counts = new int[capacity / 2];
+        this.arena = new int[capacity / 2 * n];
+    }
+
+    @Override
+    public void accept(char[] chars, int start, int end) {
+        if (this.words.size() == this.maxWords) {
+            this.compactWords();
+        }
+        int word = this.words.addWord(chars, start, end);
+
+        // roll the oldest word out of the hash and the new one in
+        if (this.seen == this.n) {
+            this.rollingHash -= this.oldestWeight
+                    * (this.window[this.next] + 1);
+        } else {
+            this.seen++;
+        }
+        this.rollingHash = this.rollingHash * BASE + word + 1;
+        this.window[this.next] = word;
+        this.next++;
+        if (this.next == this.n) {
+            this.next = 0;
+        }
+
+        if (this.seen == this.n) {
+            this.addWindow();
+        }
+    }
+
+    /**
+     * Return the number of words per phrase.
+     *
+     * @return number of words per phrase.
+     */
+    public int length() {
+        return this.n;
+    }
+
+    /**
+     * Return the number of distinct phrases kept.
+     *
+     * @return number of phrases.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Return the number of phrases counted, including repeated and dropped
+     * phrases.
+     *
+     * @return number of phrases counted.
+     */
+    public long total() {
+        return this.total;
+    }
+
+    /**
+     * Return how much lower than the true count a count may be because of the
+     * phrases dropped to bound memory.
+     *
+     * @return maximum error of a count, 0 if nothing was dropped.
+     */
+    public int maxUndercount() {
+        return this.maxUndercount;
+    }
+
+    /**
+     * Return how much lower than the true count the count of a single word may
+     * be because of the words dropped to bound memory.
+     *
+     * @return maximum error of the count of a word, 0 if none was dropped.
+     */
+    public int maxWordUndercount() {
+        return this.maxWordUndercount;
+    }
+
+    /**
+     * Return the number of single words counted, including dropped ones.
+     *
+     * @return number of words counted.
+     */
+    public long wordTotal() {
+        return this.words.total() + this.droppedWords;
+    }
+
+    /**
+     * Return the table of the single words.
+     *
+     * @return numbers and counts of the words.
+     */
+    public WordCountTable words() {
+        return this.words;
+    }
+
+    /**
+     * Return the count of the phrase with a number.
+     *
+     * @param id
+     *            number of the phrase, from 0 to {@code size() - 1}.
+     * @return count of the phrase.
+     */
+    public int count(int id) {
+        return this.counts[id];
+    }
+
+    /**
+     * Return the phrase with a number, its words separated by spaces.
+     *
+     * @param id
+     *            number of the phrase, from 0 to {@code size() - 1}.
+     * @return the phrase.
+     */
+    public String phrase(int id) {
+        StringBuilder phrase = new StringBuilder();
+        for (int i = 0; i < this.n; i++) {
+            if (i > 0) {
+                phrase.append(' ');
+            }
+            int word = this.arena[id * this.n + i];
+            for (int c = 0; c < this.words.keyLength(word); c++) {
+                phrase.append(this.words.keyChar(word, c));
+            }
+        }
+        return phrase.toString();
+    }
+
+    /**
+     * Return the pointwise mutual information of the phrase with a number:
+     * the logarithm of how much more often its words occur together than they
+     * would if they were independent. Phrases of common words that merely
+     * follow each other score low; collocations such as "under god" score
+     * high.
+     *
+     * @param id
+     *            number of the phrase, from 0 to {@code size() - 1}.
+     * @return the PMI, in nats.
+     */
+    public double pmi(int id) {
+        double wordTotal = this.wordTotal();
+        double pmi = Math.log(this.counts[id] / (double) this.total);
+        for (int i = 0; i < this.n; i++) {
+            int word = this.arena[id * this.n + i];
+            pmi -= Math.log(this.words.count(word) / wordTotal);
+        }
+        return pmi;
+    }
+
+    /**
+     * Return the order of phrase numbers by decreasing count, then by phrase
+     * in alphabetical order, comparing the phrases without building them.
+     *
+     * @return order of the phrase numbers.
+     */
+    public TopIdSelector.Order byCountThenPhrase() {
+        return (id1, id2) -> {
+            int order = Integer.compare(this.counts[id2], this.counts[id1]);
+            if (order == 0) {
+                order = this.comparePhrases(id1, id2);
+            }
+            return order;
+        };
+    }
+
+    /**
+     * Compare two phrases the way their {@code String}s would compare.
+     *
+     * @param id1
+     *            number of the first phrase.
+     * @param id2
+     *            number of the second phrase.
+     * @return negative, zero or positive as the first phrase is before, the
+     *         same as or after the second.
+     */
+    private int comparePhrases(int id1, int id2) {
+        int word1 = 0;
+        int word2 = 0;
+        int c1 = 0;
+        int c2 = 0;
+        while (word1 < this.n && word2 < this.n) {
+            int ch1 = this.phraseChar(id1, word1, c1);
+            int ch2 = this.phraseChar(id2, word2, c2);
+            if (ch1 != ch2) {
+                return ch1 - ch2;
+            }
+            c1++;
+            if (c1 > this.words.keyLength(this.arena[id1 * this.n + word1])) {
+                word1++;
+                c1 = 0;
+            }
+            c2++;
+            if (c2 > this.words.keyLength(this.arena[id2 * this.n + word2])) {
+                word2++;
+                c2 = 0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Return a character of a phrase. The index equal to the length of a word
+     * stands for the space after it, or for the end of the phrase after the
+     * last word.
+     *
+     * @param id
+     *            number of the phrase.
+     * @param word
+     *            index of the word in the phrase.
+     * @param c
+     *            index of the character in the word.
+     * @return the character, or -1 at the end of the phrase.
+     */
+    private int phraseChar(int id, int word, int c) {
+        int wordId = this.arena[id * this.n + word];
+        if (c < this.words.keyLength(wordId)) {
+            return this.words.keyChar(wordId, c);
+        }
+        if (word == this.n - 1) {
+            return -1;
+        }
+        return ' ';
+    }
+
+    /**
+     * Count the phrase in the ring.
+     */
+    private void addWindow() {
+        this.total++;
+        long hash = this.rollingHash;
+        int mask = this.slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (this.slots[slot] != 0) {
+            int id = this.slots[slot] - 1;
+            if (this.hashes[id] == hash && this.windowMatches(id)) {
+                this.counts[id]++;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        // first occurrence of the phrase
+        if (this.size == this.maxPhrases) {
+            this.prune();
+            mask = this.slots.length - 1;
+            slot = mix(hash) & mask;
+            while (this.slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+        }
+        int id = this.size;
+        for (int i = 0; i < this.n; i++) {
+            this.arena[id * this.n + i] = this.window[(this.next + i)
+                    % this.n];
+        }
+        this.hashes[id] = hash;
+        this.counts[id] = 1;
+        this.slots[slot] = id + 1;
+        this.size++;
+        if (2 * this.size >= this.slots.length) {
+            this.grow();
+        }
+    }
+
+    /**
+     * Compare a phrase in the table with the phrase in the ring.
+     *
+     * @param id
+     *            number of the phrase in the table.
+     * @return true if the phrases are equal.
+     */
+    private boolean windowMatches(int id) {
+        int base = id * this.n;
+        for (int i = 0; i < this.n; i++) {
+            if (this.arena[base + i] != this.window[(this.next + i)
+                    % this.n]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Drop the phrases with the lowest counts, at least half of them, and
+     * renumber the others.
+     */
+    private void prune() {
+        int threshold = halfThreshold(this.counts, this.size);
+        this.maxUndercount += threshold;
+
+        int kept = 0;
+        for (int id = 0; id < this.size; id++) {
+            if (this.counts[id] > threshold) {
+                this.hashes[kept] = this.hashes[id];
+                this.counts[kept] = this.counts[id];
+                System.arraycopy(this.arena, id * this.n, this.arena,
+                        kept * this.n, this.n);
+                kept++;
+            }
+        }
+        this.size = kept;
+        this.rehash(this.slots.length);
+    }
+
+    /**
+     * Return the smallest count that at least half of some counts are at
+     * most. The counts are tallied in one pass; only when the threshold is
+     * above the number of counts, which takes mostly large counts, are they
+     * sorted instead.
+     *
+     * @param counts
+     *            the counts, each at least 1.
+     * @param size
+     *            number of counts, at least 1.
+     * @return the threshold.
+     */
+    private static int halfThreshold(int[] counts, int size) {
+        int half = (size + 1) / 2;
+        int[] tally = new int[size + 1];
+        for (int id = 0; id < size; id++) {
+            tally[Math.min(counts[id], size)]++;
+        }
+        int atMost = 0;
+        for (int count = 1; count < size; count++) {
+            atMost += tally[count];
+            if (atMost >= half) {
+                return count;
+            }
+        }
+        int[] sorted = Arrays.copyOf(counts, size);
+        Arrays.sort(sorted);
+        return sorted[half - 1];
+    }
+
+    /**
+     * Rebuild the table of words with at most half of {@code maxWords}: the
+     * words of the ring and of the phrases, dropping the phrases with the
+     * lowest counts while they alone have more words, then the most frequent
+     * other words. Every phrase is renumbered and rehashed.
+     */
+    private void compactWords() {
+        boolean[] kept = this.wordsInUse();
+        int inUse = countTrue(kept);
+        while (inUse > this.maxWords / 2 && this.size > 0) {
+            this.prune();
+            kept = this.wordsInUse();
+            inUse = countTrue(kept);
+        }
+
+        // keep the other words above the count that leaves room for them
+        int[] others = new int[kept.length - inUse];
+        int k = 0;
+        for (int id = 0; id < kept.length; id++) {
+            if (!kept[id]) {
+                others[k++] = this.words.count(id);
+            }
+        }
+        Arrays.sort(others);
+        int room = this.maxWords / 2 - inUse;
+        int threshold = others[others.length - room - 1];
+        this.maxWordUndercount += threshold;
+
+        WordCountTable compacted = new WordCountTable();
+        int[] renumbered = new int[kept.length];
+        for (int id = 0; id < kept.length; id++) {
+            if (kept[id] || this.words.count(id) > threshold) {
+                renumbered[id] = compacted.add(this.words, id);
+            } else {
+                this.droppedWords += this.words.count(id);
+            }
+        }
+        this.words = compacted;
+        for (int i = 0; i < this.size * this.n; i++) {
+            this.arena[i] = renumbered[this.arena[i]];
+        }
+        for (int i = 0; i < this.seen; i++) {
+            this.window[i] = renumbered[this.window[i]];
+        }
+
+        // the hashes are of the word numbers, so they change with them
+        for (int id = 0; id < this.size; id++) {
+            long hash = 0;
+            for (int i = 0; i < this.n; i++) {
+                hash = hash * BASE + this.arena[id * this.n + i] + 1;
+            }
+            this.hashes[id] = hash;
+        }
+        this.rollingHash = 0;
+        for (int i = 0; i < this.seen; i++) {
+            int word = this.window[(this.next - this.seen + i + this.n)
+                    % this.n];
+            this.rollingHash = this.rollingHash * BASE + word + 1;
+        }
+        this.rehash(this.slots.length);
+    }
+
+    /**
+     * Mark the words that are in the ring or in a phrase.
+     *
+     * @return whether each word is in use, indexed by word number.
+     */
+    private boolean[] wordsInUse() {
+        boolean[] inUse = new boolean[this.words.size()];
+        for (int i = 0; i < this.seen; i++) {
+            inUse[this.window[i]] = true;
+        }
+        for (int i = 0; i < this.size * this.n; i++) {
+            inUse[this.arena[i]] = true;
+        }
+        return inUse;
+    }
+
+    /**
+     * Count the true values of an array.
+     *
+     * @param values
+     *            the array.
+     * @return number of true values.
+     */
+    private static int countTrue(boolean[] values) {
+        int count = 0;
+        for (boolean value : values) {
+            if (value) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Double the number of slots and the room for phrases.
+     */
+    private void grow() {
+        this.rehash(2 * this.slots.length);
+        int capacity = this.slots.length / 2;
+        long[] largerHashes = new long[capacity];
+        System.arraycopy(this.hashes, 0, largerHashes, 0, this.size);
+        this.hashes = largerHashes;
+        int[] largerCounts = new int[capacity];
+        System.arraycopy(this.counts, 0, largerCounts, 0, this.size);
+        this.counts = largerCounts;
+        int[] largerArena = new int[capacity * this.n];
+        System.arraycopy(this.arena, 0, largerArena, 0, this.size * this.n);
+        this.arena = largerArena;
+    }
+
+    /**
+     * Rebuild the slots of every phrase.
+     *
+     * @param capacity
+     *            number of slots, a power of two.
+     */
+    private void rehash(int capacity) {
+        this.slots = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < this.size; id++) {
+            int slot = mix(this.hashes[id]) & mask;
+            while (this.slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            this.slots[slot] = id + 1;
+        }
+    }
+
+    /**
+     * Fold the bits of a 64-bit hash into a slot index.
+     *
+     * @param hash
+     *            hash of a phrase.
+     * @return mixed hash.
+     */
+    private static int mix(long hash) {
+        long h = hash * BASE;
+        return (int) (h ^ (h >>> Integer.SIZE));
+    }
+}
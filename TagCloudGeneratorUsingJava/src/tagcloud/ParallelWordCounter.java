@@ -0,0 +1,409 @@
+package tagcloud;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Counts the words of a UTF-8 file on several threads. The file is split into
+ * byte ranges that start on a separator, each range is counted into its own
+ * {@code WordCountTable} by a fork-join worker, and the tables are merged
+ * pairwise on the way back up the task tree. The counts are the same as those
+ * of a sequential scan. Stages such as stop word filtering may be put between
+ * the tokenizer and each table; without stages, the words are counted
+ * straight from the UTF-8 bytes of the file, which are never decoded, unless
+ * the tokenizer recognizes token classes. Any mergeable counter, such as a
+ * {@code CountMinSketch}, may take the place of the tables.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class ParallelWordCounter {
+
+    /**
+     * Smallest range worth counting on its own.
+     */
+    static final long MIN_RANGE_SIZE = 1 << 20;
+
+    /**
+     * Number of ranges per worker, so that uneven ranges still balance.
+     */
+    private static final int RANGES_PER_WORKER = 4;
+
+    /**
+     * Number of bytes read at once when looking for a separator.
+     */
+    private static final int PROBE_SIZE = 4096;
+
+    /**
+     * Highest byte value that is a whole character in UTF-8.
+     */
+    private static final int ASCII_MAX = 0x7F;
+
+    /**
+     * Tokenizer splitting the text into words.
+     */
+    private final WordTokenizer tokenizer;
+
+    /**
+     * Number of worker threads.
+     */
+    private final int parallelism;
+
+    /**
+     * Wraps the table of a range into the stages the words go through before
+     * being counted, or null to count the bytes of the range.
+     */
+    private final UnaryOperator<WordSink> stages;
+
+    /**
+     * Constructor.
+     *
+     * @param tokenizer
+     *            tokenizer splitting the text into words.
+     * @param parallelism
+     *            number of worker threads.
+     */
+    public ParallelWordCounter(WordTokenizer tokenizer, int parallelism) {
+        this(tokenizer, parallelism, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param tokenizer
+     *            tokenizer splitting the text into words.
+     * @param parallelism
+     *            number of worker threads.
+     * @param stages
+     *            wraps the table of each range into the stages the words go
+     *            through before being counted; called once per range, so the
+     *            stages may keep state that is not thread-safe. Null counts
+     *            the UTF-8 bytes of each range without decoding them.
+     */
+    public ParallelWordCounter(WordTokenizer tokenizer, int parallelism,
+            UnaryOperator<WordSink> stages) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(
+                    "parallelism must be positive: " + parallelism);
+        }
+        this.tokenizer = tokenizer;
+        this.parallelism = parallelism;
+        this.stages = stages;
+    }
+
+    /**
+     * Count the words of a file.
+     *
+     * @param file
+     *            UTF-8 text file to read.
+     * @return table of words to their count
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    public WordCountTable count(Path file) throws IOException {
+        return this.count(file, new PipelineMetrics());
+    }
+
+    /**
+     * Count the words of a file, adding the reading and tokenizing time to
+     * some metrics.
+     *
+     * @param file
+     *            UTF-8 text file to read.
+     * @param metrics
+     *            metrics the reading and tokenizing time are added to.
+     * @return table of words to their count
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    public WordCountTable count(Path file, PipelineMetrics metrics)
+            throws IOException {
+        return this.count(file, WordCountTable::new,
+                ParallelWordCounter::merge, metrics);
+    }
+
+    /**
+     * Count the words of a file into counters of any kind, adding the
+     * reading and tokenizing time to some metrics. Each range is counted into
+     * a new counter and the counters are merged two by two.
+     *
+     * @param <C>
+     *            type of the counters.
+     * @param file
+     *            UTF-8 text file to read.
+     * @param newCounts
+     *            makes an empty counter.
+     * @param merge
+     *            merges two counters into one, which it returns.
+     * @param metrics
+     *            metrics the reading and tokenizing time are added to.
+     * @return counter of the words of the whole file
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    public <C extends WordSink & Utf8WordSink> C count(Path file,
+            Supplier<C> newCounts, BinaryOperator<C> merge,
+            PipelineMetrics metrics) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            long[] bounds = this.split(channel);
+            if (bounds.length == 2) {
+                // a single range is not worth a pool
+                return this.countRange(channel, bounds[0], bounds[1],
+                        newCounts.get(), metrics);
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+            try {
+                return pool.invoke(new CountTask<>(channel, bounds, 0,
+                        bounds.length - 1, newCounts, merge, metrics));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Split a file into ranges that each start on a separator.
+     *
+     * @param channel
+     *            open channel of the file.
+     * @return increasing positions, range {@code i} is from {@code bounds[i]}
+     *         to {@code bounds[i + 1]}.
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    private long[] split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long rangeSize = Math.max(MIN_RANGE_SIZE,
+                size / ((long) this.parallelism * RANGES_PER_WORKER));
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+        long position = rangeSize;
+        while (position < size) {
+            long boundary = this.nextSeparator(channel, position, probe);
+            if (boundary >= size) {
+                break;
+            }
+            bounds.add(boundary);
+            position = boundary + rangeSize;
+        }
+        bounds.add(size);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Find the first separator at or after a position that no word or token
+     * spans. Only ASCII bytes are considered since they cannot be part of a
+     * multi-byte UTF-8 character.
+     *
+     * @param channel
+     *            open channel of the file.
+     * @param position
+     *            position to start looking from.
+     * @param probe
+     *            buffer used for reading.
+     * @return position of the separator, or the size of the file if there is
+     *         none.
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    private long nextSeparator(FileChannel channel, long position,
+            ByteBuffer probe) throws IOException {
+        long start = position;
+        while (true) {
+            probe.clear();
+            int read = channel.read(probe, start);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                int b = probe.get(i);
+                if (b >= 0 && b <= ASCII_MAX
+                        && this.tokenizer.isBoundary((char) b)) {
+                    return start + i;
+                }
+            }
+            start += read;
+        }
+    }
+
+    /**
+     * Merge the smaller of two tables into the larger one.
+     *
+     * @param counts1
+     *            the first table.
+     * @param counts2
+     *            the second table.
+     * @return the table holding the counts of both.
+     */
+    private static WordCountTable merge(WordCountTable counts1,
+            WordCountTable counts2) {
+        if (counts1.size() > counts2.size()) {
+            counts1.addAll(counts2);
+            return counts1;
+        }
+        counts2.addAll(counts1);
+        return counts2;
+    }
+
+    /**
+     * Count the words of one byte range of a file into an empty counter.
+     *
+     * @param <C>
+     *            type of the counter.
+     * @param channel
+     *            open channel of the file.
+     * @param from
+     *            position of the first byte of the range.
+     * @param to
+     *            position one past the last byte of the range.
+     * @param counts
+     *            the empty counter.
+     * @param metrics
+     *            metrics the reading and tokenizing time are added to.
+     * @return the counter
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    private <C extends WordSink & Utf8WordSink> C countRange(
+            FileChannel channel, long from, long to, C counts,
+            PipelineMetrics metrics) throws IOException {
+        if (this.stages == null && !this.tokenizer.hasTokenClasses()) {
+            Utf8WordScanner.scan(channel, from, to, this.tokenizer, counts,
+                    Utf8WordScanner.DEFAULT_BUFFER_SIZE, metrics);
+        } else if (this.stages == null) {
+            MappedWordScanner.scan(channel, from, to, this.tokenizer, counts,
+                    MappedWordScanner.DEFAULT_WINDOW_SIZE, metrics);
+        } else {
+            MappedWordScanner.scan(channel, from, to, this.tokenizer,
+                    this.stages.apply(counts),
+                    MappedWordScanner.DEFAULT_WINDOW_SIZE, metrics);
+        }
+        return counts;
+    }
+
+    /**
+     * Counts a run of ranges, splitting it in half until one range is left.
+     *
+     * @param <C>
+     *            type of the counters.
+     */
+    private final class CountTask<C extends WordSink & Utf8WordSink>
+            extends RecursiveTask<C> {
+
+        /**
+         * Serialization id.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Open channel of the file.
+         */
+        private final transient FileChannel channel;
+
+        /**
+         * Range boundaries of the whole file.
+         */
+        private final long[] bounds;
+
+        /**
+         * Index of the first range counted by this task.
+         */
+        private final int first;
+
+        /**
+         * Index one past the last range counted by this task.
+         */
+        private final int last;
+
+        /**
+         * Makes an empty counter.
+         */
+        private final transient Supplier<C> newCounts;
+
+        /**
+         * Merges two counters into one.
+         */
+        private final transient BinaryOperator<C> merge;
+
+        /**
+         * Metrics the reading and tokenizing time are added to.
+         */
+        private final transient PipelineMetrics metrics;
+
+        /**
+         * Constructor.
+         *
+         * @param channel
+         *            open channel of the file.
+         * @param bounds
+         *            range boundaries of the whole file.
+         * @param first
+         *            index of the first range to count.
+         * @param last
+         *            index one past the last range to count.
+         * @param newCounts
+         *            makes an empty counter.
+         * @param merge
+         *            merges two counters into one.
+         * @param metrics
+         *            metrics the reading and tokenizing time are added to.
+         */
+        CountTask(FileChannel channel, long[] bounds, int first, int last,
+                Supplier<C> newCounts, BinaryOperator<C> merge,
+                PipelineMetrics metrics) {
+            this.channel = channel;
+            this.bounds = bounds;
+            this.first = first;
+            this.last = last;
+            this.newCounts = newCounts;
+            this.merge = merge;
+            this.metrics = metrics;
+        }
+
+        @Override
+        protected C compute() {
+            if (this.last - this.first == 1) {
+                try {
+                    return ParallelWordCounter.this.countRange(this.channel,
+                            this.bounds[this.first], this.bounds[this.last],
+                            this.newCounts.get(), this.metrics);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            int middle = (this.first + this.last) >>> 1;
+            CountTask<C> left = new CountTask<>(this.channel, this.bounds,
+                    this.first, middle, this.newCounts, this.merge,
+                    this.metrics);
+            CountTask<C> right = new CountTask<>(this.channel, this.bounds,
+                    middle, this.last, this.newCounts, this.merge,
+                    this.metrics);
+            left.fork();
+            C counts = right.compute();
+            return this.merge.apply(left.join(), counts);
+        }
+    }
+}
@@ -0,0 +1,522 @@
+package tagcloud;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Time, throughput and allocation of each stage of the tag cloud pipeline.
+ * Every counter may be updated from several threads. The metrics of one input
+ * file are also added to a parent, so that {@code total()}, which is
+ * registered as a JMX MBean, sums every file of the run.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class PipelineMetrics implements PipelineMetricsMBean {
+
+    /**
+     * Stages of the pipeline.
+     */
+    public enum Stage {
+        /**
+         * Mapping and decoding the input.
+         */
+        READ,
+        /**
+         * Tokenizing and counting the words.
+         */
+        TOKENIZE,
+        /**
+         * Selecting the top words.
+         */
+        SELECT,
+        /**
+         * Writing the HTML.
+         */
+        RENDER,
+        /**
+         * The whole pipeline.
+         */
+        TOTAL
+    }
+
+    /**
+     * Name of the MBean of the totals.
+     */
+    static final String MBEAN_NAME = "TagCloudGeneratorUsingJava"
+            + ":type=PipelineMetrics";
+
+    /**
+     * Nanoseconds per second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * Metrics of the whole run, created and registered when first asked for.
+     */
+    private static PipelineMetrics total;
+
+    /**
+     * Metrics this one is added to, or null.
+     */
+    private final PipelineMetrics parent;
+
+    /**
+     * Time spent in each stage.
+     */
+    private final LongAdder[] nanos = newAdders();
+
+    /**
+     * Wall-clock time spent counting, measured once around each count
+     * however many threads it runs on.
+     */
+    private final LongAdder countNanos = new LongAdder();
+
+    /**
+     * Bytes allocated in each stage.
+     */
+    private final LongAdder[] allocated = newAdders();
+
+    /**
+     * Number of input files.
+     */
+    private final LongAdder files = new LongAdder();
+
+    /**
+     * Number of bytes read.
+     */
+    private final LongAdder bytes = new LongAdder();
+
+    /**
+     * Number of words counted.
+     */
+    private final LongAdder tokens = new LongAdder();
+
+    /**
+     * Number of distinct words.
+     */
+    private final LongAdder distinctWords = new LongAdder();
+
+    /**
+     * Number of input files whose number of distinct words is not known.
+     */
+    private final LongAdder unknownDistinctWords = new LongAdder();
+
+    /**
+     * Way the words of the file were counted, or null if not recorded.
+     */
+    private volatile String counting;
+
+    /**
+     * Number of distinct words estimated before counting, or -1 if there was
+     * no estimate.
+     */
+    private volatile long estimatedDistinctWords = -1;
+
+    /**
+     * Number of candidate words an approximate count kept for the cloud, or
+     * -1 if the count kept every word.
+     */
+    private volatile long candidates = -1;
+
+    /**
+     * Largest amount by which a count of the file may be below the true
+     * count, or -1 if the counts are never too low.
+     */
+    private volatile long maxUndercount = -1;
+
+    /**
+     * No argument constructor, for metrics that are not added to the totals.
+     */
+    public PipelineMetrics() {
+        this(null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param parent
+     *            metrics every update is also added to, or null.
+     */
+    public PipelineMetrics(PipelineMetrics parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Return the metrics of the whole run, registering them with the platform
+     * MBean server the first time.
+     *
+     * @return metrics of the whole run.
+     */
+    public static synchronized PipelineMetrics total() {
+        if (total == null) {
+            total = new PipelineMetrics();
+            try {
+                ManagementFactory.getPlatformMBeanServer()
+                        .registerMBean(total, new ObjectName(MBEAN_NAME));
+            } catch (JMException e) {
+                System.err.println("Error registering the metrics MBean " + e);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Return the number of bytes allocated by the current thread so far, or 0
+     * if the JVM does not measure it.
+     *
+     * @return number of bytes allocated by the current thread.
+     */
+    public static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocation;
+            allocation = (com.sun.management.ThreadMXBean) threads;
+            if (allocation.isThreadAllocatedMemoryEnabled()) {
+                return allocation.getCurrentThreadAllocatedBytes();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Add time to a stage.
+     *
+     * @param stage
+     *            the stage.
+     * @param elapsed
+     *            time in nanoseconds.
+     */
+    public void addNanos(Stage stage, long elapsed) {
+        this.nanos[stage.ordinal()].add(elapsed);
+        if (this.parent != null) {
+            this.parent.addNanos(stage, elapsed);
+        }
+    }
+
+    /**
+     * Add the wall-clock time of counting an input file, from the start of
+     * reading it to the counts being ready, which is what the throughput is
+     * measured against.
+     *
+     * @param elapsed
+     *            time in nanoseconds.
+     */
+    public void addCountNanos(long elapsed) {
+        this.countNanos.add(elapsed);
+        if (this.parent != null) {
+            this.parent.addCountNanos(elapsed);
+        }
+    }
+
+    /**
+     * Add allocated bytes to a stage.
+     *
+     * @param stage
+     *            the stage.
+     * @param allocatedBytes
+     *            number of bytes allocated.
+     */
+    public void addAllocated(Stage stage, long allocatedBytes) {
+        this.allocated[stage.ordinal()].add(allocatedBytes);
+        if (this.parent != null) {
+            this.parent.addAllocated(stage, allocatedBytes);
+        }
+    }
+
+    /**
+     * Record a counted input file.
+     *
+     * @param fileBytes
+     *            size of the file in bytes.
+     * @param fileTokens
+     *            number of words in the file.
+     * @param fileDistinctWords
+     *            number of distinct words in the file, or -1 if it is not
+     *            known.
+     */
+    public void addFile(long fileBytes, long fileTokens,
+            long fileDistinctWords) {
+        this.files.increment();
+        this.bytes.add(fileBytes);
+        this.tokens.add(fileTokens);
+        if (fileDistinctWords >= 0) {
+            this.distinctWords.add(fileDistinctWords);
+        } else {
+            this.unknownDistinctWords.increment();
+        }
+        if (this.parent != null) {
+            this.parent.addFile(fileBytes, fileTokens, fileDistinctWords);
+        }
+    }
+
+    /**
+     * Record how the words of the file were counted. Only the metrics of one
+     * file keep it, the totals do not.
+     *
+     * @param countingName
+     *            name of the way of counting, such as {@code exact}.
+     * @param estimate
+     *            number of distinct words estimated before counting, or -1 if
+     *            there was no estimate.
+     */
+    public void setCounting(String countingName, long estimate) {
+        this.counting = countingName;
+        this.estimatedDistinctWords = estimate;
+    }
+
+    /**
+     * Return the number of distinct words estimated before counting.
+     *
+     * @return the estimate, or -1 if there was none.
+     */
+    public long estimatedDistinctWords() {
+        return this.estimatedDistinctWords;
+    }
+
+    /**
+     * Record how many candidate words an approximate count of the file kept
+     * for the cloud. Only the metrics of one file keep it, the totals do not.
+     *
+     * @param candidateWords
+     *            number of candidate words.
+     */
+    public void setCandidates(long candidateWords) {
+        this.candidates = candidateWords;
+    }
+
+    /**
+     * Record how much lower than the true counts the counts of the file may
+     * be. Only the metrics of one file keep it, the totals do not.
+     *
+     * @param undercount
+     *            largest amount by which a count may be below the true count.
+     */
+    public void setMaxUndercount(long undercount) {
+        this.maxUndercount = undercount;
+    }
+
+    /**
+     * Return the time spent in a stage.
+     *
+     * @param stage
+     *            the stage.
+     * @return time in nanoseconds.
+     */
+    public long nanos(Stage stage) {
+        return this.nanos[stage.ordinal()].sum();
+    }
+
+    /**
+     * Return the bytes allocated in a stage.
+     *
+     * @param stage
+     *            the stage.
+     * @return number of bytes allocated.
+     */
+    public long allocated(Stage stage) {
+        return this.allocated[stage.ordinal()].sum();
+    }
+
+    @Override
+    public long getFiles() {
+        return this.files.sum();
+    }
+
+    @Override
+    public long getBytes() {
+        return this.bytes.sum();
+    }
+
+    @Override
+    public long getTokens() {
+        return this.tokens.sum();
+    }
+
+    @Override
+    public long getDistinctWords() {
+        return this.distinctWords.sum();
+    }
+
+    @Override
+    public long getReadNanos() {
+        return this.nanos(Stage.READ);
+    }
+
+    @Override
+    public long getTokenizeNanos() {
+        return this.nanos(Stage.TOKENIZE);
+    }
+
+    @Override
+    public long getSelectNanos() {
+        return this.nanos(Stage.SELECT);
+    }
+
+    @Override
+    public long getRenderNanos() {
+        return this.nanos(Stage.RENDER);
+    }
+
+    @Override
+    public long getTotalNanos() {
+        return this.nanos(Stage.TOTAL);
+    }
+
+    @Override
+    public long getCountNanos() {
+        return this.countNanos.sum();
+    }
+
+    @Override
+    public long getCountCpuNanos() {
+        return this.getReadNanos() + this.getTokenizeNanos();
+    }
+
+    @Override
+    public long getCountAllocatedBytes() {
+        return this.allocated(Stage.READ) + this.allocated(Stage.TOKENIZE);
+    }
+
+    @Override
+    public long getSelectAllocatedBytes() {
+        return this.allocated(Stage.SELECT);
+    }
+
+    @Override
+    public long getRenderAllocatedBytes() {
+        return this.allocated(Stage.RENDER);
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return perSecond(this.getBytes(), this.getCountNanos());
+    }
+
+    @Override
+    public double getTokensPerSecond() {
+        return perSecond(this.getTokens(), this.getCountNanos());
+    }
+
+    /**
+     * Return the metrics as a JSON object.
+     *
+     * @param inFile
+     *            input file the metrics are about.
+     * @return JSON text of the metrics.
+     */
+    public String toJson(Path inFile) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"file\": \"");
+        String name = inFile.toString();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < ' ') {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append("\",\n");
+        json.append("  \"bytes\": ").append(this.getBytes()).append(",\n");
+        json.append("  \"tokens\": ").append(this.getTokens()).append(",\n");
+        long distinct = this.getDistinctWords();
+        if (this.unknownDistinctWords.sum() > 0) {
+            distinct = -1;
+        }
+        json.append("  \"distinctWords\": ").append(distinct).append(",\n");
+        if (this.candidates >= 0) {
+            json.append("  \"candidates\": ").append(this.candidates)
+                    .append(",\n");
+        }
+        if (this.counting != null) {
+            json.append("  \"counting\": \"").append(this.counting)
+                    .append("\",\n");
+        }
+        if (this.estimatedDistinctWords >= 0) {
+            json.append("  \"estimatedDistinctWords\": ")
+                    .append(this.estimatedDistinctWords).append(",\n");
+        }
+        if (this.maxUndercount >= 0) {
+            json.append("  \"maxUndercount\": ").append(this.maxUndercount)
+                    .append(",\n");
+        }
+        json.append("  \"countNanos\": ").append(this.getCountNanos())
+                .append(",\n");
+        json.append("  \"countCpuNanos\": ").append(this.getCountCpuNanos())
+                .append(",\n");
+        json.append("  \"bytesPerSecond\": ").append(
+                String.format(Locale.ROOT, "%.1f", this.getBytesPerSecond()))
+                .append(",\n");
+        json.append("  \"tokensPerSecond\": ").append(
+                String.format(Locale.ROOT, "%.1f", this.getTokensPerSecond()))
+                .append(",\n");
+        json.append("  \"stages\": {\n");
+        Stage[] stages = Stage.values();
+        for (int i = 0; i < stages.length; i++) {
+            json.append("    \"")
+                    .append(stages[i].name().toLowerCase(Locale.ROOT))
+                    .append("\": { \"nanos\": ").append(this.nanos(stages[i]))
+                    .append(", \"allocatedBytes\": ")
+                    .append(this.allocated(stages[i])).append(" }");
+            json.append(i < stages.length - 1 ? ",\n" : "\n");
+        }
+        json.append("  }\n}\n");
+        return json.toString();
+    }
+
+    /**
+     * Write the metrics as a JSON file.
+     *
+     * @param inFile
+     *            input file the metrics are about.
+     * @param jsonFile
+     *            file to write.
+     * @throws IOException
+     *             if the file cannot be written.
+     */
+    public void writeJson(Path inFile, Path jsonFile) throws IOException {
+        Files.write(jsonFile,
+                this.toJson(inFile).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Return an amount per second.
+     *
+     * @param amount
+     *            the amount.
+     * @param elapsed
+     *            time in nanoseconds.
+     * @return amount per second, 0 if no time elapsed.
+     */
+    private static double perSecond(long amount, long elapsed) {
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return amount * NANOS_PER_SECOND / elapsed;
+    }
+
+    /**
+     * Make one counter per stage.
+     *
+     * @return the counters.
+     */
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[Stage.values().length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,130 @@
+package tagcloud;
+
+/**
+ * Management interface of {@code PipelineMetrics}, so that the time spent in
+ * each stage of the tag cloud pipeline can be watched with JConsole or any
+ * other JMX client while a batch runs.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public interface PipelineMetricsMBean {
+
+    /**
+     * Return the number of input files counted.
+     *
+     * @return number of input files.
+     */
+    long getFiles();
+
+    /**
+     * Return the number of bytes read.
+     *
+     * @return number of bytes read.
+     */
+    long getBytes();
+
+    /**
+     * Return the number of words counted.
+     *
+     * @return number of words.
+     */
+    long getTokens();
+
+    /**
+     * Return the number of distinct words, summed over the input files whose
+     * distinct words are known; those counted approximately may not be.
+     *
+     * @return number of distinct words.
+     */
+    long getDistinctWords();
+
+    /**
+     * Return the time spent mapping and decoding the input, summed over the
+     * counting threads.
+     *
+     * @return time in nanoseconds.
+     */
+    long getReadNanos();
+
+    /**
+     * Return the time spent tokenizing and counting, summed over the counting
+     * threads.
+     *
+     * @return time in nanoseconds.
+     */
+    long getTokenizeNanos();
+
+    /**
+     * Return the time spent selecting the top words.
+     *
+     * @return time in nanoseconds.
+     */
+    long getSelectNanos();
+
+    /**
+     * Return the time spent writing the HTML.
+     *
+     * @return time in nanoseconds.
+     */
+    long getRenderNanos();
+
+    /**
+     * Return the wall time of the whole pipeline.
+     *
+     * @return time in nanoseconds.
+     */
+    long getTotalNanos();
+
+    /**
+     * Return the wall time spent counting the input files, from the start of
+     * reading each to its counts being ready.
+     *
+     * @return time in nanoseconds.
+     */
+    long getCountNanos();
+
+    /**
+     * Return the time spent reading, tokenizing and counting, summed over the
+     * counting threads; with several threads it exceeds the wall time.
+     *
+     * @return time in nanoseconds.
+     */
+    long getCountCpuNanos();
+
+    /**
+     * Return the bytes allocated while reading, tokenizing and counting.
+     *
+     * @return number of bytes allocated.
+     */
+    long getCountAllocatedBytes();
+
+    /**
+     * Return the bytes allocated while selecting the top words.
+     *
+     * @return number of bytes allocated.
+     */
+    long getSelectAllocatedBytes();
+
+    /**
+     * Return the bytes allocated while writing the HTML.
+     *
+     * @return number of bytes allocated.
+     */
+    long getRenderAllocatedBytes();
+
+    /**
+     * Return the input bytes read and counted per second of the wall time
+     * spent counting.
+     *
+     * @return throughput in bytes per second.
+     */
+    double getBytesPerSecond();
+
+    /**
+     * Return the words counted per second of the wall time spent counting.
+     *
+     * @return throughput in words per second.
+     */
+    double getTokensPerSecond();
+}
@@ -0,0 +1,41 @@
+package tagcloud;
+
+/**
+ * Classifies a block of characters at once, reporting which of them are
+ * separators as the bits of a mask.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public interface SeparatorClassifier {
+
+    /**
+     * Number of characters classified by one call.
+     */
+    int BLOCK_SIZE = Long.SIZE;
+
+    /**
+     * Classify {@code BLOCK_SIZE} characters of a buffer, which must all be
+     * within the buffer.
+     *
+     * @param chars
+     *            buffer holding the text.
+     * @param from
+     *            index of the first character to classify.
+     * @return mask whose bit {@code i} is set if {@code chars[from + i]} is a
+     *         separator.
+     */
+    long separatorMask(char[] chars, int from);
+
+    /**
+     * Report whether {@code BLOCK_SIZE} characters of a buffer, which must
+     * all be within the buffer, are all ASCII.
+     *
+     * @param chars
+     *            buffer holding the text.
+     * @param from
+     *            index of the first character to check.
+     * @return true if every character is below 128.
+     */
+    boolean isAscii(char[] chars, int from);
+}
@@ -0,0 +1,238 @@
+package tagcloud;
+
+/**
+ * A set of separator characters compiled into a bitset with one bit per
+ * character of the Basic Multilingual Plane, so that a lookup is a single
+ * array access whatever the set holds. Sets are immutable and may be shared by
+ * any number of threads.
+ *
+ * <p>
+ * Sets are described by a specification in which every character stands for
+ * itself, except for these escapes:
+ * <ul>
+ * <li>{@code \t}, {@code \n}, {@code \r} and {@code \\}: tab, line feed,
+ * carriage return and backslash,</li>
+ * <li>{@code \d}: every decimal digit,</li>
+ * <li>{@code \s}: every white space character,</li>
+ * <li>{@code \p}: every Unicode punctuation character.</li>
+ * </ul>
+ * For example {@code " \s\p"} splits on white space and any punctuation, and
+ * {@code without("'")} then keeps apostrophes inside words.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class SeparatorSet {
+
+    /**
+     * Number of characters covered by the bitset.
+     */
+    private static final int CHAR_LIMIT = Character.MAX_VALUE + 1;
+
+    /**
+     * Number of bits in one word of the bitset.
+     */
+    private static final int BITS_PER_WORD = Long.SIZE;
+
+    /**
+     * Number of characters that are ASCII.
+     */
+    private static final int ASCII_LIMIT = 128;
+
+    /**
+     * The bitset, bit {@code c % 64} of word {@code c / 64} is set if
+     * {@code c} is a separator.
+     */
+    private final long[] bits;
+
+    /**
+     * Constructor.
+     *
+     * @param bits
+     *            the bitset, owned by the new set.
+     */
+    private SeparatorSet(long[] bits) {
+        this.bits = bits;
+    }
+
+    /**
+     * Return the set of the characters of a string.
+     *
+     * @param separators
+     *            every character of this string is a separator.
+     * @return the set.
+     */
+    public static SeparatorSet of(String separators) {
+        long[] bits = new long[CHAR_LIMIT / BITS_PER_WORD];
+        for (int i = 0; i < separators.length(); i++) {
+            set(bits, separators.charAt(i));
+        }
+        return new SeparatorSet(bits);
+    }
+
+    /**
+     * Return the set described by a specification.
+     *
+     * @param specification
+     *            characters and escapes, as described above.
+     * @return the set.
+     * @throws IllegalArgumentException
+     *             if an escape is not known.
+     */
+    public static SeparatorSet parse(String specification) {
+        long[] bits = new long[CHAR_LIMIT / BITS_PER_WORD];
+        int i = 0;
+        while (i < specification.length()) {
+            char c = specification.charAt(i);
+            i++;
+            if (c != '\\') {
+                set(bits, c);
+                continue;
+            }
+            if (i == specification.length()) {
+                throw new IllegalArgumentException(
+                        "separators end with a lone backslash");
+            }
+            char escape = specification.charAt(i);
+            i++;
+            switch (escape) {
+                case 't':
+                    set(bits, '\t');
+                    break;
+                case 'n':
+                    set(bits, '\n');
+                    break;
+                case 'r':
+                    set(bits, '\r');
+                    break;
+                case '\\':
+                    set(bits, '\\');
+                    break;
+                case 'd':
+                case 's':
+                case 'p':
+                    for (int x = 0; x < CHAR_LIMIT; x++) {
+                        if (inClass(escape, (char) x)) {
+                            set(bits, (char) x);
+                        }
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                            "unknown separator class \\" + escape);
+            }
+        }
+        return new SeparatorSet(bits);
+    }
+
+    /**
+     * Return this set plus the characters of a string.
+     *
+     * @param separators
+     *            characters to add.
+     * @return the new set.
+     */
+    public SeparatorSet with(String separators) {
+        long[] bits = this.bits.clone();
+        for (int i = 0; i < separators.length(); i++) {
+            set(bits, separators.charAt(i));
+        }
+        return new SeparatorSet(bits);
+    }
+
+    /**
+     * Return this set without the characters of a string, so that they are
+     * part of words.
+     *
+     * @param wordCharacters
+     *            characters to remove.
+     * @return the new set.
+     */
+    public SeparatorSet without(String wordCharacters) {
+        long[] bits = this.bits.clone();
+        for (int i = 0; i < wordCharacters.length(); i++) {
+            char c = wordCharacters.charAt(i);
+            bits[c / BITS_PER_WORD] &= ~(1L << c);
+        }
+        return new SeparatorSet(bits);
+    }
+
+    /**
+     * Report whether a character is a separator.
+     *
+     * @param c
+     *            character to classify.
+     * @return true if {@code c} is in the set.
+     */
+    public boolean contains(char c) {
+        return (this.bits[c / BITS_PER_WORD] & (1L << c)) != 0;
+    }
+
+    /**
+     * Return the part of the bitset covering ASCII.
+     *
+     * @return copy of the first words of the bitset.
+     */
+    public long[] asciiBits() {
+        long[] ascii = new long[ASCII_LIMIT / BITS_PER_WORD];
+        System.arraycopy(this.bits, 0, ascii, 0, ascii.length);
+        return ascii;
+    }
+
+    /**
+     * Report whether some separator is outside of ASCII.
+     *
+     * @return true if a character from 128 up is in the set.
+     */
+    public boolean hasNonAscii() {
+        for (int i = ASCII_LIMIT / BITS_PER_WORD; i < this.bits.length; i++) {
+            if (this.bits[i] != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add a character to a bitset.
+     *
+     * @param bits
+     *            the bitset.
+     * @param c
+     *            the character.
+     */
+    private static void set(long[] bits, char c) {
+        bits[c / BITS_PER_WORD] |= 1L << c;
+    }
+
+    /**
+     * Report whether a character belongs to a named class.
+     *
+     * @param name
+     *            {@code d}, {@code s} or {@code p}.
+     * @param c
+     *            the character.
+     * @return true if {@code c} is in the class.
+     */
+    private static boolean inClass(char name, char c) {
+        switch (name) {
+            case 'd':
+                return Character.isDigit(c);
+            case 's':
+                return Character.isWhitespace(c) || Character.isSpaceChar(c);
+            default:
+                switch (Character.getType(c)) {
+                    case Character.CONNECTOR_PUNCTUATION:
+                    case Character.DASH_PUNCTUATION:
+                    case Character.START_PUNCTUATION:
+                    case Character.END_PUNCTUATION:
+                    case Character.INITIAL_QUOTE_PUNCTUATION:
+                    case Character.FINAL_QUOTE_PUNCTUATION:
+                    case Character.OTHER_PUNCTUATION:
+                        return true;
+                    default:
+                        return false;
+                }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package tagcloud;
+
+/**
+ * Counts the most frequent words of a stream of any length in a fixed amount
+ * of memory, with the Space-Saving algorithm. It holds a fixed number of
+ * counters; a word that is already counted adds one to its counter, and a new
+ * word takes over the counter with the lowest count when they are all in use,
+ * starting from that count plus one. The count of a word is thus never below
+ * its true count, and it is above by at most the count it took over, its
+ * error. Every error is at most the lowest count, which is at most
+ * {@code total() / capacity()}, and every word whose true count is above the
+ * lowest count is sure to be counted.
+ * <p>
+ * The counters are a {@code WordHeap}, which keeps the counter with the
+ * lowest count at its root, so counting a word costs one probe sequence and a
+ * few moves in the heap. Words are counted ignoring case like a
+ * {@code WordCountTable}, given as spans of characters or of UTF-8 bytes.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class SpaceSavingCounter
+        implements WordCounts, WordSink, Utf8WordSink {
+
+    /**
+     * Initial length of the buffer words in UTF-8 are decoded into.
+     */
+    private static final int INITIAL_DECODED_LENGTH = 64;
+
+    /**
+     * Counters, the number of a word is the number of its counter.
+     */
+    private final WordHeap counters;
+
+    /**
+     * Largest amount by which the count of each counter may be above the
+     * true count of its word.
+     */
+    private final int[] errors;
+
+    /**
+     * Number of words counted.
+     */
+    private long total;
+
+    /**
+     * Buffer the characters of a word given in UTF-8 are decoded into.
+     */
+    private char[] decoded = new char[INITIAL_DECODED_LENGTH];
+
+    /**
+     * Constructor.
+     *
+     * @param capacity
+     *            number of counters, at least 1.
+     */
+    public SpaceSavingCounter(int capacity) {
+        this.counters = new WordHeap(capacity);
+        this.errors = new int[capacity];
+    }
+
+    /**
+     * Return the number of counters needed to keep the error of every count
+     * under a fraction of the number of words counted.
+     *
+     * @param nWords
+     *            number of words wanted, there are at least as many counters.
+     * @param errorRate
+     *            largest error as a fraction of the number of words counted,
+     *            between 0 and 1.
+     * @return number of counters.
+     */
+    public static int capacity(int nWords, double errorRate) {
+        if (!(errorRate > 0 && errorRate <= 1)) {
+            throw new IllegalArgumentException(
+                    "error rate must be between 0 and 1, not " + errorRate);
+        }
+        double counters = Math.ceil(1 / errorRate);
+        return (int) Math.min(Integer.MAX_VALUE / 4,
+                Math.max(counters, Math.max(nWords, 1)));
+    }
+
+    /**
+     * Return the number of counters.
+     *
+     * @return number of counters.
+     */
+    public int capacity() {
+        return this.counters.capacity();
+    }
+
+    /**
+     * Return the number of counters in use, the number of distinct words
+     * counted while there are fewer.
+     *
+     * @return number of counters in use.
+     */
+    @Override
+    public int size() {
+        return this.counters.size();
+    }
+
+    @Override
+    public long total() {
+        return this.total;
+    }
+
+    /**
+     * Return the largest error of any count: the lowest count once every
+     * counter is in use, 0 before.
+     *
+     * @return largest error, at most {@code total() / capacity()}.
+     */
+    public int maxError() {
+        if (!this.counters.isFull()) {
+            return 0;
+        }
+        return this.counters.count(this.counters.min());
+    }
+
+    @Override
+    public void accept(char[] chars, int start, int end) {
+        // same as the hash code of the lower-case word as a String
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash
+                    + WordCountTable.toLowerCase(chars, i, start, end);
+        }
+        this.count(chars, start, end, hash, true);
+    }
+
+    @Override
+    public void acceptToken(char[] chars, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        this.count(chars, start, end, hash, false);
+    }
+
+    @Override
+    public void accept(byte[] bytes, int start, int end) {
+        if (end - start > this.decoded.length) {
+            this.decoded = new char[Math.max(end - start,
+                    2 * this.decoded.length)];
+        }
+        this.accept(this.decoded, 0,
+                Utf8.decodeWord(bytes, start, end, this.decoded));
+    }
+
+    @Override
+    public String key(int id) {
+        return this.counters.key(id);
+    }
+
+    @Override
+    public int count(int id) {
+        return this.counters.count(id);
+    }
+
+    @Override
+    public int error(int id) {
+        return this.errors[id];
+    }
+
+    @Override
+    public TopIdSelector.Order byCountThenWord() {
+        return this.counters.byCountThenWord();
+    }
+
+    /**
+     * Count a word, in the counter it already has or in a new one.
+     *
+     * @param chars
+     *            buffer holding the word.
+     * @param start
+     *            index of the first character of the word.
+     * @param end
+     *            index one past the last character of the word.
+     * @param hash
+     *            hash of the word as it is counted.
+     * @param fold
+     *            whether the word is counted in lower case.
+     */
+    private void count(char[] chars, int start, int end, int hash,
+            boolean fold) {
+        this.total++;
+        int id = this.counters.find(chars, start, end, hash, fold);
+        if (id >= 0) {
+            this.counters.raise(id, this.counters.count(id) + 1);
+        } else if (!this.counters.isFull()) {
+            id = this.counters.add(chars, start, end, hash, 1, fold);
+            this.errors[id] = 0;
+        } else {
+            // the new word takes over the counter with the lowest count
+            int lowest = this.counters.count(this.counters.min());
+            id = this.counters.replaceMin(chars, start, end, hash,
+                    lowest + 1, fold);
+            this.errors[id] = lowest;
+        }
+    }
+}
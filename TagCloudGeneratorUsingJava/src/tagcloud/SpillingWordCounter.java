@@ -0,0 +1,883 @@
+package tagcloud;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Counts words exactly however many distinct words there are, in a bounded
+ * amount of memory, by spilling partial counts to disk. Words are counted in
+ * a {@code WordCountTable} until it holds as many distinct words as fit in
+ * the memory given; its words are then split into {@code PARTITIONS}
+ * partitions by hash, sorted by hash and word within each, and appended as a
+ * sorted run to the file of each partition, and counting starts over in an
+ * empty table. Every file is written sequentially.
+ * <p>
+ * At the end, the runs of each partition are merged one partition at a time,
+ * adding the counts of equal words, and every word with its total count is
+ * offered to a selection of the top words across all partitions. A word is
+ * only ever in the partition its hash picks, so its runs are all merged
+ * together. If the table never filled up, nothing is written and the top
+ * words are taken from the table. The spill files are deleted when the
+ * counter is closed.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class SpillingWordCounter
+        implements WordSink, Utf8WordSink, Closeable {
+
+    /**
+     * Number of bits of the hash of a word picking its partition.
+     */
+    private static final int PARTITION_BITS = 4;
+
+    /**
+     * Number of partitions.
+     */
+    static final int PARTITIONS = 1 << PARTITION_BITS;
+
+    /**
+     * Size of the buffer runs are written through.
+     */
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Smallest buffer a run is read through while merging.
+     */
+    private static final int MIN_READ_BUFFER_SIZE = 1 << 12;
+
+    /**
+     * Largest buffer a run is read through while merging.
+     */
+    private static final int MAX_READ_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Bytes of a record besides the characters of its word: hash, length and
+     * count.
+     */
+    private static final int RECORD_OVERHEAD = 3 * Integer.BYTES;
+
+    /**
+     * Initial length of the buffers words are copied into.
+     */
+    private static final int INITIAL_WORD_LENGTH = 64;
+
+    /**
+     * Directory the spill files are written in.
+     */
+    private final Path directory;
+
+    /**
+     * Memory the counts may take, in bytes.
+     */
+    private final long memory;
+
+    /**
+     * Number of distinct words the table holds before it is spilled.
+     */
+    private final int maxWords;
+
+    /**
+     * Counts since the last spill.
+     */
+    private WordCountTable table = new WordCountTable();
+
+    /**
+     * Number of words counted before the last spill.
+     */
+    private long spilledTotal;
+
+    /**
+     * File of each partition, null until the first spill.
+     */
+    private FileChannel[] partitions;
+
+    /**
+     * Position of the end of each run in the file of each partition, one
+     * array per spill.
+     */
+    private final List<long[]> runEnds = new ArrayList<>();
+
+    /**
+     * Buffer runs are written through, null until the first spill.
+     */
+    private ByteBuffer out;
+
+    /**
+     * Number of distinct words, known once the top words are selected.
+     */
+    private long distinctWords = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param directory
+     *            directory the spill files are written in.
+     * @param memory
+     *            bytes the counts may take.
+     */
+    public SpillingWordCounter(Path directory, long memory) {
+        this.directory = directory;
+        this.memory = memory;
+        this.maxWords = (int) Math.max(1, Math.min(Integer.MAX_VALUE / 2,
+                memory / TagCloudGeneratorUsingJava.TABLE_BYTES_PER_WORD));
+    }
+
+    @Override
+    public void accept(char[] chars, int start, int end) {
+        this.table.accept(chars, start, end);
+        this.spillIfFull();
+    }
+
+    @Override
+    public void acceptToken(char[] chars, int start, int end) {
+        this.table.acceptToken(chars, start, end);
+        this.spillIfFull();
+    }
+
+    @Override
+    public void accept(byte[] bytes, int start, int end) {
+        this.table.accept(bytes, start, end);
+        this.spillIfFull();
+    }
+
+    /**
+     * Return the number of words counted, including repeated words.
+     *
+     * @return number of words counted.
+     */
+    public long total() {
+        return this.spilledTotal + this.table.total();
+    }
+
+    /**
+     * Return the number of times the table was spilled to disk.
+     *
+     * @return number of spills.
+     */
+    public int spills() {
+        return this.runEnds.size();
+    }
+
+    /**
+     * Return the number of distinct words, once the top words are selected.
+     *
+     * @return number of distinct words, or -1 before {@code top} is called.
+     */
+    public long distinctWords() {
+        return this.distinctWords;
+    }
+
+    /**
+     * Select the words with the highest counts, merging the spilled runs if
+     * there are any. No more words may be counted after.
+     *
+     * @param nWords
+     *            number of words to select.
+     * @return counts of the selected words, or of every word if nothing was
+     *         spilled.
+     * @throws IOException
+     *             if the spill files cannot be written or read.
+     */
+    public WordCounts top(int nWords) throws IOException {
+        if (this.partitions == null) {
+            this.distinctWords = this.table.size();
+            return this.table;
+        }
+        if (this.table.size() > 0) {
+            this.spill();
+        }
+        this.table = null;
+
+        // at most fanIn runs are read at once, each through a buffer
+        int fanIn = (int) Math.max(2, Math.min(this.runEnds.size(),
+                this.memory / MIN_READ_BUFFER_SIZE));
+        int bufferSize = (int) Math.max(MIN_READ_BUFFER_SIZE,
+                Math.min(MAX_READ_BUFFER_SIZE, this.memory / fanIn));
+        TopWords top = new TopWords(nWords, this.spilledTotal);
+        long distinct = 0;
+        for (int p = 0; p < PARTITIONS; p++) {
+            distinct += this.merge(p, fanIn, bufferSize, top);
+        }
+        this.out = null;
+        this.distinctWords = distinct;
+        return top.sorted();
+    }
+
+    /**
+     * Delete the spill files.
+     *
+     * @throws IOException
+     *             if a spill file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.partitions != null) {
+            for (FileChannel partition : this.partitions) {
+                if (partition != null) {
+                    partition.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Spill the table if it holds as many distinct words as fit in memory.
+     */
+    private void spillIfFull() {
+        if (this.table.size() >= this.maxWords) {
+            try {
+                this.spill();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Append the words of the table to the file of their partition, sorted
+     * by hash and word, and start over with an empty table.
+     *
+     * @throws IOException
+     *             if a spill file cannot be written.
+     */
+    private void spill() throws IOException {
+        if (this.partitions == null) {
+            this.partitions = new FileChannel[PARTITIONS];
+            for (int p = 0; p < PARTITIONS; p++) {
+                Path file = Files.createTempFile(this.directory, "spill-",
+                        ".run");
+                this.partitions[p] = FileChannel.open(file,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.DELETE_ON_CLOSE);
+            }
+            this.out = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        }
+
+        // hash above number, flipped so that signed order is unsigned order
+        WordCountTable counts = this.table;
+        int size = counts.size();
+        long[] keys = new long[size];
+        for (int id = 0; id < size; id++) {
+            keys[id] = (long) (hash(counts, id) ^ Integer.MIN_VALUE)
+                    << Integer.SIZE | id;
+        }
+        Arrays.sort(keys);
+        sortCollisions(counts, keys);
+
+        long[] ends = new long[PARTITIONS];
+        int p = 0;
+        char[] word = new char[INITIAL_WORD_LENGTH];
+        for (long key : keys) {
+            int id = (int) key;
+            int hash = (int) (key >>> Integer.SIZE) ^ Integer.MIN_VALUE;
+            while (p < hash >>> (Integer.SIZE - PARTITION_BITS)) {
+                ends[p] = this.flush(p);
+                p++;
+            }
+            int length = counts.keyLength(id);
+            if (word.length < length) {
+                word = new char[Math.max(length, 2 * word.length)];
+            }
+            for (int i = 0; i < length; i++) {
+                word[i] = counts.keyChar(id, i);
+            }
+            this.write(p, hash, word, length, counts.count(id));
+        }
+        for (; p < PARTITIONS; p++) {
+            ends[p] = this.flush(p);
+        }
+        this.runEnds.add(ends);
+        this.spilledTotal += counts.total();
+        this.table = new WordCountTable();
+    }
+
+    /**
+     * Buffer a record for the file of a partition, writing the buffered ones
+     * first if there is no room.
+     *
+     * @param p
+     *            the partition.
+     * @param hash
+     *            hash of the word.
+     * @param word
+     *            buffer holding the word.
+     * @param length
+     *            length of the word.
+     * @param count
+     *            count of the word.
+     * @throws IOException
+     *             if the file cannot be written.
+     */
+    private void write(int p, int hash, char[] word, int length, int count)
+            throws IOException {
+        int size = RECORD_OVERHEAD + length * Character.BYTES;
+        if (this.out.remaining() < size) {
+            this.flush(p);
+            if (this.out.capacity() < size) {
+                this.out = ByteBuffer.allocate(size);
+            }
+        }
+        this.out.putInt(hash).putInt(length);
+        for (int i = 0; i < length; i++) {
+            this.out.putChar(word[i]);
+        }
+        this.out.putInt(count);
+    }
+
+    /**
+     * Write the buffered records to the file of a partition.
+     *
+     * @param p
+     *            the partition.
+     * @return size of the file of the partition.
+     * @throws IOException
+     *             if the file cannot be written.
+     */
+    private long flush(int p) throws IOException {
+        this.out.flip();
+        while (this.out.hasRemaining()) {
+            this.partitions[p].write(this.out);
+        }
+        if (this.out.capacity() > WRITE_BUFFER_SIZE) {
+            this.out = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        }
+        this.out.clear();
+        return this.partitions[p].position();
+    }
+
+    /**
+     * Merge the runs of a partition, offering every word with its total
+     * count to the top words. While there are more runs than can be read at
+     * once, the first ones are merged into a run appended to the file.
+     *
+     * @param p
+     *            the partition.
+     * @param fanIn
+     *            number of runs read at once, at least 2.
+     * @param bufferSize
+     *            largest size of the buffer each run is read through.
+     * @param top
+     *            the top words.
+     * @return number of distinct words of the partition.
+     * @throws IOException
+     *             if the file of the partition cannot be read or written.
+     */
+    private long merge(int p, int fanIn, int bufferSize, TopWords top)
+            throws IOException {
+        List<long[]> runs = new ArrayList<>();
+        long start = 0;
+        for (long[] ends : this.runEnds) {
+            runs.add(new long[] { start, ends[p] });
+            start = ends[p];
+        }
+
+        int first = 0;
+        while (runs.size() - first > fanIn) {
+            long runStart = this.partitions[p].position();
+            this.mergeRuns(p, runs.subList(first, first + fanIn), bufferSize,
+                    (hash, word, length, count) -> this.write(p, hash, word,
+                            length, count));
+            runs.add(new long[] { runStart, this.flush(p) });
+            first += fanIn;
+        }
+        return this.mergeRuns(p, runs.subList(first, runs.size()),
+                bufferSize,
+                (hash, word, length, count) -> top.offer(word, length, count));
+    }
+
+    /**
+     * Merge some runs of a partition, adding the counts of equal words, and
+     * pass every word with its count on in hash and word order.
+     *
+     * @param p
+     *            the partition.
+     * @param runs
+     *            start and end positions of the runs.
+     * @param bufferSize
+     *            largest size of the buffer each run is read through.
+     * @param merged
+     *            takes the merged words.
+     * @return number of distinct words of the runs.
+     * @throws IOException
+     *             if the file of the partition cannot be read, or
+     *             {@code merged} fails.
+     */
+    private long mergeRuns(int p, List<long[]> runs, int bufferSize,
+            MergedWords merged) throws IOException {
+        PriorityQueue<Run> queue = new PriorityQueue<>();
+        for (long[] bounds : runs) {
+            Run run = new Run(this.partitions[p], bounds[0], bounds[1],
+                    bufferSize);
+            if (run.next()) {
+                queue.add(run);
+            }
+        }
+
+        long distinct = 0;
+        char[] word = new char[INITIAL_WORD_LENGTH];
+        while (!queue.isEmpty()) {
+            Run first = queue.poll();
+            int length = first.length;
+            if (word.length < length) {
+                word = new char[first.word.length];
+            }
+            System.arraycopy(first.word, 0, word, 0, length);
+            int hash = first.hash;
+            long count = first.count;
+            if (first.next()) {
+                queue.add(first);
+            }
+
+            // the same word is at the head of the other runs that have it
+            while (!queue.isEmpty()
+                    && queue.peek().matches(hash, word, length)) {
+                Run same = queue.poll();
+                count += same.count;
+                if (same.next()) {
+                    queue.add(same);
+                }
+            }
+            merged.accept(hash, word, length,
+                    (int) Math.min(count, Integer.MAX_VALUE));
+            distinct++;
+        }
+        return distinct;
+    }
+
+    /**
+     * Return the hash of a word of a table, which picks its partition with
+     * its top bits.
+     *
+     * @param counts
+     *            the table.
+     * @param id
+     *            number of the word.
+     * @return hash of the word.
+     */
+    private static int hash(WordCountTable counts, int id) {
+        int h = 0;
+        for (int i = 0; i < counts.keyLength(id); i++) {
+            h = 31 * h + counts.keyChar(id, i);
+        }
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Put the words with equal hashes in sorted keys in alphabetical order,
+     * so that runs are sorted by hash and then word.
+     *
+     * @param counts
+     *            table of the words.
+     * @param keys
+     *            hashes above word numbers, sorted.
+     */
+    private static void sortCollisions(WordCountTable counts, long[] keys) {
+        int i = 0;
+        while (i < keys.length) {
+            int j = i + 1;
+            while (j < keys.length
+                    && keys[j] >>> Integer.SIZE == keys[i] >>> Integer.SIZE) {
+                j++;
+            }
+
+            // collisions are rare and few, so insertion sort them
+            for (int k = i + 1; k < j; k++) {
+                long key = keys[k];
+                int m = k;
+                while (m > i && compareWords(counts, (int) keys[m - 1],
+                        (int) key) > 0) {
+                    keys[m] = keys[m - 1];
+                    m--;
+                }
+                keys[m] = key;
+            }
+            i = j;
+        }
+    }
+
+    /**
+     * Compare two words of a table the way their {@code String}s would
+     * compare.
+     *
+     * @param counts
+     *            the table.
+     * @param id1
+     *            number of the first word.
+     * @param id2
+     *            number of the second word.
+     * @return negative, zero or positive as the first word is before, the
+     *         same as or after the second.
+     */
+    private static int compareWords(WordCountTable counts, int id1, int id2) {
+        int length = Math.min(counts.keyLength(id1), counts.keyLength(id2));
+        for (int i = 0; i < length; i++) {
+            char c1 = counts.keyChar(id1, i);
+            char c2 = counts.keyChar(id2, i);
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return counts.keyLength(id1) - counts.keyLength(id2);
+    }
+
+    /**
+     * Compare two words the way their {@code String}s would compare.
+     *
+     * @param word1
+     *            buffer holding the first word.
+     * @param length1
+     *            length of the first word.
+     * @param word2
+     *            buffer holding the second word.
+     * @param length2
+     *            length of the second word.
+     * @return negative, zero or positive as the first word is before, the
+     *         same as or after the second.
+     */
+    private static int compareWords(char[] word1, int length1, char[] word2,
+            int length2) {
+        int length = Math.min(length1, length2);
+        for (int i = 0; i < length; i++) {
+            if (word1[i] != word2[i]) {
+                return word1[i] - word2[i];
+            }
+        }
+        return length1 - length2;
+    }
+
+    /**
+     * Takes the words of merged runs.
+     */
+    private interface MergedWords {
+
+        /**
+         * Take a word and its count.
+         *
+         * @param hash
+         *            hash of the word.
+         * @param word
+         *            buffer holding the word.
+         * @param length
+         *            length of the word.
+         * @param count
+         *            count of the word.
+         * @throws IOException
+         *             if the word cannot be written.
+         */
+        void accept(int hash, char[] word, int length, int count)
+                throws IOException;
+    }
+
+    /**
+     * A sorted run being read record by record, ordered by its current word.
+     */
+    private static final class Run implements Comparable<Run> {
+
+        /**
+         * File of the partition of the run.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Position of the next byte to read.
+         */
+        private long position;
+
+        /**
+         * Position one past the end of the run.
+         */
+        private final long end;
+
+        /**
+         * Bytes read but not used yet.
+         */
+        private ByteBuffer buffer;
+
+        /**
+         * Current word.
+         */
+        private char[] word = new char[INITIAL_WORD_LENGTH];
+
+        /**
+         * Length of the current word.
+         */
+        private int length;
+
+        /**
+         * Hash of the current word.
+         */
+        private int hash;
+
+        /**
+         * Count of the current word in the run.
+         */
+        private int count;
+
+        /**
+         * Constructor.
+         *
+         * @param channel
+         *            file of the partition of the run.
+         * @param start
+         *            position of the first byte of the run.
+         * @param end
+         *            position one past the end of the run.
+         * @param bufferSize
+         *            largest size of the read buffer.
+         */
+        Run(FileChannel channel, long start, long end, int bufferSize) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+            // a short run needs no more than its own length
+            this.buffer = ByteBuffer
+                    .allocate((int) Math.min(bufferSize, end - start));
+            this.buffer.limit(0);
+        }
+
+        /**
+         * Read the next record.
+         *
+         * @return false if the run is over.
+         * @throws IOException
+         *             if the file cannot be read.
+         */
+        boolean next() throws IOException {
+            if (!this.fill(2 * Integer.BYTES)) {
+                return false;
+            }
+            this.hash = this.buffer.getInt();
+            this.length = this.buffer.getInt();
+            if (!this.fill(this.length * Character.BYTES + Integer.BYTES)) {
+                throw new IOException("truncated spill run");
+            }
+            if (this.word.length < this.length) {
+                this.word = new char[Math.max(this.length,
+                        2 * this.word.length)];
+            }
+            for (int i = 0; i < this.length; i++) {
+                this.word[i] = this.buffer.getChar();
+            }
+            this.count = this.buffer.getInt();
+            return true;
+        }
+
+        /**
+         * Report whether the current word is a given one.
+         *
+         * @param otherHash
+         *            hash of the other word.
+         * @param otherWord
+         *            buffer holding the other word.
+         * @param otherLength
+         *            length of the other word.
+         * @return true if the words are equal.
+         */
+        boolean matches(int otherHash, char[] otherWord, int otherLength) {
+            return this.hash == otherHash && compareWords(this.word,
+                    this.length, otherWord, otherLength) == 0;
+        }
+
+        @Override
+        public int compareTo(Run other) {
+            int order = Integer.compareUnsigned(this.hash, other.hash);
+            if (order == 0) {
+                order = compareWords(this.word, this.length, other.word,
+                        other.length);
+            }
+            return order;
+        }
+
+        /**
+         * Make sure some bytes are in the buffer, reading more of the run.
+         *
+         * @param needed
+         *            number of bytes needed.
+         * @return false if the run has fewer bytes left.
+         * @throws IOException
+         *             if the file cannot be read.
+         */
+        private boolean fill(int needed) throws IOException {
+            if (this.buffer.remaining() >= needed) {
+                return true;
+            }
+            if (this.buffer.remaining() + this.end - this.position < needed) {
+                return false;
+            }
+            if (this.buffer.capacity() < needed) {
+                ByteBuffer larger = ByteBuffer.allocate(needed);
+                larger.put(this.buffer);
+                this.buffer = larger;
+            } else {
+                this.buffer.compact();
+            }
+            while (this.buffer.position() < needed) {
+                this.buffer.limit((int) Math.min(this.buffer.capacity(),
+                        this.buffer.position() + this.end - this.position));
+                int read = this.channel.read(this.buffer, this.position);
+                if (read < 0) {
+                    throw new IOException("truncated spill run");
+                }
+                this.position += read;
+            }
+            this.buffer.flip();
+            return true;
+        }
+    }
+
+    /**
+     * The words with the highest counts seen so far, by decreasing count and
+     * then in alphabetical order, the same order as {@code WordCountTable}.
+     */
+    private static final class TopWords {
+
+        /**
+         * Number of words kept.
+         */
+        private final int nWords;
+
+        /**
+         * Number of words counted.
+         */
+        private final long total;
+
+        /**
+         * Words kept, the lowest in order at the head.
+         */
+        private final PriorityQueue<Word> lowestFirst;
+
+        /**
+         * Constructor.
+         *
+         * @param nWords
+         *            number of words kept.
+         * @param total
+         *            number of words counted.
+         */
+        TopWords(int nWords, long total) {
+            this.nWords = nWords;
+            this.total = total;
+            this.lowestFirst = new PriorityQueue<>(Math.max(1, nWords + 1),
+                    (word1, word2) -> -word1.compareTo(word2));
+        }
+
+        /**
+         * Offer a word, which is kept if it is one of the top words so far.
+         *
+         * @param chars
+         *            buffer holding the word.
+         * @param length
+         *            length of the word.
+         * @param count
+         *            count of the word.
+         */
+        void offer(char[] chars, int length, int count) {
+            if (this.lowestFirst.size() == this.nWords) {
+                // most words lose on count alone, without making a String
+                Word lowest = this.lowestFirst.peek();
+                if (lowest == null || count < lowest.count) {
+                    return;
+                }
+            }
+            Word word = new Word(new String(chars, 0, length), count);
+            this.lowestFirst.add(word);
+            if (this.lowestFirst.size() > this.nWords) {
+                this.lowestFirst.poll();
+            }
+        }
+
+        /**
+         * Return the kept words as counts.
+         *
+         * @return counts of the kept words.
+         */
+        WordCounts sorted() {
+            Word[] words = this.lowestFirst.toArray(new Word[0]);
+            Arrays.sort(words);
+            long wordsTotal = this.total;
+            return new WordCounts() {
+
+                @Override
+                public int size() {
+                    return words.length;
+                }
+
+                @Override
+                public long total() {
+                    return wordsTotal;
+                }
+
+                @Override
+                public String key(int id) {
+                    return words[id].word;
+                }
+
+                @Override
+                public int count(int id) {
+                    return words[id].count;
+                }
+
+                @Override
+                public int error(int id) {
+                    return 0;
+                }
+
+                @Override
+                public TopIdSelector.Order byCountThenWord() {
+                    return (id1, id2) -> words[id1].compareTo(words[id2]);
+                }
+            };
+        }
+    }
+
+    /**
+     * A word and its total count, ordered by decreasing count and then in
+     * alphabetical order.
+     */
+    private static final class Word implements Comparable<Word> {
+
+        /**
+         * The word.
+         */
+        private final String word;
+
+        /**
+         * Its count.
+         */
+        private final int count;
+
+        /**
+         * Constructor.
+         *
+         * @param word
+         *            the word.
+         * @param count
+         *            its count.
+         */
+        Word(String word, int count) {
+            this.word = word;
+            this.count = count;
+        }
+
+        @Override
+        public int compareTo(Word other) {
+            int order = Integer.compare(other.count, this.count);
+            if (order == 0) {
+                order = this.word.compareTo(other.word);
+            }
+            return order;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package tagcloud;
+
+/**
+ * Pipeline stage between the tokenizer and the counting table that replaces
+ * every word with its stem, so that "dedicate" and "dedicated" are counted as
+ * one word. Stemming a word costs far more than counting it, so each distinct
+ * word is stemmed once and its stem is remembered in a bounded cache. The
+ * cache is direct-mapped: a word is looked up in the one entry its hash points
+ * to, ignoring case and without building a {@code String}, and a word that is
+ * not there replaces the entry. Frequent words therefore stay cached while the
+ * long tail of rare words only ever costs one entry each.
+ * <p>
+ * A stage is not thread-safe; {@code ParallelWordCounter} makes one per range.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class StemmingStage implements WordSink {
+
+    /**
+     * Default number of cached stems, must be a power of two.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 1 << 14;
+
+    /**
+     * Initial length of the scratch buffer.
+     */
+    private static final int INITIAL_WORD_LENGTH = 64;
+
+    /**
+     * Receiver of the stems.
+     */
+    private final WordSink next;
+
+    /**
+     * Lower-case word of each cache entry, or null for an empty entry.
+     */
+    private final char[][] words;
+
+    /**
+     * Stem of each cache entry.
+     */
+    private final char[][] stems;
+
+    /**
+     * Buffer the word of a cache miss is stemmed in.
+     */
+    private char[] scratch = new char[INITIAL_WORD_LENGTH];
+
+    /**
+     * Number of words that were found in the cache.
+     */
+    private long hits;
+
+    /**
+     * Number of words that were stemmed.
+     */
+    private long misses;
+
+    /**
+     * Constructor with the default cache size.
+     *
+     * @param next
+     *            receiver of the stems.
+     */
+    public StemmingStage(WordSink next) {
+        this(next, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param next
+     *            receiver of the stems.
+     * @param cacheSize
+     *            number of cached stems, a power of two.
+     */
+    public StemmingStage(WordSink next, int cacheSize) {
+        if (cacheSize <= 0 || Integer.bitCount(cacheSize) != 1) {
+            throw new IllegalArgumentException(
+                    "cache size must be a power of two: " + cacheSize);
+        }
+        this.next = next;
+        this.words = new char[cacheSize][];
+        this.stems = new char[cacheSize][];
+    }
+
+    @Override
+    public void accept(char[] chars, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash
+                    + WordCountTable.toLowerCase(chars, i, start, end);
+        }
+        int entry = (hash ^ (hash >>> 16)) & (this.words.length - 1);
+        if (matches(this.words[entry], chars, start, end)) {
+            this.hits++;
+            char[] stem = this.stems[entry];
+            this.next.accept(stem, 0, stem.length);
+            return;
+        }
+
+        // stem the word and replace the entry with it
+        this.misses++;
+        int length = end - start;
+        if (length > this.scratch.length) {
+            this.scratch = new char[Math.max(length,
+                    2 * this.scratch.length)];
+        }
+        char[] word = new char[length];
+        for (int i = 0; i < length; i++) {
+            word[i] = WordCountTable.toLowerCase(chars, start + i, start,
+                    end);
+        }
+        System.arraycopy(word, 0, this.scratch, 0, length);
+        int stemLength = InflectionStemmer.stem(this.scratch, length);
+        char[] stem = word;
+        if (stemLength != length) {
+            stem = new char[stemLength];
+            System.arraycopy(this.scratch, 0, stem, 0, stemLength);
+        }
+        this.words[entry] = word;
+        this.stems[entry] = stem;
+        this.next.accept(stem, 0, stemLength);
+    }
+
+    /**
+     * Pass a token on as it is, since tokens such as URLs have no stem.
+     *
+     * @param chars
+     *            buffer holding the token.
+     * @param start
+     *            index of the first character of the token.
+     * @param end
+     *            index one past the last character of the token.
+     */
+    @Override
+    public void acceptToken(char[] chars, int start, int end) {
+        this.next.acceptToken(chars, start, end);
+    }
+
+    /**
+     * Return the number of words whose stem was cached.
+     *
+     * @return number of cache hits.
+     */
+    public long hits() {
+        return this.hits;
+    }
+
+    /**
+     * Return the number of words that had to be stemmed.
+     *
+     * @return number of cache misses.
+     */
+    public long misses() {
+        return this.misses;
+    }
+
+    /**
+     * Compare a cached lower-case word with a span of a buffer, ignoring the
+     * case of the span.
+     *
+     * @param word
+     *            the cached word, or null.
+     * @param chars
+     *            buffer holding the other word.
+     * @param start
+     *            index of the first character of the other word.
+     * @param end
+     *            index one past the last character of the other word.
+     * @return true if the words are equal.
+     */
+    private static boolean matches(char[] word, char[] chars, int start,
+            int end) {
+        if (word == null || word.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < word.length; i++) {
+            if (word[i] != WordCountTable.toLowerCase(chars, start + i,
+                    start, end)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,56 @@
+package tagcloud;
+
+/**
+ * Pipeline stage between the tokenizer and the counting table that drops
+ * stop words, so that they are never hashed into the table.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class StopWordFilter implements WordSink {
+
+    /**
+     * Words to drop.
+     */
+    private final StopWords stopWords;
+
+    /**
+     * Receiver of the remaining words.
+     */
+    private final WordSink next;
+
+    /**
+     * Constructor.
+     *
+     * @param stopWords
+     *            words to drop.
+     * @param next
+     *            receiver of the remaining words.
+     */
+    public StopWordFilter(StopWords stopWords, WordSink next) {
+        this.stopWords = stopWords;
+        this.next = next;
+    }
+
+    @Override
+    public void accept(char[] chars, int start, int end) {
+        if (!this.stopWords.contains(chars, start, end)) {
+            this.next.accept(chars, start, end);
+        }
+    }
+
+    /**
+     * Pass a token on, since tokens such as URLs are never stop words.
+     *
+     * @param chars
+     *            buffer holding the token.
+     * @param start
+     *            index of the first character of the token.
+     * @param end
+     *            index one past the last character of the token.
+     */
+    @Override
+    public void acceptToken(char[] chars, int start, int end) {
+        this.next.acceptToken(chars, start, end);
+    }
+}
@@ -0,0 +1,390 @@
+package tagcloud;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A frozen set of words left out of the clouds, looked up with a minimal
+ * perfect hash. The words are hashed into buckets, and each bucket gets a
+ * displacement chosen when the set is built so that every word of the set
+ * lands in its own slot of a table exactly as large as the set. Testing a
+ * span of a buffer hashes it once, ignoring case, then reads the displacement
+ * of its bucket and the hash of the one word in its slot; the characters are
+ * only compared when those hashes agree. Sets are immutable and may be shared
+ * by any number of threads.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class StopWords {
+
+    /**
+     * Common English words.
+     */
+    static final String[] ENGLISH = { "a", "about", "above", "after", "again",
+            "against", "all", "am", "an", "and", "any", "are", "as", "at", "be",
+            "because", "been", "before", "being", "below", "between", "both",
+            "but", "by", "can", "could", "did", "do", "does", "doing", "down",
+            "during", "each", "few", "for", "from", "further", "had", "has",
+            "have", "having", "he", "her", "here", "hers", "herself", "him",
+            "himself", "his", "how", "i", "if", "in", "into", "is", "it",
+            "its", "itself", "just", "me", "more", "most", "my", "myself", "no",
+            "nor", "not", "now", "of", "off", "on", "once", "only", "or",
+            "other", "our", "ours", "ourselves", "out", "over", "own", "same",
+            "she", "should", "so", "some", "such", "than", "that", "the",
+            "their", "theirs", "them", "themselves", "then", "there", "these",
+            "they", "this", "those", "through", "to", "too", "under", "until",
+            "up", "very", "was", "we", "were", "what", "when", "where",
+            "which", "while", "who", "whom", "why", "will", "with", "would",
+            "you", "your", "yours", "yourself", "yourselves" };
+
+    /**
+     * Average number of words per bucket.
+     */
+    private static final int WORDS_PER_BUCKET = 2;
+
+    /**
+     * Displacements tried for one bucket before starting again with another
+     * seed.
+     */
+    private static final int MAX_DISPLACEMENT = 1 << 16;
+
+    /**
+     * Odd constant spreading displacements and seeds over the hash bits.
+     */
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    /**
+     * FNV-1a offset basis.
+     */
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+
+    /**
+     * FNV-1a prime.
+     */
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    /**
+     * Seed of the word hash.
+     */
+    private final long seed;
+
+    /**
+     * Displacement of each bucket.
+     */
+    private final int[] displacements;
+
+    /**
+     * Hash of the word in each slot.
+     */
+    private final long[] hashes;
+
+    /**
+     * Characters of the words, in slot order.
+     */
+    private final char[] arena;
+
+    /**
+     * Index in the arena of the first character of each slot's word, plus
+     * the end of the last word.
+     */
+    private final int[] keyStarts;
+
+    /**
+     * Length of the longest word.
+     */
+    private final int maxLength;
+
+    /**
+     * Constructor.
+     *
+     * @param seed
+     *            seed of the word hash.
+     * @param displacements
+     *            displacement of each bucket.
+     * @param words
+     *            the words, in slot order.
+     * @param hashes
+     *            hash of each word.
+     */
+    private StopWords(long seed, int[] displacements, String[] words,
+            long[] hashes) {
+        this.seed = seed;
+        this.displacements = displacements;
+        this.hashes = hashes;
+        this.keyStarts = new int[words.length + 1];
+        int length = 0;
+        int maxLength = 0;
+        for (int i = 0; i < words.length; i++) {
+            this.keyStarts[i] = length;
+            length += words[i].length();
+            maxLength = Math.max(maxLength, words[i].length());
+        }
+        this.keyStarts[words.length] = length;
+        this.maxLength = maxLength;
+        this.arena = new char[length];
+        for (int i = 0; i < words.length; i++) {
+            words[i].getChars(0, words[i].length(), this.arena,
+                    this.keyStarts[i]);
+        }
+    }
+
+    /**
+     * Build the set of some words. Case is ignored.
+     *
+     * @param words
+     *            the words.
+     * @return the set.
+     */
+    public static StopWords of(Iterable<String> words) {
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String word : words) {
+            if (!word.isEmpty()) {
+                distinct.add(fold(word));
+            }
+        }
+        String[] keys = distinct.toArray(new String[0]);
+        long seed = 0;
+        while (true) {
+            StopWords stopWords = build(keys, seed);
+            if (stopWords != null) {
+                return stopWords;
+            }
+            seed += GOLDEN;
+        }
+    }
+
+    /**
+     * Build the set of the common English words.
+     *
+     * @return the set.
+     */
+    public static StopWords english() {
+        return of(Arrays.asList(ENGLISH));
+    }
+
+    /**
+     * Read a set from a UTF-8 file of one word per line. Blank lines and
+     * lines starting with {@code #} are skipped.
+     *
+     * @param file
+     *            the word list.
+     * @return the set.
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    public static StopWords read(Path file) throws IOException {
+        List<String> words = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file,
+                StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            while (line != null) {
+                String word = line.trim();
+                if (!word.isEmpty() && !word.startsWith("#")) {
+                    words.add(word);
+                }
+                line = reader.readLine();
+            }
+        }
+        return of(words);
+    }
+
+    /**
+     * Return the number of words in the set.
+     *
+     * @return number of words.
+     */
+    public int size() {
+        return this.hashes.length;
+    }
+
+    /**
+     * Report whether a span of a buffer is in the set, ignoring case.
+     *
+     * @param chars
+     *            buffer holding the word.
+     * @param start
+     *            index of the first character of the word.
+     * @param end
+     *            index one past the last character of the word.
+     * @return true if the word is in the set.
+     */
+    public boolean contains(char[] chars, int start, int end) {
+        int n = this.hashes.length;
+        if (n == 0 || end - start > this.maxLength) {
+            return false;
+        }
+        long hash = FNV_OFFSET ^ this.seed;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ WordCountTable.toLowerCase(chars, i, start, end))
+                    * FNV_PRIME;
+        }
+        int slot = slot(hash,
+                this.displacements[bucket(hash, this.displacements.length)],
+                n);
+        if (this.hashes[slot] != hash) {
+            return false;
+        }
+        int keyStart = this.keyStarts[slot];
+        if (this.keyStarts[slot + 1] - keyStart != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (this.arena[keyStart++] != WordCountTable.toLowerCase(chars,
+                    i, start, end)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Try to build the perfect hash of some words with a seed.
+     *
+     * @param keys
+     *            distinct lower-case words.
+     * @param seed
+     *            seed of the word hash.
+     * @return the set, or null if some bucket could not be placed.
+     */
+    private static StopWords build(String[] keys, long seed) {
+        int n = keys.length;
+        int bucketCount = Math.max(1, n / WORDS_PER_BUCKET);
+        long[] keyHashes = new long[n];
+        List<List<Integer>> buckets = new ArrayList<>();
+        for (int b = 0; b < bucketCount; b++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (int k = 0; k < n; k++) {
+            long hash = FNV_OFFSET ^ seed;
+            for (int i = 0; i < keys[k].length(); i++) {
+                hash = (hash ^ keys[k].charAt(i)) * FNV_PRIME;
+            }
+            keyHashes[k] = hash;
+            buckets.get(bucket(hash, bucketCount)).add(k);
+        }
+
+        // place the largest buckets first, while the table is still empty
+        Integer[] order = new Integer[bucketCount];
+        for (int b = 0; b < bucketCount; b++) {
+            order[b] = b;
+        }
+        Arrays.sort(order,
+                (b1, b2) -> buckets.get(b2).size() - buckets.get(b1).size());
+
+        int[] displacements = new int[bucketCount];
+        String[] words = new String[n];
+        long[] hashes = new long[n];
+        boolean[] taken = new boolean[n];
+        int[] slots = new int[n];
+        for (int b : order) {
+            List<Integer> bucket = buckets.get(b);
+            if (bucket.isEmpty()) {
+                break;
+            }
+            int displacement = 0;
+            while (!fits(bucket, keyHashes, displacement, taken, slots)) {
+                displacement++;
+                if (displacement == MAX_DISPLACEMENT) {
+                    return null;
+                }
+            }
+            displacements[b] = displacement;
+            for (int i = 0; i < bucket.size(); i++) {
+                int k = bucket.get(i);
+                taken[slots[i]] = true;
+                words[slots[i]] = keys[k];
+                hashes[slots[i]] = keyHashes[k];
+            }
+        }
+        return new StopWords(seed, displacements, words, hashes);
+    }
+
+    /**
+     * Report whether every word of a bucket lands in a free slot of its own
+     * with a displacement.
+     *
+     * @param bucket
+     *            indices of the words of the bucket.
+     * @param keyHashes
+     *            hash of every word.
+     * @param displacement
+     *            the displacement.
+     * @param taken
+     *            slots already used by other buckets.
+     * @param slots
+     *            receives the slot of each word of the bucket.
+     * @return true if the bucket fits.
+     */
+    private static boolean fits(List<Integer> bucket, long[] keyHashes,
+            int displacement, boolean[] taken, int[] slots) {
+        for (int i = 0; i < bucket.size(); i++) {
+            int slot = slot(keyHashes[bucket.get(i)], displacement,
+                    taken.length);
+            if (taken[slot]) {
+                return false;
+            }
+            for (int j = 0; j < i; j++) {
+                if (slots[j] == slot) {
+                    return false;
+                }
+            }
+            slots[i] = slot;
+        }
+        return true;
+    }
+
+    /**
+     * Return the bucket of a word hash.
+     *
+     * @param hash
+     *            hash of the word.
+     * @param bucketCount
+     *            number of buckets.
+     * @return the bucket, from 0 to {@code bucketCount - 1}.
+     */
+    private static int bucket(long hash, int bucketCount) {
+        return (int) (((hash >>> Integer.SIZE) * bucketCount) >>> Integer.SIZE);
+    }
+
+    /**
+     * Return the slot of a word hash with a displacement.
+     *
+     * @param hash
+     *            hash of the word.
+     * @param displacement
+     *            displacement of the bucket of the word.
+     * @param n
+     *            number of slots.
+     * @return the slot, from 0 to {@code n - 1}.
+     */
+    private static int slot(long hash, int displacement, int n) {
+        long h = (hash ^ (displacement * GOLDEN)) * GOLDEN;
+        h ^= h >>> Integer.SIZE;
+        return (int) (((h & 0xFFFFFFFFL) * n) >>> Integer.SIZE);
+    }
+
+    /**
+     * Return a word in lower case, the way the counting table folds it.
+     *
+     * @param word
+     *            the word.
+     * @return the word in lower case.
+     */
+    private static String fold(String word) {
+        char[] chars = word.toCharArray();
+        char[] folded = new char[chars.length];
+        for (int i = 0; i < chars.length; i++) {
+            folded[i] = WordCountTable.toLowerCase(chars, i, 0, chars.length);
+        }
+        return new String(folded);
+    }
+}
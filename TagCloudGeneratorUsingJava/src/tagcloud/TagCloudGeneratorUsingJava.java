@@ -0,0 +1,1156 @@
+package tagcloud;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.UnaryOperator;
+
+/**
+ * Displays a cloud of the words contained in a text file. Allows the user to
+ * specify the input text file and number of words shown on the cloud. Font size
+ * of the words is proportional to their frequency in the text file.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class TagCloudGeneratorUsingJava {
+
+    /**
+     * No argument constructor--private to prevent instantiation.
+     */
+    private TagCloudGeneratorUsingJava() {
+    }
+
+    /**
+     * Maximum font size.
+     */
+    static final int FONT_MAX = 37;
+    /**
+     * Minimum font size.
+     */
+    static final int FONT_MIN = 11;
+    /**
+     * String of separators.
+     */
+    public static final String SEPARATORS = " \t,.-:;/\"!?_@#$%&*[]()";
+    /**
+     * Tokenizer built from the separators. Line breaks also separate words
+     * when the input is not read line by line.
+     */
+    public static final WordTokenizer TOKENIZER = new WordTokenizer(
+            SEPARATORS + "\r\n");
+    /**
+     * Number of candidate words a Count-Min sketch keeps per word of the
+     * cloud.
+     */
+    public static final int SKETCH_CANDIDATES_PER_WORD = 2;
+    /**
+     * Bytes a {@code WordCountTable} may take per distinct word of about
+     * eight characters, just after its arrays have grown.
+     */
+    static final long TABLE_BYTES_PER_WORD = 96;
+    /**
+     * Fewest bytes of a file per word, one character and a separator.
+     */
+    static final long MIN_BYTES_PER_WORD = 2;
+    /**
+     * Number of rows of the sketches chosen when the vocabulary is too large.
+     */
+    static final int AUTO_SKETCH_DEPTH = 4;
+    /**
+     * Largest number of counters per row of the sketches chosen when the
+     * vocabulary is too large.
+     */
+    static final int MAX_AUTO_SKETCH_WIDTH = 1 << 22;
+
+    /**
+     * Compare {@code Integer}s values of the map in decreasing order.
+     */
+    private static class ValueComparator
+            implements Comparator<Map.Entry<String, Integer>> {
+
+        @Override
+        public int compare(Map.Entry<String, Integer> pair1,
+                Map.Entry<String, Integer> pair2) {
+
+            int returnVal = Integer.compare(pair2.getValue(), pair1.getValue());
+            if (returnVal == 0) {
+                returnVal = pair1.getKey().compareTo(pair2.getKey());
+            }
+
+            return returnVal;
+        }
+    }
+
+    /**
+     * Return the first word or separator in the String starting at a defined
+     * index. Separators include spaces, tabs, and punctuation.
+     *
+     * @param startingIndex
+     *            First index on the string that is checked.
+     * @param s
+     *            String that represents one line of the input file.
+     * @return first word or separator occurrence starting at the startingIndex.
+     */
+    public static String nextWordOrSeperator(int startingIndex, String s) {
+        return s.substring(startingIndex,
+                TOKENIZER.wordEnd(s, startingIndex));
+    }
+
+    /**
+     * counts the frequency of each unique word in the input file.
+     *
+     * @param fileReader
+     *            input stream of the text file.
+     * @return map of words to their count
+     */
+    public static Map<String, Integer> getWordCounts(
+            BufferedReader fileReader) {
+        WordCountTable wordsToCounts = new WordCountTable();
+
+        // iterate on each line until the stream ends
+        char[] chars = new char[0];
+        String line = null;
+        try {
+            line = fileReader.readLine();
+        } catch (IOException e) {
+            System.out.println("error reading the input stream");
+        }
+        while (line != null) {
+            // copy the line into a reused buffer and count its words
+            if (line.length() > chars.length) {
+                chars = new char[Math.max(line.length(), 2 * chars.length)];
+            }
+            line.getChars(0, line.length(), chars, 0);
+            TOKENIZER.tokenize(chars, 0, line.length(), true, wordsToCounts);
+
+            try {
+                line = fileReader.readLine();
+            } catch (IOException e) {
+                System.out.println("error reading the input stream");
+                line = null;
+            }
+        }
+
+        return wordsToCounts;
+    }
+
+    /**
+     * counts the frequency of each unique word in a UTF-8 file by mapping it
+     * into memory instead of reading it line by line.
+     *
+     * @param inFile
+     *            path of the text file.
+     * @return map of words to their count
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    public static Map<String, Integer> getWordCounts(Path inFile)
+            throws IOException {
+        WordCountTable wordsToCounts = new WordCountTable();
+        MappedWordScanner.scan(inFile, TOKENIZER, wordsToCounts);
+        return wordsToCounts;
+    }
+
+    /**
+     * counts the frequency of each unique word in a UTF-8 file using several
+     * threads. The result is the same as the one of the sequential scan.
+     *
+     * @param inFile
+     *            path of the text file.
+     * @param parallelism
+     *            number of threads counting words.
+     * @return map of words to their count
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    public static Map<String, Integer> getWordCounts(Path inFile,
+            int parallelism) throws IOException {
+        return new ParallelWordCounter(TOKENIZER, parallelism).count(inFile);
+    }
+
+    /**
+     * counts the frequency of each unique word in a UTF-8 file using several
+     * threads, leaving out stop words before they reach the counting table.
+     *
+     * @param inFile
+     *            path of the text file.
+     * @param parallelism
+     *            number of threads counting words.
+     * @param stopWords
+     *            words that are not counted.
+     * @return map of words to their count
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    public static Map<String, Integer> getWordCounts(Path inFile,
+            int parallelism, StopWords stopWords) throws IOException {
+        return new ParallelWordCounter(TOKENIZER, parallelism,
+                counts -> new StopWordFilter(stopWords, counts)).count(inFile);
+    }
+
+    /**
+     * counts the frequency of each unique word in a UTF-8 file using several
+     * threads that all count into one lock-free {@code ConcurrentWordCounter}
+     * instead of into tables that are merged at the end.
+     *
+     * @param inFile
+     *            path of the text file.
+     * @param parallelism
+     *            number of threads counting words.
+     * @return counts of the words of the file
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    public static WordCounts getSharedWordCounts(Path inFile, int parallelism)
+            throws IOException {
+        ConcurrentWordCounter shared = new ConcurrentWordCounter();
+        return new ParallelWordCounter(TOKENIZER, parallelism).count(inFile,
+                () -> shared, (counts1, counts2) -> counts1,
+                new PipelineMetrics());
+    }
+
+    /**
+     * estimates the frequency of the most frequent words in a UTF-8 file with
+     * Count-Min sketches of a fixed size, using several threads. The map
+     * holds the candidate words of the merged sketch.
+     *
+     * @param inFile
+     *            path of the text file.
+     * @param parallelism
+     *            number of threads counting words.
+     * @param width
+     *            number of counters per row of the sketch.
+     * @param depth
+     *            number of rows of the sketch.
+     * @param candidates
+     *            number of candidate words kept.
+     * @return map of the candidate words to their estimated count
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    public static Map<String, Integer> getWordCounts(Path inFile,
+            int parallelism, int width, int depth, int candidates)
+            throws IOException {
+        return new ParallelWordCounter(TOKENIZER, parallelism).count(inFile,
+                () -> new CountMinSketch(width, depth, candidates),
+                (sketch1, sketch2) -> {
+                    sketch1.addAll(sketch2);
+                    return sketch1;
+                }, new PipelineMetrics());
+    }
+
+    /**
+     * Sort the map of words to counts into a list with the entries of the top n
+     * values. Place those entries into a map that sorts alphabetically by key.
+     *
+     * @param wordsToCountsSorted
+     *            Map of the top entries in alphabetical order by key.
+     * @param wordsToCounts
+     *            Unique words found in the input file mapped to their
+     *            frequency.
+     * @param nWords
+     *            Number of words to sort.
+     * @return List of the map entries in order of their integer values.
+     */
+    public static List<String> sortWordCount(
+            Map<String, Integer> wordsToCountsSorted,
+            Map<String, Integer> wordsToCounts, int nWords) {
+
+        // create a list to hold the chosen words in order of their counts
+        List<String> topWords = new LinkedList<String>();
+
+        // counts numbered by word are selected from by number, without entries
+        if (wordsToCounts instanceof WordCounts) {
+            WordCounts counts = (WordCounts) wordsToCounts;
+            for (int id : topIds(counts, nWords)) {
+                String word = counts.key(id);
+                wordsToCountsSorted.put(word, counts.count(id));
+                topWords.add(word);
+            }
+            return topWords;
+        }
+
+        // keep only the top n entries while going through the map
+        TopNSelector<Map.Entry<String, Integer>> selector = new TopNSelector<>(
+                new ValueComparator(), nWords);
+        for (Map.Entry<String, Integer> entry : wordsToCounts.entrySet()) {
+            selector.offer(entry);
+        }
+
+        // add chosen entries to an alphabetically sorted tree map
+        for (Map.Entry<String, Integer> entry : selector.toSortedList()) {
+            wordsToCountsSorted.put(entry.getKey(), entry.getValue());
+            topWords.add(entry.getKey());
+        }
+
+        return topWords;
+    }
+
+    /**
+     * Return the numbers of the top words of some counts.
+     *
+     * @param counts
+     *            counts of words numbered from 0.
+     * @param nWords
+     *            number of words to keep.
+     * @return numbers of the top words, in order of their counts.
+     */
+    private static int[] topIds(WordCounts counts, int nWords) {
+        TopIdSelector selector = new TopIdSelector(counts.byCountThenWord(),
+                nWords);
+        for (int id = 0; id < counts.size(); id++) {
+            selector.offer(id);
+        }
+        return selector.toSortedArray();
+    }
+
+    /**
+     * Print HTML of a word cloud. The n most frequent words are sorted
+     * alphabetically and displayed with a size corresponding to their frequency
+     * in the input text file.
+     *
+     * @param wordsToCounts
+     *            Top frequency words mapped to their frequency
+     * @param out
+     *            Channel to the output text file.
+     * @param fileName
+     *            Name of the output file.
+     * @param maxCount
+     *            Count of the most frequent word in the input file.
+     * @param minCount
+     *            Count of the least frequent word in the sorting machine
+     * @throws IOException
+     *             if the output file cannot be written.
+     */
+    public static void makeOutputFile(Map<String, Integer> wordsToCounts,
+            WritableByteChannel out, String fileName, int maxCount,
+            int minCount) throws IOException {
+        makeOutputFile(wordsToCounts, Collections.emptyMap(), out, fileName,
+                maxCount, minCount);
+    }
+
+    /**
+     * Print HTML of a word cloud whose counts may be approximate, showing the
+     * range of the true count of each word that has an error.
+     *
+     * @param wordsToCounts
+     *            Top frequency words mapped to their frequency
+     * @param wordsToErrors
+     *            Words mapped to the largest amount by which their count may
+     *            be above the true count; words left out are exact.
+     * @param out
+     *            Channel to the output text file.
+     * @param fileName
+     *            Name of the output file.
+     * @param maxCount
+     *            Count of the most frequent word in the input file.
+     * @param minCount
+     *            Count of the least frequent word in the sorting machine
+     * @throws IOException
+     *             if the output file cannot be written.
+     */
+    static void makeOutputFile(Map<String, Integer> wordsToCounts,
+            Map<String, Integer> wordsToErrors, WritableByteChannel out,
+            String fileName, int maxCount, int minCount) throws IOException {
+        HtmlCloudRenderer renderer = new HtmlCloudRenderer(out,
+                HtmlCloudRenderer.DEFAULT_BUFFER_SIZE);
+        renderer.begin(wordsToCounts.size(), fileName);
+
+        for (Map.Entry<String, Integer> entry : wordsToCounts.entrySet()) {
+            int count = entry.getValue();
+            int fSize = (FONT_MAX + FONT_MIN) / 2;
+            if (minCount != maxCount) {
+                fSize = (int) Math.ceil(FONT_MIN
+                        + FONT_MAX * (count - minCount) / (maxCount - minCount));
+            }
+            renderer.word(entry.getKey(), count,
+                    wordsToErrors.getOrDefault(entry.getKey(), 0), fSize);
+        }
+
+        renderer.end();
+    }
+
+    /**
+     * Make the word cloud of one input file.
+     *
+     * @param inFile
+     *            path of the input text file.
+     * @param outFile
+     *            path of the output HTML file.
+     * @param nWords
+     *            number of words in the cloud.
+     * @param parallelism
+     *            number of threads counting words.
+     * @throws IOException
+     *             if the input file cannot be read or the output file cannot
+     *             be written.
+     */
+    public static void makeCloud(Path inFile, Path outFile, int nWords,
+            int parallelism) throws IOException {
+        makeCloud(inFile, outFile, nWords, parallelism,
+                new PipelineMetrics(PipelineMetrics.total()));
+    }
+
+    /**
+     * Make the word cloud of one input file, recording the time and
+     * allocation of each stage.
+     *
+     * @param inFile
+     *            path of the input text file.
+     * @param outFile
+     *            path of the output HTML file.
+     * @param nWords
+     *            number of words in the cloud.
+     * @param parallelism
+     *            number of threads counting words.
+     * @param metrics
+     *            metrics of the stages.
+     * @throws IOException
+     *             if the input file cannot be read or the output file cannot
+     *             be written.
+     */
+    static void makeCloud(Path inFile, Path outFile, int nWords,
+            int parallelism, PipelineMetrics metrics) throws IOException {
+        makeCloud(inFile, outFile, nWords,
+                new ParallelWordCounter(TOKENIZER, parallelism), metrics);
+    }
+
+    /**
+     * Make the word cloud of one input file with a word counter, recording
+     * the time and allocation of each stage.
+     *
+     * @param inFile
+     *            path of the input text file.
+     * @param outFile
+     *            path of the output HTML file.
+     * @param nWords
+     *            number of words in the cloud.
+     * @param counter
+     *            counter of the words of the input file.
+     * @param metrics
+     *            metrics of the stages.
+     * @throws IOException
+     *             if the input file cannot be read or the output file cannot
+     *             be written.
+     */
+    static void makeCloud(Path inFile, Path outFile, int nWords,
+            ParallelWordCounter counter, PipelineMetrics metrics)
+            throws IOException {
+        long start = System.nanoTime();
+        long allocatedAtStart = allocatedByStages(metrics);
+
+        // get the counts of all unique words in the file
+        WordCountTable wordsToCounts = counter.count(inFile, metrics);
+        metrics.addCountNanos(System.nanoTime() - start);
+        writeTopWords(inFile, outFile, nWords, wordsToCounts, metrics, start,
+                allocatedAtStart);
+    }
+
+    /**
+     * Make the word cloud of one input file with exact counts, every thread
+     * of the counter counting into one {@code ConcurrentWordCounter} rather
+     * than into a table of its own, and record the time and allocation of
+     * each stage. Only one table is held, and there is nothing to merge.
+     *
+     * @param inFile
+     *            path of the input text file.
+     * @param outFile
+     *            path of the output HTML file.
+     * @param nWords
+     *            number of words in the cloud.
+     * @param counter
+     *            counter of the words of the input file.
+     * @param metrics
+     *            metrics of the stages.
+     * @throws IOException
+     *             if the input file cannot be read or the output file cannot
+     *             be written.
+     */
+    static void makeSharedCloud(Path inFile, Path outFile, int nWords,
+            ParallelWordCounter counter, PipelineMetrics metrics)
+            throws IOException {
+        long start = System.nanoTime();
+        long allocatedAtStart = allocatedByStages(metrics);
+
+        // every range gets the same counter, so merging is a no-op
+        ConcurrentWordCounter shared = new ConcurrentWordCounter();
+        counter.count(inFile, () -> shared, (counts1, counts2) -> counts1,
+                metrics);
+        metrics.addCountNanos(System.nanoTime() - start);
+        writeTopWords(inFile, outFile, nWords, shared, metrics, start,
+                allocatedAtStart);
+    }
+
+    /**
+     * Make the word cloud of one input file, counting exactly when the
+     * distinct words fit in some memory and with Count-Min sketches
+     * otherwise. The vocabulary is only estimated when the file is large
+     * enough for it to matter; the way of counting and the estimate are
+     * recorded in the metrics.
+     *
+     * @param inFile
+     *            path of the input text file.
+     * @param outFile
+     *            path of the output HTML file.
+     * @param nWords
+     *            number of words in the cloud.
+     * @param counter
+     *            counter of the words of the input file.
+     * @param tokenizer
+     *            tokenizer of the counter, used to estimate the vocabulary.
+     * @param parallelism
+     *            number of threads of the counter, each of which may hold a
+     *            table or sketch of its own.
+     * @param memory
+     *            bytes the counts may take.
+     * @param metrics
+     *            metrics of the stages.
+     * @throws IOException
+     *             if the input file cannot be read or the output file cannot
+     *             be written.
+     */
+    static void makeAutoCloud(Path inFile, Path outFile, int nWords,
+            ParallelWordCounter counter, WordTokenizer tokenizer,
+            int parallelism, long memory, PipelineMetrics metrics)
+            throws IOException {
+        // one table per thread and the one they are merged into
+        long tables = parallelism + 1L;
+        long mostWords = Files.size(inFile) / MIN_BYTES_PER_WORD;
+        if (mostWords * TABLE_BYTES_PER_WORD * tables <= memory) {
+            metrics.setCounting("exact", -1);
+            makeCloud(inFile, outFile, nWords, counter, metrics);
+            return;
+        }
+
+        /*
+         * the estimate happens before the cloud's own accounting starts, so
+         * it is added to the total here; its sketches are allocated outside
+         * of the scans and are charged to tokenizing with them
+         */
+        long start = System.nanoTime();
+        long allocatedAtStart = PipelineMetrics.allocatedBytes();
+        long allocatedByStagesAtStart = allocatedByStages(metrics);
+        long distinct = VocabularyEstimate.of(inFile, tokenizer, metrics)
+                .distinctWords();
+        long allocated = PipelineMetrics.allocatedBytes() - allocatedAtStart;
+        metrics.addAllocated(PipelineMetrics.Stage.TOKENIZE, allocated
+                - (allocatedByStages(metrics) - allocatedByStagesAtStart));
+        metrics.addNanos(PipelineMetrics.Stage.TOTAL,
+                System.nanoTime() - start);
+        metrics.addAllocated(PipelineMetrics.Stage.TOTAL, allocated);
+        if (distinct * TABLE_BYTES_PER_WORD * tables <= memory) {
+            metrics.setCounting("exact", distinct);
+            makeCloud(inFile, outFile, nWords, counter, metrics);
+        } else {
+            int width = (int) Math.max(1, Math.min(MAX_AUTO_SKETCH_WIDTH,
+                    memory / (Integer.BYTES * AUTO_SKETCH_DEPTH * tables)));
+            metrics.setCounting("sketch", distinct);
+            makeSketchCloud(inFile, outFile, nWords, counter, width,
+                    AUTO_SKETCH_DEPTH, metrics);
+        }
+    }
+
+    /**
+     * Make the word cloud of one input file with counts estimated by a
+     * Count-Min sketch, in a fixed amount of memory however large the file
+     * is, and record the time and allocation of each stage. Each range of
+     * the file is counted into its own sketch and the sketches are merged.
+     *
+     * @param inFile
+     *            path of the input text file.
+     * @param outFile
+     *            path of the output HTML file.
+     * @param nWords
+     *            number of words in the cloud.
+     * @param counter
+     *            counter of the words of the input file.
+     * @param width
+     *            number of counters per row of the sketch.
+     * @param depth
+     *            number of rows of the sketch.
+     * @param metrics
+     *            metrics of the stages.
+     * @throws IOException
+     *             if the input file cannot be read or the output file cannot
+     *             be written.
+     */
+    static void makeSketchCloud(Path inFile, Path outFile, int nWords,
+            ParallelWordCounter counter, int width, int depth,
+            PipelineMetrics metrics) throws IOException {
+        long start = System.nanoTime();
+        long allocatedAtStart = allocatedByStages(metrics);
+
+        // a few spare candidates keep words near the cut from being lost
+        int candidates = Math.max(1, SKETCH_CANDIDATES_PER_WORD * nWords);
+        CountMinSketch sketch = counter.count(inFile,
+                () -> new CountMinSketch(width, depth, candidates),
+                (sketch1, sketch2) -> {
+                    sketch1.addAll(sketch2);
+                    return sketch1;
+                }, metrics);
+        metrics.addCountNanos(System.nanoTime() - start);
+
+        // the sketch only knows its candidates, not every distinct word
+        metrics.setCandidates(sketch.size());
+        writeTopWords(inFile, outFile, nWords, sketch,
+                metrics.estimatedDistinctWords(), metrics, start,
+                allocatedAtStart);
+    }
+
+    /**
+     * Make the word cloud of one input file with exact counts in a bounded
+     * amount of memory, spilling the counts to disk whenever they would take
+     * more, and record the time and allocation of each stage. The file is
+     * counted in a single pass, and nothing is written to disk if its words
+     * fit in memory.
+     *
+     * @param inFile
+     *            path of the input text file.
+     * @param outFile
+     *            path of the output HTML file.
+     * @param nWords
+     *            number of words in the cloud.
+     * @param tokenizer
+     *            tokenizer splitting the text into words.
+     * @param stages
+     *            wraps the counter into the stages the words go through
+     *            before being counted, or null for none.
+     * @param spillDirectory
+     *            directory the counts are spilled to.
+     * @param memory
+     *            bytes the counts may take.
+     * @param metrics
+     *            metrics of the stages.
+     * @throws IOException
+     *             if the input file cannot be read, or the spill files or the
+     *             output file cannot be written.
+     */
+    static void makeSpillCloud(Path inFile, Path outFile, int nWords,
+            WordTokenizer tokenizer, UnaryOperator<WordSink> stages,
+            Path spillDirectory, long memory, PipelineMetrics metrics)
+            throws IOException {
+        long start = System.nanoTime();
+        long allocatedAtStart = allocatedByStages(metrics);
+
+        try (SpillingWordCounter counter = new SpillingWordCounter(
+                spillDirectory, memory);
+                FileChannel channel = FileChannel.open(inFile,
+                        StandardOpenOption.READ)) {
+            try {
+                if (stages == null && !tokenizer.hasTokenClasses()) {
+                    Utf8WordScanner.scan(channel, 0, channel.size(),
+                            tokenizer, counter,
+                            Utf8WordScanner.DEFAULT_BUFFER_SIZE, metrics);
+                } else {
+                    MappedWordScanner.scan(channel, 0, channel.size(),
+                            tokenizer,
+                            stages == null ? counter : stages.apply(counter),
+                            MappedWordScanner.DEFAULT_WINDOW_SIZE, metrics);
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            // merging the spilled runs is part of counting, not selecting
+            WordCounts top = counter.top(nWords);
+            metrics.addCountNanos(System.nanoTime() - start);
+            writeTopWords(inFile, outFile, nWords, top,
+                    counter.distinctWords(), metrics, start,
+                    allocatedAtStart);
+        }
+    }
+
+    /**
+     * Make the cloud of the phrases of a few consecutive words of one input
+     * file, recording the time and allocation of each stage. Phrases are
+     * counted in a single pass since they cross the boundaries a parallel
+     * count would split the file at.
+     *
+     * @param inFile
+     *            path of the input text file.
+     * @param outFile
+     *            path of the output HTML file.
+     * @param nPhrases
+     *            number of phrases in the cloud.
+     * @param tokenizer
+     *            tokenizer splitting the text into words.
+     * @param stages
+     *            wraps the phrase counter into the stages the words go
+     *            through before being counted.
+     * @param phraseLength
+     *            number of words per phrase.
+     * @param minPmi
+     *            phrases whose pointwise mutual information is lower are left
+     *            out; negative infinity keeps every phrase.
+     * @param metrics
+     *            metrics of the stages.
+     * @throws IOException
+     *             if the input file cannot be read or the output file cannot
+     *             be written.
+     */
+    static void makePhraseCloud(Path inFile, Path outFile, int nPhrases,
+            WordTokenizer tokenizer, UnaryOperator<WordSink> stages,
+            int phraseLength, double minPmi, PipelineMetrics metrics)
+            throws IOException {
+        long start = System.nanoTime();
+        long allocatedAtStart = allocatedByStages(metrics);
+
+        // count the phrases without building them
+        NGramCounter phrases = new NGramCounter(phraseLength);
+        try (FileChannel channel = FileChannel.open(inFile,
+                StandardOpenOption.READ)) {
+            MappedWordScanner.scan(channel, 0, channel.size(), tokenizer,
+                    stages.apply(phrases),
+                    MappedWordScanner.DEFAULT_WINDOW_SIZE, metrics);
+        }
+        metrics.addCountNanos(System.nanoTime() - start);
+        metrics.addFile(Files.size(inFile), phrases.wordTotal(),
+                phrases.size());
+        metrics.setMaxUndercount(phrases.maxUndercount());
+
+        // keep the top phrases, and only spell those out
+        long selectStart = System.nanoTime();
+        long allocatedBefore = PipelineMetrics.allocatedBytes();
+        TopIdSelector selector = new TopIdSelector(phrases.byCountThenPhrase(),
+                nPhrases);
+        for (int id = 0; id < phrases.size(); id++) {
+            if (minPmi == Double.NEGATIVE_INFINITY
+                    || phrases.pmi(id) >= minPmi) {
+                selector.offer(id);
+            }
+        }
+        int[] top = selector.toSortedArray();
+
+        /*
+         * once phrases were dropped a count may be too low, so the cloud
+         * shows the highest possible count and the range down to the counted
+         * one; adding the same amount to every count keeps the font sizes
+         */
+        int undercount = phrases.maxUndercount();
+        Map<String, Integer> phrasesToCountsSorted = new TreeMap<>();
+        Map<String, Integer> phrasesToErrors = new TreeMap<>();
+        for (int id : top) {
+            String phrase = phrases.phrase(id);
+            phrasesToCountsSorted.put(phrase, phrases.count(id) + undercount);
+            if (undercount > 0) {
+                phrasesToErrors.put(phrase, undercount);
+            }
+        }
+        int maxCount = 0;
+        int minCount = 0;
+        if (top.length > 0) {
+            maxCount = phrases.count(top[0]) + undercount;
+            minCount = phrases.count(top[top.length - 1]) + undercount;
+        }
+        long renderStart = System.nanoTime();
+        long allocatedAfterSelect = PipelineMetrics.allocatedBytes();
+        metrics.addNanos(PipelineMetrics.Stage.SELECT,
+                renderStart - selectStart);
+        metrics.addAllocated(PipelineMetrics.Stage.SELECT,
+                allocatedAfterSelect - allocatedBefore);
+
+        writeCloud(inFile, outFile, phrasesToCountsSorted, phrasesToErrors,
+                maxCount, minCount);
+        long end = System.nanoTime();
+        metrics.addNanos(PipelineMetrics.Stage.RENDER, end - renderStart);
+        metrics.addAllocated(PipelineMetrics.Stage.RENDER,
+                PipelineMetrics.allocatedBytes() - allocatedAfterSelect);
+        metrics.addNanos(PipelineMetrics.Stage.TOTAL, end - start);
+        metrics.addAllocated(PipelineMetrics.Stage.TOTAL,
+                allocatedByStages(metrics) - allocatedAtStart);
+    }
+
+    /**
+     * Make the word cloud of one input file with approximate counts, in a
+     * fixed amount of memory however many distinct words the file has, and
+     * record the time and allocation of each stage. Words are counted in a
+     * single pass by a {@code SpaceSavingCounter}, and the cloud shows the
+     * range of the true count of each word whose count may be too high.
+     *
+     * @param inFile
+     *            path of the input text file.
+     * @param outFile
+     *            path of the output HTML file.
+     * @param nWords
+     *            number of words in the cloud.
+     * @param tokenizer
+     *            tokenizer splitting the text into words.
+     * @param stages
+     *            wraps the counter into the stages the words go through
+     *            before being counted, or null to count the words straight
+     *            from the bytes of the file.
+     * @param capacity
+     *            number of counters, at least {@code nWords}.
+     * @param metrics
+     *            metrics of the stages.
+     * @throws IOException
+     *             if the input file cannot be read or the output file cannot
+     *             be written.
+     */
+    static void makeApproximateCloud(Path inFile, Path outFile, int nWords,
+            WordTokenizer tokenizer, UnaryOperator<WordSink> stages,
+            int capacity, PipelineMetrics metrics) throws IOException {
+        long start = System.nanoTime();
+        long allocatedAtStart = allocatedByStages(metrics);
+
+        // count the words in a fixed number of counters
+        SpaceSavingCounter counter = new SpaceSavingCounter(capacity);
+        try (FileChannel channel = FileChannel.open(inFile,
+                StandardOpenOption.READ)) {
+            if (stages == null && !tokenizer.hasTokenClasses()) {
+                Utf8WordScanner.scan(channel, 0, channel.size(), tokenizer,
+                        counter, Utf8WordScanner.DEFAULT_BUFFER_SIZE,
+                        metrics);
+            } else {
+                MappedWordScanner.scan(channel, 0, channel.size(), tokenizer,
+                        stages == null ? counter : stages.apply(counter),
+                        MappedWordScanner.DEFAULT_WINDOW_SIZE, metrics);
+            }
+        }
+        metrics.addCountNanos(System.nanoTime() - start);
+
+        // only counters that never had to be reused hold every distinct word
+        metrics.setCandidates(counter.size());
+        long distinct = -1;
+        if (counter.size() < capacity) {
+            distinct = counter.size();
+        }
+        writeTopWords(inFile, outFile, nWords, counter, distinct, metrics,
+                start, allocatedAtStart);
+    }
+
+    /**
+     * Select the top words of some counts and write their cloud, recording
+     * the time and allocation of selecting, rendering and the whole cloud.
+     * Words whose count may be too high show the range of their true count.
+     *
+     * @param inFile
+     *            path of the input text file.
+     * @param outFile
+     *            path of the output HTML file.
+     * @param nWords
+     *            number of words in the cloud.
+     * @param counts
+     *            counts of the words of the input file.
+     * @param metrics
+     *            metrics of the stages.
+     * @param start
+     *            time the cloud was started at, from {@code nanoTime}.
+     * @param allocatedAtStart
+     *            bytes allocated by the stages when the cloud was started.
+     * @throws IOException
+     *             if the output file cannot be written.
+     */
+    private static void writeTopWords(Path inFile, Path outFile, int nWords,
+            WordCounts counts, PipelineMetrics metrics, long start,
+            long allocatedAtStart) throws IOException {
+        writeTopWords(inFile, outFile, nWords, counts, counts.size(), metrics,
+                start, allocatedAtStart);
+    }
+
+    /**
+     * Select the top words of some counts that may hold fewer words than the
+     * file has and write their cloud, recording the time and allocation of
+     * selecting, rendering and the whole cloud.
+     *
+     * @param inFile
+     *            path of the input text file.
+     * @param outFile
+     *            path of the output HTML file.
+     * @param nWords
+     *            number of words in the cloud.
+     * @param counts
+     *            counts of the words of the input file.
+     * @param distinctWords
+     *            number of distinct words of the input file.
+     * @param metrics
+     *            metrics of the stages.
+     * @param start
+     *            time the cloud was started at, from {@code nanoTime}.
+     * @param allocatedAtStart
+     *            bytes allocated by the stages when the cloud was started.
+     * @throws IOException
+     *             if the output file cannot be written.
+     */
+    private static void writeTopWords(Path inFile, Path outFile, int nWords,
+            WordCounts counts, long distinctWords, PipelineMetrics metrics,
+            long start, long allocatedAtStart) throws IOException {
+        metrics.addFile(Files.size(inFile), counts.total(), distinctWords);
+
+        // get top n words based on their counts and sort alphabetically
+        long selectStart = System.nanoTime();
+        long allocatedBefore = PipelineMetrics.allocatedBytes();
+        int[] top = topIds(counts, nWords);
+        Map<String, Integer> wordsToCountsSorted = new TreeMap<>();
+        Map<String, Integer> wordsToErrors = new TreeMap<>();
+        for (int id : top) {
+            String word = counts.key(id);
+            wordsToCountsSorted.put(word, counts.count(id));
+            if (counts.error(id) > 0) {
+                wordsToErrors.put(word, counts.error(id));
+            }
+        }
+
+        // hold the minimum and maximum word count for later use
+        int maxCount = 0;
+        int minCount = 0;
+        if (top.length > 0) {
+            maxCount = counts.count(top[0]);
+            minCount = counts.count(top[top.length - 1]);
+        }
+        long renderStart = System.nanoTime();
+        long allocatedAfterSelect = PipelineMetrics.allocatedBytes();
+        metrics.addNanos(PipelineMetrics.Stage.SELECT,
+                renderStart - selectStart);
+        metrics.addAllocated(PipelineMetrics.Stage.SELECT,
+                allocatedAfterSelect - allocatedBefore);
+
+        // print HTML text to output file
+        writeCloud(inFile, outFile, wordsToCountsSorted, wordsToErrors,
+                maxCount, minCount);
+        long end = System.nanoTime();
+        metrics.addNanos(PipelineMetrics.Stage.RENDER, end - renderStart);
+        metrics.addAllocated(PipelineMetrics.Stage.RENDER,
+                PipelineMetrics.allocatedBytes() - allocatedAfterSelect);
+        metrics.addNanos(PipelineMetrics.Stage.TOTAL, end - start);
+        metrics.addAllocated(PipelineMetrics.Stage.TOTAL,
+                allocatedByStages(metrics) - allocatedAtStart);
+    }
+
+    /**
+     * Write the HTML of a cloud to a file.
+     *
+     * @param inFile
+     *            path of the input text file, named in the cloud.
+     * @param outFile
+     *            path of the output HTML file.
+     * @param wordsToCountsSorted
+     *            words of the cloud in alphabetical order, with their count.
+     * @param wordsToErrors
+     *            words of the cloud whose count may be too high, with the
+     *            largest amount it may be too high by.
+     * @param maxCount
+     *            highest count of the words.
+     * @param minCount
+     *            lowest count of the words.
+     * @throws IOException
+     *             if the output file cannot be written.
+     */
+    private static void writeCloud(Path inFile, Path outFile,
+            Map<String, Integer> wordsToCountsSorted,
+            Map<String, Integer> wordsToErrors, int maxCount, int minCount)
+            throws IOException {
+        try (FileChannel fileWriter = FileChannel.open(outFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            makeOutputFile(wordsToCountsSorted, wordsToErrors, fileWriter,
+                    inFile.toString(), maxCount, minCount);
+        }
+    }
+
+    /**
+     * Return the bytes allocated by the stages of the pipeline so far.
+     *
+     * @param metrics
+     *            metrics of the stages.
+     * @return number of bytes allocated.
+     */
+    private static long allocatedByStages(PipelineMetrics metrics) {
+        return metrics.getCountAllocatedBytes()
+                + metrics.getSelectAllocatedBytes()
+                + metrics.getRenderAllocatedBytes();
+    }
+
+    /**
+     * Make the clouds of every input given on the command line, each input
+     * file on its own thread. Large files are only worth counting on several
+     * threads when there is a single one.
+     *
+     * @param options
+     *            the command line settings.
+     */
+    private static void makeClouds(BatchOptions options) {
+        List<Path> inFiles;
+        UnaryOperator<WordSink> stages;
+        try {
+            inFiles = options.inputFiles();
+            Files.createDirectories(options.outputDirectory());
+            for (Path inFile : inFiles) {
+                // clouds of files matched by a glob keep their directories
+                Path outDirectory = options.outputFile(inFile).getParent();
+                if (outDirectory != null) {
+                    Files.createDirectories(outDirectory);
+                }
+            }
+            if (options.spillDirectory() != null) {
+                Files.createDirectories(options.spillDirectory());
+            }
+        } catch (IOException e) {
+            System.err.println("Error finding the input files " + e);
+            return;
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+        try {
+            stages = options.stages();
+        } catch (IOException e) {
+            System.err.println("Error reading the stop words " + e);
+            return;
+        }
+
+        // the tokenizer and counter are read-only, so every input shares them
+        int parallelism = inFiles.size() == 1 ? options.threads() : 1;
+        WordTokenizer tokenizer = new WordTokenizer(options.separators(), true,
+                options.unicode()).withTokenClasses(options.tokenClasses());
+        ParallelWordCounter counter;
+        if (options.hasStages()) {
+            counter = new ParallelWordCounter(tokenizer, parallelism, stages);
+        } else {
+            // without stages the words are counted from the undecoded bytes
+            counter = new ParallelWordCounter(tokenizer, parallelism);
+        }
+        int concurrentFiles = Math.max(1,
+                Math.min(options.threads(), inFiles.size()));
+        long memoryPerFile = options.memory() / concurrentFiles;
+        ExecutorService pool = Executors.newFixedThreadPool(concurrentFiles);
+        List<Future<?>> clouds = new ArrayList<>();
+        for (Path inFile : inFiles) {
+            clouds.add(pool.submit(() -> {
+                PipelineMetrics metrics = new PipelineMetrics(
+                        PipelineMetrics.total());
+                Path outFile = options.outputFile(inFile);
+                if (options.phraseLength() > 1) {
+                    makePhraseCloud(inFile, outFile, options.nWords(),
+                            tokenizer, stages, options.phraseLength(),
+                            options.minPmi(), metrics);
+                } else if (options.sketchWidth() > 0) {
+                    metrics.setCounting("sketch", -1);
+                    makeSketchCloud(inFile, outFile, options.nWords(),
+                            counter, options.sketchWidth(),
+                            options.sketchDepth(), metrics);
+                } else if (options.errorRate() > 0) {
+                    metrics.setCounting("space-saving", -1);
+                    makeApproximateCloud(inFile, outFile, options.nWords(),
+                            tokenizer, options.hasStages() ? stages : null,
+                            SpaceSavingCounter.capacity(options.nWords(),
+                                    options.errorRate()),
+                            metrics);
+                } else if (options.spillDirectory() != null) {
+                    metrics.setCounting("spill", -1);
+                    makeSpillCloud(inFile, outFile, options.nWords(),
+                            tokenizer, options.hasStages() ? stages : null,
+                            options.spillDirectory(), memoryPerFile, metrics);
+                } else if (options.shared()) {
+                    metrics.setCounting("shared", -1);
+                    makeSharedCloud(inFile, outFile, options.nWords(),
+                            counter, metrics);
+                } else if (options.exact()) {
+                    metrics.setCounting("exact", -1);
+                    makeCloud(inFile, outFile, options.nWords(), counter,
+                            metrics);
+                } else {
+                    makeAutoCloud(inFile, outFile, options.nWords(), counter,
+                            tokenizer, parallelism, memoryPerFile, metrics);
+                }
+                if (options.writeMetrics()) {
+                    metrics.writeJson(inFile,
+                            options.metricsFile(outFile));
+                }
+                return null;
+            }));
+        }
+
+        // report the files that failed
+        int failures = 0;
+        for (int i = 0; i < clouds.size(); i++) {
+            try {
+                clouds.get(i).get();
+            } catch (ExecutionException e) {
+                System.err.println("Error making the cloud of "
+                        + inFiles.get(i) + " " + e.getCause());
+                failures++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        pool.shutdown();
+        System.out.println("Made " + (inFiles.size() - failures) + " of "
+                + inFiles.size() + " clouds in " + options.outputDirectory()
+                        .toAbsolutePath().normalize());
+    }
+
+    /**
+     * Main method. Without arguments, the input file, output file and number
+     * of words are asked for; otherwise the arguments describe a batch run,
+     * see {@code BatchOptions.USAGE}.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        if (args.length > 0) {
+            BatchOptions options;
+            try {
+                options = BatchOptions.parse(args);
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                System.err.println(BatchOptions.USAGE);
+                return;
+            }
+            makeClouds(options);
+            return;
+        }
+
+        // acess input file
+        BufferedReader in = new BufferedReader(
+                new InputStreamReader(System.in));
+        System.out.println("Enter an input file name: ");
+        String inFileName = "";
+        String outFileName = "";
+        int nWords = 0;
+        try {
+            inFileName = in.readLine();
+
+            // get output file name
+            System.out.println("Enter an output file name: ");
+            outFileName = in.readLine();
+
+            // get positive number of words to show in the cloud
+            System.out.println(
+                    "Enter the amount of words to be in the cloud: ");
+            nWords = Integer.parseInt(in.readLine());
+            in.close();
+        } catch (IOException e) {
+            System.err.println("Error reading system input " + e);
+            return;
+        }
+
+        try {
+            makeCloud(Paths.get(inFileName), Paths.get(outFileName), nWords,
+                    Runtime.getRuntime().availableProcessors());
+        } catch (IOException e) {
+            System.out.println("Error making the cloud " + e);
+        }
+    }
+}
@@ -0,0 +1,481 @@
+package tagcloud;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Recognizes tokens that the separators would shred, numbers, URLs, e-mail
+ * addresses, hashtags and mentions, and says what to do with each class of
+ * them: keep the token whole, count it under a bucket word standing for the
+ * whole class, drop it, or split it into words as usual. A token is
+ * recognized with one pass of a small state machine that follows the number,
+ * e-mail and URL syntaxes side by side, so recognizing costs about as much as
+ * tokenizing. Policies are immutable and may be shared by any number of
+ * threads.
+ *
+ * <p>
+ * Policies are described by a specification such as
+ * {@code "url,email=drop,number=bucket"}: a comma-separated list of classes,
+ * {@code number}, {@code url}, {@code email}, {@code hashtag},
+ * {@code mention} or {@code all}, each optionally followed by {@code =} and
+ * an action, {@code keep} (the default), {@code bucket}, {@code drop} or
+ * {@code split}. Classes that are not listed are split.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class TokenClasses {
+
+    /**
+     * Class of a token.
+     */
+    public enum Kind {
+
+        /**
+         * Digits, possibly grouped or with decimals: {@code 1,000.5}.
+         */
+        NUMBER("[number]"),
+
+        /**
+         * Web address starting with a scheme or {@code www.}.
+         */
+        URL("[url]"),
+
+        /**
+         * E-mail address.
+         */
+        EMAIL("[email]"),
+
+        /**
+         * {@code #} followed by a word that is not only digits.
+         */
+        HASHTAG("[hashtag]"),
+
+        /**
+         * {@code @} followed by a user name.
+         */
+        MENTION("[mention]");
+
+        /**
+         * Word counted for every token of the class when it is bucketed.
+         */
+        private final char[] bucket;
+
+        /**
+         * Constructor.
+         *
+         * @param bucket
+         *            word counted for every token of the class when it is
+         *            bucketed; brackets are separators, so it is never a word
+         *            of the text.
+         */
+        Kind(String bucket) {
+            this.bucket = bucket.toCharArray();
+        }
+    }
+
+    /**
+     * What to do with the tokens of a class.
+     */
+    public enum Action {
+
+        /**
+         * Split the token into words with the separators.
+         */
+        SPLIT,
+
+        /**
+         * Count the token as one word.
+         */
+        KEEP,
+
+        /**
+         * Count the bucket word of the class instead of the token.
+         */
+        BUCKET,
+
+        /**
+         * Do not count the token.
+         */
+        DROP
+    }
+
+    /**
+     * Number state: in a run of digits.
+     */
+    private static final int NUMBER_DIGITS = 0;
+
+    /**
+     * Number state: after a group or decimal separator.
+     */
+    private static final int NUMBER_SEPARATOR = 1;
+
+    /**
+     * E-mail state: in the local part.
+     */
+    private static final int EMAIL_LOCAL = 0;
+
+    /**
+     * E-mail state: just after the {@code @}.
+     */
+    private static final int EMAIL_AT = 1;
+
+    /**
+     * E-mail state: in a label of the domain.
+     */
+    private static final int EMAIL_LABEL = 2;
+
+    /**
+     * E-mail state: just after a dot of the domain.
+     */
+    private static final int EMAIL_DOT = 3;
+
+    /**
+     * State of a syntax that cannot match any more.
+     */
+    private static final int DEAD = -1;
+
+    /**
+     * Shortest top-level domain of an e-mail address.
+     */
+    private static final int MIN_TOP_LEVEL_LENGTH = 2;
+
+    /**
+     * Starts of a URL, in lower case.
+     */
+    private static final String[] URL_PREFIXES = { "http://", "https://",
+            "ftp://", "www." };
+
+    /**
+     * Number of characters that are ASCII.
+     */
+    private static final int ASCII_LIMIT = 128;
+
+    /**
+     * Punctuation allowed in a URL besides letters and digits, one bit per
+     * ASCII character.
+     */
+    private static final long[] URL_PUNCTUATION = asciiMask(
+            "-._~:/?#[]@!$&'()*+,;=%");
+
+    /**
+     * Punctuation allowed in the local part of an e-mail address besides
+     * letters and digits, one bit per ASCII character.
+     */
+    private static final long[] EMAIL_PUNCTUATION = asciiMask("._%+-");
+
+    /**
+     * Action of each class.
+     */
+    private final Map<Kind, Action> actions;
+
+    /**
+     * Constructor.
+     *
+     * @param actions
+     *            action of each class, owned by the new policy.
+     */
+    private TokenClasses(Map<Kind, Action> actions) {
+        this.actions = actions;
+    }
+
+    /**
+     * Return the policy described by a specification.
+     *
+     * @param specification
+     *            classes and actions, as described above.
+     * @return the policy.
+     * @throws IllegalArgumentException
+     *             if a class or an action is not known.
+     */
+    public static TokenClasses parse(String specification) {
+        Map<Kind, Action> actions = new EnumMap<>(Kind.class);
+        for (Kind kind : Kind.values()) {
+            actions.put(kind, Action.SPLIT);
+        }
+        for (String item : specification.split(",")) {
+            String name = item.trim().toLowerCase(Locale.ROOT);
+            if (name.isEmpty()) {
+                continue;
+            }
+            Action action = Action.KEEP;
+            int equals = name.indexOf('=');
+            if (equals >= 0) {
+                action = parseAction(name.substring(equals + 1).trim());
+                name = name.substring(0, equals).trim();
+            }
+            if (name.equals("all")) {
+                for (Kind kind : Kind.values()) {
+                    actions.put(kind, action);
+                }
+            } else {
+                actions.put(parseKind(name), action);
+            }
+        }
+        return new TokenClasses(actions);
+    }
+
+    /**
+     * Return what to do with the tokens of a class.
+     *
+     * @param kind
+     *            the class.
+     * @return the action.
+     */
+    public Action action(Kind kind) {
+        return this.actions.get(kind);
+    }
+
+    /**
+     * Return the word counted for the tokens of a class that are bucketed.
+     *
+     * @param kind
+     *            the class.
+     * @return the bucket word, which must not be modified.
+     */
+    char[] bucket(Kind kind) {
+        return kind.bucket;
+    }
+
+    /**
+     * Recognize the class of a token given as a span of a buffer. URLs are
+     * preferred to e-mail addresses and e-mail addresses to numbers.
+     *
+     * @param chars
+     *            buffer holding the token.
+     * @param start
+     *            index of the first character of the token.
+     * @param end
+     *            index one past the last character of the token.
+     * @return the class of the token, or null if it has none.
+     */
+    public Kind recognize(char[] chars, int start, int end) {
+        if (start == end) {
+            return null;
+        }
+        char first = chars[start];
+        if (first == '#' || first == '@') {
+            return recognizeTag(chars, start, end);
+        }
+
+        // follow the three syntaxes at once and stop when all are dead
+        int prefix = urlPrefixLength(chars, start, end);
+        boolean url = prefix > 0 && end - start > prefix;
+        int number = NUMBER_DIGITS;
+        int email = EMAIL_LOCAL;
+        int domainDots = 0;
+        int labelLetters = 0;
+        boolean labelAlphabetic = true;
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            boolean letter = isLetter(c);
+            boolean digit = c >= '0' && c <= '9';
+            if (url && !letter && !digit && !inMask(URL_PUNCTUATION, c)) {
+                url = false;
+            }
+
+            if (number == NUMBER_DIGITS) {
+                if (!digit) {
+                    number = (c == '.' || c == ',') && i > start
+                            ? NUMBER_SEPARATOR
+                            : DEAD;
+                }
+            } else if (number == NUMBER_SEPARATOR) {
+                number = digit ? NUMBER_DIGITS : DEAD;
+            }
+
+            switch (email) {
+                case EMAIL_LOCAL:
+                    if (c == '@' && i > start) {
+                        email = EMAIL_AT;
+                    } else if (!letter && !digit
+                            && !inMask(EMAIL_PUNCTUATION, c)) {
+                        email = DEAD;
+                    }
+                    break;
+                case EMAIL_AT:
+                case EMAIL_DOT:
+                    if (letter || digit) {
+                        email = EMAIL_LABEL;
+                        labelLetters = letter ? 1 : 0;
+                        labelAlphabetic = letter;
+                    } else {
+                        email = DEAD;
+                    }
+                    break;
+                case EMAIL_LABEL:
+                    if (c == '.') {
+                        email = EMAIL_DOT;
+                        domainDots++;
+                    } else if (letter) {
+                        labelLetters++;
+                    } else if (digit || c == '-') {
+                        labelAlphabetic = false;
+                    } else {
+                        email = DEAD;
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            if (!url && number == DEAD && email == DEAD) {
+                return null;
+            }
+        }
+
+        if (url) {
+            return Kind.URL;
+        }
+        if (email == EMAIL_LABEL && domainDots > 0 && labelAlphabetic
+                && labelLetters >= MIN_TOP_LEVEL_LENGTH) {
+            return Kind.EMAIL;
+        }
+        if (number == NUMBER_DIGITS) {
+            return Kind.NUMBER;
+        }
+        return null;
+    }
+
+    /**
+     * Recognize a hashtag or a mention.
+     *
+     * @param chars
+     *            buffer holding the token.
+     * @param start
+     *            index of the {@code #} or {@code @} starting the token.
+     * @param end
+     *            index one past the last character of the token.
+     * @return {@code HASHTAG}, {@code MENTION} or null.
+     */
+    private static Kind recognizeTag(char[] chars, int start, int end) {
+        if (end - start < 2) {
+            return null;
+        }
+        boolean onlyDigits = true;
+        for (int i = start + 1; i < end; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                continue;
+            }
+            if (!isLetter(c) && c != '_') {
+                return null;
+            }
+            onlyDigits = false;
+        }
+        if (chars[start] == '@') {
+            return Kind.MENTION;
+        }
+        return onlyDigits ? null : Kind.HASHTAG;
+    }
+
+    /**
+     * Return the length of the URL prefix a token starts with, ignoring case.
+     *
+     * @param chars
+     *            buffer holding the token.
+     * @param start
+     *            index of the first character of the token.
+     * @param end
+     *            index one past the last character of the token.
+     * @return length of the prefix, or 0 if there is none.
+     */
+    private static int urlPrefixLength(char[] chars, int start, int end) {
+        for (String prefix : URL_PREFIXES) {
+            if (end - start < prefix.length()) {
+                continue;
+            }
+            int i = 0;
+            while (i < prefix.length() && WordCountTable
+                    .toLowerCase(chars[start + i]) == prefix.charAt(i)) {
+                i++;
+            }
+            if (i == prefix.length()) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Report whether a character is a letter, without a table lookup for
+     * ASCII.
+     *
+     * @param c
+     *            the character.
+     * @return true if {@code c} is a letter.
+     */
+    private static boolean isLetter(char c) {
+        if (c <= 'z') {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+        return Character.isLetter(c);
+    }
+
+    /**
+     * Return the mask of some ASCII characters.
+     *
+     * @param characters
+     *            the characters.
+     * @return mask with bit {@code c % 64} of word {@code c / 64} set for
+     *         each character {@code c}.
+     */
+    private static long[] asciiMask(String characters) {
+        long[] mask = new long[ASCII_LIMIT / Long.SIZE];
+        for (int i = 0; i < characters.length(); i++) {
+            char c = characters.charAt(i);
+            mask[c / Long.SIZE] |= 1L << c;
+        }
+        return mask;
+    }
+
+    /**
+     * Report whether a character is in a mask of ASCII characters.
+     *
+     * @param mask
+     *            the mask.
+     * @param c
+     *            the character.
+     * @return true if {@code c} is in the mask.
+     */
+    private static boolean inMask(long[] mask, char c) {
+        return c < ASCII_LIMIT && (mask[c / Long.SIZE] & (1L << c)) != 0;
+    }
+
+    /**
+     * Parse the name of a class.
+     *
+     * @param name
+     *            the name, in lower case.
+     * @return the class.
+     * @throws IllegalArgumentException
+     *             if the class is not known.
+     */
+    private static Kind parseKind(String name) {
+        for (Kind kind : Kind.values()) {
+            if (kind.name().toLowerCase(Locale.ROOT).equals(name)) {
+                return kind;
+            }
+        }
+        throw new IllegalArgumentException("unknown token class " + name);
+    }
+
+    /**
+     * Parse the name of an action.
+     *
+     * @param name
+     *            the name, in lower case.
+     * @return the action.
+     * @throws IllegalArgumentException
+     *             if the action is not known.
+     */
+    private static Action parseAction(String name) {
+        for (Action action : Action.values()) {
+            if (action.name().toLowerCase(Locale.ROOT).equals(name)) {
+                return action;
+            }
+        }
+        throw new IllegalArgumentException("unknown token action " + name);
+    }
+}
@@ -0,0 +1,177 @@
+package tagcloud;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the first {@code n} of a stream of dense {@code int} ids, such as the
+ * numbers of the words of a {@code WordCountTable}, in the order of a
+ * comparison of ids. It works like {@code TopNSelector}, but the heap is an
+ * {@code int[]} and the ids are compared through the arrays of their owner,
+ * so selecting among {@code u} distinct words creates no object per word and
+ * only the ids that are kept are ever turned into {@code String}s.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class TopIdSelector {
+
+    /**
+     * Order of ids.
+     */
+    @FunctionalInterface
+    public interface Order {
+
+        /**
+         * Compare two ids.
+         *
+         * @param id1
+         *            the first id.
+         * @param id2
+         *            the second id.
+         * @return negative, zero or positive as the first id comes before,
+         *         with or after the second.
+         */
+        int compare(int id1, int id2);
+    }
+
+    /**
+     * Initial length of the heap array when {@code n} is large.
+     */
+    private static final int INITIAL_LENGTH = 64;
+
+    /**
+     * Order of the ids, the first ids are kept.
+     */
+    private final Order order;
+
+    /**
+     * Largest number of ids kept.
+     */
+    private final int n;
+
+    /**
+     * Heap of the ids kept, the root is the last one in order.
+     */
+    private int[] heap;
+
+    /**
+     * Number of ids kept.
+     */
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param order
+     *            order of the ids, the first ids are kept.
+     * @param n
+     *            largest number of ids kept, a negative number keeps none.
+     */
+    public TopIdSelector(Order order, int n) {
+        this.order = order;
+        this.n = Math.max(n, 0);
+        this.heap = new int[Math.min(this.n, INITIAL_LENGTH)];
+    }
+
+    /**
+     * Return the number of ids kept.
+     *
+     * @return number of ids kept.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Offer an id, keeping it if it is among the first {@code n} seen so far.
+     *
+     * @param id
+     *            id offered.
+     */
+    public void offer(int id) {
+        if (this.size < this.n) {
+            if (this.size == this.heap.length) {
+                this.heap = Arrays.copyOf(this.heap,
+                        (int) Math.min(this.n, 2L * this.heap.length));
+            }
+            this.heap[this.size] = id;
+            this.siftUp(this.size);
+            this.size++;
+        } else if (this.n > 0 && this.order.compare(id, this.heap[0]) < 0) {
+            // id comes before the last id kept, so it replaces it
+            this.heap[0] = id;
+            siftDown(this.heap, this.size, 0, this.order);
+        }
+    }
+
+    /**
+     * Return the ids kept, in order.
+     *
+     * @return array of the ids kept, first id first.
+     */
+    public int[] toSortedArray() {
+        // heap sort a copy: moving the root to the end sorts it in order
+        int[] sorted = Arrays.copyOf(this.heap, this.size);
+        for (int end = this.size - 1; end > 0; end--) {
+            int last = sorted[0];
+            sorted[0] = sorted[end];
+            sorted[end] = last;
+            siftDown(sorted, end, 0, this.order);
+        }
+        return sorted;
+    }
+
+    /**
+     * Move an id up until its parent does not come before it.
+     *
+     * @param index
+     *            index of the id.
+     */
+    private void siftUp(int index) {
+        int id = this.heap[index];
+        int i = index;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (this.order.compare(this.heap[parent], id) >= 0) {
+                break;
+            }
+            this.heap[i] = this.heap[parent];
+            i = parent;
+        }
+        this.heap[i] = id;
+    }
+
+    /**
+     * Move an id of a heap down until no child comes after it.
+     *
+     * @param heap
+     *            the heap.
+     * @param size
+     *            number of ids in the heap.
+     * @param index
+     *            index of the id.
+     * @param order
+     *            order of the ids.
+     */
+    private static void siftDown(int[] heap, int size, int index,
+            Order order) {
+        int id = heap[index];
+        int i = index;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size
+                    && order.compare(heap[child + 1], heap[child]) > 0) {
+                child++;
+            }
+            if (order.compare(id, heap[child]) >= 0) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = id;
+    }
+}
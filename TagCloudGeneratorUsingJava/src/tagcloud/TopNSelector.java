@@ -0,0 +1,165 @@
+package tagcloud;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps the first {@code n} of a stream of elements in the order of a
+ * comparator. The elements are held in a heap of at most {@code n} elements
+ * whose root is the last element kept, so offering {@code u} elements costs
+ * O(u log n) time and O(n) memory.
+ *
+ * @param <T>
+ *            type of the elements.
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class TopNSelector<T> {
+
+    /**
+     * Initial length of the heap array when {@code n} is large.
+     */
+    private static final int INITIAL_LENGTH = 64;
+
+    /**
+     * Order of the elements, the first elements are kept.
+     */
+    private final Comparator<? super T> order;
+
+    /**
+     * Largest number of elements kept.
+     */
+    private final int n;
+
+    /**
+     * Heap of the elements kept, the root is the last one in order.
+     */
+    private Object[] heap;
+
+    /**
+     * Number of elements kept.
+     */
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param order
+     *            order of the elements, the first elements are kept.
+     * @param n
+     *            largest number of elements kept, a negative number keeps
+     *            none.
+     */
+    public TopNSelector(Comparator<? super T> order, int n) {
+        this.order = order;
+        this.n = Math.max(n, 0);
+        this.heap = new Object[Math.min(this.n, INITIAL_LENGTH)];
+    }
+
+    /**
+     * Return the number of elements kept.
+     *
+     * @return number of elements kept.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Offer an element, keeping it if it is among the first {@code n} seen so
+     * far.
+     *
+     * @param x
+     *            element offered.
+     */
+    public void offer(T x) {
+        if (this.size < this.n) {
+            if (this.size == this.heap.length) {
+                this.heap = Arrays.copyOf(this.heap,
+                        (int) Math.min(this.n, 2L * this.heap.length));
+            }
+            this.heap[this.size] = x;
+            this.siftUp(this.size);
+            this.size++;
+        } else if (this.n > 0 && this.order.compare(x, this.get(0)) < 0) {
+            // x comes before the last element kept, so it replaces it
+            this.heap[0] = x;
+            this.siftDown(0);
+        }
+    }
+
+    /**
+     * Return the elements kept, in order.
+     *
+     * @return list of the elements kept, first element first.
+     */
+    public List<T> toSortedList() {
+        List<T> sorted = new ArrayList<>(this.size);
+        for (int i = 0; i < this.size; i++) {
+            sorted.add(this.get(i));
+        }
+        sorted.sort(this.order);
+        return sorted;
+    }
+
+    /**
+     * Return an element of the heap.
+     *
+     * @param i
+     *            index in the heap.
+     * @return element at index {@code i}.
+     */
+    @SuppressWarnings("unchecked")
+    private T get(int i) {
+        return (T) this.heap[i];
+    }
+
+    /**
+     * Move an element up until its parent does not come before it.
+     *
+     * @param index
+     *            index of the element.
+     */
+    private void siftUp(int index) {
+        Object x = this.heap[index];
+        int i = index;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (this.order.compare(this.get(parent), this.get(i)) >= 0) {
+                break;
+            }
+            this.heap[i] = this.heap[parent];
+            this.heap[parent] = x;
+            i = parent;
+        }
+    }
+
+    /**
+     * Move an element down until no child comes after it.
+     *
+     * @param index
+     *            index of the element.
+     */
+    private void siftDown(int index) {
+        int i = index;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= this.size) {
+                break;
+            }
+            if (child + 1 < this.size && this.order
+                    .compare(this.get(child + 1), this.get(child)) > 0) {
+                child++;
+            }
+            if (this.order.compare(this.get(i), this.get(child)) >= 0) {
+                break;
+            }
+            Object x = this.heap[i];
+            this.heap[i] = this.heap[child];
+            this.heap[child] = x;
+            i = child;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package tagcloud;
+
+/**
+ * Decodes one UTF-8 character at a time from a byte buffer, for the stages
+ * that work on the bytes of the input instead of decoded text. Ill-formed
+ * bytes decode to U+FFFD exactly as the UTF-8 {@code CharsetDecoder} of the
+ * JDK set to {@code REPLACE} replaces them, so both ways of reading a file see
+ * the same words: one U+FFFD for each maximal subpart of an ill-formed
+ * sequence, except that an encoded surrogate is replaced as a whole.
+ * <p>
+ * A decoded character is returned packed into an {@code int}: its length in
+ * bytes above {@code LENGTH_SHIFT} and its code point below.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+final class Utf8 {
+
+    /**
+     * Returned by {@code decode} for a well-formed start of a character cut
+     * by the end of the buffer.
+     */
+    static final int INCOMPLETE = -1;
+
+    /**
+     * Code point of the replacement character.
+     */
+    static final int REPLACEMENT = 0xFFFD;
+
+    /**
+     * Position of the length in a decoded character.
+     */
+    private static final int LENGTH_SHIFT = 24;
+
+    /**
+     * Bits of the code point in a decoded character.
+     */
+    private static final int CODE_POINT_MASK = (1 << LENGTH_SHIFT) - 1;
+
+    /**
+     * Bits of a continuation byte that belong to the code point.
+     */
+    private static final int CONTINUATION_BITS = 6;
+
+    /**
+     * No argument constructor--private to prevent instantiation.
+     */
+    private Utf8() {
+    }
+
+    /**
+     * Decode the character starting at an index of a buffer.
+     *
+     * @param bytes
+     *            buffer holding UTF-8 text.
+     * @param index
+     *            index of the first byte of the character.
+     * @param end
+     *            index one past the last byte that may be read.
+     * @return the decoded character, or {@code INCOMPLETE}.
+     */
+    static int decode(byte[] bytes, int index, int end) {
+        int b = bytes[index] & 0xFF;
+        if (b < 0x80) {
+            return packed(1, b);
+        }
+
+        // the lead byte gives the length and the range of the second byte
+        int continuations;
+        int codePoint;
+        int low = 0x80;
+        int high = 0xBF;
+        if (b >= 0xC2 && b <= 0xDF) {
+            continuations = 1;
+            codePoint = b & 0x1F;
+        } else if (b >= 0xE0 && b <= 0xEF) {
+            continuations = 2;
+            codePoint = b & 0x0F;
+            if (b == 0xE0) {
+                low = 0xA0;
+            }
+        } else if (b >= 0xF0 && b <= 0xF4) {
+            continuations = 3;
+            codePoint = b & 0x07;
+            if (b == 0xF0) {
+                low = 0x90;
+            } else if (b == 0xF4) {
+                high = 0x8F;
+            }
+        } else {
+            return packed(1, REPLACEMENT);
+        }
+        int i = index + 1;
+        for (int k = 0; k < continuations; k++) {
+            if (i == end) {
+                return INCOMPLETE;
+            }
+            int c = bytes[i] & 0xFF;
+            if (c < low || c > high) {
+                return packed(i - index, REPLACEMENT);
+            }
+            codePoint = (codePoint << CONTINUATION_BITS) | (c & 0x3F);
+            low = 0x80;
+            high = 0xBF;
+            i++;
+        }
+        if (codePoint >= Character.MIN_SURROGATE
+                && codePoint <= Character.MAX_SURROGATE) {
+            return packed(i - index, REPLACEMENT);
+        }
+        return packed(i - index, codePoint);
+    }
+
+    /**
+     * Decode a whole word, where a character cut by the end of the word is
+     * replaced.
+     *
+     * @param bytes
+     *            buffer holding the word in UTF-8.
+     * @param start
+     *            index of the first byte of the word.
+     * @param end
+     *            index one past the last byte of the word.
+     * @param chars
+     *            buffer the characters are written to from index 0, with room
+     *            for {@code end - start} characters.
+     * @return number of characters of the word.
+     */
+    static int decodeWord(byte[] bytes, int start, int end, char[] chars) {
+        int length = 0;
+        int i = start;
+        while (i < end) {
+            byte b = bytes[i];
+            if (b >= 0) {
+                chars[length++] = (char) b;
+                i++;
+                continue;
+            }
+            int decoded = decode(bytes, i, end);
+            if (decoded == INCOMPLETE) {
+                decoded = truncated(end - i);
+            }
+            length += Character.toChars(codePoint(decoded), chars, length);
+            i += length(decoded);
+        }
+        return length;
+    }
+
+    /**
+     * Return the replacement of the bytes of a character cut by the end of
+     * the input.
+     *
+     * @param length
+     *            number of bytes left.
+     * @return the decoded replacement character.
+     */
+    static int truncated(int length) {
+        return packed(length, REPLACEMENT);
+    }
+
+    /**
+     * Return the length in bytes of a decoded character.
+     *
+     * @param decoded
+     *            the decoded character.
+     * @return number of bytes of the character.
+     */
+    static int length(int decoded) {
+        return decoded >>> LENGTH_SHIFT;
+    }
+
+    /**
+     * Return the code point of a decoded character.
+     *
+     * @param decoded
+     *            the decoded character.
+     * @return the code point.
+     */
+    static int codePoint(int decoded) {
+        return decoded & CODE_POINT_MASK;
+    }
+
+    /**
+     * Pack a length and a code point.
+     *
+     * @param length
+     *            number of bytes of the character.
+     * @param codePoint
+     *            the code point.
+     * @return the decoded character.
+     */
+    private static int packed(int length, int codePoint) {
+        return (length << LENGTH_SHIFT) | codePoint;
+    }
+}
@@ -0,0 +1,199 @@
+package tagcloud;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Reads the words of UTF-8 text from a channel without decoding it. The bytes
+ * are read into one reused buffer and tokenized in place, and the words are
+ * passed on as spans of bytes, so the text is never turned into
+ * {@code char}s or {@code String}s on the way; a {@code WordCountTable} only
+ * decodes a word the first time it sees it. A word cut by the end of the
+ * buffer is carried to its front and finished with the next read.
+ * <p>
+ * The input is always read as UTF-8, whatever the default charset of the
+ * platform; ill-formed bytes are read as U+FFFD.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class Utf8WordScanner {
+
+    /**
+     * Default number of bytes read at once.
+     */
+    static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * No argument constructor--private to prevent instantiation.
+     */
+    private Utf8WordScanner() {
+    }
+
+    /**
+     * Pass every word read from a channel to a sink, using the default buffer
+     * size.
+     *
+     * @param in
+     *            blocking channel of UTF-8 text, read to its end.
+     * @param tokenizer
+     *            tokenizer splitting the text into words.
+     * @param sink
+     *            receiver of the words.
+     * @throws IOException
+     *             if the channel cannot be read.
+     */
+    public static void scan(ReadableByteChannel in, WordTokenizer tokenizer,
+            Utf8WordSink sink) throws IOException {
+        scan(in, tokenizer, sink, DEFAULT_BUFFER_SIZE, new PipelineMetrics());
+    }
+
+    /**
+     * Pass every word of a byte range of a file to a sink. The range must
+     * start at the beginning of a word or separator and end just before one.
+     * The channel is read at absolute positions, so several ranges of it may
+     * be scanned at once.
+     *
+     * @param channel
+     *            open channel of a UTF-8 text file.
+     * @param from
+     *            position of the first byte to read.
+     * @param to
+     *            position one past the last byte to read.
+     * @param tokenizer
+     *            tokenizer splitting the text into words.
+     * @param sink
+     *            receiver of the words.
+     * @param bufferSize
+     *            number of bytes read at once.
+     * @param metrics
+     *            metrics the reading and tokenizing time are added to.
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    static void scan(FileChannel channel, long from, long to,
+            WordTokenizer tokenizer, Utf8WordSink sink, int bufferSize,
+            PipelineMetrics metrics) throws IOException {
+        scan(new RangeChannel(channel, from, to), tokenizer, sink,
+                (int) Math.min(bufferSize, Math.max(to - from, 1)), metrics);
+    }
+
+    /**
+     * Pass every word read from a channel to a sink.
+     *
+     * @param in
+     *            blocking channel of UTF-8 text, read to its end.
+     * @param tokenizer
+     *            tokenizer splitting the text into words.
+     * @param sink
+     *            receiver of the words.
+     * @param bufferSize
+     *            number of bytes read at once.
+     * @param metrics
+     *            metrics the reading and tokenizing time are added to.
+     * @throws IOException
+     *             if the channel cannot be read.
+     */
+    static void scan(ReadableByteChannel in, WordTokenizer tokenizer,
+            Utf8WordSink sink, int bufferSize, PipelineMetrics metrics)
+            throws IOException {
+        long allocatedBefore = PipelineMetrics.allocatedBytes();
+        byte[] bytes = new byte[bufferSize];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int carry = 0;
+        boolean last = false;
+        while (!last) {
+            long readStart = System.nanoTime();
+
+            // a word as long as the buffer needs a larger one
+            if (carry == bytes.length) {
+                bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+                buffer = ByteBuffer.wrap(bytes);
+            }
+            buffer.limit(bytes.length).position(carry);
+            last = in.read(buffer) < 0;
+
+            // count the complete words and carry the unfinished one
+            long tokenizeStart = System.nanoTime();
+            int filled = buffer.position();
+            int rest = tokenizer.tokenizeUtf8(bytes, 0, filled, last, sink);
+            carry = filled - rest;
+            System.arraycopy(bytes, rest, bytes, 0, carry);
+            long tokenizeEnd = System.nanoTime();
+            metrics.addNanos(PipelineMetrics.Stage.READ,
+                    tokenizeStart - readStart);
+            metrics.addNanos(PipelineMetrics.Stage.TOKENIZE,
+                    tokenizeEnd - tokenizeStart);
+        }
+        metrics.addAllocated(PipelineMetrics.Stage.TOKENIZE,
+                PipelineMetrics.allocatedBytes() - allocatedBefore);
+    }
+
+    /**
+     * Reads a byte range of a file at absolute positions, leaving the
+     * position of the file channel alone.
+     */
+    private static final class RangeChannel implements ReadableByteChannel {
+
+        /**
+         * Channel of the file.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Position of the next byte to read.
+         */
+        private long position;
+
+        /**
+         * Position one past the last byte to read.
+         */
+        private final long to;
+
+        /**
+         * Constructor.
+         *
+         * @param channel
+         *            channel of the file.
+         * @param from
+         *            position of the first byte to read.
+         * @param to
+         *            position one past the last byte to read.
+         */
+        RangeChannel(FileChannel channel, long from, long to) {
+            this.channel = channel;
+            this.position = from;
+            this.to = to;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (this.position >= this.to) {
+                return -1;
+            }
+            int limit = dst.limit();
+            if (dst.remaining() > this.to - this.position) {
+                dst.limit(dst.position() + (int) (this.to - this.position));
+            }
+            int read = this.channel.read(dst, this.position);
+            dst.limit(limit);
+            if (read > 0) {
+                this.position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return this.channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+            // the file channel belongs to the caller
+        }
+    }
+}
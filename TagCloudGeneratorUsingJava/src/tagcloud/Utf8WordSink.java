@@ -0,0 +1,25 @@
+package tagcloud;
+
+/**
+ * Receives the words found by a {@code WordTokenizer} in UTF-8 bytes. Words
+ * are passed as a span of a byte buffer so that they need not be decoded for
+ * each occurrence.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public interface Utf8WordSink {
+
+    /**
+     * Accept one word. The buffer is only valid for the duration of the call
+     * and must not be kept.
+     *
+     * @param bytes
+     *            buffer holding the word in UTF-8.
+     * @param start
+     *            index of the first byte of the word.
+     * @param end
+     *            index one past the last byte of the word.
+     */
+    void accept(byte[] bytes, int start, int end);
+}
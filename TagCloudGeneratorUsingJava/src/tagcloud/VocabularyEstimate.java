@@ -0,0 +1,184 @@
+package tagcloud;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Estimate of the number of distinct words of a file, taken before counting
+ * so that the way of counting can be chosen by how much memory the words
+ * would take. A file of at most {@code SAMPLE_SIZE} bytes is read whole into
+ * a {@code HyperLogLog}. A larger file is sampled: {@code SAMPLE_CHUNKS}
+ * evenly spread chunks are read, half of them into one estimator and half
+ * into another. Vocabulary grows with the number of words {@code n} about
+ * as {@code n^beta} (Heaps' law), so comparing the distinct words of one
+ * half of the sample with those of the merged sample gives {@code beta},
+ * and the vocabulary of the sample is scaled to the whole file with it.
+ * <p>
+ * A chunk may start inside a word, which then counts as one extra word, and
+ * stages such as stop word filtering are left out, so the estimate is for
+ * the words as the tokenizer splits them.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class VocabularyEstimate {
+
+    /**
+     * Number of bytes read from a file, at most.
+     */
+    static final long SAMPLE_SIZE = 1 << 22;
+
+    /**
+     * Number of chunks a larger file is sampled in, must be even.
+     */
+    static final int SAMPLE_CHUNKS = 16;
+
+    /**
+     * Estimated number of distinct words.
+     */
+    private final long distinctWords;
+
+    /**
+     * Estimated number of words.
+     */
+    private final long words;
+
+    /**
+     * Whether the file was sampled rather than read whole.
+     */
+    private final boolean sampled;
+
+    /**
+     * Constructor.
+     *
+     * @param distinctWords
+     *            estimated number of distinct words.
+     * @param words
+     *            estimated number of words.
+     * @param sampled
+     *            whether the file was sampled rather than read whole.
+     */
+    private VocabularyEstimate(long distinctWords, long words,
+            boolean sampled) {
+        this.distinctWords = distinctWords;
+        this.words = words;
+        this.sampled = sampled;
+    }
+
+    /**
+     * Estimate the vocabulary of a UTF-8 file.
+     *
+     * @param file
+     *            the file.
+     * @param tokenizer
+     *            tokenizer splitting the text into words.
+     * @param metrics
+     *            metrics the reading and tokenizing time are added to.
+     * @return the estimate.
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    public static VocabularyEstimate of(Path file, WordTokenizer tokenizer,
+            PipelineMetrics metrics) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= SAMPLE_SIZE) {
+                HyperLogLog all = new HyperLogLog();
+                scan(channel, 0, size, tokenizer, all, metrics);
+                return new VocabularyEstimate(all.estimate(), all.total(),
+                        false);
+            }
+
+            // every other chunk goes to the half estimator
+            long chunkSize = SAMPLE_SIZE / SAMPLE_CHUNKS;
+            long stride = size / SAMPLE_CHUNKS;
+            HyperLogLog half = new HyperLogLog();
+            HyperLogLog other = new HyperLogLog();
+            for (int i = 0; i < SAMPLE_CHUNKS; i++) {
+                long from = i * stride;
+                scan(channel, from, from + chunkSize, tokenizer,
+                        i % 2 == 0 ? half : other, metrics);
+            }
+            long halfDistinct = half.estimate();
+            long halfWords = half.total();
+            half.addAll(other);
+            long sampleDistinct = half.estimate();
+            long sampleWords = half.total();
+
+            // scale the vocabulary of the sample with Heaps' law
+            long words = (long) ((double) sampleWords * size / SAMPLE_SIZE);
+            double beta = 1;
+            if (halfDistinct > 0 && halfWords > 0 && sampleWords > halfWords) {
+                beta = Math.log((double) sampleDistinct / halfDistinct)
+                        / Math.log((double) sampleWords / halfWords);
+                beta = Math.max(0, Math.min(1, beta));
+            }
+            double distinct = sampleDistinct
+                    * Math.pow((double) words / Math.max(sampleWords, 1),
+                            beta);
+            return new VocabularyEstimate(
+                    (long) Math.min(distinct, Math.max(words, sampleDistinct)),
+                    words, true);
+        }
+    }
+
+    /**
+     * Return the estimated number of distinct words.
+     *
+     * @return number of distinct words.
+     */
+    public long distinctWords() {
+        return this.distinctWords;
+    }
+
+    /**
+     * Return the estimated number of words.
+     *
+     * @return number of words, including repeated words.
+     */
+    public long words() {
+        return this.words;
+    }
+
+    /**
+     * Report whether the file was sampled rather than read whole.
+     *
+     * @return true if the estimate is scaled from a sample.
+     */
+    public boolean isSampled() {
+        return this.sampled;
+    }
+
+    /**
+     * Pass the words of a byte range of a file to an estimator.
+     *
+     * @param channel
+     *            open channel of the file.
+     * @param from
+     *            position of the first byte of the range.
+     * @param to
+     *            position one past the last byte of the range.
+     * @param tokenizer
+     *            tokenizer splitting the text into words.
+     * @param estimator
+     *            the estimator.
+     * @param metrics
+     *            metrics the reading and tokenizing time are added to.
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    private static void scan(FileChannel channel, long from, long to,
+            WordTokenizer tokenizer, HyperLogLog estimator,
+            PipelineMetrics metrics) throws IOException {
+        if (tokenizer.hasTokenClasses()) {
+            MappedWordScanner.scan(channel, from, to, tokenizer, estimator,
+                    MappedWordScanner.DEFAULT_WINDOW_SIZE, metrics);
+        } else {
+            Utf8WordScanner.scan(channel, from, to, tokenizer, estimator,
+                    Utf8WordScanner.DEFAULT_BUFFER_SIZE, metrics);
+        }
+    }
+}
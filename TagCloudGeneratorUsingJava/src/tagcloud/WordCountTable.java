@@ -0,0 +1,826 @@
+package tagcloud;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Counts words given as spans of a character buffer, ignoring case. Case is
+ * folded while a span is hashed and compared, so a word is only copied, in
+ * lower case, the first time it is seen. Words are stored one after the other
+ * in a single character arena, and their counts are kept in an {@code int[]},
+ * so the table holds no object per word. A slot array indexed with open
+ * addressing points to the words, and an occurrence of a word that was
+ * already seen costs one probe sequence and no allocation. Words may also be
+ * given as UTF-8 bytes, which are only decoded the first time they are seen.
+ * <p>
+ * Words are numbered densely in the order they are first seen, so a word can
+ * be handled as its {@code int} number until its text is needed: the top
+ * words are selected by number with {@link #byCountThenWord()} and only they
+ * are turned into {@code String}s. The table is also a read-only {@code Map}
+ * of words to their count; its keys are only created as {@code String}s when
+ * the map is read.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class WordCountTable extends AbstractMap<String, Integer>
+        implements WordCounts, WordSink, Utf8WordSink {
+
+    /**
+     * Initial number of slots, must be a power of two.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Initial length of the character arena.
+     */
+    private static final int INITIAL_ARENA_LENGTH = 8192;
+
+    /**
+     * Number of characters that are ASCII.
+     */
+    private static final int ASCII_LIMIT = 128;
+
+    /**
+     * Difference between an ASCII upper-case letter and its lower case.
+     */
+    private static final int ASCII_CASE_OFFSET = 'a' - 'A';
+
+    /**
+     * Seed of the 64-bit hash of a word.
+     */
+    private static final long HASH64_SEED = 0xCBF29CE484222325L;
+
+    /**
+     * Multiplier of the 64-bit hash of a word.
+     */
+    private static final long HASH64_PRIME = 0x100000001B3L;
+
+    /**
+     * Number of each word plus one in the slots it hashes to, 0 for an empty
+     * slot.
+     */
+    private int[] slots;
+
+    /**
+     * Characters of every word, one after the other.
+     */
+    private char[] arena;
+
+    /**
+     * Index in the arena one past the end of each word.
+     */
+    private int[] keyEnds;
+
+    /**
+     * Hash of each word.
+     */
+    private int[] hashes;
+
+    /**
+     * Count of each word.
+     */
+    private int[] counts;
+
+    /**
+     * Number of distinct words.
+     */
+    private int size;
+
+    /**
+     * Number of words counted, sum of the counts.
+     */
+    private long total;
+
+    /**
+     * Entry set view, created when first asked for.
+     */
+    private Set<Map.Entry<String, Integer>> entrySet;
+
+    /**
+     * No argument constructor.
+     */
+    public WordCountTable() {
+        this.slots = new int[INITIAL_CAPACITY];
+        this.arena = new char[INITIAL_ARENA_LENGTH];
+        this.keyEnds = new int[INITIAL_CAPACITY / 2];
+        this.hashes = new int[INITIAL_CAPACITY / 2];
+        this.counts = new int[INITIAL_CAPACITY / 2];
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public long total() {
+        return this.total;
+    }
+
+    @Override
+    public void accept(char[] chars, int start, int end) {
+        this.addWord(chars, start, end);
+    }
+
+    /**
+     * Count a word given as a span of a buffer, ignoring case.
+     *
+     * @param chars
+     *            buffer holding the word.
+     * @param start
+     *            index of the first character of the word.
+     * @param end
+     *            index one past the last character of the word.
+     * @return number of the word.
+     */
+    public int addWord(char[] chars, int start, int end) {
+        // same as the hash code of the lower-case word as a String
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + toLowerCase(chars, i, start, end);
+        }
+        return this.add(chars, start, end, hash, 1, true);
+    }
+
+    @Override
+    public void acceptToken(char[] chars, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        this.add(chars, start, end, hash, 1, false);
+    }
+
+    @Override
+    public void accept(byte[] bytes, int start, int end) {
+        this.addUtf8(bytes, start, end);
+    }
+
+    /**
+     * Count a word given as a span of a buffer of UTF-8 bytes, ignoring
+     * case. The word is hashed and compared as the characters it decodes to,
+     * so it is the same word as its decoded text given to {@code addWord},
+     * but it is only decoded into the table the first time it is seen.
+     *
+     * @param bytes
+     *            buffer holding the word in UTF-8.
+     * @param start
+     *            index of the first byte of the word.
+     * @param end
+     *            index one past the last byte of the word.
+     * @return number of the word.
+     */
+    public int addUtf8(byte[] bytes, int start, int end) {
+        // same hash as addWord, over the characters the bytes decode to
+        int hash = 0;
+        int length = 0;
+        int i = start;
+        while (i < end) {
+            byte b = bytes[i];
+            if (b >= 0) {
+                hash = 31 * hash + toLowerCase((char) b);
+                length++;
+                i++;
+                continue;
+            }
+            int decoded = decode(bytes, i, end);
+            int codePoint = Utf8.codePoint(decoded);
+            if (Character.isBmpCodePoint(codePoint)) {
+                hash = 31 * hash + toLowerCase((char) codePoint);
+                length++;
+            } else {
+                int folded = Character.toLowerCase(codePoint);
+                hash = 31 * hash + Character.highSurrogate(folded);
+                hash = 31 * hash + Character.lowSurrogate(folded);
+                length += 2;
+            }
+            i += Utf8.length(decoded);
+        }
+
+        this.total++;
+        int mask = this.slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (this.slots[slot] != 0) {
+            int id = this.slots[slot] - 1;
+            if (this.hashes[id] == hash
+                    && this.matchesUtf8(id, bytes, start, end, length)) {
+                this.counts[id]++;
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        // first occurrence of the word, decoded into the arena
+        int id = this.insert(slot, hash, length, 1);
+        int k = this.keyStart(id);
+        i = start;
+        while (i < end) {
+            byte b = bytes[i];
+            if (b >= 0) {
+                this.arena[k++] = toLowerCase((char) b);
+                i++;
+                continue;
+            }
+            int decoded = decode(bytes, i, end);
+            int codePoint = Utf8.codePoint(decoded);
+            if (Character.isBmpCodePoint(codePoint)) {
+                this.arena[k++] = toLowerCase((char) codePoint);
+            } else {
+                int folded = Character.toLowerCase(codePoint);
+                this.arena[k++] = Character.highSurrogate(folded);
+                this.arena[k++] = Character.lowSurrogate(folded);
+            }
+            i += Utf8.length(decoded);
+        }
+        return id;
+    }
+
+    /**
+     * Add the counts of another table to this one.
+     *
+     * @param other
+     *            table whose counts are added.
+     */
+    public void addAll(WordCountTable other) {
+        for (int id = 0; id < other.size; id++) {
+            this.add(other.arena, other.keyStart(id), other.keyEnds[id],
+                    other.hashes[id], other.counts[id], false);
+        }
+    }
+
+    /**
+     * Add the count of one word of another table to this one.
+     *
+     * @param other
+     *            table holding the word.
+     * @param id
+     *            number of the word in the other table.
+     * @return number of the word in this table.
+     */
+    public int add(WordCountTable other, int id) {
+        return this.add(other.arena, other.keyStart(id), other.keyEnds[id],
+                other.hashes[id], other.counts[id], false);
+    }
+
+    @Override
+    public String key(int id) {
+        int start = this.keyStart(id);
+        return new String(this.arena, start, this.keyEnds[id] - start);
+    }
+
+    /**
+     * Return the length of the word with a number.
+     *
+     * @param id
+     *            number of the word, from 0 to {@code size() - 1}.
+     * @return length of the word.
+     */
+    public int keyLength(int id) {
+        return this.keyEnds[id] - this.keyStart(id);
+    }
+
+    /**
+     * Return a character of the word with a number.
+     *
+     * @param id
+     *            number of the word, from 0 to {@code size() - 1}.
+     * @param index
+     *            index of the character, from 0 to
+     *            {@code keyLength(id) - 1}.
+     * @return the character.
+     */
+    public char keyChar(int id, int index) {
+        return this.arena[this.keyStart(id) + index];
+    }
+
+    @Override
+    public int count(int id) {
+        return this.counts[id];
+    }
+
+    /**
+     * Return 0, since the counts are exact.
+     *
+     * @param id
+     *            number of the word, from 0 to {@code size() - 1}.
+     * @return 0.
+     */
+    @Override
+    public int error(int id) {
+        return 0;
+    }
+
+    /**
+     * Return the order of word numbers by decreasing count, then in
+     * alphabetical order of the words, the same order as comparing the counts
+     * and then the {@code String}s of the words.
+     *
+     * @return order of the word numbers.
+     */
+    @Override
+    public TopIdSelector.Order byCountThenWord() {
+        return (id1, id2) -> {
+            int order = Integer.compare(this.counts[id2], this.counts[id1]);
+            if (order == 0) {
+                order = this.compareKeys(id1, id2);
+            }
+            return order;
+        };
+    }
+
+    @Override
+    public Integer get(Object key) {
+        int id = this.find(key);
+        if (id < 0) {
+            return null;
+        }
+        return this.counts[id];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.find(key) >= 0;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Integer>> entrySet() {
+        if (this.entrySet == null) {
+            this.entrySet = new EntrySet();
+        }
+        return this.entrySet;
+    }
+
+    /**
+     * Add to the count of a word, inserting it if it is new.
+     *
+     * @param chars
+     *            buffer holding the word.
+     * @param start
+     *            index of the first character of the word.
+     * @param end
+     *            index one past the last character of the word.
+     * @param hash
+     *            hash of the word in lower case.
+     * @param count
+     *            amount added to the count of the word.
+     * @param fold
+     *            whether the word may not be in lower case yet.
+     * @return number of the word.
+     */
+    private int add(char[] chars, int start, int end, int hash, int count,
+            boolean fold) {
+        this.total += count;
+        int mask = this.slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (this.slots[slot] != 0) {
+            int id = this.slots[slot] - 1;
+            if (this.hashes[id] == hash
+                    && this.matches(id, chars, start, end, fold)) {
+                this.counts[id] += count;
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        // first occurrence of the word
+        int length = end - start;
+        int id = this.insert(slot, hash, length, count);
+        int arenaStart = this.keyStart(id);
+        if (fold) {
+            for (int i = 0; i < length; i++) {
+                this.arena[arenaStart + i] = toLowerCase(chars, start + i,
+                        start, end);
+            }
+        } else {
+            System.arraycopy(chars, start, this.arena, arenaStart, length);
+        }
+        return id;
+    }
+
+    /**
+     * Number a new word and make room for its characters at the end of the
+     * arena, where the caller copies them.
+     *
+     * @param slot
+     *            empty slot the word hashes to.
+     * @param hash
+     *            hash of the word in lower case.
+     * @param length
+     *            number of characters of the word.
+     * @param count
+     *            count of the word.
+     * @return number of the word.
+     */
+    private int insert(int slot, int hash, int length, int count) {
+        int id = this.size;
+        int arenaStart = this.keyStart(id);
+        if (arenaStart + length > this.arena.length) {
+            char[] larger = new char[Math.max(arenaStart + length,
+                    2 * this.arena.length)];
+            System.arraycopy(this.arena, 0, larger, 0, arenaStart);
+            this.arena = larger;
+        }
+        this.keyEnds[id] = arenaStart + length;
+        this.hashes[id] = hash;
+        this.counts[id] = count;
+        this.slots[slot] = id + 1;
+        this.size++;
+        if (2 * this.size >= this.slots.length) {
+            this.grow();
+        }
+        return id;
+    }
+
+    /**
+     * Find the number of a word.
+     *
+     * @param key
+     *            word to look for.
+     * @return number of the word, or -1 if it is not in the table.
+     */
+    private int find(Object key) {
+        if (!(key instanceof String)) {
+            return -1;
+        }
+        String word = (String) key;
+        int hash = word.hashCode();
+        int mask = this.slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (this.slots[slot] != 0) {
+            int id = this.slots[slot] - 1;
+            if (this.hashes[id] == hash && this.matches(id, word)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Return the index in the arena of the first character of a word.
+     *
+     * @param id
+     *            number of the word.
+     * @return index of the first character of the word.
+     */
+    private int keyStart(int id) {
+        if (id == 0) {
+            return 0;
+        }
+        return this.keyEnds[id - 1];
+    }
+
+    /**
+     * Double the number of slots and reinsert every word.
+     */
+    private void grow() {
+        this.slots = new int[2 * this.slots.length];
+        int mask = this.slots.length - 1;
+        for (int id = 0; id < this.size; id++) {
+            int slot = mix(this.hashes[id]) & mask;
+            while (this.slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            this.slots[slot] = id + 1;
+        }
+
+        // the per-word arrays hold up to half as many words as there are slots
+        int capacity = this.slots.length / 2;
+        this.keyEnds = copyOf(this.keyEnds, capacity);
+        this.hashes = copyOf(this.hashes, capacity);
+        this.counts = copyOf(this.counts, capacity);
+    }
+
+    /**
+     * Compare a word in the table with a span of a buffer.
+     *
+     * @param id
+     *            number of the word in the table.
+     * @param chars
+     *            buffer holding the other word.
+     * @param start
+     *            index of the first character of the other word.
+     * @param end
+     *            index one past the last character of the other word.
+     * @param fold
+     *            whether to compare the other word in lower case.
+     * @return true if the words are equal.
+     */
+    private boolean matches(int id, char[] chars, int start, int end,
+            boolean fold) {
+        int keyStart = this.keyStart(id);
+        if (this.keyEnds[id] - keyStart != end - start) {
+            return false;
+        }
+        if (fold) {
+            for (int i = start; i < end; i++) {
+                if (this.arena[keyStart++] != toLowerCase(chars, i, start,
+                        end)) {
+                    return false;
+                }
+            }
+        } else {
+            for (int i = start; i < end; i++) {
+                if (this.arena[keyStart++] != chars[i]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compare two words of the table the way their {@code String}s would
+     * compare.
+     *
+     * @param id1
+     *            number of the first word.
+     * @param id2
+     *            number of the second word.
+     * @return negative, zero or positive as the first word is before, the
+     *         same as or after the second.
+     */
+    private int compareKeys(int id1, int id2) {
+        int start1 = this.keyStart(id1);
+        int start2 = this.keyStart(id2);
+        int length1 = this.keyEnds[id1] - start1;
+        int length2 = this.keyEnds[id2] - start2;
+        int length = Math.min(length1, length2);
+        for (int i = 0; i < length; i++) {
+            char c1 = this.arena[start1 + i];
+            char c2 = this.arena[start2 + i];
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return length1 - length2;
+    }
+
+    /**
+     * Compare a word in the table with a span of a buffer of UTF-8 bytes,
+     * ignoring the case of the span.
+     *
+     * @param id
+     *            number of the word in the table.
+     * @param bytes
+     *            buffer holding the other word in UTF-8.
+     * @param start
+     *            index of the first byte of the other word.
+     * @param end
+     *            index one past the last byte of the other word.
+     * @param length
+     *            number of characters the other word decodes to.
+     * @return true if the words are equal.
+     */
+    private boolean matchesUtf8(int id, byte[] bytes, int start, int end,
+            int length) {
+        int k = this.keyStart(id);
+        if (this.keyEnds[id] - k != length) {
+            return false;
+        }
+        int i = start;
+        while (i < end) {
+            byte b = bytes[i];
+            if (b >= 0) {
+                if (this.arena[k++] != toLowerCase((char) b)) {
+                    return false;
+                }
+                i++;
+                continue;
+            }
+            int decoded = decode(bytes, i, end);
+            int codePoint = Utf8.codePoint(decoded);
+            if (Character.isBmpCodePoint(codePoint)) {
+                if (this.arena[k++] != toLowerCase((char) codePoint)) {
+                    return false;
+                }
+            } else {
+                int folded = Character.toLowerCase(codePoint);
+                if (this.arena[k++] != Character.highSurrogate(folded)
+                        || this.arena[k++] != Character.lowSurrogate(folded)) {
+                    return false;
+                }
+            }
+            i += Utf8.length(decoded);
+        }
+        return true;
+    }
+
+    /**
+     * Compare a word in the table with a {@code String}.
+     *
+     * @param id
+     *            number of the word in the table.
+     * @param word
+     *            the other word.
+     * @return true if the words are equal.
+     */
+    private boolean matches(int id, String word) {
+        int keyStart = this.keyStart(id);
+        if (this.keyEnds[id] - keyStart != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (this.arena[keyStart + i] != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the lower case of a character of a word, folding the two halves
+     * of a surrogate pair as the code point they encode, so that capitals
+     * outside of the Basic Multilingual Plane, such as Deseret ones, are
+     * folded too. The lower case of a code point always has as many chars, so
+     * a word keeps its length. Unlike {@code String.toLowerCase}, this does
+     * not depend on the locale, and the few letters whose lower case depends
+     * on the letters around them or takes more chars, such as the final sigma
+     * or a dotted capital I, are folded on their own.
+     *
+     * @param chars
+     *            buffer holding the word.
+     * @param index
+     *            index of the character.
+     * @param start
+     *            index of the first character of the word.
+     * @param end
+     *            index one past the last character of the word.
+     * @return the character of the word in lower case.
+     */
+    static char toLowerCase(char[] chars, int index, int start, int end) {
+        char c = chars[index];
+        if (c < ASCII_LIMIT || !Character.isSurrogate(c)) {
+            return toLowerCase(c);
+        }
+        if (Character.isHighSurrogate(c) && index + 1 < end
+                && Character.isLowSurrogate(chars[index + 1])) {
+            return Character.highSurrogate(Character.toLowerCase(
+                    Character.toCodePoint(c, chars[index + 1])));
+        }
+        if (Character.isLowSurrogate(c) && index > start
+                && Character.isHighSurrogate(chars[index - 1])) {
+            return Character.lowSurrogate(Character.toLowerCase(
+                    Character.toCodePoint(chars[index - 1], c)));
+        }
+        return c;
+    }
+
+    /**
+     * Return the lower case of a character of the Basic Multilingual Plane,
+     * without a table lookup for ASCII.
+     *
+     * @param c
+     *            the character, not half of a surrogate pair.
+     * @return {@code Character.toLowerCase(c)}.
+     */
+    static char toLowerCase(char c) {
+        if (c < ASCII_LIMIT) {
+            if (c >= 'A' && c <= 'Z') {
+                return (char) (c + ASCII_CASE_OFFSET);
+            }
+            return c;
+        }
+        return Character.toLowerCase(c);
+    }
+
+    /**
+     * Return a 64-bit hash of a word in lower case, for the approximate
+     * counters that need more bits than {@code String.hashCode}.
+     *
+     * @param chars
+     *            buffer holding the word.
+     * @param start
+     *            index of the first character of the word.
+     * @param end
+     *            index one past the last character of the word.
+     * @return hash of the word, the same for any case of it.
+     */
+    static long hash64(char[] chars, int start, int end) {
+        return hash64(chars, start, end, true);
+    }
+
+    /**
+     * Return a 64-bit hash of a word, in lower case or as given.
+     *
+     * @param chars
+     *            buffer holding the word.
+     * @param start
+     *            index of the first character of the word.
+     * @param end
+     *            index one past the last character of the word.
+     * @param fold
+     *            whether to hash the word in lower case.
+     * @return hash of the word.
+     */
+    static long hash64(char[] chars, int start, int end, boolean fold) {
+        long h = HASH64_SEED;
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            if (fold) {
+                c = toLowerCase(chars, i, start, end);
+            }
+            h = (h ^ c) * HASH64_PRIME;
+        }
+
+        // mix the bits so that every bit depends on every char
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Decode the character at an index of a word in UTF-8, where a character
+     * cut by the end of the word is replaced.
+     *
+     * @param bytes
+     *            buffer holding the word in UTF-8.
+     * @param index
+     *            index of the first byte of the character.
+     * @param end
+     *            index one past the last byte of the word.
+     * @return the decoded character.
+     */
+    private static int decode(byte[] bytes, int index, int end) {
+        int decoded = Utf8.decode(bytes, index, end);
+        if (decoded == Utf8.INCOMPLETE) {
+            decoded = Utf8.truncated(end - index);
+        }
+        return decoded;
+    }
+
+    /**
+     * Spread the bits of a hash so that similar words land in distant slots.
+     *
+     * @param hash
+     *            hash of a word.
+     * @return mixed hash.
+     */
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Copy an array into a longer one.
+     *
+     * @param array
+     *            array to copy.
+     * @param length
+     *            length of the copy.
+     * @return the copy.
+     */
+    private static int[] copyOf(int[] array, int length) {
+        int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    /**
+     * Read-only view of the words and their counts, in the order the words
+     * were first seen.
+     */
+    private final class EntrySet
+            extends AbstractSet<Map.Entry<String, Integer>> {
+
+        @Override
+        public int size() {
+            return WordCountTable.this.size;
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, Integer>> iterator() {
+            return new Iterator<Map.Entry<String, Integer>>() {
+
+                /**
+                 * Number of the next word.
+                 */
+                private int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return this.next < WordCountTable.this.size;
+                }
+
+                @Override
+                public Map.Entry<String, Integer> next() {
+                    if (!this.hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int id = this.next++;
+                    return new AbstractMap.SimpleImmutableEntry<>(
+                            WordCountTable.this.key(id),
+                            WordCountTable.this.counts[id]);
+                }
+            };
+        }
+    }
+}
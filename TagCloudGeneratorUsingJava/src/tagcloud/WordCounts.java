@@ -0,0 +1,65 @@
+package tagcloud;
+
+/**
+ * Counts of words numbered densely from 0, as kept by the exact
+ * {@code WordCountTable} and by the approximate counters. The top words are
+ * selected by number with {@link #byCountThenWord()}, so whichever counter
+ * made the counts, only the words that are kept are turned into
+ * {@code String}s.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public interface WordCounts {
+
+    /**
+     * Return the number of words counted separately.
+     *
+     * @return number of words, their numbers are 0 to this minus 1.
+     */
+    int size();
+
+    /**
+     * Return the number of words counted, including repeated words.
+     *
+     * @return number of words counted.
+     */
+    long total();
+
+    /**
+     * Return the word with a number.
+     *
+     * @param id
+     *            number of the word, from 0 to {@code size() - 1}.
+     * @return the word, in lower case.
+     */
+    String key(int id);
+
+    /**
+     * Return the count of the word with a number, never below its true
+     * count.
+     *
+     * @param id
+     *            number of the word, from 0 to {@code size() - 1}.
+     * @return count of the word.
+     */
+    int count(int id);
+
+    /**
+     * Return the largest amount by which the count of the word with a number
+     * may be above its true count.
+     *
+     * @param id
+     *            number of the word, from 0 to {@code size() - 1}.
+     * @return the error, 0 for an exact count.
+     */
+    int error(int id);
+
+    /**
+     * Return the order of word numbers by decreasing count, then in
+     * alphabetical order of the words.
+     *
+     * @return order of the word numbers.
+     */
+    TopIdSelector.Order byCountThenWord();
+}
@@ -0,0 +1,484 @@
+package tagcloud;
+
+/**
+ * Holds a fixed number of words with a count each, in a heap that keeps the
+ * word with the lowest count at its root, for the counters that only keep
+ * the words likely to be the most frequent. Words are found through a slot
+ * array with open addressing, so looking a word up costs one probe sequence,
+ * and the word at the root can be replaced by a new one in place. Words are
+ * kept in lower case and looked up ignoring case, except tokens such as URLs
+ * that are kept as given, and each has a number from 0 to
+ * {@code size() - 1} that it keeps until it is replaced.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+final class WordHeap {
+
+    /**
+     * Initial length of the characters of a word.
+     */
+    private static final int INITIAL_WORD_LENGTH = 8;
+
+    /**
+     * Largest number of words.
+     */
+    private final int capacity;
+
+    /**
+     * Number of each word plus one in the slot its hash leads to, 0 for an
+     * empty slot.
+     */
+    private final int[] slots;
+
+    /**
+     * Characters of each word, in lower case.
+     */
+    private final char[][] words;
+
+    /**
+     * Length of each word.
+     */
+    private final int[] lengths;
+
+    /**
+     * Hash of each word.
+     */
+    private final int[] hashes;
+
+    /**
+     * Count of each word.
+     */
+    private final int[] counts;
+
+    /**
+     * Numbers of the words in heap order, the root has the lowest count.
+     */
+    private final int[] heap;
+
+    /**
+     * Index in the heap of each word.
+     */
+    private final int[] heapIndexes;
+
+    /**
+     * Number of words.
+     */
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity
+     *            largest number of words, at least 1.
+     */
+    WordHeap(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("at least one word needed");
+        }
+        this.capacity = capacity;
+        this.slots = new int[Integer.highestOneBit(capacity - 1 | 1) << 2];
+        this.words = new char[capacity][];
+        this.lengths = new int[capacity];
+        this.hashes = new int[capacity];
+        this.counts = new int[capacity];
+        this.heap = new int[capacity];
+        this.heapIndexes = new int[capacity];
+    }
+
+    /**
+     * Return the largest number of words.
+     *
+     * @return largest number of words.
+     */
+    int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Return the number of words.
+     *
+     * @return number of words.
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Report whether there is no room for another word.
+     *
+     * @return true if {@code size() == capacity()}.
+     */
+    boolean isFull() {
+        return this.size == this.capacity;
+    }
+
+    /**
+     * Return the number of the word with the lowest count.
+     *
+     * @return number of the word at the root, the heap must not be empty.
+     */
+    int min() {
+        return this.heap[0];
+    }
+
+    /**
+     * Find a word given as a span of a buffer.
+     *
+     * @param chars
+     *            buffer holding the word.
+     * @param start
+     *            index of the first character of the word.
+     * @param end
+     *            index one past the last character of the word.
+     * @param hash
+     *            hash of the word as it is kept.
+     * @param fold
+     *            whether to look the word up ignoring case.
+     * @return number of the word, or -1 if it is not in the heap.
+     */
+    int find(char[] chars, int start, int end, int hash, boolean fold) {
+        int mask = this.slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (this.slots[slot] != 0) {
+            int id = this.slots[slot] - 1;
+            if (this.hashes[id] == hash
+                    && this.matches(id, chars, start, end, fold)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Add a word that is not in the heap, which must not be full.
+     *
+     * @param chars
+     *            buffer holding the word.
+     * @param start
+     *            index of the first character of the word.
+     * @param end
+     *            index one past the last character of the word.
+     * @param hash
+     *            hash of the word as it is kept.
+     * @param count
+     *            count of the word.
+     * @param fold
+     *            whether the word is kept in lower case.
+     * @return number of the word.
+     */
+    int add(char[] chars, int start, int end, int hash, int count,
+            boolean fold) {
+        int id = this.size;
+        this.size++;
+        this.set(id, chars, start, end, hash, fold);
+        this.counts[id] = count;
+        this.heap[id] = id;
+        this.heapIndexes[id] = id;
+        this.siftUp(id);
+        return id;
+    }
+
+    /**
+     * Replace the word with the lowest count by a word that is not in the
+     * heap. The new word takes over the number of the old one.
+     *
+     * @param chars
+     *            buffer holding the word.
+     * @param start
+     *            index of the first character of the word.
+     * @param end
+     *            index one past the last character of the word.
+     * @param hash
+     *            hash of the word as it is kept.
+     * @param count
+     *            count of the new word, at least the lowest count.
+     * @param fold
+     *            whether the word is kept in lower case.
+     * @return number of the word.
+     */
+    int replaceMin(char[] chars, int start, int end, int hash, int count,
+            boolean fold) {
+        int id = this.heap[0];
+        this.remove(id);
+        this.set(id, chars, start, end, hash, fold);
+        this.counts[id] = count;
+        this.siftDown(0);
+        return id;
+    }
+
+    /**
+     * Raise the count of a word.
+     *
+     * @param id
+     *            number of the word.
+     * @param count
+     *            new count, at least the current one.
+     */
+    void raise(int id, int count) {
+        this.counts[id] = count;
+        this.siftDown(this.heapIndexes[id]);
+    }
+
+    /**
+     * Return a word.
+     *
+     * @param id
+     *            number of the word.
+     * @return the word, in lower case.
+     */
+    String key(int id) {
+        return new String(this.words[id], 0, this.lengths[id]);
+    }
+
+    /**
+     * Return the characters of a word, which must not be modified.
+     *
+     * @param id
+     *            number of the word.
+     * @return buffer holding the word from index 0.
+     */
+    char[] chars(int id) {
+        return this.words[id];
+    }
+
+    /**
+     * Return the length of a word.
+     *
+     * @param id
+     *            number of the word.
+     * @return number of characters of the word.
+     */
+    int length(int id) {
+        return this.lengths[id];
+    }
+
+    /**
+     * Return the hash of a word.
+     *
+     * @param id
+     *            number of the word.
+     * @return hash the word was added with.
+     */
+    int hash(int id) {
+        return this.hashes[id];
+    }
+
+    /**
+     * Return the count of a word.
+     *
+     * @param id
+     *            number of the word.
+     * @return count of the word.
+     */
+    int count(int id) {
+        return this.counts[id];
+    }
+
+    /**
+     * Return the order of word numbers by decreasing count, then in
+     * alphabetical order of the words.
+     *
+     * @return order of the word numbers.
+     */
+    TopIdSelector.Order byCountThenWord() {
+        return (id1, id2) -> {
+            int order = Integer.compare(this.counts[id2], this.counts[id1]);
+            if (order == 0) {
+                order = this.compareWords(id1, id2);
+            }
+            return order;
+        };
+    }
+
+    /**
+     * Copy a word and index it.
+     *
+     * @param id
+     *            number of the word.
+     * @param chars
+     *            buffer holding the word.
+     * @param start
+     *            index of the first character of the word.
+     * @param end
+     *            index one past the last character of the word.
+     * @param hash
+     *            hash of the word as it is kept.
+     * @param fold
+     *            whether the word is kept in lower case.
+     */
+    private void set(int id, char[] chars, int start, int end, int hash,
+            boolean fold) {
+        int length = end - start;
+        char[] word = this.words[id];
+        if (word == null || word.length < length) {
+            word = new char[Math.max(length, INITIAL_WORD_LENGTH)];
+            this.words[id] = word;
+        }
+        if (fold) {
+            for (int i = 0; i < length; i++) {
+                word[i] = WordCountTable.toLowerCase(chars, start + i, start,
+                        end);
+            }
+        } else {
+            System.arraycopy(chars, start, word, 0, length);
+        }
+        this.lengths[id] = length;
+        this.hashes[id] = hash;
+
+        int mask = this.slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (this.slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        this.slots[slot] = id + 1;
+    }
+
+    /**
+     * Remove a word from the slots, moving back the words after it in its
+     * probe sequence so that none is cut off from its slot.
+     *
+     * @param id
+     *            number of the word.
+     */
+    private void remove(int id) {
+        int mask = this.slots.length - 1;
+        int hole = mix(this.hashes[id]) & mask;
+        while (this.slots[hole] != id + 1) {
+            hole = (hole + 1) & mask;
+        }
+        int next = (hole + 1) & mask;
+        while (this.slots[next] != 0) {
+            int home = mix(this.hashes[this.slots[next] - 1]) & mask;
+
+            // a word may move back unless its home is between the two slots
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                this.slots[hole] = this.slots[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        this.slots[hole] = 0;
+    }
+
+    /**
+     * Compare a word with a span of a buffer.
+     *
+     * @param id
+     *            number of the word.
+     * @param chars
+     *            buffer holding the other word.
+     * @param start
+     *            index of the first character of the other word.
+     * @param end
+     *            index one past the last character of the other word.
+     * @param fold
+     *            whether to compare the span in lower case.
+     * @return true if the words are equal.
+     */
+    private boolean matches(int id, char[] chars, int start, int end,
+            boolean fold) {
+        if (this.lengths[id] != end - start) {
+            return false;
+        }
+        char[] word = this.words[id];
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            if (fold) {
+                c = WordCountTable.toLowerCase(chars, i, start, end);
+            }
+            if (word[i - start] != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compare two words the way their {@code String}s would compare.
+     *
+     * @param id1
+     *            number of the first word.
+     * @param id2
+     *            number of the second word.
+     * @return negative, zero or positive as the first word is before, the
+     *         same as or after the second.
+     */
+    private int compareWords(int id1, int id2) {
+        char[] word1 = this.words[id1];
+        char[] word2 = this.words[id2];
+        int length = Math.min(this.lengths[id1], this.lengths[id2]);
+        for (int i = 0; i < length; i++) {
+            if (word1[i] != word2[i]) {
+                return word1[i] - word2[i];
+            }
+        }
+        return this.lengths[id1] - this.lengths[id2];
+    }
+
+    /**
+     * Move a word up the heap until its parent does not have a higher count.
+     *
+     * @param index
+     *            index of the word in the heap.
+     */
+    private void siftUp(int index) {
+        int id = this.heap[index];
+        int count = this.counts[id];
+        int i = index;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (this.counts[this.heap[parent]] <= count) {
+                break;
+            }
+            this.heap[i] = this.heap[parent];
+            this.heapIndexes[this.heap[i]] = i;
+            i = parent;
+        }
+        this.heap[i] = id;
+        this.heapIndexes[id] = i;
+    }
+
+    /**
+     * Move a word down the heap until no child has a lower count.
+     *
+     * @param index
+     *            index of the word in the heap.
+     */
+    private void siftDown(int index) {
+        int id = this.heap[index];
+        int count = this.counts[id];
+        int i = index;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= this.size) {
+                break;
+            }
+            if (child + 1 < this.size && this.counts[this.heap[child
+                    + 1]] < this.counts[this.heap[child]]) {
+                child++;
+            }
+            if (count <= this.counts[this.heap[child]]) {
+                break;
+            }
+            this.heap[i] = this.heap[child];
+            this.heapIndexes[this.heap[i]] = i;
+            i = child;
+        }
+        this.heap[i] = id;
+        this.heapIndexes[id] = i;
+    }
+
+    /**
+     * Spread the bits of a hash so that similar words land in distant slots.
+     *
+     * @param hash
+     *            hash of a word.
+     * @return mixed hash.
+     */
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
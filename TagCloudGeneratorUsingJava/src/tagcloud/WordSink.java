@@ -0,0 +1,41 @@
+package tagcloud;
+
+/**
+ * Receives the words found by a {@code WordTokenizer}. Words are passed as a
+ * span of a character buffer so that no {@code String} has to be created for
+ * each occurrence.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public interface WordSink {
+
+    /**
+     * Accept one word. The buffer is only valid for the duration of the call
+     * and must not be kept.
+     *
+     * @param chars
+     *            buffer holding the word.
+     * @param start
+     *            index of the first character of the word.
+     * @param end
+     *            index one past the last character of the word.
+     */
+    void accept(char[] chars, int start, int end);
+
+    /**
+     * Accept one token whose case is part of it, such as a URL or an e-mail
+     * address, which sinks that ignore the case of words keep as given. By
+     * default it is accepted like a word.
+     *
+     * @param chars
+     *            buffer holding the token.
+     * @param start
+     *            index of the first character of the token.
+     * @param end
+     *            index one past the last character of the token.
+     */
+    default void acceptToken(char[] chars, int start, int end) {
+        this.accept(chars, start, end);
+    }
+}
@@ -0,0 +1,852 @@
+package tagcloud;
+
+/**
+ * Splits text into words. Separator characters are looked up in a
+ * {@code SeparatorSet} compiled once, with a single array access per
+ * character. Words are reported as offsets into the text, so scanning
+ * allocates nothing. A tokenizer holds no mutable state and may be shared by
+ * any number of threads.
+ *
+ * <p>
+ * When the {@code jdk.incubator.vector} module is present and
+ * {@code VectorSeparatorClassifier} was built from {@code src-vector},
+ * {@code tokenize} classifies {@code SeparatorClassifier.BLOCK_SIZE}
+ * characters at a time with it and walks the word boundaries of the
+ * resulting masks. Otherwise it scans one character at a time. Both report
+ * the same words.
+ *
+ * <p>
+ * A Unicode tokenizer reads whole code points, so a supplementary character
+ * is never cut in two, and splits the text outside of ASCII with the Unicode
+ * general categories instead of the separator set alone: letters and digits
+ * make words, combining marks and format characters such as joiners continue
+ * the word before them, every ideograph or hiragana character is a word by
+ * itself since those scripts are written without spaces, and anything else,
+ * punctuation, symbols and emoji, separates words. ASCII characters are still
+ * classified with the separator set alone, and blocks of pure ASCII text
+ * still take the vector path, so English text is tokenized as fast as before.
+ *
+ * <p>
+ * {@code tokenizeUtf8} finds the same words in UTF-8 bytes without decoding
+ * them. When no separator is outside of ASCII, every byte from 128 up is part
+ * of a word, so only the bytes are looked at; otherwise the characters outside
+ * of ASCII are decoded one at a time to be classified.
+ *
+ * <p>
+ * A tokenizer made {@code withTokenClasses} first cuts the text at blank
+ * separators. Each piece, without the punctuation around it, is checked for
+ * a number, URL, e-mail address, hashtag or mention, and one that is
+ * recognized is kept whole, bucketed or dropped, as its class says; any other
+ * piece is split into words as usual. A URL or e-mail address that is kept
+ * keeps its case, and a closing parenthesis that matches one inside it, as
+ * in a link to a page "Foo_(bar)". Token classes are only recognized in
+ * decoded text.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class WordTokenizer {
+
+    /**
+     * Number of characters that are ASCII.
+     */
+    private static final int ASCII_LIMIT = 128;
+
+    /**
+     * Code point class of a character that is part of a word.
+     */
+    private static final int WORD = 0;
+
+    /**
+     * Code point class of a character that continues a word but starts none.
+     */
+    private static final int EXTEND = 1;
+
+    /**
+     * Code point class of a character that is a word by itself.
+     */
+    private static final int SINGLE = 2;
+
+    /**
+     * Code point class of a separator.
+     */
+    private static final int SEPARATOR = 3;
+
+    /**
+     * Compiled separators, shared read-only.
+     */
+    private final SeparatorSet separators;
+
+    /**
+     * Classifier of whole blocks of characters, or null to scan one
+     * character at a time.
+     */
+    private final SeparatorClassifier classifier;
+
+    /**
+     * Whether characters outside of ASCII are split by Unicode category.
+     */
+    private final boolean unicode;
+
+    /**
+     * Whether characters outside of ASCII must be decoded to be classified,
+     * as opposed to always being part of words.
+     */
+    private final boolean decodeNonAscii;
+
+    /**
+     * Policy of the recognized token classes, or null to only split words.
+     */
+    private final TokenClasses tokenClasses;
+
+    /**
+     * Separators that end every word and token: all separators, or with
+     * token classes only the blank ones.
+     */
+    private final SeparatorSet boundaries;
+
+    /**
+     * Constructor, vectorizing the scan if the platform allows it.
+     *
+     * @param separators
+     *            every character of this string is a separator.
+     */
+    public WordTokenizer(String separators) {
+        this(SeparatorSet.of(separators), true);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param separators
+     *            every character of this string is a separator.
+     * @param vectorize
+     *            whether to classify blocks of characters with the Vector API
+     *            when it is available.
+     */
+    public WordTokenizer(String separators, boolean vectorize) {
+        this(SeparatorSet.of(separators), vectorize);
+    }
+
+    /**
+     * Constructor, vectorizing the scan if the platform allows it.
+     *
+     * @param separators
+     *            the separators.
+     */
+    public WordTokenizer(SeparatorSet separators) {
+        this(separators, true);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param separators
+     *            the separators.
+     * @param vectorize
+     *            whether to classify blocks of characters with the Vector API
+     *            when it is available.
+     */
+    public WordTokenizer(SeparatorSet separators, boolean vectorize) {
+        this(separators, vectorize, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param separators
+     *            the separators.
+     * @param vectorize
+     *            whether to classify blocks of characters with the Vector API
+     *            when it is available.
+     * @param unicode
+     *            whether to read code points and split the text outside of
+     *            ASCII by Unicode category.
+     */
+    public WordTokenizer(SeparatorSet separators, boolean vectorize,
+            boolean unicode) {
+        this.separators = separators;
+        this.unicode = unicode;
+        this.decodeNonAscii = unicode || separators.hasNonAscii();
+        this.tokenClasses = null;
+        this.boundaries = separators;
+        this.classifier = vectorize ? this.loadVectorClassifier() : null;
+    }
+
+    /**
+     * Constructor of a copy of a tokenizer with other token classes.
+     *
+     * @param tokenizer
+     *            the tokenizer copied.
+     * @param tokenClasses
+     *            policy of the recognized token classes, or null.
+     */
+    private WordTokenizer(WordTokenizer tokenizer,
+            TokenClasses tokenClasses) {
+        this.separators = tokenizer.separators;
+        this.unicode = tokenizer.unicode;
+        this.decodeNonAscii = tokenizer.decodeNonAscii;
+        this.tokenClasses = tokenClasses;
+        this.classifier = tokenizer.classifier;
+        if (tokenClasses == null) {
+            this.boundaries = tokenizer.separators;
+        } else {
+            StringBuilder blanks = new StringBuilder();
+            for (int c = 0; c <= Character.MAX_VALUE; c++) {
+                if (this.separators.contains((char) c)
+                        && Character.isWhitespace(c)) {
+                    blanks.append((char) c);
+                }
+            }
+            this.boundaries = SeparatorSet.of(blanks.toString());
+        }
+    }
+
+    /**
+     * Return this tokenizer recognizing token classes.
+     *
+     * @param tokenClasses
+     *            policy of the recognized token classes, or null to only
+     *            split words.
+     * @return the new tokenizer.
+     */
+    public WordTokenizer withTokenClasses(TokenClasses tokenClasses) {
+        return new WordTokenizer(this, tokenClasses);
+    }
+
+    /**
+     * Create the vector classifier of these separators. It is loaded by name
+     * since it cannot be linked without the incubating vector module.
+     *
+     * @return the classifier, or null if the Vector API is not available.
+     */
+    private SeparatorClassifier loadVectorClassifier() {
+        try {
+            return (SeparatorClassifier) Class
+                    .forName(WordTokenizer.class.getPackageName()
+                            + ".VectorSeparatorClassifier")
+                    .getDeclaredConstructor(long[].class, boolean.class,
+                            WordTokenizer.class)
+                    .newInstance(this.separators.asciiBits(),
+                            this.separators.hasNonAscii(), this);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Report whether blocks of characters are classified with the Vector
+     * API.
+     *
+     * @return true if the scan is vectorized.
+     */
+    public boolean isVectorized() {
+        return this.classifier != null;
+    }
+
+    /**
+     * Report whether characters outside of ASCII are split by Unicode
+     * category.
+     *
+     * @return true if the tokenizer reads code points.
+     */
+    public boolean isUnicode() {
+        return this.unicode;
+    }
+
+    /**
+     * Report whether token classes are recognized.
+     *
+     * @return true if the tokenizer was made {@code withTokenClasses}.
+     */
+    public boolean hasTokenClasses() {
+        return this.tokenClasses != null;
+    }
+
+    /**
+     * Report whether a character is a separator.
+     *
+     * @param c
+     *            character to classify.
+     * @return true if {@code c} is a separator.
+     */
+    public boolean isSeparator(char c) {
+        return this.separators.contains(c);
+    }
+
+    /**
+     * Report whether a character ends every word and token, so that text may
+     * be cut there. With token classes, only blank separators qualify, since
+     * the other separators may be part of a URL or a number.
+     *
+     * @param c
+     *            character to classify.
+     * @return true if text may be cut at {@code c}.
+     */
+    public boolean isBoundary(char c) {
+        return this.boundaries.contains(c);
+    }
+
+    /**
+     * Return the end of the word or separator starting at an index. A
+     * separator is always a single character long.
+     *
+     * @param s
+     *            text being scanned.
+     * @param startingIndex
+     *            index of the first character of the word or separator.
+     * @return index one past the last character of the word or separator.
+     */
+    public int wordEnd(CharSequence s, int startingIndex) {
+        int index = startingIndex + 1;
+        if (!this.isSeparator(s.charAt(startingIndex))) {
+            while (index < s.length() && !this.isSeparator(s.charAt(index))) {
+                index++;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Pass every word in a span of a buffer to a sink. When the span is not
+     * the end of the input, a word running up to {@code to} may continue in
+     * the next span, so it is not reported and its start is returned instead.
+     *
+     * @param chars
+     *            buffer holding the text.
+     * @param from
+     *            index of the first character to scan.
+     * @param to
+     *            index one past the last character to scan.
+     * @param endOfInput
+     *            whether the span ends the input.
+     * @param sink
+     *            receiver of the words.
+     * @return index of the first character that was not consumed.
+     */
+    public int tokenize(char[] chars, int from, int to, boolean endOfInput,
+            WordSink sink) {
+        if (this.tokenClasses != null) {
+            return this.tokenizeTokens(chars, from, to, endOfInput, sink);
+        }
+        return this.tokenizeWords(chars, from, to, endOfInput, sink);
+    }
+
+    /**
+     * Same as {@code tokenize}, without recognizing token classes.
+     *
+     * @param chars
+     *            buffer holding the text.
+     * @param from
+     *            index of the first character to scan.
+     * @param to
+     *            index one past the last character to scan.
+     * @param endOfInput
+     *            whether the span ends the input.
+     * @param sink
+     *            receiver of the words.
+     * @return index of the first character that was not consumed.
+     */
+    private int tokenizeWords(char[] chars, int from, int to,
+            boolean endOfInput, WordSink sink) {
+        if (this.unicode) {
+            return this.tokenizeCodePoints(chars, from, to, endOfInput, sink);
+        }
+        if (this.classifier != null) {
+            return this.tokenizeBlocks(chars, from, to, endOfInput, sink);
+        }
+        int index = from;
+        while (index < to) {
+            // skip separators
+            while (index < to && this.isSeparator(chars[index])) {
+                index++;
+            }
+            int start = index;
+            while (index < to && !this.isSeparator(chars[index])) {
+                index++;
+            }
+            if (index == to && !endOfInput) {
+                return start;
+            }
+            if (index > start) {
+                sink.accept(chars, start, index);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Pass every word in a span of a buffer of UTF-8 bytes to a sink, the
+     * same words {@code tokenize} finds in the decoded text. When the span is
+     * not the end of the input, a word running up to {@code to}, or a
+     * character cut by it, may continue in the next span, so it is not
+     * consumed and its start is returned instead.
+     *
+     * @param bytes
+     *            buffer holding the text in UTF-8.
+     * @param from
+     *            index of the first byte to scan, the start of a character.
+     * @param to
+     *            index one past the last byte to scan.
+     * @param endOfInput
+     *            whether the span ends the input.
+     * @param sink
+     *            receiver of the words.
+     * @return index of the first byte that was not consumed.
+     * @throws IllegalStateException
+     *             if the tokenizer recognizes token classes.
+     */
+    public int tokenizeUtf8(byte[] bytes, int from, int to,
+            boolean endOfInput, Utf8WordSink sink) {
+        if (this.tokenClasses != null) {
+            throw new IllegalStateException(
+                    "token classes are only recognized in decoded text");
+        }
+
+        // start of the word being scanned, or -1 between words
+        int start = -1;
+        int index = from;
+        while (index < to) {
+            byte b = bytes[index];
+            int next = index + 1;
+            int kind;
+            if (b >= 0) {
+                kind = this.separators.contains((char) b) ? SEPARATOR : WORD;
+            } else if (!this.decodeNonAscii) {
+                kind = WORD;
+            } else {
+                int decoded = Utf8.decode(bytes, index, to);
+                if (decoded == Utf8.INCOMPLETE) {
+                    if (!endOfInput) {
+                        // finish the character with the next span
+                        return start >= 0 ? start : index;
+                    }
+                    decoded = Utf8.truncated(to - index);
+                }
+                next = index + Utf8.length(decoded);
+                int codePoint = Utf8.codePoint(decoded);
+                if (this.unicode) {
+                    kind = this.classify(codePoint);
+                } else if (codePoint <= Character.MAX_VALUE
+                        && this.separators.contains((char) codePoint)) {
+                    kind = SEPARATOR;
+                } else {
+                    kind = WORD;
+                }
+            }
+            if (kind == WORD) {
+                if (start < 0) {
+                    start = index;
+                }
+            } else if (kind != EXTEND) {
+                if (start >= 0) {
+                    sink.accept(bytes, start, index);
+                    start = -1;
+                }
+                if (kind == SINGLE) {
+                    sink.accept(bytes, index, next);
+                }
+            }
+            index = next;
+        }
+        if (start >= 0) {
+            if (!endOfInput) {
+                return start;
+            }
+            sink.accept(bytes, start, to);
+        }
+        return to;
+    }
+
+    /**
+     * Same as {@code tokenize}, but whole blocks of characters are classified
+     * at once and the words are found from the bits of the separator masks.
+     * The last, partial block is scanned one character at a time.
+     *
+     * @param chars
+     *            buffer holding the text.
+     * @param from
+     *            index of the first character to scan.
+     * @param to
+     *            index one past the last character to scan.
+     * @param endOfInput
+     *            whether the span ends the input.
+     * @param sink
+     *            receiver of the words.
+     * @return index of the first character that was not consumed.
+     */
+    private int tokenizeBlocks(char[] chars, int from, int to,
+            boolean endOfInput, WordSink sink) {
+        final int blockSize = SeparatorClassifier.BLOCK_SIZE;
+        // start of the word being scanned, or -1 between words
+        int start = -1;
+        int index = from;
+        while (to - index >= blockSize) {
+            start = scanMask(chars, index,
+                    this.classifier.separatorMask(chars, index), start, sink);
+            index += blockSize;
+        }
+        for (; index < to; index++) {
+            boolean separator = this.isSeparator(chars[index]);
+            if (start < 0 && !separator) {
+                start = index;
+            } else if (start >= 0 && separator) {
+                sink.accept(chars, start, index);
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            if (!endOfInput) {
+                return start;
+            }
+            sink.accept(chars, start, to);
+        }
+        return to;
+    }
+
+    /**
+     * Same as {@code tokenize}, but code points are read whole and the
+     * characters outside of ASCII are classified by Unicode category. Blocks
+     * of pure ASCII text are classified at once when a vector classifier is
+     * present; other blocks are scanned one code point at a time.
+     *
+     * @param chars
+     *            buffer holding the text.
+     * @param from
+     *            index of the first character to scan.
+     * @param to
+     *            index one past the last character to scan.
+     * @param endOfInput
+     *            whether the span ends the input.
+     * @param sink
+     *            receiver of the words.
+     * @return index of the first character that was not consumed.
+     */
+    private int tokenizeCodePoints(char[] chars, int from, int to,
+            boolean endOfInput, WordSink sink) {
+        // a surrogate pair cut by the end of the span is left for the next
+        int end = to;
+        if (!endOfInput && end > from
+                && Character.isHighSurrogate(chars[end - 1])) {
+            end--;
+        }
+        int start = -1;
+        int index = from;
+        if (this.classifier != null) {
+            final int blockSize = SeparatorClassifier.BLOCK_SIZE;
+            while (end - index >= blockSize) {
+                if (this.classifier.isAscii(chars, index)) {
+                    start = scanMask(chars, index,
+                            this.classifier.separatorMask(chars, index),
+                            start, sink);
+                    index += blockSize;
+                } else {
+                    int blockEnd = index + blockSize;
+                    if (blockEnd < end
+                            && Character.isHighSurrogate(chars[blockEnd - 1])) {
+                        blockEnd++;
+                    }
+                    start = this.scanCodePoints(chars, index, blockEnd, start,
+                            sink);
+                    index = blockEnd;
+                }
+            }
+        }
+        start = this.scanCodePoints(chars, index, end, start, sink);
+        if (start >= 0) {
+            if (!endOfInput) {
+                return start;
+            }
+            sink.accept(chars, start, end);
+        }
+        return end;
+    }
+
+    /**
+     * Pass the words ending in a block to a sink, given the separator mask of
+     * the block.
+     *
+     * @param chars
+     *            buffer holding the text.
+     * @param index
+     *            index of the first character of the block.
+     * @param separators
+     *            mask whose bit {@code i} is set if {@code chars[index + i]}
+     *            is a separator.
+     * @param wordStart
+     *            start of the word running into the block, or -1.
+     * @param sink
+     *            receiver of the words.
+     * @return start of the word running out of the block, or -1.
+     */
+    private static int scanMask(char[] chars, int index, long separators,
+            int wordStart, WordSink sink) {
+        final int blockSize = SeparatorClassifier.BLOCK_SIZE;
+        int start = wordStart;
+        int bit = 0;
+        while (bit < blockSize) {
+            long next;
+            if (start < 0) {
+                next = ~separators >>> bit;
+            } else {
+                next = separators >>> bit;
+            }
+            if (next == 0) {
+                break;
+            }
+            bit += Long.numberOfTrailingZeros(next);
+            if (start < 0) {
+                start = index + bit;
+            } else {
+                sink.accept(chars, start, index + bit);
+                start = -1;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Pass the words ending in a span of a buffer to a sink, one code point
+     * at a time. ASCII characters are looked up in the separator set alone.
+     *
+     * @param chars
+     *            buffer holding the text.
+     * @param from
+     *            index of the first character to scan.
+     * @param to
+     *            index one past the last character to scan, not inside a
+     *            surrogate pair.
+     * @param wordStart
+     *            start of the word running into the span, or -1.
+     * @param sink
+     *            receiver of the words.
+     * @return start of the word running out of the span, or -1.
+     */
+    private int scanCodePoints(char[] chars, int from, int to, int wordStart,
+            WordSink sink) {
+        int start = wordStart;
+        int index = from;
+        while (index < to) {
+            char c = chars[index];
+            int next = index + 1;
+            int kind;
+            if (c < ASCII_LIMIT) {
+                kind = this.separators.contains(c) ? SEPARATOR : WORD;
+            } else {
+                int codePoint = c;
+                if (Character.isHighSurrogate(c) && next < to
+                        && Character.isLowSurrogate(chars[next])) {
+                    codePoint = Character.toCodePoint(c, chars[next]);
+                    next++;
+                }
+                kind = this.classify(codePoint);
+            }
+            if (kind == WORD) {
+                if (start < 0) {
+                    start = index;
+                }
+            } else if (kind != EXTEND) {
+                if (start >= 0) {
+                    sink.accept(chars, start, index);
+                    start = -1;
+                }
+                if (kind == SINGLE) {
+                    sink.accept(chars, index, next);
+                }
+            }
+            index = next;
+        }
+        return start;
+    }
+
+    /**
+     * Classify a code point outside of ASCII by its Unicode category. A
+     * character of the separator set is always a separator.
+     *
+     * @param codePoint
+     *            the code point, 128 or more.
+     * @return {@code WORD}, {@code EXTEND}, {@code SINGLE} or
+     *         {@code SEPARATOR}.
+     */
+    private int classify(int codePoint) {
+        if (codePoint <= Character.MAX_VALUE
+                && this.separators.contains((char) codePoint)) {
+            return SEPARATOR;
+        }
+        switch (Character.getType(codePoint)) {
+            case Character.UPPERCASE_LETTER:
+            case Character.LOWERCASE_LETTER:
+            case Character.TITLECASE_LETTER:
+            case Character.MODIFIER_LETTER:
+            case Character.DECIMAL_DIGIT_NUMBER:
+            case Character.LETTER_NUMBER:
+            case Character.OTHER_NUMBER:
+                return WORD;
+            case Character.OTHER_LETTER:
+                if (isWrittenWithoutSpaces(codePoint)) {
+                    return SINGLE;
+                }
+                return WORD;
+            case Character.NON_SPACING_MARK:
+            case Character.ENCLOSING_MARK:
+            case Character.COMBINING_SPACING_MARK:
+            case Character.FORMAT:
+                return EXTEND;
+            default:
+                return SEPARATOR;
+        }
+    }
+
+    /**
+     * Report whether a letter belongs to a script written without spaces
+     * between words, where each character is counted as a word.
+     *
+     * @param codePoint
+     *            the letter.
+     * @return true if the letter is an ideograph or hiragana.
+     */
+    private static boolean isWrittenWithoutSpaces(int codePoint) {
+        return Character.isIdeographic(codePoint) || Character.UnicodeScript
+                .of(codePoint) == Character.UnicodeScript.HIRAGANA;
+    }
+
+    /**
+     * Same as {@code tokenize}, but the text is first cut at blank separators
+     * and each piece is checked for a token class.
+     *
+     * @param chars
+     *            buffer holding the text.
+     * @param from
+     *            index of the first character to scan.
+     * @param to
+     *            index one past the last character to scan.
+     * @param endOfInput
+     *            whether the span ends the input.
+     * @param sink
+     *            receiver of the words.
+     * @return index of the first character that was not consumed.
+     */
+    private int tokenizeTokens(char[] chars, int from, int to,
+            boolean endOfInput, WordSink sink) {
+        int index = from;
+        while (index < to) {
+            while (index < to && this.isBoundary(chars[index])) {
+                index++;
+            }
+            int start = index;
+            boolean candidate = false;
+            while (index < to && !this.isBoundary(chars[index])) {
+                candidate |= isTrigger(chars[index]);
+                index++;
+            }
+            if (index == to && !endOfInput) {
+                return start;
+            }
+
+            // only a piece with a trigger or starting with www may be a token
+            if (candidate || (index > start && (chars[start] == 'w'
+                    || chars[start] == 'W'))) {
+                this.tokenizePiece(chars, start, index, sink);
+            } else if (index > start) {
+                this.tokenizeWords(chars, start, index, true, sink);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Report whether a character may show that a piece of text is a token:
+     * a digit, or one of {@code @ # :}.
+     *
+     * @param c
+     *            the character.
+     * @return true if {@code c} is a trigger.
+     */
+    private static boolean isTrigger(char c) {
+        return (c >= '0' && c <= ':') || c == '@' || c == '#';
+    }
+
+    /**
+     * Report whether a span ends with a closing parenthesis that matches an
+     * opening one before it.
+     *
+     * @param chars
+     *            buffer holding the text.
+     * @param start
+     *            index of the first character of the span.
+     * @param end
+     *            index one past the last character of the span.
+     * @return true if {@code chars[end - 1]} is a matched ')'.
+     */
+    private static boolean closesParenthesis(char[] chars, int start,
+            int end) {
+        if (chars[end - 1] != ')') {
+            return false;
+        }
+        int open = 0;
+        for (int i = start; i < end - 1; i++) {
+            if (chars[i] == '(') {
+                open++;
+            } else if (chars[i] == ')') {
+                open--;
+            }
+        }
+        return open > 0;
+    }
+
+    /**
+     * Pass a piece of text without blanks to a sink, as one token if it has
+     * a class and as its words otherwise.
+     *
+     * @param chars
+     *            buffer holding the text.
+     * @param start
+     *            index of the first character of the piece.
+     * @param end
+     *            index one past the last character of the piece.
+     * @param sink
+     *            receiver of the words.
+     */
+    private void tokenizePiece(char[] chars, int start, int end,
+            WordSink sink) {
+        // leave out the punctuation around the token, as in "(#tag)."
+        int tokenStart = start;
+        int tokenEnd = end;
+        while (tokenStart < tokenEnd && chars[tokenStart] != '#'
+                && chars[tokenStart] != '@'
+                && this.isSeparator(chars[tokenStart])) {
+            tokenStart++;
+        }
+        while (tokenEnd > tokenStart && chars[tokenEnd - 1] != '/'
+                && this.isSeparator(chars[tokenEnd - 1])
+                && !closesParenthesis(chars, tokenStart, tokenEnd)) {
+            tokenEnd--;
+        }
+
+        TokenClasses.Kind kind = this.tokenClasses.recognize(chars,
+                tokenStart, tokenEnd);
+        TokenClasses.Action action = TokenClasses.Action.SPLIT;
+        if (kind != null) {
+            action = this.tokenClasses.action(kind);
+        }
+        switch (action) {
+            case KEEP:
+                if (kind == TokenClasses.Kind.URL
+                        || kind == TokenClasses.Kind.EMAIL) {
+                    sink.acceptToken(chars, tokenStart, tokenEnd);
+                } else {
+                    sink.accept(chars, tokenStart, tokenEnd);
+                }
+                break;
+            case BUCKET:
+                char[] bucket = this.tokenClasses.bucket(kind);
+                sink.accept(bucket, 0, bucket.length);
+                break;
+            case DROP:
+                break;
+            default:
+                this.tokenizeWords(chars, start, end, true, sink);
+                break;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package tagcloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code BatchOptions}.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class BatchOptionsTest {
+
+    /**
+     * Check that some arguments are rejected.
+     *
+     * @param args
+     *            the arguments.
+     */
+    private static void assertRejected(String... args) {
+        try {
+            BatchOptions.parse(args);
+            fail("accepted " + String.join(" ", args));
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPhrases() {
+        BatchOptions options = BatchOptions.parse(
+                new String[] { "-g", "2", "-p", "1.5", "-e", "in.txt" });
+        assertEquals(2, options.phraseLength());
+        assertEquals(1.5, options.minPmi(), 0);
+    }
+
+    @Test
+    public void testWaysOfCountingConflict() {
+        assertRejected("-a", "0.001", "-w", "1024", "in.txt");
+        assertRejected("-j", "-a", "0.001", "in.txt");
+        assertRejected("-d", "spill", "-j", "in.txt");
+    }
+
+    @Test
+    public void testPhrasesConflictWithWaysOfCounting() {
+        assertRejected("-g", "2", "-a", "0.001", "in.txt");
+        assertRejected("-g", "2", "-w", "1024x4", "in.txt");
+        assertRejected("-g", "3", "-j", "in.txt");
+        assertRejected("-d", "spill", "-g", "2", "in.txt");
+    }
+
+    @Test
+    public void testWordsCountedAnyWay() {
+        // -g 1 is the default cloud of words
+        assertEquals(1, BatchOptions.parse(
+                new String[] { "-g", "1", "-j", "in.txt" }).phraseLength());
+    }
+}
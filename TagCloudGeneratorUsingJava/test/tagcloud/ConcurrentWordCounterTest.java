@@ -0,0 +1,202 @@
+package tagcloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code ConcurrentWordCounter}.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class ConcurrentWordCounterTest {
+
+    /**
+     * Number of threads counting at once.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * Count a word given as a {@code String}.
+     *
+     * @param counter
+     *            the counter.
+     * @param word
+     *            the word.
+     */
+    private static void add(ConcurrentWordCounter counter, String word) {
+        char[] chars = word.toCharArray();
+        counter.accept(chars, 0, chars.length);
+    }
+
+    /**
+     * Run a task on several threads that all start together, and wait for
+     * them to finish.
+     *
+     * @param threads
+     *            number of threads.
+     * @param task
+     *            task, given the number of its thread.
+     * @throws Exception
+     *             if a task fails.
+     */
+    private static void runTogether(int threads, IntConsumer task)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.accept(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Check that a counter has the same words and counts as an exact table,
+     * with every word numbered once.
+     *
+     * @param expected
+     *            the exact counts.
+     * @param counter
+     *            the counter.
+     */
+    private static void assertSameCounts(WordCountTable expected,
+            ConcurrentWordCounter counter) {
+        assertEquals(expected.size(), counter.size());
+        assertEquals(expected.total(), counter.total());
+        Set<String> seen = new HashSet<>();
+        for (int id = 0; id < counter.size(); id++) {
+            String word = counter.key(id);
+            assertTrue(word, seen.add(word));
+            assertEquals(word, expected.get(word).intValue(),
+                    counter.count(id));
+            assertEquals(0, counter.error(id));
+        }
+    }
+
+    @Test
+    public void testSingleThread() {
+        ConcurrentWordCounter counter = new ConcurrentWordCounter();
+        add(counter, "The");
+        add(counter, "cat");
+        add(counter, "THE");
+        byte[] bytes = "été".getBytes(StandardCharsets.UTF_8);
+        counter.accept(bytes, 0, bytes.length);
+        add(counter, "ÉTÉ");
+        WordCountTable expected = new WordCountTable();
+        for (String word : new String[] { "the", "cat", "the", "été",
+                "été" }) {
+            char[] chars = word.toCharArray();
+            expected.accept(chars, 0, chars.length);
+        }
+        assertSameCounts(expected, counter);
+        assertEquals(1, counter.tables());
+    }
+
+    @Test
+    public void testHotWordCountedExactly() throws Exception {
+        int times = 100000;
+        ConcurrentWordCounter counter = new ConcurrentWordCounter();
+        runTogether(THREADS, thread -> {
+            char[] chars = (thread % 2 == 0 ? "the" : "The").toCharArray();
+            for (int i = 0; i < times; i++) {
+                counter.accept(chars, 0, chars.length);
+            }
+        });
+        assertEquals(1, counter.size());
+        assertEquals("the", counter.key(0));
+        assertEquals(THREADS * times, counter.count(0));
+        assertEquals(THREADS * times, counter.total());
+    }
+
+    @Test
+    public void testRacingInsertsOfNewWords() throws Exception {
+        int words = 5000;
+        ConcurrentWordCounter counter = new ConcurrentWordCounter();
+        runTogether(THREADS, thread -> {
+            // every thread inserts the same new words in its own order
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < words; i++) {
+                order.add(i);
+            }
+            Collections.shuffle(order, new Random(thread));
+            for (int i : order) {
+                add(counter, "w" + i);
+            }
+        });
+        assertEquals(words, counter.size());
+        Set<String> seen = new HashSet<>();
+        for (int id = 0; id < counter.size(); id++) {
+            assertTrue(seen.add(counter.key(id)));
+            assertEquals(THREADS, counter.count(id));
+        }
+    }
+
+    @Test
+    public void testSmallCapacityChainsTables() throws Exception {
+        int n = 200000;
+        String[] words = new String[n];
+        Random random = new Random(13);
+        WordCountTable expected = new WordCountTable();
+        for (int i = 0; i < n; i++) {
+            int rank = (int) Math.floor(Math.pow(20000, random.nextDouble()));
+            words[i] = rank == 1 ? "The" : "w" + rank;
+            char[] chars = words[i].toCharArray();
+            expected.accept(chars, 0, chars.length);
+        }
+        ConcurrentWordCounter counter = new ConcurrentWordCounter(4);
+        runTogether(THREADS, thread -> {
+            for (int i = thread; i < n; i += THREADS) {
+                add(counter, words[i]);
+            }
+        });
+        assertTrue(counter.tables() > 1);
+        assertSameCounts(expected, counter);
+    }
+
+    @Test
+    public void testOrderByCountThenWord() {
+        ConcurrentWordCounter counter = new ConcurrentWordCounter();
+        add(counter, "pear");
+        add(counter, "fig");
+        add(counter, "apple");
+        add(counter, "fig");
+        TopIdSelector.Order order = counter.byCountThenWord();
+        Map<String, Integer> ids = new HashMap<>();
+        for (int id = 0; id < counter.size(); id++) {
+            ids.put(counter.key(id), id);
+        }
+        assertTrue(order.compare(ids.get("fig"), ids.get("apple")) < 0);
+        assertTrue(order.compare(ids.get("apple"), ids.get("pear")) < 0);
+        assertTrue(order.compare(ids.get("pear"), ids.get("apple")) > 0);
+    }
+}
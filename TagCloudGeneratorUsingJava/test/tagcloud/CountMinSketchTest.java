@@ -0,0 +1,173 @@
+package tagcloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code CountMinSketch}.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class CountMinSketchTest {
+
+    /**
+     * Count a word given as a {@code String}.
+     *
+     * @param sketch
+     *            the sketch.
+     * @param word
+     *            the word.
+     */
+    private static void add(CountMinSketch sketch, String word) {
+        char[] chars = word.toCharArray();
+        sketch.accept(chars, 0, chars.length);
+    }
+
+    /**
+     * Return a roughly Zipfian random word.
+     *
+     * @param random
+     *            source of randomness.
+     * @return the word, one of 2000.
+     */
+    private static String zipfWord(Random random) {
+        return "w" + (int) Math.floor(Math.pow(2000, random.nextDouble()));
+    }
+
+    @Test
+    public void testExactWithoutCollisions() {
+        CountMinSketch sketch = new CountMinSketch(1 << 16, 4, 8);
+        add(sketch, "b");
+        add(sketch, "a");
+        add(sketch, "B");
+        assertEquals(2, sketch.size());
+        assertEquals(3, sketch.total());
+        assertEquals(2, sketch.estimate("b"));
+        assertEquals(1, sketch.estimate("A"));
+        assertEquals(0, sketch.estimate("c"));
+        assertEquals(Integer.valueOf(2), sketch.get("b"));
+        assertTrue(sketch.containsKey("a"));
+        assertNull(sketch.get("c"));
+    }
+
+    @Test
+    public void testUtf8SameAsChars() {
+        CountMinSketch sketch = new CountMinSketch(1024, 4, 8);
+        add(sketch, "Été");
+        byte[] bytes = "ÉTÉ".getBytes(StandardCharsets.UTF_8);
+        sketch.accept(bytes, 0, bytes.length);
+        assertEquals(1, sketch.size());
+        assertEquals(Integer.valueOf(2), sketch.get("été"));
+    }
+
+    @Test
+    public void testErrorBounds() {
+        int width = 272;
+        CountMinSketch sketch = new CountMinSketch(width, 5, 20);
+        Map<String, Integer> trueCounts = new HashMap<>();
+        Random random = new Random(5);
+        for (int i = 0; i < 50000; i++) {
+            String word = zipfWord(random);
+            add(sketch, word);
+            trueCounts.merge(word, 1, Integer::sum);
+        }
+
+        // never below, and rarely more than e * total / width above
+        double bound = Math.E * sketch.total() / width;
+        int over = 0;
+        for (Map.Entry<String, Integer> entry : trueCounts.entrySet()) {
+            int estimate = sketch.estimate(entry.getKey());
+            assertTrue(estimate >= entry.getValue());
+            if (estimate - entry.getValue() > bound) {
+                over++;
+            }
+        }
+        assertTrue(over <= trueCounts.size() / 50);
+
+        assertEquals(20, sketch.size());
+        for (int id = 0; id < sketch.size(); id++) {
+            String word = sketch.key(id);
+            assertEquals(sketch.estimate(word), sketch.count(id));
+            assertTrue(sketch.error(id) <= Math.ceil(bound));
+            assertTrue(sketch.error(id) <= sketch.count(id) - 1);
+            assertTrue(sketch.count(id) - sketch.error(id) <= trueCounts
+                    .get(word));
+        }
+
+        // the most frequent words are among the candidates
+        assertTrue(sketch.containsKey("w1"));
+        assertTrue(sketch.containsKey("w2"));
+    }
+
+    @Test
+    public void testErrorAtMostCountLessOne() {
+        CountMinSketch sketch = new CountMinSketch(2, 1, 4);
+        for (int i = 0; i < 10; i++) {
+            add(sketch, "w" + i);
+        }
+        for (int id = 0; id < sketch.size(); id++) {
+            assertTrue(sketch.error(id) <= sketch.count(id) - 1);
+        }
+    }
+
+    @Test
+    public void testAddAll() {
+        CountMinSketch sketch1 = new CountMinSketch(512, 4, 10);
+        CountMinSketch sketch2 = new CountMinSketch(512, 4, 10);
+        Map<String, Integer> trueCounts = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            String word = zipfWord(random);
+            add(i % 2 == 0 ? sketch1 : sketch2, word);
+            trueCounts.merge(word, 1, Integer::sum);
+        }
+        sketch1.addAll(sketch2);
+        assertEquals(10000, sketch1.total());
+        for (Map.Entry<String, Integer> entry : trueCounts.entrySet()) {
+            assertTrue(sketch1.estimate(entry.getKey()) >= entry.getValue());
+        }
+        assertEquals(10, sketch1.size());
+        for (int id = 0; id < sketch1.size(); id++) {
+            assertEquals(sketch1.estimate(sketch1.key(id)),
+                    sketch1.count(id));
+        }
+        assertTrue(sketch1.containsKey("w1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddAllOfOtherSize() {
+        new CountMinSketch(512, 4, 10).addAll(new CountMinSketch(256, 4, 10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroWidth() {
+        new CountMinSketch(0, 4, 10);
+    }
+
+    @Test
+    public void testOrderByCountThenWord() {
+        CountMinSketch sketch = new CountMinSketch(1 << 16, 4, 8);
+        add(sketch, "pear");
+        add(sketch, "fig");
+        add(sketch, "apple");
+        add(sketch, "fig");
+        TopIdSelector.Order order = sketch.byCountThenWord();
+        Map<String, Integer> ids = new HashMap<>();
+        for (int id = 0; id < sketch.size(); id++) {
+            ids.put(sketch.key(id), id);
+        }
+        assertTrue(order.compare(ids.get("fig"), ids.get("apple")) < 0);
+        assertTrue(order.compare(ids.get("apple"), ids.get("pear")) < 0);
+        assertFalse(order.compare(ids.get("pear"), ids.get("apple")) < 0);
+    }
+}
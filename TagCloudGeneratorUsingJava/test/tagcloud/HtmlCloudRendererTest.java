@@ -0,0 +1,61 @@
+package tagcloud;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code HtmlCloudRenderer}.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class HtmlCloudRendererTest {
+
+    /**
+     * Render a page with one word.
+     *
+     * @param fileName
+     *            name of the input file.
+     * @param word
+     *            the word.
+     * @param bufferSize
+     *            size of the buffer of the renderer.
+     * @return the page.
+     * @throws IOException
+     *             never, the page is written to memory.
+     */
+    private static String render(String fileName, String word,
+            int bufferSize) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        HtmlCloudRenderer renderer = new HtmlCloudRenderer(
+                Channels.newChannel(bytes), bufferSize);
+        renderer.begin(1, fileName);
+        renderer.word(word, 3, 1, 11);
+        renderer.end();
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testWordIsWritten() throws IOException {
+        String page = render("in.txt", "café", 1);
+        assertTrue(page.contains("<title>Top 1 words in in.txt</title>"));
+        assertTrue(page.contains(
+                "class=\"f11\" title=\"count: 2 to 3\">café</span>"));
+    }
+
+    @Test
+    public void testSpecialCharactersAreEscaped() throws IOException {
+        String page = render("<a&b>.txt", "http://x.org/?a=1&b='2'\"", 1);
+        assertTrue(page.contains("words in &lt;a&amp;b&gt;.txt</title>"));
+        assertTrue(page.contains(
+                "\">http://x.org/?a=1&amp;b=&#39;2&#39;&quot;</span>"));
+        assertFalse(page.contains("<a&b>"));
+    }
+}
@@ -0,0 +1,121 @@
+package tagcloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code HyperLogLog}.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class HyperLogLogTest {
+
+    /**
+     * Count a word given as a {@code String}.
+     *
+     * @param estimator
+     *            the estimator.
+     * @param word
+     *            the word.
+     */
+    private static void add(HyperLogLog estimator, String word) {
+        char[] chars = word.toCharArray();
+        estimator.accept(chars, 0, chars.length);
+    }
+
+    /**
+     * Check that an estimate is within four standard errors of the true
+     * count, which a correct estimator misses about once in 16000 runs.
+     *
+     * @param distinct
+     *            true number of distinct words.
+     * @param precision
+     *            precision of the estimator.
+     * @param estimate
+     *            the estimate.
+     */
+    private static void assertWithinError(long distinct, int precision,
+            long estimate) {
+        double error = 1.04 / Math.sqrt(1 << precision);
+        assertTrue(estimate + " for " + distinct + " distinct words",
+                Math.abs(estimate - distinct) <= 4 * error * distinct);
+    }
+
+    @Test
+    public void testEmpty() {
+        HyperLogLog estimator = new HyperLogLog();
+        assertEquals(0, estimator.estimate());
+        assertEquals(0, estimator.total());
+    }
+
+    @Test
+    public void testRepeatedWordsIgnoringCase() {
+        HyperLogLog estimator = new HyperLogLog();
+        add(estimator, "word");
+        add(estimator, "Word");
+        add(estimator, "WORD");
+        add(estimator, "other");
+        assertEquals(2, estimator.estimate());
+        assertEquals(4, estimator.total());
+    }
+
+    @Test
+    public void testUtf8SameAsChars() {
+        HyperLogLog chars = new HyperLogLog();
+        HyperLogLog bytes = new HyperLogLog();
+        for (int i = 0; i < 1000; i++) {
+            String word = "Été" + i;
+            add(chars, word);
+            byte[] utf8 = word.getBytes(StandardCharsets.UTF_8);
+            bytes.accept(utf8, 0, utf8.length);
+        }
+        assertEquals(chars.estimate(), bytes.estimate());
+    }
+
+    @Test
+    public void testEstimateWithinError() {
+        for (int precision : new int[] { 10, HyperLogLog.DEFAULT_PRECISION }) {
+            for (int distinct : new int[] { 100, 5000, 200000 }) {
+                HyperLogLog estimator = new HyperLogLog(precision);
+                for (int i = 0; i < 2 * distinct; i++) {
+                    add(estimator, "w" + (i % distinct));
+                }
+                assertWithinError(distinct, precision, estimator.estimate());
+                assertEquals(2 * distinct, estimator.total());
+            }
+        }
+    }
+
+    @Test
+    public void testMergeSameAsUnion() {
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        HyperLogLog union = new HyperLogLog();
+        for (int i = 0; i < 30000; i++) {
+            // the halves share the words from 10000 to 19999
+            String word = "w" + i;
+            if (i < 20000) {
+                add(first, word);
+            }
+            if (i >= 10000) {
+                add(second, word);
+            }
+            add(union, word);
+        }
+        first.addAll(second);
+        assertEquals(union.estimate(), first.estimate());
+        assertWithinError(30000, HyperLogLog.DEFAULT_PRECISION,
+                first.estimate());
+        assertEquals(40000, first.total());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMergeOtherPrecision() {
+        new HyperLogLog(10).addAll(new HyperLogLog(12));
+    }
+}
@@ -0,0 +1,87 @@
+package tagcloud;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code InflectionStemmer}, with the examples of
+ * steps 1a and 1b of the Porter stemming algorithm.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class InflectionStemmerTest {
+
+    /**
+     * Return the stem of a word.
+     *
+     * @param word
+     *            the word.
+     * @return its stem.
+     */
+    private static String stem(String word) {
+        char[] chars = word.toCharArray();
+        int length = InflectionStemmer.stem(chars, chars.length);
+        return new String(chars, 0, length);
+    }
+
+    @Test
+    public void testPlurals() {
+        assertEquals("caress", stem("caresses"));
+        assertEquals("poni", stem("ponies"));
+        assertEquals("ti", stem("ties"));
+        assertEquals("caress", stem("caress"));
+        assertEquals("cat", stem("cats"));
+        assertEquals("nation", stem("nations"));
+    }
+
+    @Test
+    public void testEed() {
+        assertEquals("feed", stem("feed"));
+        assertEquals("agree", stem("agreed"));
+    }
+
+    @Test
+    public void testEdAndIng() {
+        assertEquals("plaster", stem("plastered"));
+        assertEquals("bled", stem("bled"));
+        assertEquals("motor", stem("motoring"));
+        assertEquals("sing", stem("sing"));
+        assertEquals("dedicate", stem("dedicated"));
+    }
+
+    @Test
+    public void testEndingRestored() {
+        assertEquals("conflate", stem("conflated"));
+        assertEquals("trouble", stem("troubled"));
+        assertEquals("size", stem("sized"));
+        assertEquals("file", stem("filing"));
+        assertEquals("fail", stem("failing"));
+    }
+
+    @Test
+    public void testDoubleConsonant() {
+        assertEquals("hop", stem("hopping"));
+        assertEquals("tan", stem("tanned"));
+        assertEquals("fall", stem("falling"));
+        assertEquals("hiss", stem("hissing"));
+        assertEquals("fizz", stem("fizzed"));
+    }
+
+    @Test
+    public void testLeftAlone() {
+        assertEquals("is", stem("is"));
+        assertEquals("as", stem("as"));
+        assertEquals("Cats", stem("Cats"));
+        assertEquals("cafés", stem("cafés"));
+        assertEquals("x-rays", stem("x-rays"));
+        assertEquals("", stem(""));
+    }
+
+    @Test
+    public void testStemOfStart() {
+        char[] chars = "cats and dogs".toCharArray();
+        assertEquals(3, InflectionStemmer.stem(chars, 4));
+    }
+}
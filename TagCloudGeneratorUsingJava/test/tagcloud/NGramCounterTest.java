@@ -0,0 +1,229 @@
+package tagcloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code NGramCounter}.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class NGramCounterTest {
+
+    /**
+     * Give every word of a text to a counter.
+     *
+     * @param counter
+     *            the counter.
+     * @param text
+     *            words separated by spaces.
+     */
+    private static void accept(NGramCounter counter, String text) {
+        char[] chars = text.toCharArray();
+        int start = 0;
+        for (int i = 0; i <= chars.length; i++) {
+            if (i == chars.length || chars[i] == ' ') {
+                if (i > start) {
+                    counter.accept(chars, start, i);
+                }
+                start = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Return the counts of the phrases kept by a counter.
+     *
+     * @param counter
+     *            the counter.
+     * @return map of the phrases to their count.
+     */
+    private static Map<String, Integer> counts(NGramCounter counter) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int id = 0; id < counter.size(); id++) {
+            counts.put(counter.phrase(id), counter.count(id));
+        }
+        return counts;
+    }
+
+    @Test
+    public void testBigrams() {
+        NGramCounter counter = new NGramCounter(2);
+        accept(counter, "we are met we are");
+        Map<String, Integer> expected = new HashMap<>();
+        expected.put("we are", 2);
+        expected.put("are met", 1);
+        expected.put("met we", 1);
+        assertEquals(expected, counts(counter));
+        assertEquals(4, counter.total());
+        assertEquals(5, counter.wordTotal());
+        assertEquals(0, counter.maxUndercount());
+    }
+
+    @Test
+    public void testFewerWordsThanPhraseLength() {
+        NGramCounter counter = new NGramCounter(3);
+        accept(counter, "under god");
+        assertEquals(0, counter.size());
+        assertEquals(0, counter.total());
+        assertEquals(2, counter.wordTotal());
+    }
+
+    @Test
+    public void testSingleWords() {
+        NGramCounter counter = new NGramCounter(1);
+        accept(counter, "the nation the");
+        assertEquals(Integer.valueOf(2), counts(counter).get("the"));
+        assertEquals(1, counter.length());
+    }
+
+    @Test
+    public void testCaseFolded() {
+        NGramCounter counter = new NGramCounter(2);
+        accept(counter, "Under God under GOD");
+        assertEquals(Integer.valueOf(2), counts(counter).get("under god"));
+    }
+
+    @Test
+    public void testSameWordsInOtherOrder() {
+        NGramCounter counter = new NGramCounter(3);
+        accept(counter, "a b c c b a a b c");
+        Map<String, Integer> counts = counts(counter);
+        assertEquals(Integer.valueOf(2), counts.get("a b c"));
+        assertEquals(Integer.valueOf(1), counts.get("c b a"));
+        assertEquals(Integer.valueOf(1), counts.get("b a a"));
+    }
+
+    @Test
+    public void testOrderByCountThenPhrase() {
+        NGramCounter counter = new NGramCounter(2);
+        accept(counter, "new birth new nation new birth of");
+        Map<String, Integer> ids = new HashMap<>();
+        for (int id = 0; id < counter.size(); id++) {
+            ids.put(counter.phrase(id), id);
+        }
+        TopIdSelector.Order order = counter.byCountThenPhrase();
+        assertTrue(order.compare(ids.get("new birth"),
+                ids.get("birth new")) < 0);
+        assertTrue(order.compare(ids.get("birth new"),
+                ids.get("new nation")) < 0);
+        assertTrue(order.compare(ids.get("birth of"),
+                ids.get("birth new")) > 0);
+        assertTrue(order.compare(ids.get("nation new"),
+                ids.get("new nation")) < 0);
+    }
+
+    @Test
+    public void testPmi() {
+        // "under god" always occurs together, "the" goes with anything
+        NGramCounter counter = new NGramCounter(2);
+        accept(counter, "under god the a the b the c the d under god");
+        int underGod = -1;
+        int theA = -1;
+        for (int id = 0; id < counter.size(); id++) {
+            if (counter.phrase(id).equals("under god")) {
+                underGod = id;
+            } else if (counter.phrase(id).equals("the a")) {
+                theA = id;
+            }
+        }
+        assertTrue(counter.pmi(underGod) > counter.pmi(theA));
+        double expected = Math.log(2.0 / 11)
+                - 2 * Math.log(2.0 / 12);
+        assertEquals(expected, counter.pmi(underGod), 1e-9);
+    }
+
+    @Test
+    public void testPruningUndercountsByAtMostMaxUndercount() {
+        Random random = new Random(2);
+        NGramCounter bounded = new NGramCounter(2, 64);
+        NGramCounter exact = new NGramCounter(2, 1 << 20);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            if (i % 4 == 0) {
+                text.append("under god ");
+            } else {
+                text.append("w").append(random.nextInt(300)).append(' ');
+            }
+        }
+        accept(bounded, text.toString());
+        accept(exact, text.toString());
+        Map<String, Integer> trueCounts = counts(exact);
+
+        assertTrue(bounded.maxUndercount() > 0);
+        assertTrue(bounded.size() <= 64);
+        assertEquals(exact.total(), bounded.total());
+        for (int id = 0; id < bounded.size(); id++) {
+            int trueCount = trueCounts.get(bounded.phrase(id));
+            assertTrue(bounded.count(id) <= trueCount);
+            assertTrue(bounded.count(id)
+                    + bounded.maxUndercount() >= trueCount);
+        }
+        assertEquals(trueCounts.get("under god"),
+                counts(bounded).get("under god"));
+    }
+
+    @Test
+    public void testPruningPhrasesWithLargeCounts() {
+        NGramCounter bounded = new NGramCounter(2, 4);
+        NGramCounter exact = new NGramCounter(2);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append("a b c d ");
+        }
+        text.append("x y z");
+        accept(bounded, text.toString());
+        accept(exact, text.toString());
+        Map<String, Integer> trueCounts = counts(exact);
+
+        // every phrase is counted far more often than there are phrases
+        assertTrue(bounded.maxUndercount() >= 999);
+        assertTrue(bounded.size() <= 4);
+        assertEquals(exact.total(), bounded.total());
+        for (int id = 0; id < bounded.size(); id++) {
+            int trueCount = trueCounts.get(bounded.phrase(id));
+            assertTrue(bounded.count(id) <= trueCount);
+            assertTrue(bounded.count(id)
+                    + bounded.maxUndercount() >= trueCount);
+        }
+    }
+
+    @Test
+    public void testWordsBounded() {
+        NGramCounter counter = new NGramCounter(2, 16);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            text.append("the w").append(i).append(' ');
+        }
+        accept(counter, text.toString());
+        assertTrue(counter.words().size() <= 32);
+        assertEquals(20000, counter.wordTotal());
+        assertTrue(counter.maxWordUndercount() >= 0);
+
+        // the frequent word is never dropped, so its count is exact
+        assertEquals(Integer.valueOf(10000), counter.words().get("the"));
+        for (int id = 0; id < counter.size(); id++) {
+            String[] words = counter.phrase(id).split(" ");
+            assertEquals(2, words.length);
+            assertTrue(counter.words().containsKey(words[0]));
+            assertTrue(counter.words().containsKey(words[1]));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoWordPerPhrase() {
+        new NGramCounter(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooFewPhrases() {
+        new NGramCounter(2, 1);
+    }
+}
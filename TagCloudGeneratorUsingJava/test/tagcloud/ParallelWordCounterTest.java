@@ -0,0 +1,143 @@
+package tagcloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * JUnit test fixture for {@code ParallelWordCounter}.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class ParallelWordCounterTest {
+
+    /**
+     * Words of the text, some with characters of two, three and four bytes
+     * in UTF-8.
+     */
+    private static final String[] WORDS = { "the", "Nation", "naïve",
+            "Ærø", "日本語", "😀smile", "dedicated", "a" };
+
+    /**
+     * Separators put between the words.
+     */
+    private static final String[] GAPS = { " ", ", ", ".\n", " -- ", "\t" };
+
+    /**
+     * Folder of the text files, deleted after each test.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Return a long word of characters outside of ASCII.
+     *
+     * @param random
+     *            source of the characters.
+     * @return the word.
+     */
+    private static String longWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        int length = 200 + random.nextInt(200);
+        for (int i = 0; i < length; i++) {
+            word.append(WORDS[2 + random.nextInt(4)]);
+        }
+        return word.toString();
+    }
+
+    /**
+     * Return a text larger than several ranges, with a long word of
+     * characters outside of ASCII across each multiple of
+     * {@code MIN_RANGE_SIZE}, where the ranges are first cut.
+     *
+     * @return the text.
+     */
+    private static String text() {
+        Random random = new Random(3);
+        StringBuilder text = new StringBuilder();
+        long size = 0;
+        long nextCut = ParallelWordCounter.MIN_RANGE_SIZE;
+        while (size < 3 * ParallelWordCounter.MIN_RANGE_SIZE + 1000) {
+            String word;
+            if (size >= nextCut - 100) {
+                word = longWord(random);
+                nextCut += ParallelWordCounter.MIN_RANGE_SIZE;
+            } else {
+                word = WORDS[random.nextInt(WORDS.length)];
+            }
+            String gap = GAPS[random.nextInt(GAPS.length)];
+            text.append(word).append(gap);
+            size += (word + gap).getBytes(StandardCharsets.UTF_8).length;
+        }
+        return text.toString();
+    }
+
+    /**
+     * Count the words of a text on one thread.
+     *
+     * @param tokenizer
+     *            the tokenizer.
+     * @param text
+     *            the text.
+     * @return the counts.
+     */
+    private static WordCountTable countSequentially(WordTokenizer tokenizer,
+            String text) {
+        char[] chars = text.toCharArray();
+        WordCountTable table = new WordCountTable();
+        tokenizer.tokenize(chars, 0, chars.length, true, table);
+        return table;
+    }
+
+    /**
+     * Write a text to a new file.
+     *
+     * @param text
+     *            the text.
+     * @return the file.
+     * @throws IOException
+     *             if the file cannot be written.
+     */
+    private File write(String text) throws IOException {
+        File file = this.folder.newFile("text.txt");
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void testBytesCountedLikeSequentialScan() throws IOException {
+        String text = text();
+        File file = this.write(text);
+        assertTrue(file.length() > 3 * ParallelWordCounter.MIN_RANGE_SIZE);
+        WordTokenizer tokenizer = TagCloudGeneratorUsingJava.TOKENIZER;
+        WordCountTable expected = countSequentially(tokenizer, text);
+        for (int parallelism : new int[] { 1, 2, 4 }) {
+            WordCountTable counts = new ParallelWordCounter(tokenizer,
+                    parallelism).count(file.toPath());
+            assertEquals(expected, counts);
+            assertEquals(expected.total(), counts.total());
+        }
+    }
+
+    @Test
+    public void testDecodedCountedLikeSequentialScan() throws IOException {
+        String text = text();
+        File file = this.write(text);
+        WordTokenizer tokenizer = TagCloudGeneratorUsingJava.TOKENIZER;
+        WordCountTable expected = countSequentially(tokenizer, text);
+        WordCountTable counts = new ParallelWordCounter(tokenizer, 4,
+                sink -> sink).count(file.toPath());
+        assertEquals(expected, counts);
+        assertEquals(expected.total(), counts.total());
+    }
+}
@@ -0,0 +1,150 @@
+package tagcloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code SpaceSavingCounter}.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class SpaceSavingCounterTest {
+
+    /**
+     * Count a word given as a {@code String}.
+     *
+     * @param counter
+     *            the counter.
+     * @param word
+     *            the word.
+     */
+    private static void add(SpaceSavingCounter counter, String word) {
+        char[] chars = word.toCharArray();
+        counter.accept(chars, 0, chars.length);
+    }
+
+    /**
+     * Return the number of a counted word.
+     *
+     * @param counter
+     *            the counter.
+     * @param word
+     *            the word, in lower case.
+     * @return number of the word, or -1 if it has no counter.
+     */
+    private static int id(SpaceSavingCounter counter, String word) {
+        for (int id = 0; id < counter.size(); id++) {
+            if (counter.key(id).equals(word)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void testExactUnderCapacity() {
+        SpaceSavingCounter counter = new SpaceSavingCounter(10);
+        add(counter, "b");
+        add(counter, "a");
+        add(counter, "b");
+        assertEquals(2, counter.size());
+        assertEquals(3, counter.total());
+        assertEquals(0, counter.maxError());
+        int b = id(counter, "b");
+        assertEquals(2, counter.count(b));
+        assertEquals(0, counter.error(b));
+    }
+
+    @Test
+    public void testCaseFoldedAndUtf8() {
+        SpaceSavingCounter counter = new SpaceSavingCounter(4);
+        add(counter, "Été");
+        byte[] bytes = "ÉTÉ".getBytes(StandardCharsets.UTF_8);
+        counter.accept(bytes, 0, bytes.length);
+        assertEquals(1, counter.size());
+        assertEquals(2, counter.count(id(counter, "été")));
+    }
+
+    @Test
+    public void testNewWordTakesOverLowestCounter() {
+        SpaceSavingCounter counter = new SpaceSavingCounter(2);
+        add(counter, "a");
+        add(counter, "a");
+        add(counter, "b");
+        add(counter, "c");
+        assertEquals(2, counter.size());
+        assertEquals(-1, id(counter, "b"));
+        int c = id(counter, "c");
+        assertEquals(2, counter.count(c));
+        assertEquals(1, counter.error(c));
+        assertEquals(2, counter.maxError());
+    }
+
+    @Test
+    public void testErrorBounds() {
+        int capacity = 50;
+        SpaceSavingCounter counter = new SpaceSavingCounter(capacity);
+        Map<String, Integer> trueCounts = new HashMap<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 100000; i++) {
+            // roughly Zipfian ranks out of 2000 words
+            int rank = (int) Math.floor(Math.pow(2000, random.nextDouble()));
+            String word = "w" + rank;
+            add(counter, word);
+            trueCounts.merge(word, 1, Integer::sum);
+        }
+        assertEquals(capacity, counter.size());
+        assertEquals(100000, counter.total());
+        assertTrue(counter.maxError() <= counter.total() / capacity);
+        for (int id = 0; id < counter.size(); id++) {
+            int trueCount = trueCounts.getOrDefault(counter.key(id), 0);
+            assertTrue(counter.count(id) >= trueCount);
+            assertTrue(counter.count(id) - counter.error(id) <= trueCount);
+            assertTrue(counter.error(id) <= counter.maxError());
+        }
+
+        // every word above the lowest count is sure to have a counter
+        for (Map.Entry<String, Integer> entry : trueCounts.entrySet()) {
+            if (entry.getValue() > counter.maxError()) {
+                assertTrue(entry.getKey(),
+                        id(counter, entry.getKey()) >= 0);
+            }
+        }
+    }
+
+    @Test
+    public void testOrderByCountThenWord() {
+        SpaceSavingCounter counter = new SpaceSavingCounter(8);
+        add(counter, "pear");
+        add(counter, "fig");
+        add(counter, "apple");
+        add(counter, "fig");
+        TopIdSelector.Order order = counter.byCountThenWord();
+        int fig = id(counter, "fig");
+        int apple = id(counter, "apple");
+        int pear = id(counter, "pear");
+        assertTrue(order.compare(fig, apple) < 0);
+        assertTrue(order.compare(apple, pear) < 0);
+        assertTrue(order.compare(pear, apple) > 0);
+    }
+
+    @Test
+    public void testCapacity() {
+        assertEquals(10000, SpaceSavingCounter.capacity(100, 0.0001));
+        assertEquals(100, SpaceSavingCounter.capacity(100, 0.5));
+        assertEquals(1, SpaceSavingCounter.capacity(0, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCapacityOfZeroErrorRate() {
+        SpaceSavingCounter.capacity(100, 0);
+    }
+}
@@ -0,0 +1,224 @@
+package tagcloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * JUnit test fixture for {@code SpillingWordCounter}.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class SpillingWordCounterTest {
+
+    /**
+     * Words whose lower-case {@code String} hash codes are equal, so that
+     * they land in the same partition with the same hash.
+     */
+    private static final String[] COLLISIONS = { "a~a~", "a~b_", "b_a~",
+            "b_b_", "B_A~" };
+
+    /**
+     * Folder of the spill files, deleted after each test.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Return a stream of roughly Zipfian words, with hash collisions, mixed
+     * case and characters outside ASCII among them.
+     *
+     * @param n
+     *            number of words.
+     * @return the words.
+     */
+    private static List<String> words(int n) {
+        Random random = new Random(17);
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (random.nextInt(4) == 0) {
+                words.add(COLLISIONS[random.nextInt(COLLISIONS.length)]);
+            } else {
+                int rank = (int) Math
+                        .floor(Math.pow(20000, random.nextDouble()));
+                words.add((rank % 3 == 0 ? "Naïve" : "w") + rank);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Count words in a spilling counter and in an exact table, and check
+     * that the top words of the counter are every word of the table with
+     * the same count.
+     *
+     * @param words
+     *            the words.
+     * @param memory
+     *            bytes the counts of the spilling counter may take.
+     * @param utf8
+     *            whether the counter is given the words in UTF-8.
+     * @return number of spills.
+     * @throws IOException
+     *             if the spill files cannot be written or read.
+     */
+    private int assertSameAsExact(List<String> words, long memory,
+            boolean utf8) throws IOException {
+        File directory = this.folder.newFolder();
+        WordCountTable expected = new WordCountTable();
+        int spills;
+        try (SpillingWordCounter counter = new SpillingWordCounter(
+                directory.toPath(), memory)) {
+            for (String word : words) {
+                char[] chars = word.toCharArray();
+                expected.accept(chars, 0, chars.length);
+                if (utf8) {
+                    byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+                    counter.accept(bytes, 0, bytes.length);
+                } else {
+                    counter.accept(chars, 0, chars.length);
+                }
+            }
+            assertEquals(expected.total(), counter.total());
+            WordCounts top = counter.top(expected.size());
+            spills = counter.spills();
+            assertEquals(expected.size(), counter.distinctWords());
+            assertEquals(expected.size(), top.size());
+            assertEquals(expected.total(), top.total());
+            for (int id = 0; id < top.size(); id++) {
+                String word = top.key(id);
+                assertEquals(word, expected.get(word).intValue(),
+                        top.count(id));
+                assertEquals(0, top.error(id));
+            }
+        }
+        assertEquals(0, directory.list().length);
+        return spills;
+    }
+
+    @Test
+    public void testNoSpillUnderBudget() throws IOException {
+        WordCountTable table;
+        try (SpillingWordCounter counter = new SpillingWordCounter(
+                this.folder.getRoot().toPath(), 1L << 30)) {
+            char[] chars = "The the THE cat".toCharArray();
+            counter.accept(chars, 0, 3);
+            counter.accept(chars, 4, 7);
+            counter.accept(chars, 8, 11);
+            counter.accept(chars, 12, 15);
+            WordCounts top = counter.top(10);
+            assertEquals(0, counter.spills());
+            assertEquals(2, counter.distinctWords());
+            assertTrue(top instanceof WordCountTable);
+            table = (WordCountTable) top;
+        }
+        assertEquals(Integer.valueOf(3), table.get("the"));
+        assertEquals(Integer.valueOf(1), table.get("cat"));
+        assertEquals(0, this.folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testDistinctBeforeTop() throws IOException {
+        try (SpillingWordCounter counter = new SpillingWordCounter(
+                this.folder.getRoot().toPath(), 1L << 30)) {
+            assertEquals(-1, counter.distinctWords());
+        }
+    }
+
+    @Test
+    public void testSomeSpills() throws IOException {
+        List<String> words = words(50000);
+        int spills = this.assertSameAsExact(words,
+                TagCloudGeneratorUsingJava.TABLE_BYTES_PER_WORD * 2000,
+                false);
+        assertTrue(spills > 0);
+    }
+
+    @Test
+    public void testManySpillsOverFanIn() throws IOException {
+        // a budget under two read buffers merges two runs at a time
+        List<String> words = words(50000);
+        int spills = this.assertSameAsExact(words,
+                TagCloudGeneratorUsingJava.TABLE_BYTES_PER_WORD * 50, false);
+        assertTrue(spills > 100);
+    }
+
+    @Test
+    public void testOneWordPerSpill() throws IOException {
+        List<String> words = words(5000);
+        int spills = this.assertSameAsExact(words, 1, false);
+        assertEquals(words.size(), spills);
+    }
+
+    @Test
+    public void testUtf8SameAsChars() throws IOException {
+        List<String> words = words(20000);
+        int spills = this.assertSameAsExact(words,
+                TagCloudGeneratorUsingJava.TABLE_BYTES_PER_WORD * 100, true);
+        assertTrue(spills > 0);
+    }
+
+    @Test
+    public void testTopWordsInOrder() throws IOException {
+        List<String> words = words(50000);
+        WordCountTable expected = new WordCountTable();
+        for (String word : words) {
+            char[] chars = word.toCharArray();
+            expected.accept(chars, 0, chars.length);
+        }
+        TopIdSelector exact = new TopIdSelector(expected.byCountThenWord(),
+                20);
+        for (int id = 0; id < expected.size(); id++) {
+            exact.offer(id);
+        }
+        int[] exactIds = exact.toSortedArray();
+
+        try (SpillingWordCounter counter = new SpillingWordCounter(
+                this.folder.getRoot().toPath(),
+                TagCloudGeneratorUsingJava.TABLE_BYTES_PER_WORD * 50)) {
+            for (String word : words) {
+                char[] chars = word.toCharArray();
+                counter.accept(chars, 0, chars.length);
+            }
+            WordCounts top = counter.top(20);
+            assertEquals(20, top.size());
+            TopIdSelector selector = new TopIdSelector(top.byCountThenWord(),
+                    20);
+            for (int id = 0; id < top.size(); id++) {
+                selector.offer(id);
+            }
+            int[] topIds = selector.toSortedArray();
+            for (int i = 0; i < 20; i++) {
+                assertEquals(expected.key(exactIds[i]), top.key(topIds[i]));
+                assertEquals(expected.count(exactIds[i]),
+                        top.count(topIds[i]));
+            }
+        }
+    }
+
+    @Test
+    public void testCollisionsCountedApart() throws IOException {
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            words.add(COLLISIONS[i % COLLISIONS.length]);
+            words.add("w" + i);
+        }
+        for (String word : COLLISIONS) {
+            assertEquals(COLLISIONS[0].hashCode(),
+                    word.toLowerCase(Locale.ROOT).hashCode());
+        }
+        this.assertSameAsExact(words, 1, false);
+    }
+}
@@ -0,0 +1,158 @@
+package tagcloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * JUnit test fixture for {@code StopWords}.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class StopWordsTest {
+
+    /**
+     * Folder of the word list files, deleted after each test.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Report whether a set holds a word given as a {@code String}.
+     *
+     * @param stopWords
+     *            the set.
+     * @param word
+     *            the word.
+     * @return true if the word is in the set.
+     */
+    private static boolean contains(StopWords stopWords, String word) {
+        char[] chars = word.toCharArray();
+        return stopWords.contains(chars, 0, chars.length);
+    }
+
+    @Test
+    public void testEmptySet() {
+        StopWords stopWords = StopWords.of(Collections.emptyList());
+        assertEquals(0, stopWords.size());
+        assertFalse(contains(stopWords, "the"));
+        assertFalse(contains(stopWords, ""));
+    }
+
+    @Test
+    public void testMembersIgnoringCase() {
+        StopWords stopWords = StopWords.of(Arrays.asList("the", "Of", "AND"));
+        assertEquals(3, stopWords.size());
+        assertTrue(contains(stopWords, "the"));
+        assertTrue(contains(stopWords, "The"));
+        assertTrue(contains(stopWords, "of"));
+        assertTrue(contains(stopWords, "and"));
+        assertTrue(contains(stopWords, "aNd"));
+    }
+
+    @Test
+    public void testNonMembers() {
+        StopWords stopWords = StopWords.of(Arrays.asList("the", "of", "and"));
+        assertFalse(contains(stopWords, "th"));
+        assertFalse(contains(stopWords, "then"));
+        assertFalse(contains(stopWords, "theory"));
+        assertFalse(contains(stopWords, "off"));
+        assertFalse(contains(stopWords, "a"));
+        assertFalse(contains(stopWords, ""));
+    }
+
+    @Test
+    public void testDuplicatesAndEmptyWordsDropped() {
+        StopWords stopWords = StopWords
+                .of(Arrays.asList("the", "THE", "", "the"));
+        assertEquals(1, stopWords.size());
+    }
+
+    @Test
+    public void testSpanOfBuffer() {
+        StopWords stopWords = StopWords.of(Arrays.asList("of"));
+        char[] chars = "people of the earth".toCharArray();
+        assertTrue(stopWords.contains(chars, 7, 9));
+        assertFalse(stopWords.contains(chars, 7, 8));
+        assertFalse(stopWords.contains(chars, 10, 13));
+    }
+
+    @Test
+    public void testEnglish() {
+        StopWords english = StopWords.english();
+        assertTrue(english.size() > 0);
+        assertTrue(contains(english, "the"));
+        assertTrue(contains(english, "We"));
+        assertFalse(contains(english, "nation"));
+        assertFalse(contains(english, "gettysburg"));
+    }
+
+    @Test
+    public void testLargeSetHasNoFalsePositives() {
+        Random random = new Random(1);
+        Set<String> members = new HashSet<>();
+        while (members.size() < 5000) {
+            members.add(randomWord(random));
+        }
+        StopWords stopWords = StopWords.of(members);
+        assertEquals(members.size(), stopWords.size());
+        for (String member : members) {
+            assertTrue(member, contains(stopWords, member));
+        }
+        for (int i = 0; i < 100000; i++) {
+            String word = randomWord(random);
+            assertEquals(word, members.contains(word),
+                    contains(stopWords, word));
+        }
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        Path file = this.folder.newFile("stop.txt").toPath();
+        List<String> lines = new ArrayList<>();
+        lines.add("# common words");
+        lines.add("the");
+        lines.add("");
+        lines.add("  über  ");
+        Files.write(file, lines, StandardCharsets.UTF_8);
+        StopWords stopWords = StopWords.read(file);
+        assertEquals(2, stopWords.size());
+        assertTrue(contains(stopWords, "the"));
+        assertTrue(contains(stopWords, "ÜBER"));
+        assertFalse(contains(stopWords, "# common words"));
+        assertFalse(contains(stopWords, "#"));
+    }
+
+    /**
+     * Return a short random word of lower-case letters.
+     *
+     * @param random
+     *            source of randomness.
+     * @return the word.
+     */
+    private static String randomWord(Random random) {
+        int length = 1 + random.nextInt(6);
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+}
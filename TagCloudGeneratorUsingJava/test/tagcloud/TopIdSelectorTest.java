@@ -0,0 +1,135 @@
+package tagcloud;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code TopIdSelector}, with the
+ * {@code TopNSelector} path of {@code sortWordCount} for comparison.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class TopIdSelectorTest {
+
+    /**
+     * Count words given as {@code String}s.
+     *
+     * @param words
+     *            the words, repeated as often as they are counted.
+     * @return the table.
+     */
+    private static WordCountTable count(String... words) {
+        WordCountTable table = new WordCountTable();
+        for (String word : words) {
+            char[] chars = word.toCharArray();
+            table.accept(chars, 0, chars.length);
+        }
+        return table;
+    }
+
+    /**
+     * Return the first words of a table selected by id.
+     *
+     * @param table
+     *            the table.
+     * @param n
+     *            number of words kept.
+     * @return the words kept, in order.
+     */
+    private static List<String> top(WordCountTable table, int n) {
+        TopIdSelector selector = new TopIdSelector(table.byCountThenWord(),
+                n);
+        for (int id = 0; id < table.size(); id++) {
+            selector.offer(id);
+        }
+        assertEquals(Math.min(Math.max(n, 0), table.size()), selector.size());
+        List<String> words = new ArrayList<>();
+        for (int id : selector.toSortedArray()) {
+            words.add(table.key(id));
+        }
+        return words;
+    }
+
+    @Test
+    public void testDescendingCounts() {
+        WordCountTable table = count("b", "a", "c", "a", "c", "c", "d", "d",
+                "d", "d");
+        assertEquals(Arrays.asList("d", "c", "a"), top(table, 3));
+    }
+
+    @Test
+    public void testTiesAlphabetical() {
+        WordCountTable table = count("pear", "fig", "apple", "app", "fig",
+                "pear", "kiwi");
+        assertEquals(Arrays.asList("fig", "pear", "app", "apple"),
+                top(table, 4));
+        assertEquals(Arrays.asList("fig"), top(table, 1));
+    }
+
+    @Test
+    public void testNAtLeastNumberOfWords() {
+        WordCountTable table = count("b", "a", "b");
+        assertEquals(Arrays.asList("b", "a"), top(table, 2));
+        assertEquals(Arrays.asList("b", "a"), top(table, 3));
+        assertEquals(Arrays.asList("b", "a"), top(table, 1000));
+    }
+
+    @Test
+    public void testNoneKept() {
+        WordCountTable table = count("a");
+        assertEquals(Arrays.asList(), top(table, 0));
+        assertEquals(Arrays.asList(), top(table, -1));
+        assertArrayEquals(new int[0],
+                new TopIdSelector((id1, id2) -> 0, 5).toSortedArray());
+    }
+
+    @Test
+    public void testSameAsSort() {
+        Random random = new Random(9);
+        String[] words = new String[5000];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = "w"
+                    + (int) Math.floor(Math.pow(500, random.nextDouble()));
+        }
+        WordCountTable table = count(words);
+        List<String> sorted = new ArrayList<>(table.keySet());
+        sorted.sort(Comparator
+                .comparing((String word) -> -table.get(word))
+                .thenComparing(Comparator.naturalOrder()));
+        int u = table.size();
+        for (int n : new int[] { 1, 7, 100, u, u + 1 }) {
+            assertEquals(sorted.subList(0, Math.min(n, sorted.size())),
+                    top(table, n));
+        }
+    }
+
+    @Test
+    public void testSortWordCountSameForTablesAndMaps() {
+        WordCountTable table = count("pear", "fig", "apple", "app", "fig",
+                "pear", "kiwi", "fig");
+        Map<String, Integer> map = new HashMap<>(table);
+        for (int n : new int[] { 0, 2, 3, 5, 9 }) {
+            Map<String, Integer> fromTable = new TreeMap<>();
+            Map<String, Integer> fromMap = new TreeMap<>();
+            assertEquals(
+                    TagCloudGeneratorUsingJava.sortWordCount(fromTable,
+                            table, n),
+                    TagCloudGeneratorUsingJava.sortWordCount(fromMap, map,
+                            n));
+            assertEquals(fromTable, fromMap);
+            assertEquals(Math.min(n, table.size()), fromMap.size());
+        }
+    }
+}
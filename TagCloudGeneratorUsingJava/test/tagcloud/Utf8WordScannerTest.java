@@ -0,0 +1,153 @@
+package tagcloud;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * JUnit test fixture for {@code Utf8WordScanner}.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class Utf8WordScannerTest {
+
+    /**
+     * Text with characters of one to four bytes in UTF-8, inside words and
+     * next to separators.
+     */
+    private static final String TEXT = "Four score, naïve Ærø\n日本語 text "
+            + "😀smile—dash, end-of-line\r\nlast😀";
+
+    /**
+     * Folder of the text files, deleted after each test.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Return the words read from some bytes with a given buffer size.
+     *
+     * @param bytes
+     *            UTF-8 text.
+     * @param tokenizer
+     *            the tokenizer.
+     * @param bufferSize
+     *            number of bytes read at once.
+     * @return the words, decoded.
+     * @throws IOException
+     *             never, the bytes are in memory.
+     */
+    private static List<String> scanBytes(byte[] bytes,
+            WordTokenizer tokenizer, int bufferSize) throws IOException {
+        List<String> words = new ArrayList<>();
+        Utf8WordScanner.scan(
+                Channels.newChannel(new ByteArrayInputStream(bytes)),
+                tokenizer,
+                (buffer, start, end) -> words.add(new String(buffer, start,
+                        end - start, StandardCharsets.UTF_8)),
+                bufferSize, new PipelineMetrics());
+        return words;
+    }
+
+    /**
+     * Return the words of a file read by decoding it.
+     *
+     * @param file
+     *            the file.
+     * @param tokenizer
+     *            the tokenizer.
+     * @param windowSize
+     *            number of bytes mapped at once.
+     * @return the words.
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    private static List<String> scanDecoded(File file,
+            WordTokenizer tokenizer, int windowSize) throws IOException {
+        List<String> words = new ArrayList<>();
+        MappedWordScanner.scan(file.toPath(), tokenizer,
+                (chars, start, end) -> words
+                        .add(new String(chars, start, end - start)),
+                windowSize);
+        return words;
+    }
+
+    /**
+     * Check that the bytes and the decoded text of a file give the same
+     * words, with buffers of every size up to the length of the file, so
+     * that every character and every word is cut somewhere, and with a few
+     * small windows, each of which is a mapping of its own.
+     *
+     * @param bytes
+     *            UTF-8 text.
+     * @param tokenizer
+     *            the tokenizer.
+     * @throws IOException
+     *             if the file cannot be written or read.
+     */
+    private void assertSameWords(byte[] bytes, WordTokenizer tokenizer)
+            throws IOException {
+        File file = this.folder.newFile();
+        Files.write(file.toPath(), bytes);
+        List<String> expected = scanDecoded(file, tokenizer, 1 << 16);
+        for (int size = 1; size <= bytes.length + 1; size++) {
+            assertEquals("buffer of " + size, expected,
+                    scanBytes(bytes, tokenizer, size));
+        }
+        for (int size : new int[] { 5, 7, 16 }) {
+            assertEquals("window of " + size, expected,
+                    scanDecoded(file, tokenizer, size));
+        }
+    }
+
+    @Test
+    public void testWords() throws IOException {
+        WordTokenizer tokenizer = TagCloudGeneratorUsingJava.TOKENIZER;
+        assertEquals(
+                Arrays.asList("Four", "score", "naïve", "Ærø", "日本語",
+                        "text", "😀smile—dash", "end", "of", "line", "last😀"),
+                scanBytes(TEXT.getBytes(StandardCharsets.UTF_8), tokenizer,
+                        Utf8WordScanner.DEFAULT_BUFFER_SIZE));
+    }
+
+    @Test
+    public void testBufferSplitsLikeDecodedText() throws IOException {
+        this.assertSameWords(TEXT.getBytes(StandardCharsets.UTF_8),
+                TagCloudGeneratorUsingJava.TOKENIZER);
+    }
+
+    @Test
+    public void testNonAsciiSeparators() throws IOException {
+        WordTokenizer tokenizer = new WordTokenizer(
+                TagCloudGeneratorUsingJava.SEPARATORS + "\r\n—");
+        this.assertSameWords(TEXT.getBytes(StandardCharsets.UTF_8),
+                tokenizer);
+    }
+
+    @Test
+    public void testIllFormedBytes() throws IOException {
+        byte[] text = TEXT.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = Arrays.copyOf(text, text.length + 6);
+        // a stray continuation byte, a cut character and a cut last word
+        bytes[text.length] = ' ';
+        bytes[text.length + 1] = (byte) 0x80;
+        bytes[text.length + 2] = 'x';
+        bytes[text.length + 3] = (byte) 0xE6;
+        bytes[text.length + 4] = ' ';
+        bytes[text.length + 5] = (byte) 0xF0;
+        this.assertSameWords(bytes, TagCloudGeneratorUsingJava.TOKENIZER);
+    }
+}
@@ -0,0 +1,119 @@
+package tagcloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * JUnit test fixture for {@code VocabularyEstimate}.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class VocabularyEstimateTest {
+
+    /**
+     * Folder of the text files, deleted after each test.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Write a text of random words to a new file.
+     *
+     * @param words
+     *            number of words.
+     * @param distinct
+     *            number of distinct words they are drawn from, or 0 for
+     *            words that are all different.
+     * @return the file.
+     * @throws IOException
+     *             if the file cannot be written.
+     */
+    private File write(int words, int distinct) throws IOException {
+        Random random = new Random(7);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            int word = i;
+            if (distinct > 0) {
+                word = random.nextInt(distinct);
+            }
+            text.append("w").append(word).append(i % 10 == 9 ? ".\n" : " ");
+        }
+        File file = this.folder.newFile();
+        Files.write(file.toPath(),
+                text.toString().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * Estimate the vocabulary of a file.
+     *
+     * @param file
+     *            the file.
+     * @return the estimate.
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    private static VocabularyEstimate estimate(File file) throws IOException {
+        return VocabularyEstimate.of(file.toPath(),
+                TagCloudGeneratorUsingJava.TOKENIZER, new PipelineMetrics());
+    }
+
+    /**
+     * Check that an estimate is within some relative error of the true
+     * count.
+     *
+     * @param expected
+     *            the true count.
+     * @param error
+     *            largest relative error.
+     * @param actual
+     *            the estimate.
+     */
+    private static void assertClose(long expected, double error,
+            long actual) {
+        assertTrue(actual + " instead of " + expected,
+                Math.abs(actual - expected) <= error * expected);
+    }
+
+    @Test
+    public void testSmallFileReadWhole() throws IOException {
+        File file = this.write(60000, 8000);
+        VocabularyEstimate estimate = estimate(file);
+        assertFalse(estimate.isSampled());
+        assertEquals(60000, estimate.words());
+        // four standard errors of the default precision
+        assertClose(8000, 0.04, estimate.distinctWords());
+    }
+
+    @Test
+    public void testLargeFileWithSmallVocabulary() throws IOException {
+        File file = this.write(1200000, 20000);
+        assertTrue(file.length() > VocabularyEstimate.SAMPLE_SIZE);
+        VocabularyEstimate estimate = estimate(file);
+        assertTrue(estimate.isSampled());
+        assertClose(1200000, 0.05, estimate.words());
+        assertClose(20000, 0.1, estimate.distinctWords());
+    }
+
+    @Test
+    public void testLargeFileOfDistinctWords() throws IOException {
+        File file = this.write(700000, 0);
+        assertTrue(file.length() > VocabularyEstimate.SAMPLE_SIZE);
+        VocabularyEstimate estimate = estimate(file);
+        assertTrue(estimate.isSampled());
+        assertClose(700000, 0.05, estimate.words());
+        assertClose(700000, 0.2, estimate.distinctWords());
+    }
+}
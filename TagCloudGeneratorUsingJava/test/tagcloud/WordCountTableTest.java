@@ -0,0 +1,237 @@
+package tagcloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code WordCountTable}.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class WordCountTableTest {
+
+    /**
+     * Count a word given as a {@code String}.
+     *
+     * @param table
+     *            the table.
+     * @param word
+     *            the word.
+     * @return number of the word.
+     */
+    private static int add(WordCountTable table, String word) {
+        char[] chars = word.toCharArray();
+        return table.addWord(chars, 0, chars.length);
+    }
+
+    @Test
+    public void testEmpty() {
+        WordCountTable table = new WordCountTable();
+        assertEquals(0, table.size());
+        assertEquals(0, table.total());
+        assertTrue(table.isEmpty());
+        assertNull(table.get("word"));
+    }
+
+    @Test
+    public void testRepeatedWord() {
+        WordCountTable table = new WordCountTable();
+        int id = add(table, "word");
+        assertEquals(id, add(table, "word"));
+        assertEquals(1, table.size());
+        assertEquals(2, table.total());
+        assertEquals(2, table.count(id));
+        assertEquals(0, table.error(id));
+        assertEquals("word", table.key(id));
+        assertEquals(Integer.valueOf(2), table.get("word"));
+    }
+
+    @Test
+    public void testWordsNumberedInOrder() {
+        WordCountTable table = new WordCountTable();
+        assertEquals(0, add(table, "one"));
+        assertEquals(1, add(table, "two"));
+        assertEquals(0, add(table, "one"));
+        assertEquals(2, add(table, "three"));
+        assertEquals(5, table.keyLength(2));
+        assertEquals('h', table.keyChar(2, 1));
+    }
+
+    @Test
+    public void testSpanOfBuffer() {
+        WordCountTable table = new WordCountTable();
+        char[] chars = "four score".toCharArray();
+        int id = table.addWord(chars, 5, chars.length);
+        assertEquals("score", table.key(id));
+        assertFalse(table.containsKey("four"));
+    }
+
+    @Test
+    public void testCaseFolded() {
+        WordCountTable table = new WordCountTable();
+        int id = add(table, "The");
+        assertEquals(id, add(table, "THE"));
+        assertEquals(id, add(table, "the"));
+        assertEquals(1, table.size());
+        assertEquals("the", table.key(id));
+        assertEquals(Integer.valueOf(3), table.get("the"));
+    }
+
+    @Test
+    public void testCaseFoldedOutsideAscii() {
+        WordCountTable table = new WordCountTable();
+        int id = add(table, "ÉTÉ");
+        assertEquals(id, add(table, "été"));
+        assertEquals("été", table.key(id));
+    }
+
+    @Test
+    public void testCaseFoldedSupplementary() {
+        // Deseret capital and small long I, one surrogate pair each
+        WordCountTable table = new WordCountTable();
+        int id = add(table, "𐐀x");
+        assertEquals(id, add(table, "𐐨X"));
+        assertEquals(1, table.size());
+        assertEquals("𐐨x", table.key(id));
+    }
+
+    @Test
+    public void testUtf8SameAsChars() {
+        WordCountTable table = new WordCountTable();
+        String[] words = { "café", "CAFÉ", "𐐀",
+                "𐐨", "plain" };
+        for (String word : words) {
+            byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+            table.addUtf8(bytes, 0, bytes.length);
+            add(table, word);
+        }
+        assertEquals(3, table.size());
+        assertEquals(Integer.valueOf(4), table.get("café"));
+        assertEquals(Integer.valueOf(4), table.get("𐐨"));
+        assertEquals(Integer.valueOf(2), table.get("plain"));
+    }
+
+    @Test
+    public void testHashCollision() {
+        // "a~" and "b_" have the same String hash code
+        assertEquals("a~".hashCode(), "b_".hashCode());
+        WordCountTable table = new WordCountTable();
+        int first = add(table, "a~");
+        int second = add(table, "b_");
+        add(table, "b_");
+        assertTrue(first != second);
+        assertEquals(1, table.count(first));
+        assertEquals(2, table.count(second));
+        assertEquals(Integer.valueOf(1), table.get("a~"));
+        assertEquals(Integer.valueOf(2), table.get("b_"));
+    }
+
+    @Test
+    public void testGrowth() {
+        WordCountTable table = new WordCountTable();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            String word = "w" + (i * 7919 % 5000);
+            add(table, word);
+            expected.merge(word, 1, Integer::sum);
+        }
+        assertEquals(5000, table.size());
+        assertEquals(20000, table.total());
+        assertEquals(expected, new HashMap<>(table));
+    }
+
+    @Test
+    public void testLongWordsGrowArena() {
+        WordCountTable table = new WordCountTable();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            word.append((char) ('a' + i % 26));
+        }
+        int id = add(table, word.toString());
+        add(table, "short");
+        assertEquals(word.toString(), table.key(id));
+        assertEquals(Integer.valueOf(1), table.get("short"));
+    }
+
+    @Test
+    public void testAddAll() {
+        WordCountTable table1 = new WordCountTable();
+        add(table1, "a");
+        add(table1, "b");
+        WordCountTable table2 = new WordCountTable();
+        add(table2, "B");
+        add(table2, "c");
+        table1.addAll(table2);
+        assertEquals(3, table1.size());
+        assertEquals(4, table1.total());
+        assertEquals(Integer.valueOf(2), table1.get("b"));
+        assertEquals(Integer.valueOf(1), table1.get("c"));
+    }
+
+    @Test
+    public void testAddOneWordOfOtherTable() {
+        WordCountTable table1 = new WordCountTable();
+        add(table1, "a");
+        add(table1, "a");
+        int b = add(table1, "b");
+        WordCountTable table2 = new WordCountTable();
+        int id = table2.add(table1, b);
+        assertEquals("b", table2.key(id));
+        assertEquals(1, table2.count(id));
+        assertEquals(1, table2.total());
+    }
+
+    @Test
+    public void testOrderByCountThenWord() {
+        WordCountTable table = new WordCountTable();
+        int pear = add(table, "pear");
+        int apple = add(table, "apple");
+        int app = add(table, "app");
+        int fig = add(table, "fig");
+        add(table, "fig");
+        TopIdSelector.Order order = table.byCountThenWord();
+        assertTrue(order.compare(fig, apple) < 0);
+        assertTrue(order.compare(apple, fig) > 0);
+        assertTrue(order.compare(apple, pear) < 0);
+        assertTrue(order.compare(app, apple) < 0);
+        assertEquals(0, order.compare(pear, pear));
+    }
+
+    @Test
+    public void testEntrySet() {
+        WordCountTable table = new WordCountTable();
+        add(table, "x");
+        add(table, "y");
+        add(table, "x");
+        Map<String, Integer> expected = new HashMap<>();
+        expected.put("x", 2);
+        expected.put("y", 1);
+        assertEquals(expected, table);
+        assertEquals(2, table.entrySet().size());
+    }
+
+    @Test
+    public void testTokensKeepTheirCase() {
+        WordTokenizer tokenizer = new WordTokenizer(" .,()")
+                .withTokenClasses(TokenClasses.parse("url,email"));
+        char[] text = ("See https://Example.org/Foo_(bar), mail Ann@Example.org"
+                + " (https://Example.org/Baz).").toCharArray();
+        WordCountTable table = new WordCountTable();
+        tokenizer.tokenize(text, 0, text.length, true, table);
+        assertEquals(Integer.valueOf(1),
+                table.get("https://Example.org/Foo_(bar)"));
+        assertEquals(Integer.valueOf(1), table.get("https://Example.org/Baz"));
+        assertEquals(Integer.valueOf(1), table.get("Ann@Example.org"));
+        assertEquals(Integer.valueOf(1), table.get("see"));
+        assertNull(table.get("https://example.org/foo_(bar)"));
+    }
+}
@@ -0,0 +1,166 @@
+package tagcloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code WordHeap}.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class WordHeapTest {
+
+    /**
+     * Add a word given as a {@code String}, hashed like its lower case.
+     *
+     * @param heap
+     *            the heap.
+     * @param word
+     *            the word.
+     * @param count
+     *            count of the word.
+     * @return number of the word.
+     */
+    private static int add(WordHeap heap, String word, int count) {
+        char[] chars = word.toCharArray();
+        return heap.add(chars, 0, chars.length, hash(word), count, true);
+    }
+
+    /**
+     * Find a word given as a {@code String}.
+     *
+     * @param heap
+     *            the heap.
+     * @param word
+     *            the word.
+     * @return number of the word, or -1 if it is not in the heap.
+     */
+    private static int find(WordHeap heap, String word) {
+        char[] chars = word.toCharArray();
+        return heap.find(chars, 0, chars.length, hash(word), true);
+    }
+
+    /**
+     * Return the hash of a word in lower case.
+     *
+     * @param word
+     *            the word.
+     * @return the hash.
+     */
+    private static int hash(String word) {
+        return word.toLowerCase(Locale.ROOT).hashCode();
+    }
+
+    @Test
+    public void testAddAndFind() {
+        WordHeap heap = new WordHeap(4);
+        int id = add(heap, "Word", 3);
+        assertEquals(1, heap.size());
+        assertEquals(4, heap.capacity());
+        assertFalse(heap.isFull());
+        assertEquals(id, find(heap, "WORD"));
+        assertEquals(-1, find(heap, "other"));
+        assertEquals("word", heap.key(id));
+        assertEquals(4, heap.length(id));
+        assertEquals(hash("word"), heap.hash(id));
+        assertEquals(3, heap.count(id));
+    }
+
+    @Test
+    public void testMinIsLowestCount() {
+        WordHeap heap = new WordHeap(8);
+        int[] counts = { 5, 3, 9, 1, 7, 2, 8, 4 };
+        int lowest = -1;
+        for (int i = 0; i < counts.length; i++) {
+            int id = add(heap, "w" + i, counts[i]);
+            if (counts[i] == 1) {
+                lowest = id;
+            }
+        }
+        assertTrue(heap.isFull());
+        assertEquals(lowest, heap.min());
+        heap.raise(lowest, 6);
+        assertEquals(2, heap.count(heap.min()));
+    }
+
+    @Test
+    public void testReplaceMin() {
+        WordHeap heap = new WordHeap(3);
+        add(heap, "a", 4);
+        int b = add(heap, "b", 1);
+        add(heap, "c", 2);
+        char[] chars = "D".toCharArray();
+        int d = heap.replaceMin(chars, 0, 1, hash("d"), 5, true);
+        assertEquals(b, d);
+        assertEquals(-1, find(heap, "b"));
+        assertEquals(d, find(heap, "d"));
+        assertEquals("d", heap.key(d));
+        assertEquals(2, heap.count(heap.min()));
+    }
+
+    @Test
+    public void testReplaceMinKeepsCollidingWordsFound() {
+        // words with the same hash share one probe sequence
+        WordHeap heap = new WordHeap(4);
+        for (int i = 0; i < 4; i++) {
+            char[] chars = ("w" + i).toCharArray();
+            heap.add(chars, 0, chars.length, 42, i + 1, true);
+        }
+        char[] chars = "x".toCharArray();
+        heap.replaceMin(chars, 0, 1, 42, 9, true);
+        for (int i = 1; i < 4; i++) {
+            char[] word = ("w" + i).toCharArray();
+            assertTrue(heap.find(word, 0, word.length, 42, true) >= 0);
+        }
+        assertTrue(heap.find(chars, 0, 1, 42, true) >= 0);
+        char[] gone = "w0".toCharArray();
+        assertEquals(-1, heap.find(gone, 0, gone.length, 42, true));
+    }
+
+    @Test
+    public void testHeapOrderUnderRandomUpdates() {
+        WordHeap heap = new WordHeap(64);
+        int[] counts = new int[64];
+        Random random = new Random(11);
+        for (int i = 0; i < 64; i++) {
+            counts[add(heap, "w" + i, 1)] = 1;
+        }
+        for (int i = 0; i < 10000; i++) {
+            int id = random.nextInt(64);
+            counts[id] += random.nextInt(3);
+            heap.raise(id, counts[id]);
+            int lowest = Integer.MAX_VALUE;
+            for (int count : counts) {
+                lowest = Math.min(lowest, count);
+            }
+            assertEquals(lowest, heap.count(heap.min()));
+        }
+    }
+
+    @Test
+    public void testOrderByCountThenWord() {
+        WordHeap heap = new WordHeap(4);
+        int pear = add(heap, "pear", 1);
+        int apple = add(heap, "apple", 1);
+        int app = add(heap, "app", 1);
+        int fig = add(heap, "fig", 2);
+        TopIdSelector.Order order = heap.byCountThenWord();
+        assertTrue(order.compare(fig, apple) < 0);
+        assertTrue(order.compare(apple, pear) < 0);
+        assertTrue(order.compare(app, apple) < 0);
+        assertTrue(order.compare(pear, app) > 0);
+        assertEquals(0, order.compare(pear, pear));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroCapacity() {
+        new WordHeap(0);
+    }
+}
@@ -0,0 +1,193 @@
+package tagcloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code WordTokenizer}. The vector tests only run
+ * where the vector classifier is built and loads, as with {@code -P vector}.
+ *
+ * @author Ben Walls, Matt Chandran
+ *
+ */
+public final class WordTokenizerTest {
+
+    /**
+     * Separators of the tests, all ASCII.
+     */
+    private static final String SEPARATORS = " \t,.-:;/\"!?_@#$%&*[]()\r\n";
+
+    /**
+     * Number of characters classified at once.
+     */
+    private static final int BLOCK = SeparatorClassifier.BLOCK_SIZE;
+
+    /**
+     * Characters the random texts are made of: ASCII letters, separators,
+     * characters outside ASCII and halves of a surrogate pair.
+     */
+    private static final String ALPHABET = "abcXYZ019 \t,.-_()\n"
+            + "\u00E9\u00C5\u4E2D\u2014\u3000\uD83D\uDE00";
+
+    /**
+     * Separators of the tests, some of them outside of ASCII.
+     */
+    private static final String NON_ASCII_SEPARATORS = SEPARATORS
+            + "\u2014\u3000";
+
+    /**
+     * Return the words a tokenizer finds in a span of a buffer, followed by
+     * the index it returns.
+     *
+     * @param tokenizer
+     *            the tokenizer.
+     * @param chars
+     *            buffer holding the text.
+     * @param from
+     *            index of the first character to scan.
+     * @param to
+     *            index one past the last character to scan.
+     * @param endOfInput
+     *            whether the span ends the input.
+     * @return the words, then the index as a {@code String}.
+     */
+    private static List<String> tokenize(WordTokenizer tokenizer,
+            char[] chars, int from, int to, boolean endOfInput) {
+        List<String> words = new ArrayList<>();
+        int next = tokenizer.tokenize(chars, from, to, endOfInput,
+                (buffer, start, end) -> words
+                        .add(new String(buffer, start, end - start)));
+        words.add(Integer.toString(next));
+        return words;
+    }
+
+    /**
+     * Check that the vector and the scalar tokenizers find the same words in
+     * every span of a text from the start, with and without the end of the
+     * input.
+     *
+     * @param separators
+     *            the separators.
+     * @param text
+     *            the text.
+     */
+    private static void assertSameWords(String separators, String text) {
+        WordTokenizer vector = new WordTokenizer(separators, true);
+        WordTokenizer scalar = new WordTokenizer(separators, false);
+        assumeTrue(vector.isVectorized());
+        char[] chars = text.toCharArray();
+        for (int from = 0; from <= 2 && from <= chars.length; from++) {
+            for (int to = from; to <= chars.length; to++) {
+                for (boolean endOfInput : new boolean[] { true, false }) {
+                    assertEquals(
+                            "[" + from + ", " + to + ") of \"" + text + "\"",
+                            tokenize(scalar, chars, from, to, endOfInput),
+                            tokenize(vector, chars, from, to, endOfInput));
+                }
+            }
+        }
+    }
+
+    /**
+     * Return a text with a separator or a one-character word at each given
+     * index and a letter everywhere else.
+     *
+     * @param length
+     *            length of the text.
+     * @param c
+     *            character put at the indexes.
+     * @param indexes
+     *            the indexes.
+     * @return the text.
+     */
+    private static String textWith(int length, char c, int... indexes) {
+        char[] chars = new char[length];
+        Arrays.fill(chars, 'w');
+        for (int index : indexes) {
+            chars[index] = c;
+        }
+        return new String(chars);
+    }
+
+    @Test
+    public void testScalarWords() {
+        WordTokenizer scalar = new WordTokenizer(SEPARATORS, false);
+        char[] chars = "  Four score, and (seven) years-ago".toCharArray();
+        assertEquals(
+                Arrays.asList("Four", "score", "and", "seven", "years",
+                        "ago", Integer.toString(chars.length)),
+                tokenize(scalar, chars, 0, chars.length, true));
+        assertEquals(
+                Arrays.asList("Four", "score", "and", "seven", "years",
+                        Integer.toString(chars.length - 3)),
+                tokenize(scalar, chars, 0, chars.length, false));
+    }
+
+    @Test
+    public void testSeparatorsAtBlockBoundaries() {
+        int length = 3 * BLOCK + 5;
+        for (int at : new int[] { 0, BLOCK - 1, BLOCK, BLOCK + 1,
+                2 * BLOCK - 1, 2 * BLOCK, 3 * BLOCK - 1, 3 * BLOCK }) {
+            assertSameWords(SEPARATORS, textWith(length, ' ', at));
+            assertSameWords(SEPARATORS, textWith(length, ',', at, at + 1));
+        }
+        assertSameWords(SEPARATORS, textWith(length, ' ', BLOCK - 1, BLOCK,
+                2 * BLOCK - 1, 2 * BLOCK));
+    }
+
+    @Test
+    public void testWordAcrossBlocks() {
+        // one word covering a whole block and running into the next ones
+        String text = textWith(3 * BLOCK, ' ', 1, 2 * BLOCK + 3);
+        assertSameWords(SEPARATORS, text);
+    }
+
+    @Test
+    public void testNonAscii() {
+        String text = textWith(2 * BLOCK + 7, '\u00E9', 3, BLOCK - 1, BLOCK,
+                BLOCK + 9);
+        assertSameWords(SEPARATORS, text);
+        assertSameWords(SEPARATORS, text.replace('w', ' ')
+                .replace("\u00E9\u00E9", "\u4E2D\uD83D\uDE00"));
+    }
+
+    @Test
+    public void testNonAsciiSeparators() {
+        assertSameWords(NON_ASCII_SEPARATORS,
+                textWith(2 * BLOCK + 3, '\u2014', BLOCK - 1, BLOCK + 4));
+        assertSameWords(NON_ASCII_SEPARATORS,
+                textWith(2 * BLOCK + 3, '\u3000', 0, BLOCK, 2 * BLOCK + 2));
+    }
+
+    @Test
+    public void testShortTails() {
+        assertSameWords(SEPARATORS, "");
+        for (int length = 1; length <= BLOCK + 3; length++) {
+            assertSameWords(SEPARATORS,
+                    textWith(length, ' ', length / 2, length / 3));
+        }
+    }
+
+    @Test
+    public void testRandomTexts() {
+        Random random = new Random(11);
+        for (String separators : new String[] { SEPARATORS,
+                NON_ASCII_SEPARATORS }) {
+            for (int i = 0; i < 20; i++) {
+                char[] chars = new char[random.nextInt(3 * BLOCK)];
+                for (int j = 0; j < chars.length; j++) {
+                    chars[j] = ALPHABET
+                            .charAt(random.nextInt(ALPHABET.length()));
+                }
+                assertSameWords(separators, new String(chars));
+            }
+        }
+    }
+}